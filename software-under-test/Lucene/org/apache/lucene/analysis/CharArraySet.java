@@ -0,0 +1,127 @@
+package org.apache.lucene.analysis;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of Strings that can be probed with a portion of a char[], so that
+ * a {@link Token}'s term buffer can be looked up without creating a String.
+ * It is used by {@link StopFilter} for its stop words.
+ * <p>
+ * Only Strings can be added, and removal is not supported.
+ */
+public final class CharArraySet extends AbstractSet {
+  private String[] entries;                       // open addressing
+  private int size;
+
+  /** Creates an empty set sized for <code>startSize</code> entries. */
+  public CharArraySet(int startSize) {
+    int tableSize = 8;
+    while (tableSize < 2 * startSize)             // keep it half empty
+      tableSize *= 2;
+    entries = new String[tableSize];
+  }
+
+  /** Returns true if the <code>length</code> characters of
+   * <code>text</code> starting at <code>offset</code> are in the set. */
+  public boolean contains(char[] text, int offset, int length) {
+    int code = 0;
+    for (int i = offset; i < offset + length; i++)
+      code = 31 * code + text[i];                 // as String.hashCode()
+    int mask = entries.length - 1;
+    int slot = code & mask;
+    String entry;
+    while ((entry = entries[slot]) != null) {
+      if (entry.length() == length) {
+        int i = 0;
+        while (i < length && entry.charAt(i) == text[offset + i])
+          i++;
+        if (i == length)
+          return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public boolean contains(Object o) {
+    if (!(o instanceof String))
+      return false;
+    String s = (String) o;
+    return entries[slot(entries, s)] != null;
+  }
+
+  /** Adds a String to the set.
+   * @throws ClassCastException if <code>o</code> is not a String */
+  public boolean add(Object o) {
+    String s = (String) o;
+    int slot = slot(entries, s);
+    if (entries[slot] != null)
+      return false;
+    entries[slot] = s;
+    if (2 * ++size > entries.length)
+      rehash();
+    return true;
+  }
+
+  private static int slot(String[] entries, String s) {
+    int mask = entries.length - 1;
+    int slot = s.hashCode() & mask;
+    while (entries[slot] != null && !entries[slot].equals(s))
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private void rehash() {
+    String[] newEntries = new String[2 * entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      if (entries[i] != null)
+        newEntries[slot(newEntries, entries[i])] = entries[i];
+    }
+    entries = newEntries;
+  }
+
+  public int size() { return size; }
+
+  public Iterator iterator() {
+    return new Iterator() {
+        private int next = advance(0);
+
+        private int advance(int i) {
+          while (i < entries.length && entries[i] == null)
+            i++;
+          return i;
+        }
+
+        public boolean hasNext() { return next < entries.length; }
+
+        public Object next() {
+          if (!hasNext())
+            throw new NoSuchElementException();
+          Object result = entries[next];
+          next = advance(next + 1);
+          return result;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+  }
+}
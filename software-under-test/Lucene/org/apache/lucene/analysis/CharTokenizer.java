@@ -28,7 +28,6 @@ public abstract class CharTokenizer extends Tokenizer {
   private int offset = 0, bufferIndex = 0, dataLen = 0;
   private static final int MAX_WORD_LEN = 255;
   private static final int IO_BUFFER_SIZE = 1024;
-  private final char[] buffer = new char[MAX_WORD_LEN];
   private final char[] ioBuffer = new char[IO_BUFFER_SIZE];
 
   /** Returns true iff a character should be included in a token.  This
@@ -44,10 +43,13 @@ public abstract class CharTokenizer extends Tokenizer {
     return c;
   }
 
-  /** Returns the next token in the stream, or null at EOS. */
-  public final Token next() throws IOException {
+  /** Returns the next token in the stream, or null at EOS.  Fills
+   * <code>token</code> rather than allocating a new Token. */
+  public final Token next(Token token) throws IOException {
+    token.clear();
     int length = 0;
     int start = offset;
+    char[] buffer = token.termBuffer();
     while (true) {
       final char c;
 
@@ -69,6 +71,10 @@ public abstract class CharTokenizer extends Tokenizer {
 
         if (length == 0)			           // start of token
           start = offset - 1;
+        else if (length == buffer.length) {
+          token.setTermLength(length);
+          buffer = token.resizeTermBuffer(1 + length);
+        }
 
         buffer[length++] = normalize(c); // buffer it, normalized
 
@@ -80,6 +86,9 @@ public abstract class CharTokenizer extends Tokenizer {
 
     }
 
-    return new Token(new String(buffer, 0, length), start, start + length);
+    token.setTermLength(length);
+    token.setStartOffset(start);
+    token.setEndOffset(start + length);
+    return token;
   }
 }
@@ -28,52 +28,87 @@ public class ISOLatin1AccentFilter extends TokenFilter {
 		super(input);
 	}
 
-	public final Token next() throws java.io.IOException {
-		final Token t = input.next();
-		if (t == null)
+	private char[] output = new char[256];
+	private int outputPos;
+
+	public final Token next(Token result) throws java.io.IOException {
+		result = input.next(result);
+		if (result != null) {
+			final char[] buffer = result.termBuffer();
+			final int length = result.termLength();
+			// If no characters actually require rewriting then we
+			// just return token as-is:
+			for (int i = 0; i < length; i++) {
+				final char c = buffer[i];
+				if (c >= '\u00c0' && c <= '\u0178') {
+					removeAccents(buffer, length);
+					result.setTermBuffer(output, 0, outputPos);
+					break;
+				}
+			}
+			return result;
+		} else
 			return null;
-		// Return a token with filtered characters.
-		return new Token(removeAccents(t.termText()), t.startOffset(), t.endOffset(), t.type());
 	}
 
 	/**
 	 * To replace accented characters in a String by unaccented equivalents.
 	 */
 	public final static String removeAccents(String input) {
-		final StringBuffer output = new StringBuffer();
-		for (int i = 0; i < input.length(); i++) {
-			switch (input.charAt(i)) {
+		ISOLatin1AccentFilter filter = new ISOLatin1AccentFilter(null);
+		filter.removeAccents(input.toCharArray(), input.length());
+		return new String(filter.output, 0, filter.outputPos);
+	}
+
+	/**
+	 * Replaces the accented characters in the first <code>length</code>
+	 * characters of <code>input</code>, leaving the result in
+	 * <code>output</code>.
+	 */
+	private final void removeAccents(char[] input, int length) {
+		// Worst-case length required:
+		final int maxSizeNeeded = 2 * length;
+		if (output.length < maxSizeNeeded) {
+			int size = output.length;
+			while (size < maxSizeNeeded)
+				size *= 2;
+			output = new char[size];
+		}
+		outputPos = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = input[i];
+			switch (c) {
 				case '\u00C0' : // À
 				case '\u00C1' : // Á
 				case '\u00C2' : // Â
 				case '\u00C3' : // Ã
 				case '\u00C4' : // Ä
 				case '\u00C5' : // Å
-					output.append("A");
+					output[outputPos++] = 'A';
 					break;
 				case '\u00C6' : // Æ
-					output.append("AE");
+					output[outputPos++] = 'A'; output[outputPos++] = 'E';
 					break;
 				case '\u00C7' : // Ç
-					output.append("C");
+					output[outputPos++] = 'C';
 					break;
 				case '\u00C8' : // È
 				case '\u00C9' : // É
 				case '\u00CA' : // Ê
 				case '\u00CB' : // Ë
-					output.append("E");
+					output[outputPos++] = 'E';
 					break;
 				case '\u00CC' : // Ì
 				case '\u00CD' : // Í
 				case '\u00CE' : // Î
 				case '\u00CF' : // Ï
-					output.append("I");
+					output[outputPos++] = 'I';
 					break;
 				case '\u00D0' : // Ð
-					output.append("D");
+					output[outputPos++] = 'D';
 					break;
 				case '\u00D1' : // Ñ
-					output.append("N");
+					output[outputPos++] = 'N';
 					break;
 				case '\u00D2' : // Ò
 				case '\u00D3' : // Ó
@@ -81,23 +116,23 @@ public class ISOLatin1AccentFilter extends TokenFilter {
 				case '\u00D5' : // Õ
 				case '\u00D6' : // Ö
 				case '\u00D8' : // Ø
-					output.append("O");
+					output[outputPos++] = 'O';
 					break;
 				case '\u0152' : // Œ
-					output.append("OE");
+					output[outputPos++] = 'O'; output[outputPos++] = 'E';
 					break;
 				case '\u00DE' : // Þ
-					output.append("TH");
+					output[outputPos++] = 'T'; output[outputPos++] = 'H';
 					break;
 				case '\u00D9' : // Ù
 				case '\u00DA' : // Ú
 				case '\u00DB' : // Û
 				case '\u00DC' : // Ü
-					output.append("U");
+					output[outputPos++] = 'U';
 					break;
 				case '\u00DD' : // Ý
 				case '\u0178' : // Ÿ
-					output.append("Y");
+					output[outputPos++] = 'Y';
 					break;
 				case '\u00E0' : // à
 				case '\u00E1' : // á
@@ -105,31 +140,31 @@ public class ISOLatin1AccentFilter extends TokenFilter {
 				case '\u00E3' : // ã
 				case '\u00E4' : // ä
 				case '\u00E5' : // å
-					output.append("a");
+					output[outputPos++] = 'a';
 					break;
 				case '\u00E6' : // æ
-					output.append("ae");
+					output[outputPos++] = 'a'; output[outputPos++] = 'e';
 					break;
 				case '\u00E7' : // ç
-					output.append("c");
+					output[outputPos++] = 'c';
 					break;
 				case '\u00E8' : // è
 				case '\u00E9' : // é
 				case '\u00EA' : // ê
 				case '\u00EB' : // ë
-					output.append("e");
+					output[outputPos++] = 'e';
 					break;
 				case '\u00EC' : // ì
 				case '\u00ED' : // í
 				case '\u00EE' : // î
 				case '\u00EF' : // ï
-					output.append("i");
+					output[outputPos++] = 'i';
 					break;
 				case '\u00F0' : // ð
-					output.append("d");
+					output[outputPos++] = 'd';
 					break;
 				case '\u00F1' : // ñ
-					output.append("n");
+					output[outputPos++] = 'n';
 					break;
 				case '\u00F2' : // ò
 				case '\u00F3' : // ó
@@ -137,32 +172,31 @@ public class ISOLatin1AccentFilter extends TokenFilter {
 				case '\u00F5' : // õ
 				case '\u00F6' : // ö
 				case '\u00F8' : // ø
-					output.append("o");
+					output[outputPos++] = 'o';
 					break;
 				case '\u0153' : // œ
-					output.append("oe");
+					output[outputPos++] = 'o'; output[outputPos++] = 'e';
 					break;
 				case '\u00DF' : // ß
-					output.append("ss");
+					output[outputPos++] = 's'; output[outputPos++] = 's';
 					break;
 				case '\u00FE' : // þ
-					output.append("th");
+					output[outputPos++] = 't'; output[outputPos++] = 'h';
 					break;
 				case '\u00F9' : // ù
 				case '\u00FA' : // ú
 				case '\u00FB' : // û
 				case '\u00FC' : // ü
-					output.append("u");
+					output[outputPos++] = 'u';
 					break;
 				case '\u00FD' : // ý
 				case '\u00FF' : // ÿ
-					output.append("y");
+					output[outputPos++] = 'y';
 					break;
 				default :
-					output.append(input.charAt(i));
+					output[outputPos++] = c;
 					break;
 			}
 		}
-		return output.toString();
 	}
 }
\ No newline at end of file
@@ -27,7 +27,7 @@ public class KeywordTokenizer extends Tokenizer {
   private static final int DEFAULT_BUFFER_SIZE = 256;
 
   private boolean done;
-  private final char[] buffer;
+  private final int bufferSize;
 
   public KeywordTokenizer(Reader input) {
     this(input, DEFAULT_BUFFER_SIZE);
@@ -35,23 +35,29 @@ public class KeywordTokenizer extends Tokenizer {
 
   public KeywordTokenizer(Reader input, int bufferSize) {
     super(input);
-    this.buffer = new char[bufferSize];
+    this.bufferSize = bufferSize;
     this.done = false;
   }
 
-  public Token next() throws IOException {
+  public Token next(Token result) throws IOException {
     if (!done) {
       done = true;
-      StringBuffer buffer = new StringBuffer();
-      int length;
+      result.clear();
+      char[] buffer = result.resizeTermBuffer(bufferSize);
+      int upto = 0;
       while (true) {
-        length = input.read(this.buffer);
+        final int length = input.read(buffer, upto, buffer.length - upto);
         if (length == -1) break;
 
-        buffer.append(this.buffer, 0, length);
+        upto += length;
+        if (upto == buffer.length) {
+          result.setTermLength(upto);
+          buffer = result.resizeTermBuffer(1 + upto);
+        }
       }
-      String text = buffer.toString();
-      return new Token(text, 0, text.length());
+      result.setTermLength(upto);
+      result.setEndOffset(upto);
+      return result;
     }
     return null;
   }
@@ -28,13 +28,16 @@ public final class LowerCaseFilter extends TokenFilter {
     super(in);
   }
 
-  public final Token next() throws IOException {
-    Token t = input.next();
+  public final Token next(Token result) throws IOException {
+    Token t = input.next(result);
 
     if (t == null)
       return null;
 
-    t.termText = t.termText.toLowerCase();
+    final char[] buffer = t.termBuffer();
+    final int length = t.termLength();
+    for (int i = 0; i < length; i++)
+      buffer[i] = Character.toLowerCase(buffer[i]);
 
     return t;
   }
@@ -17,7 +17,6 @@ package org.apache.lucene.analysis;
  */
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Set;
 
@@ -137,10 +136,10 @@ public final class StopFilter extends TokenFilter {
    * 
     * @param stopWords
    * @param ignoreCase If true, all words are lower cased first.  
-   * @return a Set containing the words
+   * @return a {@link CharArraySet} containing the words
    */    
   public static final Set makeStopSet(String[] stopWords, boolean ignoreCase) {
-    HashSet stopTable = new HashSet(stopWords.length);
+    CharArraySet stopTable = new CharArraySet(stopWords.length);
     for (int i = 0; i < stopWords.length; i++)
       stopTable.add(ignoreCase ? stopWords[i].toLowerCase() : stopWords[i]);
     return stopTable;
@@ -149,15 +148,35 @@ public final class StopFilter extends TokenFilter {
   /**
    * Returns the next input Token whose termText() is not a stop word.
    */
-  public final Token next() throws IOException {
+  public final Token next(Token result) throws IOException {
     // return the first non-stop word found
-    for (Token token = input.next(); token != null; token = input.next())
+    for (Token token = input.next(result); token != null; token = input.next(result))
     {
-        String termText = ignoreCase ? token.termText.toLowerCase() : token.termText;
-        if (!stopWords.contains(termText))
-          return token;
+      if (!isStopWord(token))
+        return token;
     }
     // reached EOS -- return null
     return null;
   }
+
+  private char[] lowerCaseBuffer;
+
+  private boolean isStopWord(Token token) {
+    if (!(stopWords instanceof CharArraySet)) {
+      String termText = ignoreCase ? token.termText().toLowerCase() : token.termText();
+      return stopWords.contains(termText);
+    }
+
+    // look the term buffer up without creating a String
+    char[] text = token.termBuffer();
+    int length = token.termLength();
+    if (ignoreCase) {
+      if (lowerCaseBuffer == null || lowerCaseBuffer.length < length)
+        lowerCaseBuffer = new char[length];
+      for (int i = 0; i < length; i++)
+        lowerCaseBuffer[i] = Character.toLowerCase(text[i]);
+      text = lowerCaseBuffer;
+    }
+    return ((CharArraySet)stopWords).contains(text, 0, length);
+  }
 }
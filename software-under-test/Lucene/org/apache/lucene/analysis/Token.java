@@ -31,13 +31,35 @@ package org.apache.lucene.analysis;
   with type "eos".  The default token type is "word".  */
 
 public final class Token {
-  String termText;				  // the text of the term
+  String termText;				  // the text of the term, or null
+  char[] termBuffer;				  // the text, unless termText is set
+  int termLength;				  // length of the text in termBuffer
   int startOffset;				  // start in source text
   int endOffset;				  // end in source text
   String type = "word";				  // lexical type
 
   private int positionIncrement = 1;
 
+  /** Constructs an empty Token, to be filled by {@link
+   * TokenStream#next(Token)}. */
+  public Token() {
+  }
+
+  /** Constructs a Token with null text and the given start & end offsets.
+      The type defaults to "word." */
+  public Token(int start, int end) {
+    startOffset = start;
+    endOffset = end;
+  }
+
+  /** Constructs a Token with null text and the given start & end offsets,
+      & type. */
+  public Token(int start, int end, String typ) {
+    startOffset = start;
+    endOffset = end;
+    type = typ;
+  }
+
   /** Constructs a Token with the given term text, and start & end offsets.
       The type defaults to "word." */
   public Token(String text, int start, int end) {
@@ -91,8 +113,91 @@ public final class Token {
    */
   public int getPositionIncrement() { return positionIncrement; }
 
-  /** Returns the Token's term text. */
-  public final String termText() { return termText; }
+  /** Returns the Token's term text.
+   * <p>When the text was set as characters, this creates a String; use
+   * {@link #termBuffer()} and {@link #termLength()} to avoid that. */
+  public final String termText() {
+    if (termText == null && termBuffer != null)
+      termText = new String(termBuffer, 0, termLength);
+    return termText;
+  }
+
+  /** Sets the Token's term text. */
+  public final void setTermText(String text) {
+    termText = text;
+    termLength = 0;
+  }
+
+  /** Returns the internal buffer holding the Token's term text in its first
+   * {@link #termLength()} characters.  The buffer may be modified in place,
+   * after which {@link #setTermLength(int)} must be called, and may be
+   * replaced by a larger one when the text grows: do not hold on to it. */
+  public final char[] termBuffer() {
+    initTermBuffer();
+    termText = null;                              // the caller may modify it
+    return termBuffer;
+  }
+
+  /** Returns the length of the Token's term text. */
+  public final int termLength() {
+    if (termText != null)
+      return termText.length();
+    return termLength;
+  }
+
+  /** Copies the characters of the Token's term text from a buffer.
+   * @param buffer the buffer to copy from
+   * @param offset the index of the first character to copy
+   * @param length the number of characters to copy
+   */
+  public final void setTermBuffer(char[] buffer, int offset, int length) {
+    System.arraycopy(buffer, offset, resizeTermBuffer(length), 0, length);
+    termLength = length;
+  }
+
+  /** Sets the length of the Token's term text, after it was written to the
+   * buffer returned by {@link #termBuffer()} or {@link
+   * #resizeTermBuffer(int)}. */
+  public final void setTermLength(int length) {
+    initTermBuffer();
+    if (length > termBuffer.length)
+      throw new IllegalArgumentException
+        ("length " + length + " exceeds the size of the termBuffer ("
+         + termBuffer.length + ")");
+    termText = null;
+    termLength = length;
+  }
+
+  /** Grows the buffer holding the Token's term text so that it holds at
+   * least <code>size</code> characters, keeping its content, and returns it.
+   * As with {@link #termBuffer()}, the buffer may then be modified. */
+  public final char[] resizeTermBuffer(int size) {
+    initTermBuffer();
+    if (termBuffer.length < size) {
+      int newSize = termBuffer.length;
+      while (newSize < size)
+        newSize *= 2;
+      char[] newBuffer = new char[newSize];
+      System.arraycopy(termBuffer, 0, newBuffer, 0, termLength);
+      termBuffer = newBuffer;
+    }
+    termText = null;
+    return termBuffer;
+  }
+
+  // Makes termBuffer hold the text, copying it from termText if that is set.
+  private void initTermBuffer() {
+    if (termBuffer == null)
+      termBuffer = new char[termText == null ? 16 : Math.max(16, termText.length())];
+    if (termText != null) {
+      int length = termText.length();
+      if (termBuffer.length < length)
+        termBuffer = new char[length];
+      termText.getChars(0, length, termBuffer, 0);
+      termLength = length;
+      termText = null;
+    }
+  }
 
   /** Returns this Token's starting offset, the position of the first character
     corresponding to this token in the source text.
@@ -106,12 +211,34 @@ public final class Token {
     last character corresponding to this token in the source text. */
   public final int endOffset() { return endOffset; }
 
+  /** Set the starting offset.
+      @see #startOffset() */
+  public final void setStartOffset(int offset) { this.startOffset = offset; }
+
+  /** Set the ending offset.
+      @see #endOffset() */
+  public final void setEndOffset(int offset) { this.endOffset = offset; }
+
   /** Returns this Token's lexical type.  Defaults to "word". */
   public final String type() { return type; }
 
+  /** Set the lexical type.
+      @see #type() */
+  public final void setType(String type) { this.type = type; }
+
+  /** Resets the term text, offsets, type and position increment, so that
+   * the Token can be reused while keeping its termBuffer. */
+  public final void clear() {
+    termText = null;
+    termLength = 0;
+    startOffset = endOffset = 0;
+    type = "word";
+    positionIncrement = 1;
+  }
+
   public final String toString() {
     StringBuffer sb = new StringBuffer();
-    sb.append("(" + termText + "," + startOffset + "," + endOffset);
+    sb.append("(" + termText() + "," + startOffset + "," + endOffset);
     if (!type.equals("word"))
       sb.append(",type="+type);
     if (positionIncrement != 1)
@@ -31,8 +31,27 @@ import java.io.IOException;
   */
 
 public abstract class TokenStream {
-  /** Returns the next token in the stream, or null at EOS. */
-  public abstract Token next() throws IOException;
+  /** Returns the next token in the stream, or null at EOS.
+   * <p>The returned Token is owned by the caller.  This implementation
+   * calls {@link #next(Token)} with a new Token; subclasses must override
+   * at least one of the two methods.
+   */
+  public Token next() throws IOException {
+    return next(new Token());
+  }
+
+  /** Returns the next token in the stream, or null at EOS.
+   * <p>Streams that can fill a given Token return <code>result</code>, after
+   * {@link Token#clear()}ing it, and reuse its term buffer, so that a
+   * consumer can analyze any amount of text with a single Token.  The
+   * returned Token, which may also be another one, is only valid until the
+   * next call: consumers must copy what they need to keep.
+   * <p>This implementation calls {@link #next()}, for streams that do not
+   * support reuse.
+   */
+  public Token next(Token result) throws IOException {
+    return next();
+  }
 
   /** Releases resources associated with this stream. */
   public void close() throws IOException {}
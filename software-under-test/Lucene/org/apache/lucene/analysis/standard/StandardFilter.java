@@ -36,33 +36,32 @@ public final class StandardFilter extends TokenFilter
    * <p>Removes <tt>'s</tt> from the end of words.
    * <p>Removes dots from acronyms.
    */
-  public final org.apache.lucene.analysis.Token next() throws java.io.IOException {
-    org.apache.lucene.analysis.Token t = input.next();
+  public final org.apache.lucene.analysis.Token next(org.apache.lucene.analysis.Token result) throws java.io.IOException {
+    org.apache.lucene.analysis.Token t = input.next(result);
 
     if (t == null)
       return null;
 
-    String text = t.termText();
-    String type = t.type();
+    char[] buffer = t.termBuffer();
+    final int bufferLength = t.termLength();
+    final String type = t.type();
 
     if (type == APOSTROPHE_TYPE &&		  // remove 's
-	(text.endsWith("'s") || text.endsWith("'S"))) {
-      return new org.apache.lucene.analysis.Token
-	(text.substring(0,text.length()-2),
-	 t.startOffset(), t.endOffset(), type);
+        bufferLength >= 2 &&
+        buffer[bufferLength-2] == '\'' &&
+        (buffer[bufferLength-1] == 's' || buffer[bufferLength-1] == 'S')) {
+      t.setTermLength(bufferLength - 2);
 
     } else if (type == ACRONYM_TYPE) {		  // remove dots
-      StringBuffer trimmed = new StringBuffer();
-      for (int i = 0; i < text.length(); i++) {
-	char c = text.charAt(i);
+      int upto = 0;
+      for (int i = 0; i < bufferLength; i++) {
+	char c = buffer[i];
 	if (c != '.')
-	  trimmed.append(c);
+	  buffer[upto++] = c;
       }
-      return new org.apache.lucene.analysis.Token
-	(trimmed.toString(), t.startOffset(), t.endOffset(), type);
-
-    } else {
-      return t;
+      t.setTermLength(upto);
     }
+
+    return t;
   }
 }
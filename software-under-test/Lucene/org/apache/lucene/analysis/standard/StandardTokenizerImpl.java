@@ -0,0 +1,421 @@
+package org.apache.lucene.analysis.standard;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+import java.io.Reader;
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/** The scanner behind {@link StandardTokenizer}: a DFA over classes of
+ * characters, run directly over a buffer of the input.
+ *
+ * <p>The DFA is built once, when the class is loaded, from the token patterns
+ * of <code>StandardTokenizer.jj</code>, which remains their specification.
+ * Tokens are matched as the JavaCC token manager matches them: the longest
+ * match wins, ties go to the pattern declared first, and characters that
+ * start no token are skipped.
+ */
+final class StandardTokenizerImpl implements StandardTokenizerConstants {
+
+  /** Character classes, indexed by char. */
+  private static final byte[] CLASSES = new byte[0x10000];
+  private static final int NUM_CLASSES;
+
+  /** Next state, at <code>state * NUM_CLASSES + class</code>; -1 is dead. */
+  private static final int[] TRANSITIONS;
+
+  /** The token kind matched when ending in a state, or 0. */
+  private static final int[] ACCEPT;
+
+  private Reader input;
+  private char[] buffer = new char[4096];
+  private int bufferLength;                       // end of valid chars
+  private int bufferOffset;                       // input offset of buffer[0]
+  private int position;                           // next char to scan
+  private boolean eof;
+
+  private int tokenStart;                         // in buffer
+  private int tokenLength;
+
+  StandardTokenizerImpl(Reader input) {
+    this.input = input;
+  }
+
+  /** Scans the next token.
+   * @return its kind, or {@link #EOF} at the end of the input.
+   */
+  int next() throws IOException {
+    while (true) {
+      tokenStart = position;
+      int state = 0;
+      int length = 0;
+      int kind = EOF;
+      while (true) {
+        if (tokenStart + length == bufferLength && !refill())
+          break;
+        state = TRANSITIONS[state * NUM_CLASSES
+                            + CLASSES[buffer[tokenStart + length]]];
+        if (state < 0)
+          break;
+        length++;
+        if (ACCEPT[state] != EOF) {               // longest match so far
+          kind = ACCEPT[state];
+          tokenLength = length;
+        }
+      }
+
+      if (kind != EOF) {
+        position = tokenStart + tokenLength;
+        return kind;
+      }
+      if (tokenStart == bufferLength)             // nothing left
+        return EOF;
+      position = tokenStart + 1;                  // skip a NOISE char
+    }
+  }
+
+  /** Returns the buffer holding the text of the last token. */
+  char[] buffer() { return buffer; }
+
+  /** Returns the start of the last token in {@link #buffer()}. */
+  int tokenStart() { return tokenStart; }
+
+  /** Returns the length of the last token. */
+  int tokenLength() { return tokenLength; }
+
+  /** Returns the offset of the last token in the input. */
+  int tokenOffset() { return bufferOffset + tokenStart; }
+
+  // Reads more input, keeping the chars from tokenStart on, which are moved
+  // to the front of the buffer; the buffer grows when they fill it.
+  private boolean refill() throws IOException {
+    if (eof)
+      return false;
+    if (tokenStart > 0) {
+      System.arraycopy(buffer, tokenStart, buffer, 0, bufferLength - tokenStart);
+      bufferLength -= tokenStart;
+      bufferOffset += tokenStart;
+      tokenStart = 0;
+    } else if (bufferLength == buffer.length) {
+      char[] newBuffer = new char[2 * buffer.length];
+      System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+      buffer = newBuffer;
+    }
+
+    int charsRead = input.read(buffer, bufferLength, buffer.length - bufferLength);
+    if (charsRead <= 0) {
+      eof = true;
+      return false;
+    }
+    bufferLength += charsRead;
+    return true;
+  }
+
+  // ranges of chars, as pairs of bounds, as in the grammar
+  private static final String LETTERS =
+    "\u0041\u005a\u0061\u007a\u00c0\u00d6\u00d8\u00f6\u00f8\u00ff\u0100\u1fff";
+  private static final String DIGITS =
+    "\u0030\u0039\u0660\u0669\u06f0\u06f9\u0966\u096f\u09e6\u09ef\u0a66\u0a6f"
+    + "\u0ae6\u0aef\u0b66\u0b6f\u0be7\u0bef\u0c66\u0c6f\u0ce6\u0cef\u0d66\u0d6f"
+    + "\u0e50\u0e59\u0ed0\u0ed9\u1040\u1049";
+  private static final String KOREAN_CHARS = "\uac00\ud7af";
+  private static final String CJ_CHARS =
+    "\u3040\u318f\u3300\u337f\u3400\u3d2d\u4e00\u9fff\uf900\ufaff";
+  private static final String PUNCTUATION = "'.&@-_/,";
+
+  // masks of the char classes with a property
+  private static long letter, digit, korean, cj;
+  private static long[] punctuation = new long[PUNCTUATION.length()];
+
+  static {
+    // A class is a distinct combination of the properties of a char.
+    int[] properties = new int[0x10000];
+    mark(properties, LETTERS, 1);
+    mark(properties, DIGITS, 2);
+    mark(properties, KOREAN_CHARS, 4);
+    mark(properties, CJ_CHARS, 8);
+    for (int i = 0; i < PUNCTUATION.length(); i++)
+      properties[PUNCTUATION.charAt(i)] |= (i + 1) << 4;
+
+    int[] classOf = new int[(PUNCTUATION.length() + 1) << 4];
+    java.util.Arrays.fill(classOf, -1);
+    classOf[0] = 0;                               // other chars
+    int numClasses = 1;
+    for (int c = 0; c < 0x10000; c++) {
+      int p = properties[c];
+      if (classOf[p] == -1) {
+        classOf[p] = numClasses++;
+        long bit = 1L << classOf[p];
+        if ((p & 1) != 0) letter |= bit;
+        if ((p & 2) != 0) digit |= bit;
+        if ((p & 4) != 0) korean |= bit;
+        if ((p & 8) != 0) cj |= bit;
+        if ((p >> 4) != 0) punctuation[(p >> 4) - 1] |= bit;
+      }
+      CLASSES[c] = (byte)classOf[p];
+    }
+    NUM_CLASSES = numClasses;
+
+    Nfa nfa = new Nfa();
+    int start = nfa.newState();
+    nfa.token(start, nfa.plus(nfa.cls(letter | digit | korean)), ALPHANUM);
+    nfa.token(start, apostrophe(nfa), APOSTROPHE);
+    nfa.token(start, acronym(nfa), ACRONYM);
+    nfa.token(start, company(nfa), COMPANY);
+    nfa.token(start, email(nfa), EMAIL);
+    nfa.token(start, host(nfa), HOST);
+    nfa.token(start, num(nfa), NUM);
+    nfa.token(start, nfa.cls(cj), CJ);
+
+    Vector states = new Vector();
+    nfa.determinize(start, states);
+    TRANSITIONS = new int[states.size() * NUM_CLASSES];
+    ACCEPT = new int[states.size()];
+    nfa.fill(states, TRANSITIONS, ACCEPT, NUM_CLASSES);
+  }
+
+  private static void mark(int[] properties, String ranges, int property) {
+    for (int i = 0; i < ranges.length(); i += 2)
+      for (int c = ranges.charAt(i); c <= ranges.charAt(i + 1); c++)
+        properties[c] |= property;
+  }
+
+  private static long chars(String s) {
+    long mask = 0;
+    for (int i = 0; i < s.length(); i++)
+      mask |= punctuation[PUNCTUATION.indexOf(s.charAt(i))];
+    return mask;
+  }
+
+  private static int[] alpha(Nfa nfa) {
+    return nfa.plus(nfa.cls(letter));
+  }
+
+  private static int[] alphanum(Nfa nfa) {
+    return nfa.plus(nfa.cls(letter | digit | korean));
+  }
+
+  private static int[] hasDigit(Nfa nfa) {
+    return nfa.seq(nfa.star(nfa.cls(letter | digit)),
+                   nfa.cls(digit),
+                   nfa.star(nfa.cls(letter | digit)));
+  }
+
+  private static int[] p(Nfa nfa) {
+    return nfa.cls(chars("_-/.,"));
+  }
+
+  // <ALPHA> ("'" <ALPHA>)+
+  private static int[] apostrophe(Nfa nfa) {
+    return nfa.seq(alpha(nfa),
+                   nfa.plus(nfa.seq(nfa.cls(chars("'")), alpha(nfa))));
+  }
+
+  // <ALPHA> "." (<ALPHA> ".")+
+  private static int[] acronym(Nfa nfa) {
+    return nfa.seq(alpha(nfa), nfa.cls(chars(".")),
+                   nfa.plus(nfa.seq(alpha(nfa), nfa.cls(chars(".")))));
+  }
+
+  // <ALPHA> ("&"|"@") <ALPHA>
+  private static int[] company(Nfa nfa) {
+    return nfa.seq(alpha(nfa), nfa.cls(chars("&@")), alpha(nfa));
+  }
+
+  // <ALPHANUM> (("."|"-"|"_") <ALPHANUM>)* "@" <ALPHANUM> (("."|"-") <ALPHANUM>)+
+  private static int[] email(Nfa nfa) {
+    int[] user = nfa.seq(alphanum(nfa),
+                         nfa.star(nfa.seq(nfa.cls(chars(".-_")), alphanum(nfa))));
+    int[] domain = nfa.seq(alphanum(nfa),
+                           nfa.plus(nfa.seq(nfa.cls(chars(".-")), alphanum(nfa))));
+    return nfa.seq(user, nfa.cls(chars("@")), domain);
+  }
+
+  // <ALPHANUM> ("." <ALPHANUM>)+
+  private static int[] host(Nfa nfa) {
+    return nfa.seq(alphanum(nfa),
+                   nfa.plus(nfa.seq(nfa.cls(chars(".")), alphanum(nfa))));
+  }
+
+  // every other segment must have at least one digit
+  private static int[] num(Nfa nfa) {
+    return nfa.alt(new int[][] {
+      nfa.seq(alphanum(nfa), p(nfa), hasDigit(nfa)),
+      nfa.seq(hasDigit(nfa), p(nfa), alphanum(nfa)),
+      nfa.seq(alphanum(nfa),
+              nfa.plus(nfa.seq(nfa.seq(p(nfa), hasDigit(nfa)),
+                               nfa.seq(p(nfa), alphanum(nfa))))),
+      nfa.seq(hasDigit(nfa),
+              nfa.plus(nfa.seq(nfa.seq(p(nfa), alphanum(nfa)),
+                               nfa.seq(p(nfa), hasDigit(nfa))))),
+      nfa.seq(nfa.seq(alphanum(nfa), p(nfa), hasDigit(nfa)),
+              nfa.plus(nfa.seq(nfa.seq(p(nfa), alphanum(nfa)),
+                               nfa.seq(p(nfa), hasDigit(nfa))))),
+      nfa.seq(nfa.seq(hasDigit(nfa), p(nfa), alphanum(nfa)),
+              nfa.plus(nfa.seq(nfa.seq(p(nfa), hasDigit(nfa)),
+                               nfa.seq(p(nfa), alphanum(nfa)))))
+    });
+  }
+
+  /** A Thompson NFA, where fragments are {start, end} pairs of states and
+   * each state has at most one transition on a set of char classes. */
+  private static final class Nfa {
+    private int size;
+    private long[] masks = new long[256];         // classes of the transition
+    private int[] targets = new int[256];
+    private int[][] epsilons = new int[256][];
+    private int[] accepts = new int[256];         // token kind, or 0
+
+    int newState() {
+      if (size == masks.length) {
+        masks = (long[])grow(masks, new long[2 * size]);
+        targets = (int[])grow(targets, new int[2 * size]);
+        epsilons = (int[][])grow(epsilons, new int[2 * size][]);
+        accepts = (int[])grow(accepts, new int[2 * size]);
+      }
+      epsilons[size] = new int[0];
+      return size++;
+    }
+
+    private static Object grow(Object array, Object newArray) {
+      System.arraycopy(array, 0, newArray, 0, java.lang.reflect.Array.getLength(array));
+      return newArray;
+    }
+
+    void epsilon(int from, int to) {
+      int[] old = epsilons[from];
+      int[] eps = new int[old.length + 1];
+      System.arraycopy(old, 0, eps, 0, old.length);
+      eps[old.length] = to;
+      epsilons[from] = eps;
+    }
+
+    int[] cls(long mask) {
+      int start = newState();
+      int end = newState();
+      masks[start] = mask;
+      targets[start] = end;
+      return new int[] {start, end};
+    }
+
+    int[] seq(int[] a, int[] b) {
+      epsilon(a[1], b[0]);
+      return new int[] {a[0], b[1]};
+    }
+
+    int[] seq(int[] a, int[] b, int[] c) {
+      return seq(seq(a, b), c);
+    }
+
+    int[] alt(int[][] fragments) {
+      int start = newState();
+      int end = newState();
+      for (int i = 0; i < fragments.length; i++) {
+        epsilon(start, fragments[i][0]);
+        epsilon(fragments[i][1], end);
+      }
+      return new int[] {start, end};
+    }
+
+    int[] plus(int[] a) {
+      int start = newState();
+      int end = newState();
+      epsilon(start, a[0]);
+      epsilon(a[1], a[0]);
+      epsilon(a[1], end);
+      return new int[] {start, end};
+    }
+
+    int[] star(int[] a) {
+      int[] result = plus(a);
+      epsilon(result[0], result[1]);
+      return result;
+    }
+
+    void token(int start, int[] fragment, int kind) {
+      epsilon(start, fragment[0]);
+      accepts[fragment[1]] = kind;
+    }
+
+    private void closure(BitSet set) {
+      int[] stack = new int[size];
+      int top = 0;
+      for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+        stack[top++] = s;
+      while (top > 0) {
+        int[] eps = epsilons[stack[--top]];
+        for (int i = 0; i < eps.length; i++) {
+          if (!set.get(eps[i])) {
+            set.set(eps[i]);
+            stack[top++] = eps[i];
+          }
+        }
+      }
+    }
+
+    /** Subset construction: adds the DFA states, as sets of NFA states,
+     * to <code>states</code>, the start state first. */
+    void determinize(int start, Vector states) {
+      Hashtable numbers = new Hashtable();
+      BitSet first = new BitSet(size);
+      first.set(start);
+      closure(first);
+      states.addElement(first);
+      numbers.put(first, new Integer(0));
+      for (int i = 0; i < states.size(); i++) {
+        BitSet set = (BitSet)states.elementAt(i);
+        for (int c = 0; c < NUM_CLASSES; c++) {
+          BitSet next = move(set, c);
+          if (!next.isEmpty() && !numbers.containsKey(next)) {
+            numbers.put(next, new Integer(states.size()));
+            states.addElement(next);
+          }
+        }
+      }
+    }
+
+    private BitSet move(BitSet set, int c) {
+      BitSet next = new BitSet(size);
+      long bit = 1L << c;
+      for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+        if ((masks[s] & bit) != 0)
+          next.set(targets[s]);
+      closure(next);
+      return next;
+    }
+
+    void fill(Vector states, int[] transitions, int[] accept, int numClasses) {
+      Hashtable numbers = new Hashtable();
+      for (int i = 0; i < states.size(); i++)
+        numbers.put(states.elementAt(i), new Integer(i));
+      for (int i = 0; i < states.size(); i++) {
+        BitSet set = (BitSet)states.elementAt(i);
+        for (int c = 0; c < numClasses; c++) {
+          BitSet next = move(set, c);
+          transitions[i * numClasses + c] = next.isEmpty()
+            ? -1 : ((Integer)numbers.get(next)).intValue();
+        }
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+          int kind = accepts[s];                  // first declared wins
+          if (kind != EOF && (accept[i] == EOF || kind < accept[i]))
+            accept[i] = kind;
+        }
+      }
+    }
+  }
+}
@@ -16,6 +16,8 @@ package org.apache.lucene.document;
  * limitations under the License.
  */
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Reader;
 import java.io.Serializable;
 import java.util.Date;
@@ -48,6 +50,7 @@ public final class Field implements Serializable {
   private boolean isTokenized = true;
   private boolean isBinary = false;
   private boolean isCompressed = false;
+  private boolean isLazy = false;
   
   private float boost = 1.0f;
   
@@ -147,6 +150,15 @@ public final class Field implements Serializable {
     public static final TermVector WITH_POSITIONS_OFFSETS = new TermVector("WITH_POSITIONS_OFFSETS");
   }
   
+  /** Expert: Reads the value of a field when it is first asked for.  Used
+   * for fields that {@link FieldSelectorResult#LAZY_LOAD} selects.
+   * @see Field#setValueLoader(Field.Loader)
+   */
+  public static abstract class Loader {
+    /** Returns the value of the field, a String or a byte[]. */
+    protected abstract Object load();
+  }
+
   /** Sets the boost factor hits on this field.  This value will be
    * multiplied into the score of all hits on this this field of this
    * document.
@@ -267,7 +279,7 @@ public final class Field implements Serializable {
   /** The value of the field as a String, or null.  If null, the Reader value
    * or binary value is used.  Exactly one of stringValue(), readerValue(), and
    * binaryValue() must be set. */
-  public String stringValue()   { return fieldsData instanceof String ? (String)fieldsData : null; }
+  public String stringValue()   { Object v = value(); return v instanceof String ? (String)v : null; }
   
   /** The value of the field as a Reader, or null.  If null, the String value
    * or binary value is  used.  Exactly one of stringValue(), readerValue(),
@@ -277,7 +289,13 @@ public final class Field implements Serializable {
   /** The value of the field in Binary, or null.  If null, the Reader or
    * String value is used.  Exactly one of stringValue(), readerValue() and
    * binaryValue() must be set. */
-  public byte[] binaryValue()   { return fieldsData instanceof byte[] ? (byte[])fieldsData : null; }
+  public byte[] binaryValue()   { Object v = value(); return v instanceof byte[] ? (byte[])v : null; }
+
+  private Object value() {
+    if (fieldsData instanceof Loader)             // threads racing here
+      fieldsData = ((Loader)fieldsData).load();   // load the same value
+    return fieldsData;
+  }
   
   /**
    * Create a field by specifying its name, value and how it will
@@ -513,6 +531,24 @@ public final class Field implements Serializable {
     }
   }
   
+  /** Expert: Has the value of this stored field read from
+   * <code>loader</code> when it is first asked for, in place of the value
+   * given to the constructor.
+   * @throws IllegalArgumentException if the field is not stored
+   */
+  public void setValueLoader(Loader loader) {
+    if (!isStored)
+      throw new IllegalArgumentException("only stored fields can be loaded lazily");
+    this.fieldsData = loader;
+    this.isLazy = true;
+  }
+
+  /** True if the value of the field is read from the index when it is
+   * first asked for.
+   * @see FieldSelectorResult#LAZY_LOAD
+   */
+  public boolean isLazy() { return isLazy; }
+
   /** True iff the value of the field is to be stored in the index for return
     with search hits.  It is an error for this to be true if a field is
     Reader-valued. */
@@ -616,11 +652,16 @@ public final class Field implements Serializable {
     result.append(':');
     
     if (fieldsData != null) {
-      result.append(fieldsData);
+      result.append(value());
     }
     
     result.append('>');
     return result.toString();
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    value();                                      // a Loader is not serializable
+    out.defaultWriteObject();
+  }
+
 }
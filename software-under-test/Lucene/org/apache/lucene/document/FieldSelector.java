@@ -0,0 +1,33 @@
+package org.apache.lucene.document;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+
+/**
+ * Chooses which stored fields of a document are loaded, and how, when the
+ * document is read from the index.
+ *
+ * @see org.apache.lucene.index.IndexReader#document(int, FieldSelector)
+ */
+public interface FieldSelector extends Serializable {
+
+  /** Returns how the field named <code>fieldName</code> is loaded.
+   * @param fieldName the interned name of a stored field
+   */
+  FieldSelectorResult accept(String fieldName);
+}
@@ -0,0 +1,45 @@
+package org.apache.lucene.document;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+
+import org.apache.lucene.util.Parameter;
+
+/** Says how a {@link FieldSelector} has a stored field loaded. */
+public final class FieldSelectorResult extends Parameter implements Serializable {
+
+  private FieldSelectorResult(String name) {
+    super(name);
+  }
+
+  /** Load the field with the document. */
+  public static final FieldSelectorResult LOAD = new FieldSelectorResult("LOAD");
+
+  /** Add the field to the document, but read its value from the index only
+   * when it is first asked for.  Its value must be asked for before the
+   * reader is closed. */
+  public static final FieldSelectorResult LAZY_LOAD = new FieldSelectorResult("LAZY_LOAD");
+
+  /** Leave the field out of the document.  Its value is skipped over
+   * without being decoded. */
+  public static final FieldSelectorResult NO_LOAD = new FieldSelectorResult("NO_LOAD");
+
+  /** Load the field and leave out every field after it.  Useful when a
+   * document is known to hold a single instance of the one field wanted. */
+  public static final FieldSelectorResult LOAD_AND_BREAK = new FieldSelectorResult("LOAD_AND_BREAK");
+}
@@ -0,0 +1,121 @@
+package org.apache.lucene.document;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Provides support for indexing numbers so that ranges of them can be
+ * searched by visiting few terms, with
+ * {@link org.apache.lucene.search.NumericRangeFilter} and
+ * {@link org.apache.lucene.search.NumericRangeQuery}.
+ *
+ * <p>A value is indexed at several precisions.  The field itself holds the
+ * full precision value, encoded with {@link NumberTools#longToString(long)},
+ * so that it can still be sorted on and searched with the other queries.  A
+ * second field, named with {@link #LOWER_PRECISION_SUFFIX}, holds the value
+ * with its lowest <code>precisionStep</code>, <code>2*precisionStep</code>,
+ * ... bits removed, each as one term.  A range is then covered by the terms
+ * of the few largest aligned blocks of values that fit in it, at most
+ * <code>2*(2<sup>precisionStep</sup>-1)</code> terms per precision.
+ *
+ * <p>Dates are indexed as their time in milliseconds, see {@link
+ * java.util.Date#getTime()}, and doubles through {@link
+ * #doubleToSortableLong(double)}.  A field must always be indexed and
+ * searched with the same <code>precisionStep</code>.
+ */
+public class NumericTools {
+
+  /** The default precision step: 16 terms per value, at most 30 terms per
+   * precision of a range. */
+  public static final int PRECISION_STEP_DEFAULT = 4;
+
+  /** Appended to the name of a field to get the name of the field holding
+   * its lower precision terms. */
+  public static final String LOWER_PRECISION_SUFFIX = "#trie";
+
+  // first char of lower precision terms, followed by the shift
+  private static final char SHIFT_START = '0';
+
+  private NumericTools() {}
+
+  /**
+   * Adds <code>value</code> to <code>doc</code>, indexed as described above
+   * with {@link #PRECISION_STEP_DEFAULT}.
+   */
+  public static void addLongField(Document doc, String name, long value,
+                                  Field.Store store) {
+    addLongField(doc, name, value, store, PRECISION_STEP_DEFAULT);
+  }
+
+  /**
+   * Adds <code>value</code> to <code>doc</code>, indexed as described above.
+   *
+   * @param store whether to store the full precision value
+   * @param precisionStep the number of bits removed between two precisions,
+   *  from 1 to 64
+   */
+  public static void addLongField(Document doc, String name, long value,
+                                  Field.Store store, int precisionStep) {
+    checkPrecisionStep(precisionStep);
+    doc.add(new Field(name, NumberTools.longToString(value), store,
+                      Field.Index.NO_NORMS));
+    String lowerName = name + LOWER_PRECISION_SUFFIX;
+    for (int shift = precisionStep; shift < 64; shift += precisionStep) {
+      doc.add(new Field(lowerName, longToPrefixCoded(value, shift),
+                        Field.Store.NO, Field.Index.NO_NORMS));
+    }
+  }
+
+  /**
+   * Returns the term for <code>value</code> with its lowest
+   * <code>shift</code> bits removed.  When <code>shift</code> is zero, this
+   * is the full precision term of the field, otherwise a term of its lower
+   * precision field.  The terms of one shift sort like their values.
+   */
+  public static String longToPrefixCoded(long value, int shift) {
+    if (shift == 0)
+      return NumberTools.longToString(value);
+    if (shift < 0 || shift > 63)
+      throw new IllegalArgumentException("shift must be from 0 to 63");
+    return (char)(SHIFT_START + shift) + NumberTools.longToString(value >> shift);
+  }
+
+  /**
+   * Converts a double to a long that sorts like it, so that doubles can be
+   * indexed with {@link #addLongField(Document, String, long, Field.Store)}.
+   * NaN sorts above positive infinity.
+   */
+  public static long doubleToSortableLong(double value) {
+    long bits = Double.doubleToLongBits(value);
+    if (bits < 0)                                 // negative: reverse order
+      bits ^= 0x7fffffffffffffffL;
+    return bits;
+  }
+
+  /** Converts a long returned by {@link #doubleToSortableLong(double)} back
+   * to a double. */
+  public static double sortableLongToDouble(long value) {
+    if (value < 0)
+      value ^= 0x7fffffffffffffffL;
+    return Double.longBitsToDouble(value);
+  }
+
+  /** @throws IllegalArgumentException if <code>precisionStep</code> is not
+   * from 1 to 64 */
+  public static void checkPrecisionStep(int precisionStep) {
+    if (precisionStep < 1 || precisionStep > 64)
+      throw new IllegalArgumentException("precisionStep must be from 1 to 64");
+  }
+}
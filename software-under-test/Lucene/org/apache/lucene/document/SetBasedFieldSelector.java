@@ -0,0 +1,45 @@
+package org.apache.lucene.document;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Set;
+
+/**
+ * Selects the fields named in one set for loading and those named in
+ * another for lazy loading, and leaves out all others.
+ */
+public class SetBasedFieldSelector implements FieldSelector {
+  private Set fieldsToLoad;
+  private Set lazyFieldsToLoad;
+
+  /**
+   * @param fieldsToLoad the names of the fields to load
+   * @param lazyFieldsToLoad the names of the fields to load lazily
+   */
+  public SetBasedFieldSelector(Set fieldsToLoad, Set lazyFieldsToLoad) {
+    this.fieldsToLoad = fieldsToLoad;
+    this.lazyFieldsToLoad = lazyFieldsToLoad;
+  }
+
+  public FieldSelectorResult accept(String fieldName) {
+    if (fieldsToLoad.contains(fieldName))
+      return FieldSelectorResult.LOAD;
+    if (lazyFieldsToLoad.contains(fieldName))
+      return FieldSelectorResult.LAZY_LOAD;
+    return FieldSelectorResult.NO_LOAD;
+  }
+}
@@ -0,0 +1,107 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+
+/** Frame of reference coding of blocks of non-negative ints.  A block is
+ * written as the minimum of its values, a VInt, then the number of bits
+ * needed for the largest difference from the minimum, a byte, then the
+ * differences packed in that many bits each, least significant first.
+ * When all values are equal no bits follow, so a block of frequencies
+ * that are all one takes two bytes.
+ */
+final class BlockCodec {
+  private final byte[] bytes;                     // packed values
+
+  /** Creates a codec for blocks of at most <code>maxCount</code> values. */
+  BlockCodec(int maxCount) {
+    bytes = new byte[4 * maxCount + 4];           // read 4 bytes past end
+  }
+
+  /** Returns the number of bytes that packs <code>count</code> values of
+   * <code>bits</code> bits. */
+  static int packedLength(int count, int bits) {
+    return (int) (((long) count * bits + 7) >>> 3);
+  }
+
+  /** Writes the first <code>count</code> of <code>values</code>. */
+  void writeBlock(IndexOutput out, int[] values, int count)
+    throws IOException {
+    int min = values[0];
+    int max = values[0];
+    for (int i = 1; i < count; i++) {
+      int v = values[i];
+      if (v < min) min = v;
+      if (v > max) max = v;
+    }
+    long range = (long) max - min;
+    int bits = 0;
+    while (bits < 32 && (range >>> bits) != 0)
+      bits++;
+
+    out.writeVInt(min);
+    out.writeByte((byte) bits);
+    if (bits == 0)
+      return;
+
+    long acc = 0;                                 // pending bits
+    int accBits = 0;
+    int p = 0;
+    for (int i = 0; i < count; i++) {
+      acc |= ((long) values[i] - min) << accBits;
+      accBits += bits;
+      while (accBits >= 8) {
+        bytes[p++] = (byte) acc;
+        acc >>>= 8;
+        accBits -= 8;
+      }
+    }
+    if (accBits > 0)
+      bytes[p++] = (byte) acc;
+    out.writeBytes(bytes, p);
+  }
+
+  /** Reads a block of <code>count</code> values into <code>values</code>. */
+  void readBlock(IndexInput in, int[] values, int count) throws IOException {
+    int min = in.readVInt();
+    int bits = in.readByte();
+    if (bits == 0) {
+      for (int i = 0; i < count; i++)
+        values[i] = min;
+      return;
+    }
+
+    int length = packedLength(count, bits);
+    in.readBytes(bytes, 0, length);
+
+    // each value is within the five bytes from the one it starts in
+    long mask = (1L << bits) - 1;
+    byte[] b = bytes;
+    for (int i = 0, bitPos = 0; i < count; i++, bitPos += bits) {
+      int p = bitPos >>> 3;
+      long v = (b[p] & 0xFFL)
+        | (b[p + 1] & 0xFFL) << 8
+        | (b[p + 2] & 0xFFL) << 16
+        | (b[p + 3] & 0xFFL) << 24
+        | (b[p + 4] & 0xFFL) << 32;
+      values[i] = min + (int) ((v >>> (bitPos & 7)) & mask);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/** A pool of fixed size byte blocks holding many growing byte streams.  Each
+ * stream is a chain of slices: a slice ends in a non-zero level byte, and
+ * when a write reaches it a larger slice is allocated and the last four
+ * bytes of the full slice are replaced by the address of the next one.
+ * Streams are addressed by ints; {@link ByteSliceReader} reads them back.
+ *
+ * <p>Blocks are kept and zeroed by {@link #reset()}, so that a pool can be
+ * reused without allocating.
+ */
+final class ByteBlockPool {
+  static final int BYTE_BLOCK_SHIFT = 15;
+  static final int BYTE_BLOCK_SIZE = 1 << BYTE_BLOCK_SHIFT;
+  static final int BYTE_BLOCK_MASK = BYTE_BLOCK_SIZE - 1;
+
+  // Size of the slices at each level, and the level that follows it.
+  static final int[] LEVEL_SIZES = {5, 14, 20, 30, 40, 40, 80, 80, 120, 200};
+  static final int[] NEXT_LEVEL = {1, 2, 3, 4, 5, 6, 7, 8, 9, 9};
+  static final int FIRST_LEVEL_SIZE = LEVEL_SIZES[0];
+
+  byte[][] buffers = new byte[10][];
+  private int bufferIndex = -1;                   // the block being filled
+  private byte[] buffer;
+  private int byteUpto = BYTE_BLOCK_SIZE;         // position in that block
+  private int byteOffset = -BYTE_BLOCK_SIZE;      // address of that block
+
+  /** Allocates a first level slice and returns its address. */
+  int newSlice() {
+    if (byteUpto > BYTE_BLOCK_SIZE - FIRST_LEVEL_SIZE)
+      nextBuffer();
+    int upto = byteUpto;
+    byteUpto += FIRST_LEVEL_SIZE;
+    buffer[byteUpto-1] = 16;
+    return byteOffset + upto;
+  }
+
+  /** Writes a byte at the given address of a stream and returns the
+   * address of the next byte of the stream. */
+  int writeByte(int address, byte b) {
+    byte[] slice = buffers[address >> BYTE_BLOCK_SHIFT];
+    int upto = address & BYTE_BLOCK_MASK;
+    if (slice[upto] != 0) {                       // end of slice
+      address = allocSlice(slice, upto);
+      slice = buffer;
+      upto = address & BYTE_BLOCK_MASK;
+    }
+    slice[upto] = b;
+    return address + 1;
+  }
+
+  /** Writes an int in a variable-length format, as {@link
+   * org.apache.lucene.store.IndexOutput#writeVInt(int)} does. */
+  int writeVInt(int address, int i) {
+    while ((i & ~0x7F) != 0) {
+      address = writeByte(address, (byte)((i & 0x7f) | 0x80));
+      i >>>= 7;
+    }
+    return writeByte(address, (byte)i);
+  }
+
+  // Allocates the slice following a full one, whose level byte is at upto,
+  // and returns the address at which writing continues.
+  private int allocSlice(byte[] slice, int upto) {
+    int level = slice[upto] & 15;
+    int newLevel = NEXT_LEVEL[level];
+    int newSize = LEVEL_SIZES[newLevel];
+
+    if (byteUpto > BYTE_BLOCK_SIZE - newSize)
+      nextBuffer();
+    int newUpto = byteUpto;
+    int address = byteOffset + newUpto;
+    byteUpto += newSize;
+
+    // move the last three bytes of data forward to make room for the address
+    buffer[newUpto] = slice[upto-3];
+    buffer[newUpto+1] = slice[upto-2];
+    buffer[newUpto+2] = slice[upto-1];
+
+    slice[upto-3] = (byte) (address >>> 24);
+    slice[upto-2] = (byte) (address >>> 16);
+    slice[upto-1] = (byte) (address >>> 8);
+    slice[upto] = (byte) address;
+
+    buffer[byteUpto-1] = (byte) (16 | newLevel);
+    return address + 3;
+  }
+
+  private void nextBuffer() {
+    if (1 + bufferIndex == buffers.length) {
+      byte[][] newBuffers = new byte[buffers.length * 2][];
+      System.arraycopy(buffers, 0, newBuffers, 0, buffers.length);
+      buffers = newBuffers;
+    }
+    buffer = buffers[1 + bufferIndex];
+    if (buffer == null)
+      buffer = buffers[1 + bufferIndex] = new byte[BYTE_BLOCK_SIZE];
+    bufferIndex++;
+    byteUpto = 0;
+    byteOffset += BYTE_BLOCK_SIZE;
+  }
+
+  /** Returns the number of bytes in the blocks in use. */
+  long bytesUsed() {
+    return (long) (bufferIndex + 1) * BYTE_BLOCK_SIZE;
+  }
+
+  /** Discards all streams, keeping the blocks for reuse. */
+  void reset() {
+    for (int i = 0; i <= bufferIndex; i++)
+      Arrays.fill(buffers[i], (byte) 0);
+    bufferIndex = -1;
+    buffer = null;
+    byteUpto = BYTE_BLOCK_SIZE;
+    byteOffset = -BYTE_BLOCK_SIZE;
+  }
+}
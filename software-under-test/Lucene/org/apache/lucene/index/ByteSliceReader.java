@@ -0,0 +1,82 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/** Reads a stream written to a {@link ByteBlockPool}, following its chain of
+ * slices up to the address at which writing stopped.
+ */
+final class ByteSliceReader {
+  private ByteBlockPool pool;
+  private byte[] buffer;
+  private int bufferOffset;                       // address of buffer
+  private int upto;                               // position in buffer
+  private int limit;                              // end of data in the slice
+  private int level;
+  private int endAddress;
+
+  /** Positions this at the start of a stream. */
+  void init(ByteBlockPool pool, int startAddress, int endAddress) {
+    this.pool = pool;
+    this.endAddress = endAddress;
+    level = 0;
+    buffer = pool.buffers[startAddress >> ByteBlockPool.BYTE_BLOCK_SHIFT];
+    bufferOffset = startAddress & ~ByteBlockPool.BYTE_BLOCK_MASK;
+    upto = startAddress & ByteBlockPool.BYTE_BLOCK_MASK;
+    if (startAddress + ByteBlockPool.FIRST_LEVEL_SIZE >= endAddress)
+      limit = endAddress - bufferOffset;          // stream ends in this slice
+    else
+      limit = upto + ByteBlockPool.FIRST_LEVEL_SIZE - 4;
+  }
+
+  /** Returns true once the whole stream has been read. */
+  boolean eof() {
+    return bufferOffset + upto == endAddress;
+  }
+
+  byte readByte() {
+    if (upto == limit)
+      nextSlice();
+    return buffer[upto++];
+  }
+
+  /** Reads an int in the format written by {@link
+   * ByteBlockPool#writeVInt(int, int)}. */
+  int readVInt() {
+    byte b = readByte();
+    int i = b & 0x7F;
+    for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+      b = readByte();
+      i |= (b & 0x7F) << shift;
+    }
+    return i;
+  }
+
+  private void nextSlice() {
+    int address = ((buffer[limit] & 0xff) << 24) + ((buffer[1+limit] & 0xff) << 16)
+      + ((buffer[2+limit] & 0xff) << 8) + (buffer[3+limit] & 0xff);
+    level = ByteBlockPool.NEXT_LEVEL[level];
+    int size = ByteBlockPool.LEVEL_SIZES[level];
+
+    buffer = pool.buffers[address >> ByteBlockPool.BYTE_BLOCK_SHIFT];
+    bufferOffset = address & ~ByteBlockPool.BYTE_BLOCK_MASK;
+    upto = address & ByteBlockPool.BYTE_BLOCK_MASK;
+    if (address + size >= endAddress)
+      limit = endAddress - bufferOffset;          // stream ends in this slice
+    else
+      limit = upto + size - 4;
+  }
+}
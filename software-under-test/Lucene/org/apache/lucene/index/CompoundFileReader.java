@@ -121,6 +121,9 @@ class CompoundFileReader extends Directory {
         if (entry == null)
             throw new IOException("No sub-file with id " + id + " found");
 
+        if (stream instanceof BufferedIndexInput)   // buffer as the file does
+            return new CSIndexInput(stream, entry.offset, entry.length,
+                                    ((BufferedIndexInput) stream).getBufferSize());
         return new CSIndexInput(stream, entry.offset, entry.length);
     }
 
@@ -202,6 +205,15 @@ class CompoundFileReader extends Directory {
             this.length = length;
         }
 
+        CSIndexInput(final IndexInput base, final long fileOffset, final long length,
+                     int bufferSize)
+        {
+            super(bufferSize);
+            this.base = base;
+            this.fileOffset = fileOffset;
+            this.length = length;
+        }
+
         /** Expert: implements buffer refill.  Reads bytes from the current
          *  position in the input.
          * @param b the array to read bytes into
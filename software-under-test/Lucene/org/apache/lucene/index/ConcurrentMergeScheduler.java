@@ -0,0 +1,129 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+/** A {@link MergeScheduler} that runs each merge on a background thread,
+ * so that {@link IndexWriter#addDocument(org.apache.lucene.document.Document)}
+ * keeps buffering new documents while earlier segments are being merged.
+ * At most {@link #setMaxThreadCount(int) maxThreadCount} merges run at
+ * once; further merges stay queued in the writer and are picked up by the
+ * merge threads as they become free.
+ *
+ * <p>A merge that fails on a background thread is reported by the next
+ * call to <code>addDocument</code>, <code>optimize</code> or
+ * <code>close</code> on the writer.
+ */
+public class ConcurrentMergeScheduler extends MergeScheduler {
+
+  /** Default value is 1. Change using {@link #setMaxThreadCount(int)}. */
+  public static final int DEFAULT_MAX_THREAD_COUNT = 1;
+
+  private int maxThreadCount = DEFAULT_MAX_THREAD_COUNT;
+  private int mergeThreadCount;                   // running merge threads
+  private int mergeThreadNumber;                  // used to name threads
+
+  public ConcurrentMergeScheduler() {}
+
+  public ConcurrentMergeScheduler(int maxThreadCount) {
+    setMaxThreadCount(maxThreadCount);
+  }
+
+  /** Sets the maximum number of merges that may run at the same time.
+   *
+   * @throws IllegalArgumentException if count is smaller than 1
+   */
+  public synchronized void setMaxThreadCount(int count) {
+    if (count < 1)
+      throw new IllegalArgumentException("count should be at least 1");
+    maxThreadCount = count;
+  }
+
+  /** @see #setMaxThreadCount */
+  public synchronized int getMaxThreadCount() {
+    return maxThreadCount;
+  }
+
+  /** Returns the number of merge threads that are currently running. */
+  public synchronized int getMergeThreadCount() {
+    return mergeThreadCount;
+  }
+
+  public void merge(IndexWriter writer) throws IOException {
+    // Only called while holding the writer's monitor, so there is no
+    // race between checking the thread count and starting a thread.
+    while (true) {
+      synchronized (this) {
+        if (mergeThreadCount >= maxThreadCount)
+          return;
+      }
+      OneMerge merge = writer.getNextMerge();
+      if (merge == null)
+        return;
+      synchronized (this) {
+        MergeThread thread = new MergeThread(writer, merge);
+        thread.setName("Lucene Merge Thread #" + mergeThreadNumber++);
+        thread.setDaemon(true);
+        mergeThreadCount++;
+        thread.start();
+      }
+    }
+  }
+
+  /** Waits for all running merge threads to finish. */
+  public synchronized void close() {
+    while (mergeThreadCount > 0) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private synchronized void mergeThreadDone() {
+    mergeThreadCount--;
+    notifyAll();
+  }
+
+  private class MergeThread extends Thread {
+    private final IndexWriter writer;
+    private OneMerge merge;
+
+    MergeThread(IndexWriter writer, OneMerge merge) {
+      this.writer = writer;
+      this.merge = merge;
+    }
+
+    public void run() {
+      try {
+        while (merge != null) {                   // keep going while work is queued
+          writer.merge(merge);
+          merge = writer.getNextMerge();
+        }
+      } catch (Throwable t) {
+        writer.handleMergeException(t);
+      } finally {
+        mergeThreadDone();
+        synchronized (writer) {
+          writer.notifyAll();                     // wake up waitForMerges()
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexOutput;
+
+/** Writes the documents and frequencies of the postings of terms to the
+ * freq file.
+ *
+ * <p>Without a block size, each document is written as a VInt of its
+ * difference from the previous one, shifted left one bit, with the low bit
+ * set when its frequency is one, else followed by a VInt of the frequency.
+ *
+ * <p>With a block size, which is then also the skip interval, documents
+ * are written in blocks from the first skip point on: the first
+ * blockSize-1 documents of a term are written as VInts as above, then each
+ * following full block of blockSize documents as a {@link BlockCodec}
+ * block of document differences followed by one of frequencies, and the
+ * documents left over after the last full block as VInts again.  Each
+ * skip point thus falls at the start of a block, and the reader can tell
+ * from the number of documents of the term which documents are in blocks.
+ */
+final class DocFreqWriter {
+  private final int blockSize;
+  private final int[] docDeltas;
+  private final int[] freqs;
+  private final BlockCodec codec;
+
+  private IndexOutput out;
+  private int lastDoc;
+  private int df;
+  private int buffered;
+
+  /**
+   * @param blockSize the number of documents per block, or 0 to write no
+   *  blocks
+   */
+  DocFreqWriter(int blockSize) {
+    this.blockSize = blockSize;
+    docDeltas = new int[blockSize];
+    freqs = new int[blockSize];
+    codec = new BlockCodec(blockSize);
+  }
+
+  /** Returns true if the postings of a term's <code>count</code>+1st
+   * document are the first of a block, with <code>df</code> documents
+   * in all. */
+  static boolean isBlockStart(int count, int df, int blockSize) {
+    return blockSize != 0
+      && count >= blockSize - 1
+      && (count - (blockSize - 1)) % blockSize == 0
+      && count + blockSize <= df;
+  }
+
+  /** Starts the postings of a new term. */
+  void startTerm(IndexOutput out) {
+    this.out = out;
+    lastDoc = 0;
+    df = 0;
+    buffered = 0;
+  }
+
+  /** Adds a document of the term, greater than the previous one. */
+  void addDoc(int doc, int freq) throws IOException {
+    int delta = doc - lastDoc;
+    lastDoc = doc;
+    df++;
+    if (blockSize != 0 && df >= blockSize) {      // buffer a block
+      docDeltas[buffered] = delta;
+      freqs[buffered] = freq;
+      if (++buffered == blockSize) {
+        codec.writeBlock(out, docDeltas, blockSize);
+        codec.writeBlock(out, freqs, blockSize);
+        buffered = 0;
+      }
+    } else {
+      writeVInts(delta, freq);
+    }
+  }
+
+  /** Writes the documents of the term left over after its last block. */
+  void finishTerm() throws IOException {
+    for (int i = 0; i < buffered; i++)
+      writeVInts(docDeltas[i], freqs[i]);
+    buffered = 0;
+  }
+
+  private void writeVInts(int delta, int freq) throws IOException {
+    int docCode = delta << 1;                     // use low bit to flag freq=1
+    if (freq == 1) {
+      out.writeVInt(docCode | 1);                 // write doc & freq=1
+    } else {
+      out.writeVInt(docCode);                     // write doc
+      out.writeVInt(freq);                        // write frequency in doc
+    }
+  }
+}
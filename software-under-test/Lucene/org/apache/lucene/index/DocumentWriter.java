@@ -20,9 +20,10 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.Hashtable;
 import java.util.Enumeration;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Vector;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -33,14 +34,74 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.search.Similarity;
 
+/** Inverts documents and writes them as a new segment.  Documents may be
+ * buffered: their stored fields and term vectors are written out as they are
+ * added, while their postings and norms are held in RAM until {@link #flush}
+ * writes the segment's term dictionary, postings and norms.
+ *
+ * <p>Terms are kept in an open-addressing hash of term numbers.  The text of
+ * the terms is stored in shared char blocks and their postings in streams of
+ * a {@link ByteBlockPool}, so that inverting a document allocates no objects
+ * per token or per term, and all storage is reused for the next segment.
+ */
 final class DocumentWriter {
   private Analyzer analyzer;
   private Directory directory;
   private Similarity similarity;
-  private FieldInfos fieldInfos;
+  private FieldInfos fieldInfos;                  // fields of the segment
   private int maxFieldLength;
   private int termIndexInterval = IndexWriter.DEFAULT_TERM_INDEX_INTERVAL;
+  private boolean useBlockPostings = false;
   private PrintStream infoStream;
+  private IndexWriter writer;
+
+  // The segment being buffered.
+  private String segment;
+  private int numDocs;
+  private FieldsWriter fieldsWriter;
+  private TermVectorsWriter termVectorsWriter;
+  private byte[][] norms = new byte[0][];         // by segment field number
+  private long normBytes;                         // RAM used by norms
+
+  private static final byte DEFAULT_NORM = Similarity.encodeNorm(1.0f);
+
+  // The terms of the segment.  A term is known by its number, which indexes
+  // the arrays below.  Its text is in the char blocks and its postings are
+  // two streams of postingsPool, in the format of the .frq and .prx files.
+  private int numTerms;
+  private int[] termHash;                         // term numbers, -1 if empty
+  private int termHashMask;
+  private String[] termFields;                    // interned field names
+  private int[] termHashCodes;
+  private int[] termTextStarts;                   // char block addresses
+  private int[] termTextLengths;
+  private int[] termFreqStarts;                   // postingsPool addresses
+  private int[] termFreqUptos;
+  private int[] termProxStarts;
+  private int[] termProxUptos;
+  private int[] termDocFreqs;                     // docs with the term
+  private int[] termLastDocs;                     // the last of those docs
+  private int[] termDocCounts;                    // freq in the current doc
+  private int[] termDocUptos;                     // see groupOccurrences()
+
+  // RAM used per term by the arrays above and its two hash slots.
+  private static final int BYTES_PER_TERM = 14 * 4;
+
+  private static final int CHAR_BLOCK_SHIFT = 14;
+  private static final int CHAR_BLOCK_SIZE = 1 << CHAR_BLOCK_SHIFT;
+  private static final int CHAR_BLOCK_MASK = CHAR_BLOCK_SIZE - 1;
+  private char[][] charBlocks = new char[10][];
+  private int charUpto;                           // address of next free char
+
+  private final ByteBlockPool postingsPool = new ByteBlockPool();
+
+  // The document being inverted: its distinct terms in order of first
+  // occurrence, and for each occurrence its term, position and offsets.
+  private int[] docTerms = new int[16];
+  private int numDocTerms;
+  private int[] occurrences = new int[64];        // 4 ints per occurrence
+  private int numOccurrences;
+  private int[] docPostings = new int[48];        // 3 ints per occurrence
 
   /** This ctor used by test code only.
    *
@@ -55,83 +116,269 @@ final class DocumentWriter {
     this.analyzer = analyzer;
     this.similarity = similarity;
     this.maxFieldLength = maxFieldLength;
+    initTerms();
   }
 
   DocumentWriter(Directory directory, Analyzer analyzer, IndexWriter writer) {
     this.directory = directory;
     this.analyzer = analyzer;
+    this.writer = writer;
     this.similarity = writer.getSimilarity();
     this.maxFieldLength = writer.getMaxFieldLength();
     this.termIndexInterval = writer.getTermIndexInterval();
+    this.useBlockPostings = writer.getUseBlockPostings();
+    initTerms();
   }
 
+  private final void initTerms() {
+    termHash = new int[64];
+    Arrays.fill(termHash, -1);
+    termHashMask = termHash.length - 1;
+    growTerms(32);
+  }
+
+  /** Writes a segment containing just the given document. */
   final void addDocument(String segment, Document doc)
           throws IOException {
-    // write field names
-    fieldInfos = new FieldInfos();
+    bufferDocument(segment, doc, analyzer);
+    flush();
+  }
+
+  /** Adds a document to the buffered segment, which is started if no
+   * documents are buffered.  The segment is not complete until {@link
+   * #flush()} is called.
+   *
+   * @throws IllegalStateException if documents of another segment are
+   * buffered
+   */
+  final void bufferDocument(String segment, Document doc, Analyzer analyzer)
+          throws IOException {
+    if (numDocs > 0 && !segment.equals(this.segment))
+      throw new IllegalStateException("documents of segment " + this.segment +
+                                      " are buffered");
+    startDocument(doc, analyzer);
+    invertDocument(doc);
+    groupOccurrences();
+    addInvertedDocument(segment, doc);
+  }
+
+  /** Tokenizes a document into the term hash of this writer, which holds no
+   * buffered documents, without adding it to a segment.  This needs no
+   * lock, so that threads can invert documents in parallel, each with its
+   * own writer, and then {@link #bufferDocument(String,DocumentWriter)}
+   * them one at a time into a shared one.
+   */
+  final void invert(Document doc, Analyzer analyzer) throws IOException {
+    if (numDocs > 0)
+      throw new IllegalStateException("documents of segment " + segment +
+                                      " are buffered");
+    resetTerms();                                 // those of the last doc
+    startDocument(doc, analyzer);
+    invertDocument(doc);
+    groupOccurrences();
+    invertedDoc = doc;
+  }
+
+  /** Adds the document last inverted by another writer with {@link
+   * #invert(Document,Analyzer)} to the buffered segment, as {@link
+   * #bufferDocument(String,Document,Analyzer)} does.  Only the distinct
+   * terms of the document are looked up in this writer's term hash.
+   *
+   * @throws IllegalStateException if documents of another segment are
+   * buffered
+   */
+  final void bufferDocument(String segment, DocumentWriter inverted)
+          throws IOException {
+    if (numDocs > 0 && !segment.equals(this.segment))
+      throw new IllegalStateException("documents of segment " + this.segment +
+                                      " are buffered");
+    resetDocument();                              // in case the last failed
+    similarity = inverted.similarity;
+    Document doc = inverted.invertedDoc;
+    inverted.invertedDoc = null;
+    docFieldInfos = inverted.docFieldInfos;
+    int numFields = docFieldInfos.size();
+    if (fieldLengths == null || fieldLengths.length < numFields) {
+      fieldLengths = new int[numFields];
+      fieldPositions = new int[numFields];
+      fieldOffsets = new int[numFields];
+      fieldBoosts = new float[numFields];
+    }
+    System.arraycopy(inverted.fieldLengths, 0, fieldLengths, 0, numFields);
+    System.arraycopy(inverted.fieldBoosts, 0, fieldBoosts, 0, numFields);
+
+    // map the document's terms to this writer's
+    for (int i = 0; i < inverted.numDocTerms; i++) {
+      int t = inverted.docTerms[i];
+      int termNumber =
+        termNumber(inverted.termFields[t], inverted.termChars(t),
+                   inverted.termTextLengths[t], inverted.termHashCodes[t]);
+      if (numDocTerms == docTerms.length)
+        docTerms = grow(docTerms);
+      docTerms[numDocTerms++] = termNumber;
+      termDocCounts[termNumber] = inverted.termDocCounts[t];
+      termDocUptos[termNumber] = inverted.termDocUptos[t];
+    }
+    numOccurrences = inverted.numOccurrences;
+    if (docPostings.length < 3 * numOccurrences)
+      docPostings = new int[inverted.docPostings.length];
+    System.arraycopy(inverted.docPostings, 0, docPostings, 0, 3 * numOccurrences);
+
+    addInvertedDocument(segment, doc);
+  }
+
+  private Document invertedDoc;                   // see invert()
+
+  // Prepares the per-field state for inverting a document.
+  private final void startDocument(Document doc, Analyzer analyzer) {
+    if (writer != null) {                         // settings may have changed
+      similarity = writer.getSimilarity();
+      maxFieldLength = writer.getMaxFieldLength();
+    }
+    this.analyzer = analyzer;
+
+    resetDocument();                              // in case the last failed
+    docFieldInfos = new FieldInfos();
+    docFieldInfos.add(doc);
+    int numFields = docFieldInfos.size();
+    if (fieldLengths == null || fieldLengths.length < numFields) {
+      fieldLengths = new int[numFields];
+      fieldPositions = new int[numFields];
+      fieldOffsets = new int[numFields];
+      fieldBoosts = new float[numFields];
+    } else {
+      Arrays.fill(fieldLengths, 0, numFields, 0);
+      Arrays.fill(fieldPositions, 0, numFields, 0);
+      Arrays.fill(fieldOffsets, 0, numFields, 0);
+    }
+    Arrays.fill(fieldBoosts, 0, numFields, doc.getBoost());
+  }
+
+  // Adds the document just inverted into the term hash to the segment.
+  private final void addInvertedDocument(String segment, Document doc)
+          throws IOException {
+    // nothing is added to the segment until the document is inverted
+    if (numDocs == 0)
+      startSegment(segment);
     fieldInfos.add(doc);
-    fieldInfos.write(directory, segment + ".fnm");
 
     // write field values
-    FieldsWriter fieldsWriter =
-            new FieldsWriter(directory, segment, fieldInfos);
-    try {
-      fieldsWriter.addDocument(doc);
-    } finally {
-      fieldsWriter.close();
+    fieldsWriter.addDocument(doc);
+
+    if (termVectorsWriter != null || docFieldInfos.hasVectors())
+      writeVectors();
+
+    appendPostings();
+    setNorms();
+    resetDocument();
+    numDocs++;
+  }
+
+  /** Returns the number of buffered documents. */
+  final int getNumDocs() {
+    return numDocs;
+  }
+
+  /** Returns the name of the buffered segment. */
+  final String getSegment() {
+    return segment;
+  }
+
+  /** Returns the RAM used by buffered postings and norms. */
+  final long ramBytesUsed() {
+    long charBlocksUsed = (charUpto + CHAR_BLOCK_SIZE - 1) >> CHAR_BLOCK_SHIFT;
+    return (long) numTerms * BYTES_PER_TERM + 2 * CHAR_BLOCK_SIZE * charBlocksUsed
+      + postingsPool.bytesUsed() + normBytes;
+  }
+
+  private final void startSegment(String segment) throws IOException {
+    this.segment = segment;
+    fieldInfos = new FieldInfos();
+    fieldsWriter = new FieldsWriter(directory, segment, fieldInfos);
+  }
+
+  /** Writes the buffered documents' field names, postings and norms, and
+   * completes their segment.
+   * @return the number of documents in the segment
+   */
+  final int flush() throws IOException {
+    if (numDocs == 0)
+      return 0;
+    if (writer != null) {
+      termIndexInterval = writer.getTermIndexInterval();
+      useBlockPostings = writer.getUseBlockPostings();
     }
 
-    // invert doc into postingTable
-    postingTable.clear();			  // clear postingTable
-    fieldLengths = new int[fieldInfos.size()];    // init fieldLengths
-    fieldPositions = new int[fieldInfos.size()];  // init fieldPositions
-    fieldOffsets = new int[fieldInfos.size()];    // init fieldOffsets
+    closeDocStores();
+    fieldInfos.write(directory, segment + ".fnm");
+    writePostings(sortTerms());
+    writeNorms();
+
+    int docCount = numDocs;
+    resetTerms();
+    Arrays.fill(norms, null);
+    normBytes = 0;
+    numDocs = 0;
+    return docCount;
+  }
+
+  /** Packs the files of the last flushed segment into a compound file.
+   * @return the files that were packed, which may now be deleted
+   */
+  final Vector createCompoundFile(String fileName)
+          throws IOException {
+    CompoundFileWriter cfsWriter =
+            new CompoundFileWriter(directory, fileName);
 
-    fieldBoosts = new float[fieldInfos.size()];	  // init fieldBoosts
-    Arrays.fill(fieldBoosts, doc.getBoost());
+    Vector files =
+      new Vector(IndexFileNames.COMPOUND_EXTENSIONS.length + fieldInfos.size());
 
-    invertDocument(doc);
+    // Basic files
+    for (int i = 0; i < IndexFileNames.COMPOUND_EXTENSIONS.length; i++) {
+      files.add(segment + "." + IndexFileNames.COMPOUND_EXTENSIONS[i]);
+    }
 
-    // sort postingTable into an array
-    Posting[] postings = sortPostingTable();
-
-    /*
-    for (int i = 0; i < postings.length; i++) {
-      Posting posting = postings[i];
-      System.out.print(posting.term);
-      System.out.print(" freq=" + posting.freq);
-      System.out.print(" pos=");
-      System.out.print(posting.positions[0]);
-      for (int j = 1; j < posting.freq; j++)
-	System.out.print("," + posting.positions[j]);
-      System.out.println("");
+    // Field norm files
+    for (int i = 0; i < fieldInfos.size(); i++) {
+      FieldInfo fi = fieldInfos.fieldInfo(i);
+      if (fi.isIndexed && !fi.omitNorms) {
+        files.add(segment + ".f" + i);
+      }
     }
-    */
 
-    // write postings
-    writePostings(postings, segment);
+    // Vector files
+    if (fieldInfos.hasVectors()) {
+      for (int i = 0; i < IndexFileNames.VECTOR_EXTENSIONS.length; i++) {
+        files.add(segment + "." + IndexFileNames.VECTOR_EXTENSIONS[i]);
+      }
+    }
 
-    // write norms of indexed fields
-    writeNorms(segment);
+    // Now merge all added files
+    Iterator it = files.iterator();
+    while (it.hasNext()) {
+      cfsWriter.addFile((String) it.next());
+    }
 
+    // Perform the merge
+    cfsWriter.close();
+
+    return files;
   }
 
-  // Keys are Terms, values are Postings.
-  // Used to buffer a document before it is written to the index.
-  private final Hashtable postingTable = new Hashtable();
+  private FieldInfos docFieldInfos;               // fields of the document
   private int[] fieldLengths;
   private int[] fieldPositions;
   private int[] fieldOffsets;
   private float[] fieldBoosts;
 
-  // Tokenizes the fields of a document into Postings.
+  // Tokenizes the fields of a document into the term hash.
   private final void invertDocument(Document doc)
           throws IOException {
     Enumeration fields = doc.fields();
     while (fields.hasMoreElements()) {
       Field field = (Field) fields.nextElement();
       String fieldName = field.name();
-      int fieldNumber = fieldInfos.fieldNumber(fieldName);
+      int fieldNumber = docFieldInfos.fieldNumber(fieldName);
 
       int length = fieldLengths[fieldNumber];     // length of field
       int position = fieldPositions[fieldNumber]; // position in field
@@ -141,10 +388,10 @@ final class DocumentWriter {
       if (field.isIndexed()) {
         if (!field.isTokenized()) {		  // un-tokenized field
           String stringValue = field.stringValue();
-          if(field.isStoreOffsetWithTermVector())
-            addPosition(fieldName, stringValue, position++, new TermVectorOffsetInfo(offset, offset + stringValue.length()));
-          else
-            addPosition(fieldName, stringValue, position++, null);
+          localToken.clear();
+          localToken.setTermText(stringValue);
+          addPosition(fieldName, localToken.termBuffer(), stringValue.length(),
+                      position++, offset, offset + stringValue.length());
           offset += stringValue.length();
           length++;
         } else 
@@ -158,19 +405,16 @@ final class DocumentWriter {
             throw new IllegalArgumentException
                     ("field must have either String or Reader value");
 
-          // Tokenize field and add to postingTable
+          // Tokenize field and add to the term hash
           TokenStream stream = analyzer.tokenStream(fieldName, reader);
           try {
-            Token lastToken = null;
-            for (Token t = stream.next(); t != null; t = stream.next()) {
+            int lastEndOffset = -1;
+            for (Token t = stream.next(localToken); t != null;
+                 t = stream.next(localToken)) {
               position += (t.getPositionIncrement() - 1);
-              
-              if(field.isStoreOffsetWithTermVector())
-                addPosition(fieldName, t.termText(), position++, new TermVectorOffsetInfo(offset + t.startOffset(), offset + t.endOffset()));
-              else
-                addPosition(fieldName, t.termText(), position++, null);
-              
-              lastToken = t;
+              addPosition(fieldName, t.termBuffer(), t.termLength(), position++,
+                          offset + t.startOffset(), offset + t.endOffset());
+              lastEndOffset = t.endOffset();
               if (++length > maxFieldLength) {
                 if (infoStream != null)
                   infoStream.println("maxFieldLength " +maxFieldLength+ " reached, ignoring following tokens");
@@ -178,8 +422,8 @@ final class DocumentWriter {
               }
             }
             
-            if(lastToken != null)
-              offset += lastToken.endOffset() + 1;
+            if(lastEndOffset != -1)
+              offset += lastEndOffset + 1;
             
           } finally {
             stream.close();
@@ -194,76 +438,216 @@ final class DocumentWriter {
     }
   }
 
-  private final Term termBuffer = new Term("", ""); // avoid consing
-
-  private final void addPosition(String field, String text, int position, TermVectorOffsetInfo offset) {
-    termBuffer.set(field, text);
-    //System.out.println("Offset: " + offset);
-    Posting ti = (Posting) postingTable.get(termBuffer);
-    if (ti != null) {				  // word seen before
-      int freq = ti.freq;
-      if (ti.positions.length == freq) {	  // positions array is full
-        int[] newPositions = new int[freq * 2];	  // double size
-        int[] positions = ti.positions;
-        for (int i = 0; i < freq; i++)		  // copy old positions to new
-          newPositions[i] = positions[i];
-        ti.positions = newPositions;
+  // Reused for every token of the documents, see TokenStream.next(Token).
+  private final Token localToken = new Token();
+
+  // Records an occurrence of a term, the first length chars of text, adding
+  // the term if it is new.
+  private final void addPosition(String field, char[] text, int length,
+                                 int position, int startOffset, int endOffset) {
+    int textCode = 0;
+    for (int i = 0; i < length; i++)
+      textCode = 31 * textCode + text[i];         // as String.hashCode()
+    int termNumber = termNumber(field, text, length,
+                                field.hashCode() * 31 + textCode);
+
+    if (termDocCounts[termNumber]++ == 0) {       // first time in this doc
+      if (numDocTerms == docTerms.length)
+        docTerms = grow(docTerms);
+      docTerms[numDocTerms++] = termNumber;
+    }
+
+    int upto = 4 * numOccurrences++;
+    if (upto == occurrences.length)
+      occurrences = grow(occurrences);
+    occurrences[upto] = termNumber;
+    occurrences[upto+1] = position;
+    occurrences[upto+2] = startOffset;
+    occurrences[upto+3] = endOffset;
+  }
+
+  // Returns the number of a term, adding it if it is new.
+  private final int termNumber(String field, char[] text, int length,
+                               int code) {
+    int slot = code & termHashMask;
+    int termNumber = termHash[slot];
+    if (termNumber != -1 && !isTerm(termNumber, code, field, text, length)) {
+      int inc = ((code >> 8) + code) | 1;         // probe with an odd step
+      do {
+        slot = (slot + inc) & termHashMask;
+        termNumber = termHash[slot];
+      } while (termNumber != -1
+               && !isTerm(termNumber, code, field, text, length));
+    }
+    if (termNumber == -1)                         // word not seen before
+      termNumber = addTerm(slot, code, field, text, length);
+    return termNumber;
+  }
+
+  private final boolean isTerm(int termNumber, int code, String field,
+                               char[] text, int length) {
+    if (termHashCodes[termNumber] != code || termFields[termNumber] != field)
+      return false;
+    if (termTextLengths[termNumber] != length)
+      return false;
+    int start = termTextStarts[termNumber];
+    for (int i = 0; i < length; i++)
+      if (charAt(start + i) != text[i])
+        return false;
+    return true;
+  }
+
+  private final int addTerm(int slot, int code, String field, char[] text,
+                            int length) {
+    if (numTerms == termFields.length)
+      growTerms(2 * numTerms);
+    int termNumber = numTerms++;
+    termFields[termNumber] = field;
+    termHashCodes[termNumber] = code;
+    termTextStarts[termNumber] = charUpto;
+    termTextLengths[termNumber] = length;
+    addText(text, length);
+    termFreqStarts[termNumber] = termFreqUptos[termNumber] =
+      postingsPool.newSlice();
+    termProxStarts[termNumber] = termProxUptos[termNumber] =
+      postingsPool.newSlice();
+    termDocFreqs[termNumber] = 0;
+    termLastDocs[termNumber] = 0;
+    termDocCounts[termNumber] = 0;
+
+    termHash[slot] = termNumber;
+    if (2 * numTerms > termHash.length)           // keep the hash half empty
+      rehash(2 * termHash.length);
+    return termNumber;
+  }
+
+  private final void rehash(int size) {
+    int[] newHash = new int[size];
+    Arrays.fill(newHash, -1);
+    int mask = size - 1;
+    for (int termNumber = 0; termNumber < numTerms; termNumber++) {
+      int code = termHashCodes[termNumber];
+      int slot = code & mask;
+      if (newHash[slot] != -1) {
+        int inc = ((code >> 8) + code) | 1;
+        do {
+          slot = (slot + inc) & mask;
+        } while (newHash[slot] != -1);
       }
-      ti.positions[freq] = position;		  // add new position
-
-      if (offset != null) {
-        if (ti.offsets.length == freq){
-          TermVectorOffsetInfo [] newOffsets = new TermVectorOffsetInfo[freq*2];
-          TermVectorOffsetInfo [] offsets = ti.offsets;
-          for (int i = 0; i < freq; i++)
-          {
-            newOffsets[i] = offsets[i];
-          }
-          ti.offsets = newOffsets;
-        }
-        ti.offsets[freq] = offset;
+      newHash[slot] = termNumber;
+    }
+    termHash = newHash;
+    termHashMask = mask;
+  }
+
+  private final void growTerms(int size) {
+    String[] newFields = new String[size];
+    if (termFields != null)
+      System.arraycopy(termFields, 0, newFields, 0, numTerms);
+    termFields = newFields;
+    termHashCodes = grow(termHashCodes, size);
+    termTextStarts = grow(termTextStarts, size);
+    termTextLengths = grow(termTextLengths, size);
+    termFreqStarts = grow(termFreqStarts, size);
+    termFreqUptos = grow(termFreqUptos, size);
+    termProxStarts = grow(termProxStarts, size);
+    termProxUptos = grow(termProxUptos, size);
+    termDocFreqs = grow(termDocFreqs, size);
+    termLastDocs = grow(termLastDocs, size);
+    termDocCounts = grow(termDocCounts, size);
+    termDocUptos = grow(termDocUptos, size);
+  }
+
+  private final int[] grow(int[] array, int size) {
+    int[] newArray = new int[size];
+    if (array != null)
+      System.arraycopy(array, 0, newArray, 0, numTerms);
+    return newArray;
+  }
+
+  private static final int[] grow(int[] array) {
+    int[] newArray = new int[array.length * 2];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    return newArray;
+  }
+
+  private final void addText(char[] text, int length) {
+    int i = 0;
+    while (i < length) {
+      int block = charUpto >> CHAR_BLOCK_SHIFT;
+      if (block == charBlocks.length) {
+        char[][] newBlocks = new char[2 * charBlocks.length][];
+        System.arraycopy(charBlocks, 0, newBlocks, 0, charBlocks.length);
+        charBlocks = newBlocks;
       }
-      ti.freq = freq + 1;			  // update frequency
-    } else {					  // word not seen before
-      Term term = new Term(field, text, false);
-      postingTable.put(term, new Posting(term, position, offset));
+      if (charBlocks[block] == null)
+        charBlocks[block] = new char[CHAR_BLOCK_SIZE];
+      int offset = charUpto & CHAR_BLOCK_MASK;
+      int n = Math.min(length - i, CHAR_BLOCK_SIZE - offset);
+      System.arraycopy(text, i, charBlocks[block], offset, n);
+      i += n;
+      charUpto += n;
     }
   }
 
-  private final Posting[] sortPostingTable() {
-    // copy postingTable into an array
-    Posting[] array = new Posting[postingTable.size()];
-    Enumeration postings = postingTable.elements();
-    for (int i = 0; postings.hasMoreElements(); i++)
-      array[i] = (Posting) postings.nextElement();
+  private final char charAt(int address) {
+    return charBlocks[address >> CHAR_BLOCK_SHIFT][address & CHAR_BLOCK_MASK];
+  }
 
-    // sort the array
-    quickSort(array, 0, array.length - 1);
+  private char[] textBuffer = new char[16];
 
-    return array;
+  private final String termText(int termNumber) {
+    return new String(termChars(termNumber), 0, termTextLengths[termNumber]);
   }
 
-  private static final void quickSort(Posting[] postings, int lo, int hi) {
+  // Returns a buffer starting with the text of a term.
+  private final char[] termChars(int termNumber) {
+    int length = termTextLengths[termNumber];
+    if (textBuffer.length < length)
+      textBuffer = new char[length];
+    int start = termTextStarts[termNumber];
+    for (int i = 0; i < length; i++)
+      textBuffer[i] = charAt(start + i);
+    return textBuffer;
+  }
+
+  // Orders terms by field name, then text, as Term.compareTo() does.
+  private final int compareTerms(int a, int b) {
+    String fieldA = termFields[a], fieldB = termFields[b];
+    if (fieldA != fieldB)
+      return fieldA.compareTo(fieldB);
+    int startA = termTextStarts[a], startB = termTextStarts[b];
+    int lengthA = termTextLengths[a], lengthB = termTextLengths[b];
+    int length = Math.min(lengthA, lengthB);
+    for (int i = 0; i < length; i++) {
+      char charA = charAt(startA + i), charB = charAt(startB + i);
+      if (charA != charB)
+        return charA - charB;
+    }
+    return lengthA - lengthB;
+  }
+
+  private final void quickSort(int[] terms, int lo, int hi) {
     if (lo >= hi)
       return;
 
     int mid = (lo + hi) / 2;
 
-    if (postings[lo].term.compareTo(postings[mid].term) > 0) {
-      Posting tmp = postings[lo];
-      postings[lo] = postings[mid];
-      postings[mid] = tmp;
+    if (compareTerms(terms[lo], terms[mid]) > 0) {
+      int tmp = terms[lo];
+      terms[lo] = terms[mid];
+      terms[mid] = tmp;
     }
 
-    if (postings[mid].term.compareTo(postings[hi].term) > 0) {
-      Posting tmp = postings[mid];
-      postings[mid] = postings[hi];
-      postings[hi] = tmp;
+    if (compareTerms(terms[mid], terms[hi]) > 0) {
+      int tmp = terms[mid];
+      terms[mid] = terms[hi];
+      terms[hi] = tmp;
 
-      if (postings[lo].term.compareTo(postings[mid].term) > 0) {
-        Posting tmp2 = postings[lo];
-        postings[lo] = postings[mid];
-        postings[mid] = tmp2;
+      if (compareTerms(terms[lo], terms[mid]) > 0) {
+        int tmp2 = terms[lo];
+        terms[lo] = terms[mid];
+        terms[mid] = tmp2;
       }
     }
 
@@ -273,90 +657,252 @@ final class DocumentWriter {
     if (left >= right)
       return;
 
-    Term partition = postings[mid].term;
+    int partition = terms[mid];
 
     for (; ;) {
-      while (postings[right].term.compareTo(partition) > 0)
+      while (compareTerms(terms[right], partition) > 0)
         --right;
 
-      while (left < right && postings[left].term.compareTo(partition) <= 0)
+      while (left < right && compareTerms(terms[left], partition) <= 0)
         ++left;
 
       if (left < right) {
-        Posting tmp = postings[left];
-        postings[left] = postings[right];
-        postings[right] = tmp;
+        int tmp = terms[left];
+        terms[left] = terms[right];
+        terms[right] = tmp;
         --right;
       } else {
         break;
       }
     }
 
-    quickSort(postings, lo, left);
-    quickSort(postings, left + 1, hi);
+    quickSort(terms, lo, left);
+    quickSort(terms, left + 1, hi);
   }
 
-  private final void writePostings(Posting[] postings, String segment)
+  // Groups the document's positions and offsets by term: those of term t
+  // end up at docPostings[3 * (termDocUptos[t] - termDocCounts[t])] and on.
+  private final void groupOccurrences() {
+    int upto = 0;
+    for (int i = 0; i < numDocTerms; i++) {
+      int termNumber = docTerms[i];
+      termDocUptos[termNumber] = upto;
+      upto += termDocCounts[termNumber];
+    }
+    if (docPostings.length < 3 * numOccurrences)
+      docPostings = new int[3 * occurrences.length / 4];
+    for (int i = 0; i < numOccurrences; i++) {
+      int o = 4 * i;
+      int p = 3 * termDocUptos[occurrences[o]]++;
+      docPostings[p] = occurrences[o+1];
+      docPostings[p+1] = occurrences[o+2];
+      docPostings[p+2] = occurrences[o+3];
+    }
+  }
+
+  // Clears the state of the document being inverted.
+  private final void resetDocument() {
+    for (int i = 0; i < numDocTerms; i++)
+      termDocCounts[docTerms[i]] = 0;
+    numDocTerms = 0;
+    numOccurrences = 0;
+  }
+
+  // Discards all terms, keeping their storage for the next segment.
+  private final void resetTerms() {
+    Arrays.fill(termHash, -1);
+    numTerms = 0;
+    charUpto = 0;
+    postingsPool.reset();
+  }
+
+  // Writes the term vectors of the document just inverted.  Once a document
+  // of the segment has vectors, every later document gets an entry too.
+  private final void writeVectors() throws IOException {
+    if (termVectorsWriter == null) {
+      termVectorsWriter = new TermVectorsWriter(directory, segment, fieldInfos);
+      for (int i = 0; i < numDocs; i++) {         // earlier docs have none
+        termVectorsWriter.openDocument();
+        termVectorsWriter.closeDocument();
+      }
+    }
+    termVectorsWriter.openDocument();
+    quickSort(docTerms, 0, numDocTerms - 1);
+    String currentField = null;
+    boolean storeOffsets = false;
+    for (int i = 0; i < numDocTerms; i++) {
+      int termNumber = docTerms[i];
+
+      // check to see if we switched to a new field
+      String termField = termFields[termNumber];
+      if (currentField != termField) {
+        currentField = termField;
+        FieldInfo fi = docFieldInfos.fieldInfo(currentField);
+        if (fi.storeTermVector)
+          termVectorsWriter.openField(fieldInfos.fieldNumber(currentField),
+                                      fi.storePositionWithTermVector,
+                                      fi.storeOffsetWithTermVector);
+        else
+          termVectorsWriter.closeField();
+        storeOffsets = fi.storeOffsetWithTermVector;
+      }
+      if (termVectorsWriter.isFieldOpen()) {
+        int freq = termDocCounts[termNumber];
+        int p = 3 * (termDocUptos[termNumber] - freq);
+        int[] positions = new int[freq];
+        TermVectorOffsetInfo[] offsets =
+          storeOffsets ? new TermVectorOffsetInfo[freq] : null;
+        for (int j = 0; j < freq; j++, p += 3) {
+          positions[j] = docPostings[p];
+          if (offsets != null)
+            offsets[j] = new TermVectorOffsetInfo(docPostings[p+1], docPostings[p+2]);
+        }
+        termVectorsWriter.addTerm(termText(termNumber), freq, positions, offsets);
+      }
+    }
+    termVectorsWriter.closeDocument();
+  }
+
+  // Adds the postings of the document just inverted to the segment's.
+  private final void appendPostings() {
+    for (int i = 0; i < numDocTerms; i++) {
+      int termNumber = docTerms[i];
+      int freq = termDocCounts[termNumber];
+
+      int docCode = (numDocs - termLastDocs[termNumber]) << 1; // use low bit to flag freq=1
+      termLastDocs[termNumber] = numDocs;
+      int upto = termFreqUptos[termNumber];
+      if (freq == 1)
+        upto = postingsPool.writeVInt(upto, docCode | 1); // write doc & freq=1
+      else {
+        upto = postingsPool.writeVInt(upto, docCode);     // write doc
+        upto = postingsPool.writeVInt(upto, freq);        // write frequency in doc
+      }
+      termFreqUptos[termNumber] = upto;
+
+      upto = termProxUptos[termNumber];
+      int p = 3 * (termDocUptos[termNumber] - freq);
+      int lastPosition = 0;			  // write position deltas
+      for (int j = 0; j < freq; j++, p += 3) {
+        int position = docPostings[p];
+        upto = postingsPool.writeVInt(upto, position - lastPosition);
+        lastPosition = position;
+      }
+      termProxUptos[termNumber] = upto;
+      termDocFreqs[termNumber]++;
+    }
+  }
+
+  // Records the norms of the document just inverted.  Documents without a
+  // norm for a field get the same default a merge would give them.
+  private final void setNorms() {
+    if (norms.length < fieldInfos.size()) {
+      byte[][] newNorms = new byte[fieldInfos.size()][];
+      System.arraycopy(norms, 0, newNorms, 0, norms.length);
+      norms = newNorms;
+    }
+    for (int n = 0; n < docFieldInfos.size(); n++) {
+      FieldInfo fi = docFieldInfos.fieldInfo(n);
+      if (fi.isIndexed && !fi.omitNorms) {
+        float norm = fieldBoosts[n] * similarity.lengthNorm(fi.name, fieldLengths[n]);
+        int number = fieldInfos.fieldNumber(fi.name);
+        byte[] bytes = norms[number];
+        if (bytes == null || bytes.length <= numDocs) { // may lag behind
+          int oldLength = bytes == null ? 0 : bytes.length;
+          byte[] newBytes = new byte[Math.max(8, numDocs * 2)];
+          if (bytes != null)
+            System.arraycopy(bytes, 0, newBytes, 0, oldLength);
+          Arrays.fill(newBytes, oldLength, newBytes.length, DEFAULT_NORM);
+          normBytes += newBytes.length - oldLength;
+          norms[number] = bytes = newBytes;
+        }
+        bytes[numDocs] = Similarity.encodeNorm(norm);
+      }
+    }
+  }
+
+  // Returns the numbers of the segment's terms in term order.  Terms only
+  // seen in a document that failed to invert have no postings and are left
+  // out.
+  private final int[] sortTerms() {
+    int count = 0;
+    for (int termNumber = 0; termNumber < numTerms; termNumber++)
+      if (termDocFreqs[termNumber] > 0)
+        count++;
+    int[] terms = new int[count];
+    count = 0;
+    for (int termNumber = 0; termNumber < numTerms; termNumber++)
+      if (termDocFreqs[termNumber] > 0)
+        terms[count++] = termNumber;
+    quickSort(terms, 0, terms.length - 1);
+    return terms;
+  }
+
+  private final void closeDocStores() throws IOException {
+    // make an effort to close both writers but remember and re-throw
+    // the first exception encountered in this process
+    IOException keep = null;
+    if (fieldsWriter != null) try { fieldsWriter.close(); } catch (IOException e) { if (keep == null) keep = e; }
+    if (termVectorsWriter != null) try { termVectorsWriter.close(); } catch (IOException e) { if (keep == null) keep = e; }
+    fieldsWriter = null;
+    termVectorsWriter = null;
+    if (keep != null) throw (IOException) keep.fillInStackTrace();
+  }
+
+  private final ByteSliceReader freqReader = new ByteSliceReader();
+  private final ByteSliceReader proxReader = new ByteSliceReader();
+
+  private final void writePostings(int[] terms)
           throws IOException {
     IndexOutput freq = null, prox = null;
     TermInfosWriter tis = null;
-    TermVectorsWriter termVectorWriter = null;
     try {
       //open files for inverse index storage
       freq = directory.createOutput(segment + ".frq");
       prox = directory.createOutput(segment + ".prx");
       tis = new TermInfosWriter(directory, segment, fieldInfos,
-                                termIndexInterval);
+                                termIndexInterval, useBlockPostings
+                                ? TermInfosWriter.POSTINGS_BLOCK_SIZE : 0);
+      int skipInterval = tis.skipInterval;
+      SkipListWriter skipListWriter =
+        new SkipListWriter(skipInterval, tis.maxSkipLevels);
+      DocFreqWriter docFreqWriter = new DocFreqWriter(tis.postingsBlockSize);
       TermInfo ti = new TermInfo();
-      String currentField = null;
 
-      for (int i = 0; i < postings.length; i++) {
-        Posting posting = postings[i];
-
-        // add an entry to the dictionary with pointers to prox and freq files
-        ti.set(1, freq.getFilePointer(), prox.getFilePointer(), -1);
-        tis.add(posting.term, ti);
-
-        // add an entry to the freq file
-        int postingFreq = posting.freq;
-        if (postingFreq == 1)				  // optimize freq=1
-          freq.writeVInt(1);			  // set low bit of doc num.
-        else {
-          freq.writeVInt(0);			  // the document number
-          freq.writeVInt(postingFreq);			  // frequency in doc
+      for (int i = 0; i < terms.length; i++) {
+        int termNumber = terms[i];
+        long freqPointer = freq.getFilePointer();
+        long proxPointer = prox.getFilePointer();
+        skipListWriter.resetSkip(freqPointer, proxPointer);
+
+        freqReader.init(postingsPool, termFreqStarts[termNumber],
+                        termFreqUptos[termNumber]);
+        proxReader.init(postingsPool, termProxStarts[termNumber],
+                        termProxUptos[termNumber]);
+        int docFreq = termDocFreqs[termNumber];
+        int lastDoc = 0;
+        docFreqWriter.startTerm(freq);
+        for (int df = 1; df <= docFreq; df++) {
+          if ((df % skipInterval) == 0)
+            skipListWriter.bufferSkip(lastDoc, freq.getFilePointer(),
+                                      prox.getFilePointer());
+          int docCode = freqReader.readVInt();
+          lastDoc += docCode >>> 1;
+          int postingFreq = 1;
+          if ((docCode & 1) == 0)
+            postingFreq = freqReader.readVInt();
+          docFreqWriter.addDoc(lastDoc, postingFreq);
+          for (int j = 0; j < postingFreq; j++)
+            prox.writeVInt(proxReader.readVInt());
         }
+        docFreqWriter.finishTerm();
+        long skipPointer = skipListWriter.writeSkip(freq);
 
-        int lastPosition = 0;			  // write positions
-        int[] positions = posting.positions;
-        for (int j = 0; j < postingFreq; j++) {		  // use delta-encoding
-          int position = positions[j];
-          prox.writeVInt(position - lastPosition);
-          lastPosition = position;
-        }
-        // check to see if we switched to a new field
-        String termField = posting.term.field();
-        if (currentField != termField) {
-          // changing field - see if there is something to save
-          currentField = termField;
-          FieldInfo fi = fieldInfos.fieldInfo(currentField);
-          if (fi.storeTermVector) {
-            if (termVectorWriter == null) {
-              termVectorWriter =
-                new TermVectorsWriter(directory, segment, fieldInfos);
-              termVectorWriter.openDocument();
-            }
-            termVectorWriter.openField(currentField);
-
-          } else if (termVectorWriter != null) {
-            termVectorWriter.closeField();
-          }
-        }
-        if (termVectorWriter != null && termVectorWriter.isFieldOpen()) {
-            termVectorWriter.addTerm(posting.term.text(), postingFreq, posting.positions, posting.offsets);
-        }
+        // add an entry to the dictionary with pointers to prox and freq files
+        ti.set(docFreq, freqPointer, proxPointer,
+               (int) (skipPointer - freqPointer));
+        tis.add(new Term(termFields[termNumber], termText(termNumber), false), ti);
       }
-      if (termVectorWriter != null)
-        termVectorWriter.closeDocument();
     } finally {
       // make an effort to close all streams we can but remember and re-throw
       // the first exception encountered in this process
@@ -364,21 +910,24 @@ final class DocumentWriter {
       if (freq != null) try { freq.close(); } catch (IOException e) { if (keep == null) keep = e; }
       if (prox != null) try { prox.close(); } catch (IOException e) { if (keep == null) keep = e; }
       if (tis  != null) try {  tis.close(); } catch (IOException e) { if (keep == null) keep = e; }
-      if (termVectorWriter  != null) try {  termVectorWriter.close(); } catch (IOException e) { if (keep == null) keep = e; }
       if (keep != null) throw (IOException) keep.fillInStackTrace();
     }
   }
 
-  private final void writeNorms(String segment) throws IOException { 
+  private final void writeNorms() throws IOException {
     for(int n = 0; n < fieldInfos.size(); n++){
       FieldInfo fi = fieldInfos.fieldInfo(n);
       if(fi.isIndexed && !fi.omitNorms){
-        float norm = fieldBoosts[n] * similarity.lengthNorm(fi.name, fieldLengths[n]);
-        IndexOutput norms = directory.createOutput(segment + ".f" + n);
+        byte[] bytes = n < norms.length ? norms[n] : null;
+        int length = bytes == null ? 0 : Math.min(bytes.length, numDocs);
+        IndexOutput output = directory.createOutput(segment + ".f" + n);
         try {
-          norms.writeByte(Similarity.encodeNorm(norm));
+          if (length > 0)
+            output.writeBytes(bytes, length);
+          for (int i = length; i < numDocs; i++)  // later docs lack the field
+            output.writeByte(DEFAULT_NORM);
         } finally {
-          norms.close();
+          output.close();
         }
       }
     }
@@ -391,23 +940,3 @@ final class DocumentWriter {
   }
 
 }
-
-final class Posting {				  // info about a Term in a doc
-  Term term;					  // the Term
-  int freq;					  // its frequency in doc
-  int[] positions;				  // positions it occurs at
-  TermVectorOffsetInfo [] offsets;
-
-  Posting(Term t, int position, TermVectorOffsetInfo offset) {
-    term = t;
-    freq = 1;
-    positions = new int[1];
-    positions[0] = position;
-    if(offset != null){
-    offsets = new TermVectorOffsetInfo[1];
-    offsets[0] = offset;
-    }
-    else
-      offsets = null;
-  }
-}
@@ -0,0 +1,36 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Thrown when the value of a lazily loaded field cannot be read from the
+ * index, for example because its reader has been closed.
+ *
+ * @see org.apache.lucene.document.FieldSelectorResult#LAZY_LOAD
+ */
+public class FieldReaderException extends RuntimeException {
+
+  /** Constructs an exception with the given message. */
+  public FieldReaderException(String message) {
+    super(message);
+  }
+
+  /** Constructs an exception for the given cause. */
+  public FieldReaderException(Throwable cause) {
+    super(cause);
+  }
+}
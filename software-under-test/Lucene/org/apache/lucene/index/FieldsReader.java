@@ -23,6 +23,8 @@ import java.util.zip.Inflater;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexInput;
 
@@ -30,14 +32,23 @@ import org.apache.lucene.store.IndexInput;
  * Class responsible for access to stored document fields.
  *
  * It uses &lt;segment&gt;.fdt and &lt;segment&gt;.fdx; files.
+ * A reader is used by one thread at a time; other threads use clones.
  *
  * @version $Id: FieldsReader.java 329524 2005-10-30 05:38:46Z yonik $
  */
-final class FieldsReader {
+final class FieldsReader implements Cloneable {
+  private static final byte[] NO_BYTES = new byte[0];
+
   private FieldInfos fieldInfos;
   private IndexInput fieldsStream;
   private IndexInput indexStream;
   private int size;
+  private volatile boolean closed = false;
+  private FieldsReader original;                  // which owns the files
+
+  private Inflater decompressor;                  // reused
+  private byte[] inflateBuffer;
+  private byte[] skipBuffer;
 
   FieldsReader(Directory d, String segment, FieldInfos fn) throws IOException {
     fieldInfos = fn;
@@ -48,9 +59,37 @@ final class FieldsReader {
     size = (int)(indexStream.length() / 8);
   }
 
-  final void close() throws IOException {
+  /** Returns a reader of the same files with streams of its own, for
+   * another thread.  Clones need not be closed; closing this reader closes
+   * them too. */
+  public synchronized Object clone() {
+    FieldsReader clone;
+    try {
+      clone = (FieldsReader)super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e.toString());
+    }
+    clone.fieldsStream = (IndexInput)fieldsStream.clone();
+    clone.indexStream = (IndexInput)indexStream.clone();
+    clone.original = original != null ? original : this;
+    clone.decompressor = null;
+    clone.inflateBuffer = null;
+    clone.skipBuffer = null;
+    return clone;
+  }
+
+  final synchronized void close() throws IOException {
+    closed = true;
+    if (original != null)                         // files belong to original
+      return;
     fieldsStream.close();
     indexStream.close();
+    if (decompressor != null)
+      decompressor.end();
+  }
+
+  private boolean isClosed() {
+    return closed || (original != null && original.closed);
   }
 
   final int size() {
@@ -58,6 +97,16 @@ final class FieldsReader {
   }
 
   final Document doc(int n) throws IOException {
+    return doc(n, null);
+  }
+
+  /** Returns the fields of document <code>n</code> that
+   * <code>fieldSelector</code> selects, or all of them if it is null.
+   * Fields that are left out are skipped over without being decoded. */
+  final synchronized Document doc(int n, FieldSelector fieldSelector)
+    throws IOException {
+    if (isClosed())
+      throw new IOException("the stored fields reader has been closed");
     indexStream.seek(n * 8L);
     long position = indexStream.readLong();
     fieldsStream.seek(position);
@@ -67,23 +116,36 @@ final class FieldsReader {
     for (int i = 0; i < numFields; i++) {
       int fieldNumber = fieldsStream.readVInt();
       FieldInfo fi = fieldInfos.fieldInfo(fieldNumber);
+      FieldSelectorResult accept = fieldSelector == null
+        ? FieldSelectorResult.LOAD : fieldSelector.accept(fi.name);
 
       byte bits = fieldsStream.readByte();
       
       boolean compressed = (bits & FieldsWriter.FIELD_IS_COMPRESSED) != 0;
       boolean tokenize = (bits & FieldsWriter.FIELD_IS_TOKENIZED) != 0;
+      boolean binary = (bits & FieldsWriter.FIELD_IS_BINARY) != 0;
+
+      if (accept == FieldSelectorResult.NO_LOAD) {
+        skipValue(binary, compressed);
+        continue;
+      }
+      boolean lazy = accept == FieldSelectorResult.LAZY_LOAD;
       
-      if ((bits & FieldsWriter.FIELD_IS_BINARY) != 0) {
-        final byte[] b = new byte[fieldsStream.readVInt()];
-        fieldsStream.readBytes(b, 0, b.length);
-        if (compressed)
-          doc.add(new Field(fi.name, uncompress(b), Field.Store.COMPRESS));
-        else
-          doc.add(new Field(fi.name, b, Field.Store.YES));
+      if (binary) {
+        Field.Store store = compressed ? Field.Store.COMPRESS : Field.Store.YES;
+        if (lazy) {
+          Field f = new Field(fi.name, NO_BYTES, store);
+          f.setValueLoader(skipLazyValue(binary, compressed));
+          doc.add(f);
+        } else {
+          final byte[] b = new byte[fieldsStream.readVInt()];
+          fieldsStream.readBytes(b, 0, b.length);
+          doc.add(new Field(fi.name, compressed ? uncompress(b) : b, store));
+        }
       }
       else {
         Field.Index index;
-        Field.Store store = Field.Store.YES;
+        Field.Store store = compressed ? Field.Store.COMPRESS : Field.Store.YES;
         
         if (fi.isIndexed && tokenize)
           index = Field.Index.TOKENIZED;
@@ -113,45 +175,126 @@ final class FieldsReader {
           termVector = Field.TermVector.NO;
         }
         
-        if (compressed) {
-          store = Field.Store.COMPRESS;
+        Field f;
+        if (lazy) {
+          f = new Field(fi.name, "", store, index, termVector);
+          f.setValueLoader(skipLazyValue(binary, compressed));
+        }
+        else if (compressed) {
           final byte[] b = new byte[fieldsStream.readVInt()];
           fieldsStream.readBytes(b, 0, b.length);
-          Field f = new Field(fi.name,      // field name
+          f = new Field(fi.name,      // field name
               new String(uncompress(b), "UTF-8"), // uncompress the value and add as string
               store,
               index,
               termVector);
-          f.setOmitNorms(fi.omitNorms);
-          doc.add(f);
         }
         else {
-          Field f = new Field(fi.name,     // name
+          f = new Field(fi.name,     // name
                 fieldsStream.readString(), // read value
                 store,
                 index,
                 termVector);
-          f.setOmitNorms(fi.omitNorms);
-          doc.add(f);
         }
+        f.setOmitNorms(fi.omitNorms);
+        doc.add(f);
       }
+
+      if (accept == FieldSelectorResult.LOAD_AND_BREAK)
+        break;
     }
 
     return doc;
   }
+
+  /** Skips the value at the current position of the fields stream.  Binary
+   * and compressed values are preceded by their length in bytes, but
+   * strings by their length in chars, so for those the bytes are read in
+   * bulk and only their lead bytes counted, without decoding them. */
+  private void skipValue(boolean binary, boolean compressed)
+    throws IOException {
+    int length = fieldsStream.readVInt();
+    if (binary || compressed) {
+      fieldsStream.seek(fieldsStream.getFilePointer() + length);
+      return;
+    }
+    if (skipBuffer == null)
+      skipBuffer = new byte[1024];
+    int chars = length;                           // chars left to skip
+    int trailing = 0;                             // bytes left of last char
+    while (chars > 0 || trailing > 0) {
+      int count = Math.min(chars + trailing, skipBuffer.length);
+      fieldsStream.readBytes(skipBuffer, 0, count);  // never past the value
+      for (int i = 0; i < count; i++) {
+        if (trailing > 0) {
+          trailing--;
+          continue;
+        }
+        int b = skipBuffer[i] & 0xFF;             // as IndexInput.readChars
+        chars--;
+        if ((b & 0x80) != 0)
+          trailing = (b & 0xE0) != 0xE0 ? 1 : 2;
+      }
+    }
+  }
+
+  /** Skips the value at the current position of the fields stream and
+   * returns a loader that reads it later. */
+  private Field.Loader skipLazyValue(boolean binary, boolean compressed)
+    throws IOException {
+    long pointer = fieldsStream.getFilePointer();
+    skipValue(binary, compressed);
+    return new LazyValue(pointer, binary, compressed);
+  }
+
+  /** Reads the value of a lazily loaded field when it is first asked for. */
+  private final class LazyValue extends Field.Loader {
+    private final long pointer;                   // of the value's length
+    private final boolean binary;
+    private final boolean compressed;
+
+    LazyValue(long pointer, boolean binary, boolean compressed) {
+      this.pointer = pointer;
+      this.binary = binary;
+      this.compressed = compressed;
+    }
+
+    protected Object load() {
+      synchronized (FieldsReader.this) {
+        if (isClosed())
+          throw new FieldReaderException("the reader of this lazy field has been closed");
+        try {
+          fieldsStream.seek(pointer);
+          if (!binary && !compressed)
+            return fieldsStream.readString();
+          byte[] b = new byte[fieldsStream.readVInt()];
+          fieldsStream.readBytes(b, 0, b.length);
+          if (compressed)
+            b = uncompress(b);
+          return binary ? (Object)b : new String(b, "UTF-8");
+        } catch (IOException e) {
+          throw new FieldReaderException(e);
+        }
+      }
+    }
+  }
   
-  private final byte[] uncompress(final byte[] input)
+  private synchronized final byte[] uncompress(final byte[] input)
     throws IOException
   {
-  
-    Inflater decompressor = new Inflater();
+    if (decompressor == null) {
+      decompressor = new Inflater();
+      inflateBuffer = new byte[1024];
+    } else {
+      decompressor.reset();
+    }
     decompressor.setInput(input);
   
     // Create an expandable byte array to hold the decompressed data
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(2 * input.length);
   
     // Decompress the data
-    byte[] buf = new byte[1024];
+    byte[] buf = inflateBuffer;
     while (!decompressor.finished()) {
       try {
         int count = decompressor.inflate(buf);
@@ -162,8 +305,6 @@ final class FieldsReader {
         throw new IOException ("field data are in wrong format: " + e.toString());
       }
     }
-  
-    decompressor.end();
     
     // Get the decompressed data
     return bos.toByteArray();
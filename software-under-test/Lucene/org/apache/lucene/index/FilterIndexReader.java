@@ -18,6 +18,7 @@ package org.apache.lucene.index;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -102,6 +103,10 @@ public class FilterIndexReader extends IndexReader {
   public int maxDoc() { return in.maxDoc(); }
 
   public Document document(int n) throws IOException { return in.document(n); }
+  public Document document(int n, FieldSelector fieldSelector)
+    throws IOException {
+    return in.document(n, fieldSelector);
+  }
 
   public boolean isDeleted(int n) { return in.isDeleted(n); }
   public boolean hasDeletions() { return in.hasDeletions(); }
@@ -115,6 +120,9 @@ public class FilterIndexReader extends IndexReader {
   public void norms(String f, byte[] bytes, int offset) throws IOException {
     in.norms(f, bytes, offset);
   }
+  public byte getMaxNorm(String f) throws IOException {
+    return in.getMaxNorm(f);
+  }
   protected void doSetNorm(int d, String f, byte b) throws IOException {
     in.setNorm(d, f, b);
   }
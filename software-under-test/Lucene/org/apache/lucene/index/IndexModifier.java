@@ -79,7 +79,9 @@ import org.apache.lucene.store.FSDirectory;
  * <p>While you can freely mix calls to add() and delete() using this class,
  * you should batch you calls for best performance. For example, if you
  * want to update 20 documents, you should first delete all those documents,
- * then add all the new documents.
+ * then add all the new documents.  Better still, replace each of them with
+ * {@link #updateDocument(Term, Document)}, whose deletes are buffered by the
+ * IndexWriter along with the added documents, so no IndexReader is opened.
  *
  * @author Daniel Naber
  */
@@ -242,6 +244,36 @@ public class IndexModifier {
     addDocument(doc, null);
   }
 
+  /**
+   * Replaces the documents containing <code>term</code> with
+   * <code>doc</code>, using the provided analyzer instead of the one specific
+   * in the constructor.  Unlike {@link #deleteDocuments(Term)} this does not
+   * switch to an IndexReader: the delete is buffered with the added document.
+   * @see IndexWriter#updateDocument(Term, Document, Analyzer)
+   * @throws IllegalStateException if the index is closed
+   */
+  public void updateDocument(Term term, Document doc, Analyzer docAnalyzer)
+    throws IOException {
+    synchronized(directory) {
+      assureOpen();
+      createIndexWriter();
+      if (docAnalyzer != null)
+        indexWriter.updateDocument(term, doc, docAnalyzer);
+      else
+        indexWriter.updateDocument(term, doc);
+    }
+  }
+
+  /**
+   * Replaces the documents containing <code>term</code> with
+   * <code>doc</code>.
+   * @see IndexWriter#updateDocument(Term, Document)
+   * @throws IllegalStateException if the index is closed
+   */
+  public void updateDocument(Term term, Document doc) throws IOException {
+    updateDocument(term, doc, null);
+  }
+
   /**
    * Deletes all documents containing <code>term</code>.
    * This is useful if one uses a document field to hold a unique ID string for
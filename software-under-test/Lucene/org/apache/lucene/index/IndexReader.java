@@ -18,6 +18,8 @@ package org.apache.lucene.index;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.search.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -29,7 +31,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Set;
 
 /** IndexReader is an abstract class, providing an interface for accessing an
@@ -119,6 +123,8 @@ public abstract class IndexReader {
   private Lock writeLock;
   private boolean stale;
   private boolean hasChanges;
+  private boolean closed;
+  private int refCount = 1;                       // shared by reopened readers
   
 
   /** Returns an IndexReader reading the index in an FSDirectory in the named
@@ -159,9 +165,160 @@ public abstract class IndexReader {
     }
   }
 
+  /**
+   * Returns a reader on the current version of the index.  If this reader is
+   * still current, or has uncommitted changes, it is returned itself.
+   * Otherwise the new segments file is read and a new reader is returned,
+   * which shares the already open segments that did not change with this
+   * reader, including their loaded norms, and only opens the segments that
+   * were added or changed since.  When the deletions of a segment changed,
+   * only they are re-read.
+   *
+   * <p>This reader is not closed and can still be searched, but it is no
+   * longer valid for delete, undelete, or setNorm operations.  Close it once
+   * it is not used anymore; files shared with the new reader stay open until
+   * both readers are closed.  The directory, if this reader was going to
+   * close it, is closed by the new reader instead.
+   *
+   * <pre>
+   * IndexReader newReader = reader.reopen();
+   * if (newReader != reader) {
+   *   reader.close();
+   *   reader = newReader;
+   * }
+   * </pre>
+   *
+   * @throws UnsupportedOperationException if this reader was not opened
+   *  by one of the static <code>open()</code> methods
+   * @throws IOException if the index cannot be read
+   */
+  public synchronized IndexReader reopen() throws IOException {
+    if (!directoryOwner)
+      throw new UnsupportedOperationException("only a reader returned by open() can be reopened");
+    if (closed)
+      throw new IOException("this IndexReader is closed");
+
+    if (hasChanges || isCurrent())
+      return this;
+
+    synchronized (directory) {			  // in- & inter-process sync
+      return (IndexReader)new Lock.With(
+          directory.makeLock(IndexWriter.COMMIT_LOCK_NAME),
+          IndexWriter.COMMIT_LOCK_TIMEOUT) {
+          public Object doBody() throws IOException {
+            SegmentInfos infos = new SegmentInfos();
+            infos.read(directory);
+            return reopen(infos);
+          }
+        }.run();
+    }
+  }
+
+  private IndexReader reopen(SegmentInfos infos) throws IOException {
+    IndexReader[] oldReaders = getSequentialSubReaders();
+    if (oldReaders == null)
+      oldReaders = new IndexReader[] {this};
+    int indexDivisor = getTermInfosIndexDivisor();
+
+    Hashtable segmentReaders = new Hashtable();
+    for (int i = 0; i < oldReaders.length; i++) {
+      if (oldReaders[i] instanceof SegmentReader) {
+        SegmentReader reader = (SegmentReader) oldReaders[i];
+        segmentReaders.put(reader.getSegmentName(), reader);
+      }
+    }
+
+    boolean optimized = infos.size() == 1;
+    IndexReader[] readers = new IndexReader[infos.size()];
+    IndexReader result = null;
+    try {
+      for (int i = 0; i < infos.size(); i++) {
+        SegmentInfo si = infos.info(i);
+        SegmentReader old = (SegmentReader) segmentReaders.get(si.name);
+        if (old != null) {                        // unless re-created since
+          SegmentInfo oldInfo = old.getSegmentInfo();
+          if (oldInfo.dir != si.dir || oldInfo.docCount != si.docCount)
+            old = null;
+        }
+        if (old == null)
+          readers[i] = optimized ? SegmentReader.get(infos, si, closeDirectory)
+                                 : SegmentReader.get(si);
+        else if (optimized)
+          readers[i] = old.reopenSegment(si, infos, closeDirectory, true);
+        else
+          readers[i] = old.reopenSegment(si, null, false, false);
+      }
+      IndexReader reader;
+      if (optimized)
+        reader = readers[0];
+      else
+        reader = new MultiReader(directory, infos, closeDirectory, readers);
+      reader.setTermInfosIndexDivisor(indexDivisor); // for new segments
+      result = reader;
+    } finally {
+      if (result == null) {                       // close what was opened
+        for (int i = 0; i < readers.length; i++) {
+          if (readers[i] != null)
+            readers[i].close();
+        }
+      }
+    }
+    closeDirectory = false;                       // now closed by result
+    return result;
+  }
+
   /** Returns the directory this index resides in. */
   public Directory directory() { return directory; }
 
+  /**
+   * Expert: Returns the readers whose documents this reader appends, in
+   * order, or null if this reader is not made of other readers.  This is
+   * used to load caches for each segment of an index separately.
+   */
+  public IndexReader[] getSequentialSubReaders() {
+    return null;
+  }
+
+  /**
+   * Expert: Returns the key under which caches such as the
+   * {@link org.apache.lucene.search.FieldCache} keep values loaded for
+   * this reader.  Readers on the same segment, as returned by
+   * {@link #reopen()}, share the key.
+   */
+  public Object getFieldCacheKey() {
+    return this;
+  }
+
+  /**
+   * Expert: Sets how many entries of each segment's terms index file are
+   * represented by one entry held in memory.  With a divisor of n the terms
+   * index takes n times less memory, but looking up a term may scan n times
+   * as many terms.  This needs no reindexing, but must be called before the
+   * terms index is loaded by the first lookup of a term.  Readers returned
+   * by {@link #reopen()} keep the divisor.
+   *
+   * @throws IllegalArgumentException if <code>indexDivisor</code> is not positive
+   * @throws IllegalStateException if the terms index has already been loaded
+   * @throws UnsupportedOperationException if this reader does not support it
+   */
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    checkTermInfosIndexDivisor(indexDivisor);
+  }
+
+  /** Throws the exception {@link #setTermInfosIndexDivisor(int)} would,
+   * without changing the divisor. */
+  void checkTermInfosIndexDivisor(int indexDivisor) {
+    throw new UnsupportedOperationException("this reader does not support a terms index divisor");
+  }
+
+  /**
+   * Expert: Returns the divisor set by {@link #setTermInfosIndexDivisor(int)},
+   * or 1 if this reader does not support it.
+   */
+  public int getTermInfosIndexDivisor() {
+    return 1;
+  }
+
   /** 
    * Returns the time the index in the named directory was last modified.
    * Do not use this to check whether the reader is still up-to-date, use
@@ -357,6 +514,35 @@ public abstract class IndexReader {
    <code>Document</code> in this index. */
   public abstract Document document(int n) throws IOException;
 
+  /**
+   * Returns the stored fields of the <code>n</code><sup>th</sup>
+   * <code>Document</code> in this index that <code>fieldSelector</code>
+   * selects, or all of them if it is null.  Fields selected for {@link
+   * FieldSelectorResult#LAZY_LOAD lazy loading} are read from the index when
+   * their value is first asked for, which must be before this reader is
+   * closed.
+   * <p>The default implementation reads the whole document and leaves out
+   * the fields not selected.  Subclasses skip them without reading them.
+   */
+  public Document document(int n, FieldSelector fieldSelector)
+    throws IOException {
+    Document doc = document(n);
+    if (fieldSelector == null)
+      return doc;
+    Document result = new Document();
+    Enumeration fields = doc.fields();
+    while (fields.hasMoreElements()) {
+      Field field = (Field)fields.nextElement();
+      FieldSelectorResult accept = fieldSelector.accept(field.name());
+      if (accept == FieldSelectorResult.NO_LOAD)
+        continue;
+      result.add(field);
+      if (accept == FieldSelectorResult.LOAD_AND_BREAK)
+        break;
+    }
+    return result;
+  }
+
   /** Returns true if document <i>n</i> has been deleted */
   public abstract boolean isDeleted(int n);
 
@@ -385,6 +571,26 @@ public abstract class IndexReader {
   public abstract void norms(String field, byte[] bytes, int offset)
     throws IOException;
 
+  /** Expert: Returns the largest of the byte-encoded normalization factors
+   * of the named field, as returned by {@link #norms(String)}, compared as
+   * unsigned bytes.  As {@link Similarity#decodeNorm(byte)} is monotonic,
+   * this encodes the largest factor.  Scorers use it to bound their scores.
+   * <p>This implementation scans the norms on every call.  The readers of
+   * segments keep the value with their norms, and update it when a norm is
+   * {@link #setNorm(int,String,byte) set}.
+   */
+  public byte getMaxNorm(String field) throws IOException {
+    return maxNorm(norms(field));
+  }
+
+  /** Returns the largest of <code>bytes</code>, compared as unsigned. */
+  static byte maxNorm(byte[] bytes) {
+    int max = 0;
+    for (int i = 0; i < bytes.length; i++)
+      max = Math.max(max, bytes[i] & 0xFF);
+    return (byte) max;
+  }
+
   /** Expert: Resets the normalization factor for the named field of the named
    * document.  The norm represents the product of the field's {@link
    * Field#setBoost(float) boost} and its {@link Similarity#lengthNorm(String,
@@ -622,12 +828,27 @@ public abstract class IndexReader {
    * Closes files associated with this index.
    * Also saves any new deletions to disk.
    * No other methods should be called after this has been called.
+   * Files shared with readers returned by {@link #reopen()} are closed
+   * once all of these readers are closed.
    */
   public final synchronized void close() throws IOException {
+    if (closed)
+      return;
     commit();
-    doClose();
-    if(closeDirectory)
-      directory.close();
+    closed = true;
+    decRef();
+  }
+
+  synchronized void incRef() {
+    refCount++;
+  }
+
+  synchronized void decRef() throws IOException {
+    if (--refCount == 0) {
+      doClose();
+      if(closeDirectory)
+        directory.close();
+    }
   }
 
   /** Implements close. */
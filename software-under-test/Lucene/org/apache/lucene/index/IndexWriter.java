@@ -19,6 +19,11 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.io.File;
 import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.lucene.store.Directory;
@@ -52,6 +57,31 @@ import org.apache.lucene.analysis.Analyzer;
   another IndexWriter on the same directory will lead to an IOException. The IOException
   is also thrown if an IndexReader on the same directory is used to delete documents
   from the index.
+
+  <p>Segment merges are run by a {@link MergeScheduler}.  The default
+  {@link SerialMergeScheduler} merges on the thread that adds the document;
+  with a {@link ConcurrentMergeScheduler} merges run on background threads
+  while <code>addDocument</code> keeps buffering new documents.  A merged
+  segment only becomes visible to readers once it is completely written and
+  the segments file referencing it has been committed.
+
+  <p>By default added documents are buffered as one-document segments in
+  RAM and merged into a new segment every <a
+  href="#setMaxBufferedDocs(int)"><b>maxBufferedDocs</b></a> documents.
+  With <a href="#setRAMBufferSizeMB(double)"><b>setRAMBufferSizeMB</b></a>
+  documents are instead buffered in a single in-memory segment that is
+  flushed when its size reaches the given amount of RAM, so that flushes
+  adapt to the size of the documents.  Each document is then tokenized on
+  the thread that adds it, and the writer is only locked to add the
+  inverted document to the buffer, so threads index in parallel.
+
+  <p>Documents are deleted by term with <a
+  href="#deleteDocuments(org.apache.lucene.index.Term)"><b>deleteDocuments</b></a>
+  and replaced with <a
+  href="#updateDocument(org.apache.lucene.index.Term, org.apache.lucene.document.Document)"><b>updateDocument</b></a>.
+  Deletes are buffered along with added documents and applied to each
+  segment when those are flushed, so an index can be updated without
+  closing the writer to delete with an IndexReader.
   
   @see IndexModifier IndexModifier supports the important methods of IndexWriter plus deletion
   */
@@ -100,6 +130,18 @@ public class IndexWriter {
    * Default value is 128. Change using {@link #setTermIndexInterval(int)}.
    */
   public final static int DEFAULT_TERM_INDEX_INTERVAL = 128;
+
+  /**
+   * Default value is 1,000. Change using {@link #setMaxBufferedDeleteTerms(int)}.
+   */
+  public final static int DEFAULT_MAX_BUFFERED_DELETE_TERMS = 1000;
+
+  /**
+   * Value for {@link #setRAMBufferSizeMB(double)} that flushes buffered
+   * documents by count, see {@link #setMaxBufferedDocs(int)}.  This is the
+   * default.
+   */
+  public final static double DISABLE_RAM_BUFFER = -1;
   
   private Directory directory;  // where this index resides
   private Analyzer analyzer;    // how to analyze text
@@ -107,17 +149,37 @@ public class IndexWriter {
   private Similarity similarity = Similarity.getDefault(); // how to normalize
 
   private SegmentInfos segmentInfos = new SegmentInfos(); // the segments
-  private final Directory ramDirectory = new RAMDirectory(); // for temp segs
+  private final RAMDirectory ramDirectory = new RAMDirectory(); // for temp segs
 
   private Lock writeLock;
 
+  private MergeScheduler mergeScheduler = new SerialMergeScheduler();
+  private LinkedList pendingMerges = new LinkedList(); // merges not yet started
+  private HashSet runningMerges = new HashSet();  // merges being executed
+  private HashSet mergingSegments = new HashSet(); // SegmentInfos being merged
+  private Throwable mergeException;               // from a background merge
+
   private int termIndexInterval = DEFAULT_TERM_INDEX_INTERVAL;
 
+  private double ramBufferSizeMB = DISABLE_RAM_BUFFER;
+  private DocumentWriter docWriter;     // buffers docs when flushing by RAM
+  private LinkedList freeDocWriters = new LinkedList(); // for one-doc segments
+
+  private long numAddedDocs;            // docs ever added by this writer
+  private long bufferFirstDoc;          // number of the first doc in docWriter
+  private HashMap bufferedDeleteTerms = new HashMap(); // Term -> docs added before
+  private HashMap flushDeleteTerms = new HashMap(); // as above, for buffered docs
+  private HashMap bufferedSegments = new HashMap(); // SegmentInfo -> its first doc
+  private int maxBufferedDeleteTerms = DEFAULT_MAX_BUFFERED_DELETE_TERMS;
+
   /** Use compound file setting. Defaults to true, minimizing the number of
    * files used.  Setting this to false may improve indexing performance, but
    * may also cause file handle problems.
    */
   private boolean useCompoundFile = true;
+
+  /** Block postings setting. Defaults to false. */
+  private boolean useBlockPostings = false;
   
   private boolean closeDir;
 
@@ -138,6 +200,28 @@ public class IndexWriter {
     useCompoundFile = value;
   }
 
+  /** Get the current setting of whether to write postings in blocks.
+   *  @see #setUseBlockPostings(boolean)
+   */
+  public boolean getUseBlockPostings() {
+    return useBlockPostings;
+  }
+
+  /** Expert: Setting to write the documents and frequencies of the postings
+   *  of new segments in bit-packed blocks of 128, which are decoded many
+   *  at a time, instead of one VInt per value.  Terms in fewer than 128
+   *  documents are written as before.  Each segment records how it was
+   *  written, so segments of both kinds can be searched and merged
+   *  together.
+   *
+   *  <p>This only saves space: on the index generated by
+   *  <code>test/PostingsBenchmark</code> the .frq files are about 21%
+   *  smaller, but postings are not decoded measurably faster than VInts.
+   */
+  public void setUseBlockPostings(boolean value) {
+    useBlockPostings = value;
+  }
+
   /** Expert: Set the Similarity implementation used by this IndexWriter.
    *
    * @see Similarity#setDefault(Similarity)
@@ -260,7 +344,7 @@ public class IndexWriter {
         new Lock.With(directory.makeLock(IndexWriter.COMMIT_LOCK_NAME), COMMIT_LOCK_TIMEOUT) {
             public Object doBody() throws IOException {
               if (create)
-                segmentInfos.write(directory);
+                createSegmentInfos();
               else
                 segmentInfos.read(directory);
               return null;
@@ -269,6 +353,34 @@ public class IndexWriter {
       }
   }
 
+  /** Writes an empty segments file.  If an index already exists, its
+   * segment counter is kept, so that no new segment reuses the name of an
+   * old one that readers may still have open, and its files are deleted. */
+  private final void createSegmentInfos() throws IOException {
+    SegmentInfos oldInfos = new SegmentInfos();
+    if (directory.fileExists(IndexFileNames.SEGMENTS)) {
+      oldInfos.read(directory);
+      segmentInfos.counter = oldInfos.counter;
+    }
+    segmentInfos.write(directory);
+
+    if (oldInfos.size() == 0)
+      return;
+    String[] names = directory.list();
+    Vector files = new Vector();
+    for (int i = 0; i < names.length; i++) {
+      for (int j = 0; j < oldInfos.size(); j++) {
+        String segment = oldInfos.info(j).name;
+        if (names[i].startsWith(segment + ".") ||
+            names[i].startsWith(segment + "_")) { // deletions & norms gens
+          files.addElement(names[i]);
+          break;
+        }
+      }
+    }
+    deleteFiles(files);
+  }
+
   /** Determines the largest number of documents ever merged by addDocument().
    * Small values (e.g., less than 10,000) are best for interactive indexing,
    * as this limits the length of pauses while indexing to a few seconds.
@@ -333,6 +445,65 @@ public class IndexWriter {
     return minMergeDocs;
   }
 
+  /** Determines the amount of RAM that may be used for buffering added
+   * documents before they are flushed as a new segment.  The documents are
+   * inverted into a single in-memory segment, which is written to the index
+   * directory once its postings and norms take more than this many
+   * megabytes.  Stored fields and term vectors are written to the directory
+   * as documents are added and do not count against the buffer.  When
+   * flushing by RAM usage, {@link #setMaxBufferedDocs(int)} only sets the
+   * size of the smallest segments that are merged.
+   *
+   * <p>Pass {@link #DISABLE_RAM_BUFFER}, the default, to flush every
+   * maxBufferedDocs documents instead.  Documents buffered under the
+   * previous setting are flushed when switching between the two.
+   *
+   * @throws IllegalArgumentException if ramBufferSizeMB is not positive and
+   * not DISABLE_RAM_BUFFER
+   */
+  public synchronized void setRAMBufferSizeMB(double ramBufferSizeMB)
+    throws IOException {
+    if (ramBufferSizeMB != DISABLE_RAM_BUFFER && ramBufferSizeMB <= 0.0)
+      throw new IllegalArgumentException("ramBufferSizeMB must be greater than 0.0");
+    if ((ramBufferSizeMB == DISABLE_RAM_BUFFER) !=
+        (this.ramBufferSizeMB == DISABLE_RAM_BUFFER)) {
+      waitForMerges();
+      flushRamSegments();
+      flushBufferedDocuments();
+    }
+    this.ramBufferSizeMB = ramBufferSizeMB;
+  }
+
+  /**
+   * @see #setRAMBufferSizeMB
+   */
+  public synchronized double getRAMBufferSizeMB() {
+    return ramBufferSizeMB;
+  }
+
+  /** Determines the number of terms that {@link #deleteDocuments(Term)} and
+   * {@link #updateDocument(Term,Document)} buffer before the deletes are
+   * applied to the segments of the index.  Buffered deletes are otherwise
+   * applied when added documents are flushed, before segments are merged,
+   * and by {@link #optimize()} and {@link #close()}.
+   *
+   * <p>The default value is 1000.
+   *
+   * @throws IllegalArgumentException if maxBufferedDeleteTerms is smaller than 1
+   */
+  public synchronized void setMaxBufferedDeleteTerms(int maxBufferedDeleteTerms) {
+    if (maxBufferedDeleteTerms < 1)
+      throw new IllegalArgumentException("maxBufferedDeleteTerms must at least be 1");
+    this.maxBufferedDeleteTerms = maxBufferedDeleteTerms;
+  }
+
+  /**
+   * @see #setMaxBufferedDeleteTerms
+   */
+  public synchronized int getMaxBufferedDeleteTerms() {
+    return maxBufferedDeleteTerms;
+  }
+
   /** Determines how often segment indices are merged by addDocument().  With
    * smaller values, less RAM is used while indexing, and searches on
    * unoptimized indices are faster, but indexing speed is slower.  With larger
@@ -356,6 +527,33 @@ public class IndexWriter {
     return mergeFactor;
   }
 
+  /** Expert: sets the {@link MergeScheduler} that runs the merges selected
+   * by this writer.  Merges already running are completed first, and the
+   * previous scheduler is closed.
+   *
+   * <p>The default is a {@link SerialMergeScheduler}.
+   */
+  public void setMergeScheduler(MergeScheduler mergeScheduler)
+    throws IOException {
+    if (mergeScheduler == null)
+      throw new IllegalArgumentException("mergeScheduler must not be null");
+    MergeScheduler old;
+    synchronized (this) {
+      waitForMerges();
+      old = this.mergeScheduler;
+      this.mergeScheduler = mergeScheduler;
+    }
+    if (old != mergeScheduler)
+      old.close();            // not synchronized: its threads need this writer
+  }
+
+  /**
+   * @see #setMergeScheduler
+   */
+  public MergeScheduler getMergeScheduler() {
+    return mergeScheduler;
+  }
+
   /** If non-null, information about merges and a message when
    * maxFieldLength is reached will be printed to this.
    */
@@ -370,16 +568,24 @@ public class IndexWriter {
     return infoStream;
   }
 
-  /** Flushes all changes to an index and closes all associated files. */
-  public synchronized void close() throws IOException {
-    flushRamSegments();
-    ramDirectory.close();
-    if (writeLock != null) {
-      writeLock.release();                          // release write lock
-      writeLock = null;
+  /** Flushes all changes to an index and closes all associated files.
+   * Waits for any merges still running in the background. */
+  public void close() throws IOException {
+    synchronized (this) {
+      waitForMerges();
+      flushRamSegments();
+      flushBufferedDocuments();
+      flushDeletes();
+      ramDirectory.close();
+      if (writeLock != null) {
+        writeLock.release();                        // release write lock
+        writeLock = null;
+      }
+      if(closeDir)
+        directory.close();
     }
-    if(closeDir)
-      directory.close();
+    mergeScheduler.close();   // not synchronized: its threads need this writer
+    throwMergeException();
   }
 
   /** Release the write lock, if needed. */
@@ -408,6 +614,8 @@ public class IndexWriter {
       SegmentInfo si = segmentInfos.info(i);
       count += si.docCount;
     }
+    if (docWriter != null)
+      count += docWriter.getNumDocs();
     return count;
   }
 
@@ -443,17 +651,232 @@ public class IndexWriter {
    * discarded.
    */
   public void addDocument(Document doc, Analyzer analyzer) throws IOException {
-    DocumentWriter dw =
-      new DocumentWriter(ramDirectory, analyzer, this);
+    addDocument(doc, analyzer, null);
+  }
+
+  /**
+   * Deletes all documents containing <code>term</code>.  The delete is
+   * buffered like added documents are and applied to each segment when they
+   * are flushed; it only affects documents added before it.
+   * @see #setMaxBufferedDeleteTerms(int)
+   */
+  public synchronized void deleteDocuments(Term term) throws IOException {
+    bufferDeleteTerm(term);
+  }
+
+  /**
+   * Replaces the documents containing <code>term</code> with
+   * <code>doc</code>: deletes them and then adds <code>doc</code>, as one
+   * operation.  Typically <code>term</code> holds a unique ID of the
+   * document.
+   * @see #deleteDocuments(Term)
+   */
+  public void updateDocument(Term term, Document doc) throws IOException {
+    addDocument(doc, analyzer, term);
+  }
+
+  /**
+   * Replaces the documents containing <code>term</code> with
+   * <code>doc</code>, using the provided analyzer instead of the value of
+   * {@link #getAnalyzer()}.
+   * @see #updateDocument(Term, Document)
+   */
+  public void updateDocument(Term term, Document doc, Analyzer analyzer)
+    throws IOException {
+    addDocument(doc, analyzer, term);
+  }
+
+  /** Adds a document, first deleting the documents containing
+   * <code>deleteTerm</code> unless it is null. */
+  private void addDocument(Document doc, Analyzer analyzer, Term deleteTerm)
+    throws IOException {
+    DocumentWriter dw;
+    boolean buffered;
+    synchronized (this) {
+      dw = freeDocWriters.isEmpty() ?
+        new DocumentWriter(ramDirectory, analyzer, this) :
+        (DocumentWriter) freeDocWriters.removeFirst();
+      buffered = ramBufferSizeMB != DISABLE_RAM_BUFFER;
+    }
     dw.setInfoStream(infoStream);
+    if (buffered) {
+      try {
+        dw.invert(doc, analyzer);               // without the lock
+        synchronized (this) {
+          bufferDocument(dw, deleteTerm);
+        }
+      } finally {
+        releaseDocWriter(dw);                   // reuse its buffers
+      }
+      return;
+    }
     String segmentName = newSegmentName();
-    dw.addDocument(segmentName, doc);
+    dw.bufferDocument(segmentName, doc, analyzer);
+    dw.flush();
     synchronized (this) {
-      segmentInfos.addElement(new SegmentInfo(segmentName, 1, ramDirectory));
+      freeDocWriters.addLast(dw);               // reuse its buffers
+      if (deleteTerm != null)
+        bufferDeleteTerm(deleteTerm);
+      addSegment(new SegmentInfo(segmentName, 1, ramDirectory), numAddedDocs++);
       maybeMergeSegments();
     }
   }
 
+  private final synchronized void releaseDocWriter(DocumentWriter dw) {
+    freeDocWriters.addLast(dw);
+  }
+
+  /** Adds a document inverted by <code>inverted</code> to the RAM buffer,
+   * flushing it if it is full. */
+  private final void bufferDocument(DocumentWriter inverted, Term deleteTerm)
+    throws IOException {
+    if (docWriter == null)
+      docWriter = new DocumentWriter(directory, analyzer, this);
+    docWriter.setInfoStream(infoStream);
+    String segment;
+    if (docWriter.getNumDocs() == 0) {
+      segment = newSegmentName();
+      bufferFirstDoc = numAddedDocs;
+    } else {
+      segment = docWriter.getSegment();
+    }
+    docWriter.bufferDocument(segment, inverted);
+    if (deleteTerm != null)
+      bufferDeleteTerm(deleteTerm);             // spares the doc just added
+    numAddedDocs++;
+    if (docWriter.ramBytesUsed() > ramBufferSizeMB * 1024 * 1024) {
+      flushBufferedDocuments();
+      maybeMergeSegments();
+    }
+  }
+
+  /** Writes the documents in the RAM buffer as a new segment and commits
+   * it. */
+  private final void flushBufferedDocuments() throws IOException {
+    if (docWriter == null || docWriter.getNumDocs() == 0)
+      return;
+    String segment = docWriter.getSegment();
+    int docCount = docWriter.flush();
+    if (infoStream != null)
+      infoStream.println("flushed " + docCount + " buffered docs into " + segment);
+
+    Vector files = null;
+    if (useCompoundFile)
+      files = docWriter.createCompoundFile(segment + ".cfs");
+    final Vector filesToDelete = files;
+    addSegment(new SegmentInfo(segment, docCount, directory), bufferFirstDoc);
+    applyDeletes();
+
+    synchronized (directory) {                 // in- & inter-process sync
+      new Lock.With(directory.makeLock(COMMIT_LOCK_NAME), COMMIT_LOCK_TIMEOUT) {
+          public Object doBody() throws IOException {
+            writeSegmentInfos();               // commit before deleting
+            if (filesToDelete != null)         // files now in the .cfs
+              deleteFiles(filesToDelete);
+            return null;
+          }
+        }.run();
+    }
+  }
+
+  /** Adds a segment of new documents, the first of which is numbered
+   * <code>firstDoc</code> among the documents added by this writer. */
+  private final void addSegment(SegmentInfo info, long firstDoc) {
+    if (bufferedDeleteTerms.size() > 0 || flushDeleteTerms.size() > 0)
+      bufferedSegments.put(info, new Long(firstDoc)); // some may not apply
+    segmentInfos.addElement(info);
+  }
+
+  /** Buffers a delete of the documents containing <code>term</code> that
+   * have been added so far, applying the buffered deletes if there are
+   * too many. */
+  private final void bufferDeleteTerm(Term term) throws IOException {
+    bufferedDeleteTerms.put(term, new Long(numAddedDocs));
+    if (bufferedDeleteTerms.size() >= maxBufferedDeleteTerms)
+      flushDeletes();
+  }
+
+  /** Applies the buffered deletes to the segments and commits them. */
+  private final synchronized void flushDeletes() throws IOException {
+    if (bufferedDeleteTerms.size() == 0)
+      return;
+    applyDeletes();
+    synchronized (directory) {                 // in- & inter-process sync
+      new Lock.With(directory.makeLock(COMMIT_LOCK_NAME), COMMIT_LOCK_TIMEOUT) {
+          public Object doBody() throws IOException {
+            writeSegmentInfos();
+            return null;
+          }
+        }.run();
+    }
+  }
+
+  /** Deletes the documents containing the buffered delete terms from each
+   * segment, sparing those added after a term was deleted.  Merges that
+   * may already have read a segment apply the terms again to the merged
+   * segment.  Terms that still concern documents in the RAM buffer are
+   * kept until it is flushed, and then only applied to the new segment. */
+  private final void applyDeletes() throws IOException {
+    if (bufferedDeleteTerms.size() == 0 && flushDeleteTerms.size() == 0)
+      return;
+    if (infoStream != null)
+      infoStream.println("applying " + bufferedDeleteTerms.size() +
+                         " buffered delete terms to " + segmentInfos.size() +
+                         " segments");
+    for (int i = 0; i < segmentInfos.size(); i++) {
+      SegmentInfo info = segmentInfos.info(i);
+      Long firstDoc = (Long) bufferedSegments.get(info);
+      if (bufferedDeleteTerms.size() > 0)
+        applyDeletes(info, bufferedDeleteTerms, firstDoc);
+      if (firstDoc != null && flushDeleteTerms.size() > 0) // flushed since
+        applyDeletes(info, flushDeleteTerms, firstDoc);
+    }
+    Iterator merges = runningMerges.iterator();
+    while (merges.hasNext())
+      ((OneMerge) merges.next()).deleteTerms.putAll(bufferedDeleteTerms);
+
+    bufferedSegments.clear();
+    flushDeleteTerms.putAll(bufferedDeleteTerms); // later limits are larger
+    bufferedDeleteTerms.clear();
+    if (docWriter == null || docWriter.getNumDocs() == 0) {
+      flushDeleteTerms.clear();
+    } else {
+      Iterator limits = flushDeleteTerms.values().iterator();
+      while (limits.hasNext())
+        if (((Long) limits.next()).longValue() <= bufferFirstDoc)
+          limits.remove();
+    }
+  }
+
+  /** Deletes from a segment the documents containing the keys of
+   * <code>terms</code>.  If <code>firstDoc</code> is not null, the segment
+   * holds documents added by this writer from that number on, and only
+   * those added before the number each term maps to are deleted. */
+  private final void applyDeletes(SegmentInfo info, Map terms, Long firstDoc)
+    throws IOException {
+    IndexReader reader = SegmentReader.get(info);
+    try {
+      Iterator entries = terms.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry entry = (Map.Entry) entries.next();
+        long limit = Long.MAX_VALUE;            // docs older than the delete
+        if (firstDoc != null)
+          limit = ((Long) entry.getValue()).longValue() - firstDoc.longValue();
+        if (limit <= 0)
+          continue;
+        TermDocs docs = reader.termDocs((Term) entry.getKey());
+        try {
+          while (docs.next() && docs.doc() < limit)
+            reader.deleteDocument(docs.doc());
+        } finally {
+          docs.close();
+        }
+      }
+    } finally {
+      reader.close();                           // writes the deletions
+    }
+  }
+
   final int getSegmentsCounter(){
     return segmentInfos.counter;
   }
@@ -505,7 +928,11 @@ public class IndexWriter {
   /** Merges all segments together into a single segment, optimizing an index
       for search. */
   public synchronized void optimize() throws IOException {
+    waitForMerges();
+    throwMergeException();
     flushRamSegments();
+    flushBufferedDocuments();
+    flushDeletes();
     while (segmentInfos.size() > 1 ||
            (segmentInfos.size() == 1 &&
             (SegmentReader.hasDeletions(segmentInfos.info(0)) ||
@@ -628,8 +1055,24 @@ public class IndexWriter {
     mergeSegments(minSegment);
   }
 
-  /** Incremental segment merger.  */
+  /** Incremental segment merger.  Selects the merges that are due and hands
+   * them to the {@link MergeScheduler}.  If merges are queued faster than the
+   * scheduler can run them, the calling thread waits. */
   private final void maybeMergeSegments() throws IOException {
+    throwMergeException();
+    updatePendingMerges();
+    mergeScheduler.merge(this);
+    while (pendingMerges.size() > mergeFactor) {  // merges falling behind
+      doWait();
+      mergeScheduler.merge(this);
+    }
+  }
+
+  /** Queues a merge for each level whose smallest segments add up to the
+   * level's target size.  Segments already being merged are not
+   * considered; the levels above a running merge are examined again once it
+   * has been committed. */
+  private final void updatePendingMerges() {
     long targetMergeDocs = minMergeDocs;
     while (targetMergeDocs <= maxMergeDocs) {
       // find segments smaller than current target size
@@ -637,20 +1080,39 @@ public class IndexWriter {
       int mergeDocs = 0;
       while (--minSegment >= 0) {
         SegmentInfo si = segmentInfos.info(minSegment);
-        if (si.docCount >= targetMergeDocs)
+        if (si.docCount >= targetMergeDocs || mergingSegments.contains(si))
           break;
         mergeDocs += si.docCount;
       }
 
       if (mergeDocs >= targetMergeDocs)		  // found a merge to do
-        mergeSegments(minSegment+1);
-      else
-        break;
+        pendingMerges.addLast(newMerge(minSegment+1, segmentInfos.size(), true));
 
       targetMergeDocs *= mergeFactor;		  // increase target size
     }
   }
 
+  /** Expert: returns the next pending merge and marks it as running, or
+   * null if there is none.  Called by the {@link MergeScheduler}. */
+  public synchronized OneMerge getNextMerge() {
+    if (pendingMerges.size() == 0)
+      return null;
+    OneMerge merge = (OneMerge) pendingMerges.removeFirst();
+    runningMerges.add(merge);
+    return merge;
+  }
+
+  /** Creates a merge of the named range of segments and reserves them so
+   * that no other merge selects them. */
+  private final OneMerge newMerge(int minSegment, int end, boolean cascade) {
+    SegmentInfo[] segments = new SegmentInfo[end - minSegment];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = segmentInfos.info(minSegment + i);
+      mergingSegments.add(segments[i]);
+    }
+    return new OneMerge(segments, newSegmentName(), useCompoundFile, cascade);
+  }
+
   /** Pops segments off of segmentInfos stack down to minSegment, merges them,
     and pushes the merged index onto the top of the segmentInfos stack. */
   private final void mergeSegments(int minSegment)
@@ -658,63 +1120,143 @@ public class IndexWriter {
     mergeSegments(minSegment, segmentInfos.size());
   }
 
-  /** Merges the named range of segments, replacing them in the stack with a
-   * single segment. */
+  /** Merges the named range of segments on the calling thread, replacing
+   * them in the stack with a single segment. */
   private final void mergeSegments(int minSegment, int end)
     throws IOException {
-    final String mergedName = newSegmentName();
-    if (infoStream != null) infoStream.print("merging segments");
-    SegmentMerger merger = new SegmentMerger(this, mergedName);
+    OneMerge merge = newMerge(minSegment, end, false);
+    runningMerges.add(merge);
+    merge(merge);
+  }
+
+  /** Expert: merges the segments of <code>merge</code> into a new segment and
+   * commits it.  This may run on a background thread: the writer is only
+   * locked while the merged segment replaces its sources in the segments
+   * file.  The merged segment, including its compound file, is completely
+   * written before it is committed, and the old segments are deleted only
+   * after the commit, so a crash at any point leaves a consistent index. */
+  public final void merge(OneMerge merge) throws IOException {
+    boolean success = false;
+    try {
+      synchronized (this) {
+        flushDeletes();                   // so the merged segments have them
+        merge.deleteTerms.clear();        // and this merge has not read them
+      }
+      SegmentMerger merger = new SegmentMerger(this, merge.name);
+      final Vector segmentsToDelete = new Vector();
+      int mergedDocCount;
+      try {
+        for (int i = 0; i < merge.segments.length; i++) {
+          IndexReader reader = SegmentReader.get(merge.segments[i]);
+          merger.add(reader);
+          if ((reader.directory() == this.directory) || // if we own the directory
+              (reader.directory() == this.ramDirectory))
+            segmentsToDelete.addElement(reader);   // queue segment for deletion
+        }
+        mergedDocCount = merger.merge();
+      } finally {
+        // close readers before we attempt to delete now-obsolete segments
+        merger.closeReaders();
+      }
 
-    final Vector segmentsToDelete = new Vector();
-    for (int i = minSegment; i < end; i++) {
-      SegmentInfo si = segmentInfos.info(i);
       if (infoStream != null)
-        infoStream.print(" " + si.name + " (" + si.docCount + " docs)");
-      IndexReader reader = SegmentReader.get(si);
-      merger.add(reader);
-      if ((reader.directory() == this.directory) || // if we own the directory
-          (reader.directory() == this.ramDirectory))
-        segmentsToDelete.addElement(reader);   // queue segment for deletion
-    }
+        infoStream.println("merging segments " + merge + " (" + mergedDocCount + " docs)");
 
-    int mergedDocCount = merger.merge();
+      Vector filesToDelete = null;
+      if (merge.useCompoundFile)
+        filesToDelete = merger.createCompoundFile(merge.name + ".cfs");
 
-    if (infoStream != null) {
-      infoStream.println(" into "+mergedName+" ("+mergedDocCount+" docs)");
+      commitMerge(merge, new SegmentInfo(merge.name, mergedDocCount, directory),
+                  segmentsToDelete, filesToDelete);
+      success = true;
+    } finally {
+      mergeFinished(merge, success);
     }
+  }
 
-    for (int i = end-1; i >= minSegment; i--)     // remove old infos & add new
-      segmentInfos.remove(i);
-    segmentInfos.addElement(new SegmentInfo(mergedName, mergedDocCount,
-                                            directory));
-
-    // close readers before we attempt to delete now-obsolete segments
-    merger.closeReaders();
+  /** Replaces the merged segments with <code>info</code> and commits. */
+  private final synchronized void commitMerge(OneMerge merge, SegmentInfo info,
+                                              final Vector segmentsToDelete,
+                                              final Vector filesToDelete)
+    throws IOException {
+    SegmentInfo[] segments = merge.segments;
+    int start = segmentInfos.indexOf(segments[0]);
+    for (int i = 0; i < segments.length; i++)
+      if (start < 0 || start + i >= segmentInfos.size() ||
+          segmentInfos.info(start + i) != segments[i])
+        throw new IllegalStateException("segments changed during merge: " + merge);
+
+    for (int i = segments.length-1; i >= 0; i--)  // remove old infos & add new
+      segmentInfos.removeElementAt(start + i);
+    segmentInfos.insertElementAt(info, start);
+    if (merge.deleteTerms.size() > 0)      // deleted while the merge ran
+      applyDeletes(info, merge.deleteTerms, null);
 
     synchronized (directory) {                 // in- & inter-process sync
       new Lock.With(directory.makeLock(COMMIT_LOCK_NAME), COMMIT_LOCK_TIMEOUT) {
           public Object doBody() throws IOException {
-            segmentInfos.write(directory);     // commit before deleting
+            writeSegmentInfos();               // commit before deleting
             deleteSegments(segmentsToDelete);  // delete now-unused segments
+            if (filesToDelete != null)         // and files now in the .cfs
+              deleteFiles(filesToDelete);
             return null;
           }
         }.run();
     }
-    
-    if (useCompoundFile) {
-      final Vector filesToDelete = merger.createCompoundFile(mergedName + ".tmp");
-      synchronized (directory) { // in- & inter-process sync
-        new Lock.With(directory.makeLock(COMMIT_LOCK_NAME), COMMIT_LOCK_TIMEOUT) {
-          public Object doBody() throws IOException {
-            // make compound file visible for SegmentReaders
-            directory.renameFile(mergedName + ".tmp", mergedName + ".cfs");
-            // delete now unused files of segment 
-            deleteFiles(filesToDelete);   
-            return null;
-          }
-        }.run();
-      }
+  }
+
+  /** Releases the segments of a merge and looks for follow-up merges. */
+  private final synchronized void mergeFinished(OneMerge merge, boolean success) {
+    runningMerges.remove(merge);
+    for (int i = 0; i < merge.segments.length; i++)
+      mergingSegments.remove(merge.segments[i]);
+    if (success && merge.cascade)
+      updatePendingMerges();
+    notifyAll();
+  }
+
+  /** Writes the segments file.  Buffered segments that are still in RAM
+   * always sit at the end of the stack and are not part of the commit. */
+  private final void writeSegmentInfos() throws IOException {
+    int count = 0;
+    while (count < segmentInfos.size() &&
+           segmentInfos.info(count).dir != ramDirectory)
+      count++;
+    segmentInfos.write(directory, count);
+  }
+
+  /** Waits until all pending and running merges have completed. */
+  private final synchronized void waitForMerges() throws IOException {
+    mergeScheduler.merge(this);
+    while (pendingMerges.size() > 0 || runningMerges.size() > 0) {
+      doWait();
+      mergeScheduler.merge(this);
+    }
+  }
+
+  private final void doWait() throws IOException {
+    try {
+      wait();
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    }
+  }
+
+  /** Records an exception hit by a merge running on a background thread. */
+  synchronized void handleMergeException(Throwable t) {
+    if (mergeException == null)
+      mergeException = t;
+    notifyAll();
+  }
+
+  /** Rethrows, once, an exception hit by a background merge. */
+  private final synchronized void throwMergeException() throws IOException {
+    if (mergeException != null) {
+      Throwable t = mergeException;
+      mergeException = null;
+      IOException e = new IOException("background merge hit exception: " + t);
+      e.initCause(t);
+      throw e;
     }
   }
 
@@ -730,6 +1272,7 @@ public class IndexWriter {
 
     deleteFiles(readDeleteableFiles(), deletable); // try to delete deleteable
 
+    poolRamSegments(segments);
     for (int i = 0; i < segments.size(); i++) {
       SegmentReader reader = (SegmentReader)segments.elementAt(i);
       if (reader.directory() == this.directory)
@@ -741,6 +1284,29 @@ public class IndexWriter {
     writeDeleteableFiles(deletable);		  // note files we can't delete
   }
   
+  /** Lets the RAM directory keep the blocks of the buffered segments among
+   * <code>segments</code> to hold the next ones, but no more.  Temp segments
+   * are deleted only once their readers are closed, so their blocks may be
+   * recycled. */
+  private final void poolRamSegments(Vector segments) throws IOException {
+    long blockSize = ramDirectory.getBlockSize();
+    long bytes = 0;
+    boolean inRam = false;
+    for (int i = 0; i < segments.size(); i++) {
+      SegmentReader reader = (SegmentReader)segments.elementAt(i);
+      if (reader.directory() != ramDirectory)
+        continue;
+      inRam = true;
+      Vector files = reader.files();
+      for (int j = 0; j < files.size(); j++) {
+        long length = ramDirectory.fileLength((String)files.elementAt(j));
+        bytes += (length + blockSize - 1) / blockSize * blockSize;
+      }
+    }
+    if (inRam)
+      ramDirectory.setMaxPooledBytes(bytes);
+  }
+
   private final void deleteFiles(Vector files) throws IOException {
     Vector deletable = new Vector();
     deleteFiles(readDeleteableFiles(), deletable); // try to delete deleteable
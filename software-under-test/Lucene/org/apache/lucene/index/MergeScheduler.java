@@ -0,0 +1,41 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** Expert: {@link IndexWriter} uses an instance of this class
+ * to run the segment merges it selects while documents are added.
+ * The merges are taken one at a time from
+ * {@link IndexWriter#getNextMerge()} and executed with
+ * {@link IndexWriter#merge(OneMerge)}.
+ *
+ * @see SerialMergeScheduler
+ * @see ConcurrentMergeScheduler
+ */
+public abstract class MergeScheduler {
+
+  /** Runs the merges currently pending in <code>writer</code>.  Called by
+   * the writer, while it is locked, whenever it has selected new merges.
+   * An implementation takes them with {@link IndexWriter#getNextMerge()}
+   * until that returns null and passes each, on this or another thread,
+   * to {@link IndexWriter#merge(OneMerge)}. */
+  public abstract void merge(IndexWriter writer) throws IOException;
+
+  /** Closes this scheduler, waiting for running merges to finish. */
+  public abstract void close() throws IOException;
+}
@@ -18,6 +18,7 @@ package org.apache.lucene.index;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.store.Directory;
 
 import java.io.IOException;
@@ -30,10 +31,11 @@ import java.util.*;
 public class MultiReader extends IndexReader {
   private IndexReader[] subReaders;
   private int[] starts;                           // 1st docno for each segment
-  private Hashtable normsCache = new Hashtable();
+  private volatile Map normsCache = new HashMap(); // copied on write
   private int maxDoc = 0;
-  private int numDocs = -1;
+  private volatile int numDocs = -1;
   private boolean hasDeletions = false;
+  private int termInfosIndexDivisor = 1;
 
  /**
   * <p>Construct a MultiReader aggregating the named set of (sub)readers.
@@ -85,14 +87,19 @@ public class MultiReader extends IndexReader {
     return subReaders[i].getTermFreqVector(n - starts[i], field);
   }
 
-  public synchronized int numDocs() {
-    if (numDocs == -1) {        // check cache
-      int n = 0;                // cache miss--recompute
-      for (int i = 0; i < subReaders.length; i++)
-        n += subReaders[i].numDocs();      // sum from readers
-      numDocs = n;
+  public int numDocs() {
+    int n = numDocs;
+    if (n != -1)                // check cache
+      return n;
+    synchronized (this) {       // not while deleting
+      if (numDocs == -1) {
+        n = 0;                  // cache miss--recompute
+        for (int i = 0; i < subReaders.length; i++)
+          n += subReaders[i].numDocs();    // sum from readers
+        numDocs = n;
+      }
+      return numDocs;
     }
-    return numDocs;
   }
 
   public int maxDoc() {
@@ -104,6 +111,12 @@ public class MultiReader extends IndexReader {
     return subReaders[i].document(n - starts[i]);    // dispatch to segment reader
   }
 
+  public Document document(int n, FieldSelector fieldSelector)
+    throws IOException {
+    int i = readerIndex(n);                          // find segment num
+    return subReaders[i].document(n - starts[i], fieldSelector);
+  }
+
   public boolean isDeleted(int n) {
     int i = readerIndex(n);                           // find segment num
     return subReaders[i].isDeleted(n - starts[i]);    // dispatch to segment reader
@@ -153,40 +166,61 @@ public class MultiReader extends IndexReader {
     return false;
   }
 
-  private byte[] ones;
+  private volatile byte[] ones;
   private byte[] fakeNorms() {
-    if (ones==null) ones=SegmentReader.createFakeNorms(maxDoc());
-    return ones;
+    byte[] bytes = ones;
+    if (bytes==null) ones=bytes=SegmentReader.createFakeNorms(maxDoc());
+    return bytes;
   }
 
-  public synchronized byte[] norms(String field) throws IOException {
+  public byte[] norms(String field) throws IOException {
     byte[] bytes = (byte[])normsCache.get(field);
     if (bytes != null)
       return bytes;          // cache hit
     if (!hasNorms(field))
       return fakeNorms();
 
-    bytes = new byte[maxDoc()];
-    for (int i = 0; i < subReaders.length; i++)
-      subReaders[i].norms(field, bytes, starts[i]);
-    normsCache.put(field, bytes);      // update cache
+    synchronized (this) {    // not while setting norms
+      bytes = (byte[])normsCache.get(field);
+      if (bytes != null)
+        return bytes;
+      bytes = new byte[maxDoc()];
+      for (int i = 0; i < subReaders.length; i++)
+        subReaders[i].norms(field, bytes, starts[i]);
+      Map cache = new HashMap(normsCache);
+      cache.put(field, bytes);
+      normsCache = cache;    // update cache
+    }
     return bytes;
   }
 
-  public synchronized void norms(String field, byte[] result, int offset)
+  public void norms(String field, byte[] result, int offset)
     throws IOException {
     byte[] bytes = (byte[])normsCache.get(field);
     if (bytes==null && !hasNorms(field)) bytes=fakeNorms();
-    if (bytes != null)                            // cache hit
+    if (bytes != null) {                          // cache hit
       System.arraycopy(bytes, 0, result, offset, maxDoc());
+      return;
+    }
 
     for (int i = 0; i < subReaders.length; i++)      // read from segments
       subReaders[i].norms(field, result, offset + starts[i]);
   }
 
+  public byte getMaxNorm(String field) throws IOException {
+    if (!hasNorms(field))
+      return super.getMaxNorm(field);             // fake norms
+    int max = 0;
+    for (int i = 0; i < subReaders.length; i++)
+      max = Math.max(max, subReaders[i].getMaxNorm(field) & 0xFF);
+    return (byte) max;
+  }
+
   protected void doSetNorm(int n, String field, byte value)
     throws IOException {
-    normsCache.remove(field);                         // clear cache
+    Map cache = new HashMap(normsCache);
+    cache.remove(field);
+    normsCache = cache;                               // clear cache
     int i = readerIndex(n);                           // find segment num
     subReaders[i].setNorm(n-starts[i], field, value); // dispatch
   }
@@ -219,6 +253,28 @@ public class MultiReader extends IndexReader {
       subReaders[i].commit();
   }
 
+  public IndexReader[] getSequentialSubReaders() {
+    return subReaders;
+  }
+
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    checkTermInfosIndexDivisor(indexDivisor);     // all or none are changed
+    for (int i = 0; i < subReaders.length; i++)
+      subReaders[i].setTermInfosIndexDivisor(indexDivisor);
+    termInfosIndexDivisor = indexDivisor;
+  }
+
+  void checkTermInfosIndexDivisor(int indexDivisor) {
+    if (indexDivisor < 1)
+      throw new IllegalArgumentException("indexDivisor must be > 0: got " + indexDivisor);
+    for (int i = 0; i < subReaders.length; i++)
+      subReaders[i].checkTermInfosIndexDivisor(indexDivisor);
+  }
+
+  public int getTermInfosIndexDivisor() {
+    return termInfosIndexDivisor;
+  }
+
   protected synchronized void doClose() throws IOException {
     for (int i = 0; i < subReaders.length; i++)
       subReaders[i].close();
@@ -0,0 +1,52 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+
+/** Expert: a merge of a contiguous range of segments into one new segment,
+ * as selected by {@link IndexWriter} and run by a {@link MergeScheduler}.
+ * A scheduler only passes instances from
+ * {@link IndexWriter#getNextMerge()} back to
+ * {@link IndexWriter#merge(OneMerge)}.
+ */
+public final class OneMerge {
+  final SegmentInfo[] segments;                   // segments to merge, in order
+  final String name;                              // name of the merged segment
+  final boolean useCompoundFile;
+  final boolean cascade;                          // look for follow-up merges?
+  final HashMap deleteTerms = new HashMap();      // to apply to the merged segment
+
+  OneMerge(SegmentInfo[] segments, String name, boolean useCompoundFile,
+           boolean cascade) {
+    this.segments = segments;
+    this.name = name;
+    this.useCompoundFile = useCompoundFile;
+    this.cascade = cascade;
+  }
+
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    for (int i = 0; i < segments.length; i++) {
+      if (i > 0) buffer.append(' ');
+      buffer.append(segments[i].name);
+      buffer.append(" (").append(segments[i].docCount).append(" docs)");
+    }
+    buffer.append(" into ").append(name);
+    return buffer.toString();
+  }
+}
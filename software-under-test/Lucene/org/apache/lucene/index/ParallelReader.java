@@ -30,6 +30,7 @@ import java.util.TreeMap;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
 
 /** An IndexReader which reads multiple, parallel indexes.  Each index added
  * must have the same number of documents, but typically each contains
@@ -133,10 +134,15 @@ public class ParallelReader extends IndexReader {
 
   // append fields from storedFieldReaders
   public Document document(int n) throws IOException {
+    return document(n, null);
+  }
+
+  public Document document(int n, FieldSelector fieldSelector)
+    throws IOException {
     Document result = new Document();
     for (int i = 0; i < storedFieldReaders.size(); i++) {
       IndexReader reader = (IndexReader)storedFieldReaders.get(i);
-      Enumeration fields = reader.document(n).fields();
+      Enumeration fields = reader.document(n, fieldSelector).fields();
       while (fields.hasMoreElements()) {
         result.add((Field)fields.nextElement());
       }
@@ -178,6 +184,10 @@ public class ParallelReader extends IndexReader {
      ((IndexReader)fieldToReader.get(field)).norms(field, result, offset);
   }
 
+  public byte getMaxNorm(String field) throws IOException {
+    return ((IndexReader)fieldToReader.get(field)).getMaxNorm(field);
+  }
+
   protected void doSetNorm(int n, String field, byte value)
     throws IOException {
     ((IndexReader)fieldToReader.get(field)).doSetNorm(n, field, value);
@@ -22,6 +22,8 @@ final class SegmentInfo {
   public String name;				  // unique name in dir
   public int docCount;				  // number of docs in seg
   public Directory dir;				  // where segment resides
+  long delGen;					  // bumped when deletions change
+  long normGen;					  // bumped when norms change
 
   public SegmentInfo(String name, int docCount, Directory dir) {
     this.name = name;
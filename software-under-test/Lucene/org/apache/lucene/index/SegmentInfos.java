@@ -28,6 +28,13 @@ final class SegmentInfos extends Vector {
   /** The file format version, a negative number. */
   /* Works since counter, the old 1st entry, is always >= 0 */
   public static final int FORMAT = -1;
+
+  /** This format adds the deletions and norms generations of each segment,
+   * which tell readers whether a segment changed. */
+  public static final int FORMAT_GENERATIONS = -2;
+
+  /* The format written by this code. */
+  static final int CURRENT_FORMAT = FORMAT_GENERATIONS;
   
   public int counter = 0;    // used to name new segments
   /**
@@ -47,7 +54,7 @@ final class SegmentInfos extends Vector {
       int format = input.readInt();
       if(format < 0){     // file contains explicit format info
         // check that it is a format we can understand
-        if (format < FORMAT)
+        if (format < CURRENT_FORMAT)
           throw new IOException("Unknown format version: " + format);
         version = input.readLong(); // read version
         counter = input.readInt(); // read counter
@@ -59,6 +66,10 @@ final class SegmentInfos extends Vector {
       for (int i = input.readInt(); i > 0; i--) { // read segmentInfos
         SegmentInfo si =
           new SegmentInfo(input.readString(), input.readInt(), directory);
+        if (format <= FORMAT_GENERATIONS) {
+          si.delGen = input.readLong();
+          si.normGen = input.readLong();
+        }
         addElement(si);
       }
       
@@ -75,16 +86,24 @@ final class SegmentInfos extends Vector {
   }
 
   public final void write(Directory directory) throws IOException {
+    write(directory, size());
+  }
+
+  /** Writes only the first <code>count</code> segments.  IndexWriter uses
+   * this to leave out buffered segments that have not been flushed yet. */
+  final void write(Directory directory, int count) throws IOException {
     IndexOutput output = directory.createOutput("segments.new");
     try {
-      output.writeInt(FORMAT); // write FORMAT
+      output.writeInt(CURRENT_FORMAT); // write FORMAT
       output.writeLong(++version); // every write changes the index
       output.writeInt(counter); // write counter
-      output.writeInt(size()); // write infos
-      for (int i = 0; i < size(); i++) {
+      output.writeInt(count); // write infos
+      for (int i = 0; i < count; i++) {
         SegmentInfo si = info(i);
         output.writeString(si.name);
         output.writeInt(si.docCount);
+        output.writeLong(si.delGen);
+        output.writeLong(si.normGen);
       }         
     }
     finally {
@@ -114,7 +133,7 @@ final class SegmentInfos extends Vector {
     try {
       format = input.readInt();
       if(format < 0){
-        if (format < FORMAT)
+        if (format < CURRENT_FORMAT)
           throw new IOException("Unknown format version: " + format);
         version = input.readLong(); // read version
       }
@@ -23,7 +23,6 @@ import java.io.IOException;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IndexOutput;
-import org.apache.lucene.store.RAMOutputStream;
 
 /**
  * The SegmentMerger class combines two or more Segments, represented by an IndexReader ({@link #add},
@@ -40,6 +39,7 @@ final class SegmentMerger {
   private Directory directory;
   private String segment;
   private int termIndexInterval = IndexWriter.DEFAULT_TERM_INDEX_INTERVAL;
+  private boolean useBlockPostings = false;
 
   private Vector readers = new Vector();
   private FieldInfos fieldInfos;
@@ -58,6 +58,7 @@ final class SegmentMerger {
     directory = writer.getDirectory();
     segment = name;
     termIndexInterval = writer.getTermIndexInterval();
+    useBlockPostings = writer.getUseBlockPostings();
   }
 
   /**
@@ -221,6 +222,8 @@ final class SegmentMerger {
   private IndexOutput proxOutput = null;
   private TermInfosWriter termInfosWriter = null;
   private int skipInterval;
+  private SkipListWriter skipListWriter;
+  private DocFreqWriter docFreqWriter;
   private SegmentMergeQueue queue = null;
 
   private final void mergeTerms() throws IOException {
@@ -229,8 +232,12 @@ final class SegmentMerger {
       proxOutput = directory.createOutput(segment + ".prx");
       termInfosWriter =
               new TermInfosWriter(directory, segment, fieldInfos,
-                                  termIndexInterval);
+                                  termIndexInterval, useBlockPostings
+                                  ? TermInfosWriter.POSTINGS_BLOCK_SIZE : 0);
       skipInterval = termInfosWriter.skipInterval;
+      skipListWriter = new SkipListWriter(skipInterval,
+                                          termInfosWriter.maxSkipLevels);
+      docFreqWriter = new DocFreqWriter(termInfosWriter.postingsBlockSize);
       queue = new SegmentMergeQueue(readers.size());
 
       mergeTermInfos();
@@ -297,7 +304,7 @@ final class SegmentMerger {
 
     int df = appendPostings(smis, n);		  // append posting data
 
-    long skipPointer = writeSkip();
+    long skipPointer = skipListWriter.writeSkip(freqOutput);
 
     if (df > 0) {
       // add an entry to the dictionary with pointers to prox and freq files
@@ -318,7 +325,9 @@ final class SegmentMerger {
           throws IOException {
     int lastDoc = 0;
     int df = 0;					  // number of docs w/ term
-    resetSkip();
+    skipListWriter.resetSkip(freqOutput.getFilePointer(),
+                             proxOutput.getFilePointer());
+    docFreqWriter.startTerm(freqOutput);
     for (int i = 0; i < n; i++) {
       SegmentMergeInfo smi = smis[i];
       TermPositions postings = smi.getPositions();
@@ -337,19 +346,14 @@ final class SegmentMerger {
         df++;
 
         if ((df % skipInterval) == 0) {
-          bufferSkip(lastDoc);
+          skipListWriter.bufferSkip(lastDoc, freqOutput.getFilePointer(),
+                                    proxOutput.getFilePointer());
         }
 
-        int docCode = (doc - lastDoc) << 1;	  // use low bit to flag freq=1
         lastDoc = doc;
 
         int freq = postings.freq();
-        if (freq == 1) {
-          freqOutput.writeVInt(docCode | 1);	  // write doc & freq=1
-        } else {
-          freqOutput.writeVInt(docCode);	  // write doc
-          freqOutput.writeVInt(freq);		  // write frequency in doc
-        }
+        docFreqWriter.addDoc(doc, freq);          // write doc & freq
 
         int lastPosition = 0;			  // write position deltas
         for (int j = 0; j < freq; j++) {
@@ -359,40 +363,10 @@ final class SegmentMerger {
         }
       }
     }
+    docFreqWriter.finishTerm();
     return df;
   }
 
-  private RAMOutputStream skipBuffer = new RAMOutputStream();
-  private int lastSkipDoc;
-  private long lastSkipFreqPointer;
-  private long lastSkipProxPointer;
-
-  private void resetSkip() {
-    skipBuffer.reset();
-    lastSkipDoc = 0;
-    lastSkipFreqPointer = freqOutput.getFilePointer();
-    lastSkipProxPointer = proxOutput.getFilePointer();
-  }
-
-  private void bufferSkip(int doc) throws IOException {
-    long freqPointer = freqOutput.getFilePointer();
-    long proxPointer = proxOutput.getFilePointer();
-
-    skipBuffer.writeVInt(doc - lastSkipDoc);
-    skipBuffer.writeVInt((int) (freqPointer - lastSkipFreqPointer));
-    skipBuffer.writeVInt((int) (proxPointer - lastSkipProxPointer));
-
-    lastSkipDoc = doc;
-    lastSkipFreqPointer = freqPointer;
-    lastSkipProxPointer = proxPointer;
-  }
-
-  private long writeSkip() throws IOException {
-    long skipPointer = freqOutput.getFilePointer();
-    skipBuffer.writeTo(freqOutput);
-    return skipPointer;
-  }
-
   private void mergeNorms() throws IOException {
     for (int i = 0; i < fieldInfos.size(); i++) {
       FieldInfo fi = fieldInfos.fieldInfo(i);
@@ -21,6 +21,7 @@ import java.util.*;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.Directory;
@@ -32,15 +33,25 @@ import org.apache.lucene.search.DefaultSimilarity;
  */
 class SegmentReader extends IndexReader {
   private String segment;
+  private SegmentInfo si;
+
+  // the reader which owns the files shared by readers produced by reopen
+  private SegmentReader origin = null;
 
   FieldInfos fieldInfos;
   private FieldsReader fieldsReader;
+  private ThreadLocal fieldsReaderLocal = new ThreadLocal();
 
   TermInfosReader tis;
   TermVectorsReader termVectorsReaderOrig = null;
   ThreadLocal termVectorsLocal = new ThreadLocal();
 
-  BitVector deletedDocs = null;
+  // Deletions, norms and stored fields are read without locking.  Changes
+  // are made under the lock of the reader, and publish a vector or array
+  // only once it is complete: a copy, if the old one is shared.
+  volatile BitVector deletedDocs = null;
+  private volatile int numDeleted = 0;          // bits set in deletedDocs
+  private boolean deletedDocsShared = false;    // copy before modifying
   private boolean deletedDocsDirty = false;
   private boolean normsDirty = false;
   private boolean undeleteAll = false;
@@ -59,7 +70,9 @@ class SegmentReader extends IndexReader {
     }
 
     private IndexInput in;
-    private byte[] bytes;
+    private volatile byte[] bytes;
+    private volatile int maxNorm = -1;            // unsigned, -1 if unknown
+    private boolean shared;                       // copy bytes before modifying
     private boolean dirty;
     private int number;
 
@@ -83,7 +96,7 @@ class SegmentReader extends IndexReader {
     }
   }
 
-  private Hashtable norms = new Hashtable();
+  private HashMap norms = new HashMap();        // not changed once open
 
   /** The class which implements SegmentReader. */
   private static Class IMPL;
@@ -119,18 +132,22 @@ class SegmentReader extends IndexReader {
                                   SegmentInfos sis,
                                   boolean closeDir, boolean ownDir)
     throws IOException {
-    SegmentReader instance;
+    SegmentReader instance = newInstance();
+    instance.init(dir, sis, closeDir, ownDir);
+    instance.initialize(si);
+    return instance;
+  }
+
+  private static SegmentReader newInstance() {
     try {
-      instance = (SegmentReader)IMPL.newInstance();
+      return (SegmentReader)IMPL.newInstance();
     } catch (Exception e) {
       throw new RuntimeException("cannot load SegmentReader class: " + e);
     }
-    instance.init(dir, sis, closeDir, ownDir);
-    instance.initialize(si);
-    return instance;
   }
 
    private void initialize(SegmentInfo si) throws IOException {
+    this.si = si;
     segment = si.name;
 
     // Use compound file directory for some files, if it exists
@@ -147,8 +164,10 @@ class SegmentReader extends IndexReader {
     tis = new TermInfosReader(cfsDir, segment, fieldInfos);
 
     // NOTE: the bitvector is stored using the regular directory, not cfs
-    if (hasDeletions(si))
+    if (hasDeletions(si)) {
       deletedDocs = new BitVector(directory(), segment + ".del");
+      numDeleted = deletedDocs.count();
+    }
 
     // make sure that all index files have been read or are kept open
     // so that if an index update removes them we'll still have them
@@ -161,9 +180,94 @@ class SegmentReader extends IndexReader {
     }
   }
 
+  /**
+   * Returns a reader for the given, possibly updated, version of this
+   * reader's segment.  Unless the norms of the segment have changed, the
+   * returned reader shares the term index, the open files and the loaded
+   * norms with this reader, and re-reads only the deletions if they have
+   * changed.  Deletions and norms are copied before they are modified.
+   */
+  synchronized SegmentReader reopenSegment(SegmentInfo si, SegmentInfos sis,
+                                           boolean closeDir, boolean ownDir)
+    throws IOException {
+    if (si.normGen != this.si.normGen)
+      return get(si.dir, si, sis, closeDir, ownDir);
+
+    SegmentReader clone = newInstance();
+    clone.init(si.dir, sis, closeDir, ownDir);
+    clone.si = si;
+    clone.segment = segment;
+    clone.origin = origin != null ? origin : this;
+
+    clone.fieldInfos = fieldInfos;
+    clone.tis = tis;
+    clone.termVectorsReaderOrig = termVectorsReaderOrig;
+    clone.freqStream = freqStream;
+    clone.proxStream = proxStream;
+    clone.cfsReader = cfsReader;
+
+    // each reader has its own stored fields streams
+    Directory cfsDir = cfsReader != null ? (Directory)cfsReader : si.dir;
+    clone.fieldsReader = new FieldsReader(cfsDir, segment, fieldInfos);
+
+    if (si.delGen == this.si.delGen) {
+      if (deletedDocs != null) {
+        clone.deletedDocs = deletedDocs;
+        clone.numDeleted = numDeleted;
+        clone.deletedDocsShared = true;
+        deletedDocsShared = true;
+      }
+    } else if (hasDeletions(si)) {
+      clone.deletedDocs = new BitVector(si.dir, segment + ".del");
+      clone.numDeleted = clone.deletedDocs.count();
+    }
+
+    Iterator keys = norms.keySet().iterator();
+    while (keys.hasNext()) {
+      String field = (String) keys.next();
+      Norm norm = (Norm) norms.get(field);
+      Norm cloneNorm = new Norm(norm.in, norm.number);
+      if (norm.bytes != null) {
+        cloneNorm.bytes = norm.bytes;
+        cloneNorm.maxNorm = norm.maxNorm;
+        cloneNorm.shared = true;
+        norm.shared = true;
+      }
+      clone.norms.put(field, cloneNorm);
+    }
+
+    clone.origin.incRef();
+    return clone;
+  }
+
+  public Object getFieldCacheKey() {
+    return origin != null ? origin : this;
+  }
+
+  public void setTermInfosIndexDivisor(int indexDivisor) {
+    tis.setIndexDivisor(indexDivisor);
+  }
+
+  public int getTermInfosIndexDivisor() {
+    return tis.getIndexDivisor();
+  }
+
+  void checkTermInfosIndexDivisor(int indexDivisor) {
+    tis.checkIndexDivisor(indexDivisor);
+  }
+
+  String getSegmentName() {
+    return segment;
+  }
+
+  SegmentInfo getSegmentInfo() {
+    return si;
+  }
+
    protected void finalize() {
      // patch for pre-1.4.2 JVMs, whose ThreadLocals leak
      termVectorsLocal.set(null);
+     fieldsReaderLocal.set(null);
      super.finalize();
    }
 
@@ -175,10 +279,16 @@ class SegmentReader extends IndexReader {
     if(undeleteAll && directory().fileExists(segment + ".del")){
       directory().deleteFile(segment + ".del");
     }
+    if (si != null) {               // let reopen see what changed
+      if (deletedDocsDirty || undeleteAll)
+        si.delGen++;
+      if (normsDirty)
+        si.normGen++;
+    }
     if (normsDirty) {               // re-write norms
-      Enumeration values = norms.elements();
-      while (values.hasMoreElements()) {
-        Norm norm = (Norm) values.nextElement();
+      Iterator values = norms.values().iterator();
+      while (values.hasNext()) {
+        Norm norm = (Norm) values.next();
         if (norm.dirty) {
           norm.reWrite();
         }
@@ -191,6 +301,10 @@ class SegmentReader extends IndexReader {
 
   protected void doClose() throws IOException {
     fieldsReader.close();
+    if (origin != null) {                         // files belong to origin
+      origin.decRef();
+      return;
+    }
     tis.close();
 
     if (freqStream != null)
@@ -232,15 +346,26 @@ class SegmentReader extends IndexReader {
   }
 
   protected void doDelete(int docNum) {
-    if (deletedDocs == null)
-      deletedDocs = new BitVector(maxDoc());
+    BitVector bits = deletedDocs;
+    if (bits == null) {
+      bits = new BitVector(maxDoc());
+    } else if (deletedDocsShared) {
+      bits = (BitVector) bits.clone();
+    }
+    deletedDocsShared = false;
     deletedDocsDirty = true;
     undeleteAll = false;
-    deletedDocs.set(docNum);
+    if (!bits.get(docNum)) {                      // a single byte is written
+      bits.set(docNum);
+      numDeleted++;
+    }
+    deletedDocs = bits;                           // publish a new vector
   }
 
   protected void doUndeleteAll() {
       deletedDocs = null;
+      numDeleted = 0;
+      deletedDocsShared = false;
       deletedDocsDirty = false;
       undeleteAll = true;
   }
@@ -277,15 +402,21 @@ class SegmentReader extends IndexReader {
     return tis.terms(t);
   }
 
-  public synchronized Document document(int n) throws IOException {
+  public Document document(int n) throws IOException {
+    return document(n, null);
+  }
+
+  public Document document(int n, FieldSelector fieldSelector)
+    throws IOException {
     if (isDeleted(n))
       throw new IllegalArgumentException
               ("attempt to access a deleted document");
-    return fieldsReader.doc(n);
+    return getFieldsReader().doc(n, fieldSelector);
   }
 
-  public synchronized boolean isDeleted(int n) {
-    return (deletedDocs != null && deletedDocs.get(n));
+  public boolean isDeleted(int n) {
+    BitVector bits = deletedDocs;
+    return (bits != null && bits.get(n));
   }
 
   public TermDocs termDocs() throws IOException {
@@ -305,10 +436,7 @@ class SegmentReader extends IndexReader {
   }
 
   public int numDocs() {
-    int n = maxDoc();
-    if (deletedDocs != null)
-      n -= deletedDocs.count();
-    return n;
+    return maxDoc() - numDeleted;
   }
 
   public int maxDoc() {
@@ -439,7 +567,7 @@ class SegmentReader extends IndexReader {
   }
 
 
-  public synchronized boolean hasNorms(String field) {
+  public boolean hasNorms(String field) {
     return norms.containsKey(field);
   }
 
@@ -449,27 +577,34 @@ class SegmentReader extends IndexReader {
     return ones;
   }
 
-  private byte[] ones;
+  private volatile byte[] ones;
   private byte[] fakeNorms() {
-    if (ones==null) ones=createFakeNorms(maxDoc());
-    return ones;
+    byte[] bytes = ones;
+    if (bytes==null) ones=bytes=createFakeNorms(maxDoc());
+    return bytes;
   }
 
   // can return null if norms aren't stored
-  protected synchronized byte[] getNorms(String field) throws IOException {
+  protected byte[] getNorms(String field) throws IOException {
     Norm norm = (Norm) norms.get(field);
     if (norm == null) return null;  // not indexed, or norms not stored
 
-    if (norm.bytes == null) {                     // value not yet read
-      byte[] bytes = new byte[maxDoc()];
-      norms(field, bytes, 0);
-      norm.bytes = bytes;                         // cache it
+    byte[] bytes = norm.bytes;
+    if (bytes == null) {
+      synchronized (norm) {                       // read each field once
+        bytes = norm.bytes;
+        if (bytes == null) {                      // value not yet read
+          bytes = new byte[maxDoc()];
+          norms(field, bytes, 0);
+          norm.bytes = bytes;                     // cache it
+        }
+      }
     }
-    return norm.bytes;
+    return bytes;
   }
 
   // returns fake norms if norms aren't available
-  public synchronized byte[] norms(String field) throws IOException {
+  public byte[] norms(String field) throws IOException {
     byte[] bytes = getNorms(field);
     if (bytes==null) bytes=fakeNorms();
     return bytes;
@@ -483,11 +618,39 @@ class SegmentReader extends IndexReader {
     norm.dirty = true;                            // mark it dirty
     normsDirty = true;
 
-    norms(field)[doc] = value;                    // set the value
+    synchronized (norm) {                         // not while finding max
+      if (norm.maxNorm >= 0)                      // still an upper bound
+        norm.maxNorm = Math.max(norm.maxNorm, value & 0xFF);
+      byte[] bytes = norms(field);
+      if (norm.shared) {                          // copy before modifying
+        byte[] copy = new byte[bytes.length];
+        System.arraycopy(bytes, 0, copy, 0, bytes.length);
+        copy[doc] = value;
+        norm.bytes = copy;                        // publish the copy
+        norm.shared = false;
+        return;
+      }
+      bytes[doc] = value;                         // set the value
+    }
+  }
+
+  public byte getMaxNorm(String field) throws IOException {
+    Norm norm = (Norm) norms.get(field);
+    if (norm == null)                             // fake norms
+      return DefaultSimilarity.encodeNorm(1.0f);
+    int max = norm.maxNorm;
+    if (max < 0) {
+      synchronized (norm) {                       // scan each field once
+        max = norm.maxNorm;
+        if (max < 0)
+          norm.maxNorm = max = maxNorm(getNorms(field)) & 0xFF;
+      }
+    }
+    return (byte) max;
   }
 
   /** Read norms into a pre-allocated array. */
-  public synchronized void norms(String field, byte[] bytes, int offset)
+  public void norms(String field, byte[] bytes, int offset)
     throws IOException {
 
     Norm norm = (Norm) norms.get(field);
@@ -496,8 +659,9 @@ class SegmentReader extends IndexReader {
       return;
     }
 
-    if (norm.bytes != null) {                     // can copy from cache
-      System.arraycopy(norm.bytes, 0, bytes, offset, maxDoc());
+    byte[] cached = norm.bytes;
+    if (cached != null) {                         // can copy from cache
+      System.arraycopy(cached, 0, bytes, offset, maxDoc());
       return;
     }
 
@@ -529,14 +693,27 @@ class SegmentReader extends IndexReader {
 
   private void closeNorms() throws IOException {
     synchronized (norms) {
-      Enumeration enumerator = norms.elements();
-      while (enumerator.hasMoreElements()) {
-        Norm norm = (Norm) enumerator.nextElement();
+      Iterator values = norms.values().iterator();
+      while (values.hasNext()) {
+        Norm norm = (Norm) values.next();
         norm.in.close();
       }
     }
   }
   
+  /**
+   * Create a clone from the initial FieldsReader and store it in the ThreadLocal.
+   * @return FieldsReader
+   */
+  private FieldsReader getFieldsReader() {
+    FieldsReader reader = (FieldsReader)fieldsReaderLocal.get();
+    if (reader == null) {
+      reader = (FieldsReader)fieldsReader.clone();
+      fieldsReaderLocal.set(reader);
+    }
+    return reader;
+  }
+
   /**
    * Create a clone from the initial TermVectorsReader and store it in the ThreadLocal.
    * @return TermVectorsReader
@@ -30,20 +30,34 @@ class SegmentTermDocs implements TermDocs {
   int freq;
 
   private int skipInterval;
-  private int numSkips;
-  private int skipCount;
-  private IndexInput skipStream;
-  private int skipDoc;
-  private long freqPointer;
-  private long proxPointer;
+  private int maxSkipLevels;
+  private SkipListReader skipListReader;
+
+  private long freqBasePointer;
+  private long proxBasePointer;
   private long skipPointer;
   private boolean haveSkipped;
 
+  // the decoded block of postings, when written in blocks
+  private int blockSize;
+  private int[] blockDocDeltas;
+  private int[] blockFreqs;
+  private BlockCodec blockCodec;
+  private int blockPos;
+  private int blockEnd;
+
   protected SegmentTermDocs(SegmentReader parent) {
     this.parent = parent;
     this.freqStream = (IndexInput) parent.freqStream.clone();
     this.deletedDocs = parent.deletedDocs;
     this.skipInterval = parent.tis.getSkipInterval();
+    this.maxSkipLevels = parent.tis.getMaxSkipLevels();
+    this.blockSize = parent.tis.getPostingsBlockSize();
+    if (blockSize != 0) {
+      blockDocDeltas = new int[blockSize];
+      blockFreqs = new int[blockSize];
+      blockCodec = new BlockCodec(blockSize);
+    }
   }
 
   public void seek(Term term) throws IOException {
@@ -70,21 +84,19 @@ class SegmentTermDocs implements TermDocs {
     } else {
       df = ti.docFreq;
       doc = 0;
-      skipDoc = 0;
-      skipCount = 0;
-      numSkips = df / skipInterval;
-      freqPointer = ti.freqPointer;
-      proxPointer = ti.proxPointer;
-      skipPointer = freqPointer + ti.skipOffset;
-      freqStream.seek(freqPointer);
+      freqBasePointer = ti.freqPointer;
+      proxBasePointer = ti.proxPointer;
+      skipPointer = freqBasePointer + ti.skipOffset;
+      freqStream.seek(freqBasePointer);
       haveSkipped = false;
+      blockPos = blockEnd = 0;
     }
   }
 
   public void close() throws IOException {
     freqStream.close();
-    if (skipStream != null)
-      skipStream.close();
+    if (skipListReader != null)
+      skipListReader.close();
   }
 
   public final int doc() { return doc; }
@@ -98,12 +110,19 @@ class SegmentTermDocs implements TermDocs {
       if (count == df)
         return false;
 
-      int docCode = freqStream.readVInt();
-      doc += docCode >>> 1;			  // shift off low bit
-      if ((docCode & 1) != 0)			  // if low bit is set
-        freq = 1;				  // freq is one
-      else
-        freq = freqStream.readVInt();		  // else read freq
+      if (blockPos == blockEnd && DocFreqWriter.isBlockStart(count, df, blockSize))
+        readBlock();
+      if (blockPos < blockEnd) {                  // from the decoded block
+        doc += blockDocDeltas[blockPos];
+        freq = blockFreqs[blockPos++];
+      } else {
+        int docCode = freqStream.readVInt();
+        doc += docCode >>> 1;			  // shift off low bit
+        if ((docCode & 1) != 0)			  // if low bit is set
+          freq = 1;				  // freq is one
+        else
+          freq = freqStream.readVInt();		  // else read freq
+      }
 
       count++;
 
@@ -121,6 +140,32 @@ class SegmentTermDocs implements TermDocs {
     int i = 0;
     while (i < length && count < df) {
 
+      if (blockPos == blockEnd && DocFreqWriter.isBlockStart(count, df, blockSize))
+        readBlock();
+      if (blockPos < blockEnd) {                  // copy from decoded block
+        final int end = blockPos + Math.min(blockEnd - blockPos, length - i);
+        if (deletedDocs == null) {
+          count += end - blockPos;
+          while (blockPos < end) {
+            doc += blockDocDeltas[blockPos];
+            docs[i] = doc;
+            freqs[i++] = blockFreqs[blockPos++];
+          }
+        } else {
+          while (blockPos < end) {
+            doc += blockDocDeltas[blockPos];
+            count++;
+            if (!deletedDocs.get(doc)) {
+              docs[i] = doc;
+              freqs[i++] = blockFreqs[blockPos];
+            }
+            blockPos++;
+          }
+        }
+        freq = blockFreqs[blockPos - 1];
+        continue;
+      }
+
       // manually inlined call to next() for speed
       final int docCode = freqStream.readVInt();
       doc += docCode >>> 1;			  // shift off low bit
@@ -139,54 +184,38 @@ class SegmentTermDocs implements TermDocs {
     return i;
   }
 
+  // Decodes the block of postings starting at the current document.
+  private void readBlock() throws IOException {
+    blockCodec.readBlock(freqStream, blockDocDeltas, blockSize);
+    blockCodec.readBlock(freqStream, blockFreqs, blockSize);
+    blockPos = 0;
+    blockEnd = blockSize;
+  }
+
   /** Overridden by SegmentTermPositions to skip in prox stream. */
   protected void skipProx(long proxPointer) throws IOException {}
 
   /** Optimized implementation. */
   public boolean skipTo(int target) throws IOException {
     if (df >= skipInterval) {                      // optimized case
+      if (skipListReader == null)                  // lazily clone
+        skipListReader = new SkipListReader((IndexInput) freqStream.clone(),
+                                            maxSkipLevels, skipInterval);
 
-      if (skipStream == null)
-        skipStream = (IndexInput) freqStream.clone(); // lazily clone
-
-      if (!haveSkipped) {                          // lazily seek skip stream
-        skipStream.seek(skipPointer);
+      if (!haveSkipped) {                          // lazily init skip list
+        skipListReader.init(skipPointer, freqBasePointer, proxBasePointer, df);
         haveSkipped = true;
       }
 
-      // scan skip data
-      int lastSkipDoc = skipDoc;
-      long lastFreqPointer = freqStream.getFilePointer();
-      long lastProxPointer = -1;
-      int numSkipped = -1 - (count % skipInterval);
-
-      while (target > skipDoc) {
-        lastSkipDoc = skipDoc;
-        lastFreqPointer = freqPointer;
-        lastProxPointer = proxPointer;
-        
-        if (skipDoc != 0 && skipDoc >= doc)
-          numSkipped += skipInterval;
-        
-        if(skipCount >= numSkips)
-          break;
-
-        skipDoc += skipStream.readVInt();
-        freqPointer += skipStream.readVInt();
-        proxPointer += skipStream.readVInt();
-
-        skipCount++;
-      }
-      
-      // if we found something to skip, then skip it
-      if (lastFreqPointer > freqStream.getFilePointer()) {
-        freqStream.seek(lastFreqPointer);
-        skipProx(lastProxPointer);
+      int newCount = skipListReader.skipTo(target);
+      if (newCount > count) {                      // skip what was found
+        freqStream.seek(skipListReader.getFreqPointer());
+        skipProx(skipListReader.getProxPointer());
 
-        doc = lastSkipDoc;
-        count += numSkipped;
+        doc = skipListReader.getDoc();
+        count = newCount;
+        blockPos = blockEnd = 0;
       }
-
     }
 
     // done skipping, now just scan
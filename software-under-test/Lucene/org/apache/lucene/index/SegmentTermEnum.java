@@ -36,6 +36,8 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
   long indexPointer = 0;
   int indexInterval;
   int skipInterval;
+  int maxSkipLevels;
+  int postingsBlockSize;                          // 0 before -4
   private int formatM1SkipInterval;
 
   SegmentTermEnum(IndexInput i, FieldInfos fis, boolean isi)
@@ -43,6 +45,7 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
     input = i;
     fieldInfos = fis;
     isIndex = isi;
+    maxSkipLevels = 1;                            // single level before -3
 
     int firstInt = input.readInt();
     if (firstInt >= 0) {
@@ -76,6 +79,12 @@ final class SegmentTermEnum extends TermEnum implements Cloneable {
       else{
         indexInterval = input.readInt();
         skipInterval = input.readInt();
+        if (format <= -3) {
+          maxSkipLevels = input.readInt();
+        }
+        if (format <= -4) {
+          postingsBlockSize = input.readInt();
+        }
       }
     }
 
@@ -25,6 +25,12 @@ extends SegmentTermDocs implements TermPositions {
   private IndexInput proxStream;
   private int proxCount;
   private int position;
+
+  // The prox stream is only positioned when positions are read: until then
+  // it is left at lazySkipPointer, if not -1, and lazySkipProxCount
+  // positions of skipped documents are left unread.
+  private long lazySkipPointer = -1;
+  private int lazySkipProxCount = 0;
   
   SegmentTermPositions(SegmentReader p) {
     super(p);
@@ -34,7 +40,8 @@ extends SegmentTermDocs implements TermPositions {
   final void seek(TermInfo ti) throws IOException {
     super.seek(ti);
     if (ti != null)
-      proxStream.seek(ti.proxPointer);
+      lazySkipPointer = ti.proxPointer;
+    lazySkipProxCount = 0;
     proxCount = 0;
   }
 
@@ -44,18 +51,17 @@ extends SegmentTermDocs implements TermPositions {
   }
 
   public final int nextPosition() throws IOException {
+    lazySkip();
     proxCount--;
     return position += proxStream.readVInt();
   }
 
   protected final void skippingDoc() throws IOException {
-    for (int f = freq; f > 0; f--)		  // skip all positions
-      proxStream.readVInt();
+    lazySkipProxCount += freq;                    // skip all positions
   }
 
   public final boolean next() throws IOException {
-    for (int f = proxCount; f > 0; f--)		  // skip unread positions
-      proxStream.readVInt();
+    lazySkipProxCount += proxCount;               // skip unread positions
 
     if (super.next()) {				  // run super
       proxCount = freq;				  // note frequency
@@ -72,8 +78,19 @@ extends SegmentTermDocs implements TermPositions {
 
   /** Called by super.skipTo(). */
   protected void skipProx(long proxPointer) throws IOException {
-    proxStream.seek(proxPointer);
+    lazySkipPointer = proxPointer;
+    lazySkipProxCount = 0;
     proxCount = 0;
   }
 
+  // Positions the prox stream at the positions of the current document.
+  private void lazySkip() throws IOException {
+    if (lazySkipPointer != -1) {
+      proxStream.seek(lazySkipPointer);
+      lazySkipPointer = -1;
+    }
+    for (; lazySkipProxCount > 0; lazySkipProxCount--)
+      proxStream.readVInt();
+  }
+
 }
@@ -0,0 +1,35 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** A {@link MergeScheduler} that runs each merge inline, on the thread
+ * that triggered it.  This is the default and matches the historical
+ * behavior of {@link IndexWriter}: <code>addDocument</code> does not
+ * return until every merge it caused has completed.
+ */
+public class SerialMergeScheduler extends MergeScheduler {
+
+  public synchronized void merge(IndexWriter writer) throws IOException {
+    OneMerge merge;
+    while ((merge = writer.getNextMerge()) != null)
+      writer.merge(merge);
+  }
+
+  public void close() {}
+}
@@ -0,0 +1,193 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+
+/** Reads the skip data written by {@link SkipListWriter}.  To skip to a
+ * target, entries are read on the highest level until one passes the
+ * target, then reading continues from the child of the last entry which
+ * did not, one level down, and so on down to level 0.  Each level is only
+ * read past the entries of the level above it, so skipping takes a number
+ * of steps logarithmic in the number of documents.
+ *
+ * <p>The streams of the levels are cloned when first needed, and a term's
+ * skip data is only read when it is first skipped.
+ */
+final class SkipListReader {
+  private final int maxSkipLevels;
+  private int numberOfSkipLevels;
+
+  private final IndexInput freqStream;            // cloned for each level
+  private final IndexInput[] skipStream;
+  private final long[] skipPointer;               // start of each level
+  private final long[] skipInterval;              // docs between entries
+  private final long[] numSkipped;                // docs before next entry
+  private final int[] skipDoc;                    // doc of next entry
+  private final long[] freqPointer;
+  private final long[] proxPointer;
+  private final long[] childPointer;
+
+  private int docCount;
+  private boolean haveSkipped;
+
+  // the last entry not passing the target
+  private int lastDoc;
+  private long lastFreqPointer;
+  private long lastProxPointer;
+  private long lastChildPointer;
+
+  SkipListReader(IndexInput freqStream, int maxSkipLevels, int skipInterval) {
+    this.freqStream = freqStream;
+    this.maxSkipLevels = maxSkipLevels;
+    this.skipStream = new IndexInput[maxSkipLevels];
+    this.skipPointer = new long[maxSkipLevels];
+    this.skipInterval = new long[maxSkipLevels];
+    this.numSkipped = new long[maxSkipLevels];
+    this.skipDoc = new int[maxSkipLevels];
+    this.freqPointer = new long[maxSkipLevels];
+    this.proxPointer = new long[maxSkipLevels];
+    this.childPointer = new long[maxSkipLevels];
+    long interval = skipInterval;
+    for (int level = 0; level < maxSkipLevels; level++) {
+      this.skipInterval[level] = interval;
+      interval *= skipInterval;
+    }
+  }
+
+  /** Prepares to skip through the postings of a term, whose skip data
+   * starts at <code>skipPointer</code> and postings at the given freq and
+   * prox file positions. */
+  void init(long skipPointer, long freqBasePointer, long proxBasePointer,
+            int df) {
+    this.skipPointer[0] = skipPointer;
+    this.docCount = df;
+    numberOfSkipLevels =
+      SkipListWriter.numberOfLevels(df, (int) skipInterval[0], maxSkipLevels);
+    for (int level = 0; level < numberOfSkipLevels; level++) {
+      numSkipped[level] = 0;
+      skipDoc[level] = 0;
+      freqPointer[level] = freqBasePointer;
+      proxPointer[level] = proxBasePointer;
+      childPointer[level] = 0;
+    }
+    lastDoc = 0;
+    lastFreqPointer = freqBasePointer;
+    lastProxPointer = proxBasePointer;
+    lastChildPointer = 0;
+    haveSkipped = false;
+  }
+
+  /** Returns the doc of the last entry skipped to. */
+  int getDoc() { return lastDoc; }
+
+  /** Returns the freq file position following {@link #getDoc()}. */
+  long getFreqPointer() { return lastFreqPointer; }
+
+  /** Returns the prox file position following {@link #getDoc()}. */
+  long getProxPointer() { return lastProxPointer; }
+
+  /** Skips to the last entry whose doc is less than <code>target</code>.
+   * @return the number of documents up to and including {@link #getDoc()},
+   *  or a negative number if there is no such entry
+   */
+  int skipTo(int target) throws IOException {
+    if (!haveSkipped) {                           // lazily load the levels
+      loadSkipLevels();
+      haveSkipped = true;
+    }
+
+    // find the highest level with an entry before the target
+    int level = 0;
+    while (level < numberOfSkipLevels - 1 && target > skipDoc[level + 1])
+      level++;
+
+    while (level >= 0) {
+      if (target > skipDoc[level]) {
+        loadNextSkip(level);
+      } else {
+        // go down to the entry following the last one on this level
+        if (level > 0 && lastChildPointer > skipStream[level - 1].getFilePointer())
+          seekChild(level - 1);
+        level--;
+      }
+    }
+
+    return (int) (numSkipped[0] - skipInterval[0] - 1);
+  }
+
+  // Reads the next entry of a level, after keeping the current one as the
+  // last not passing the target.
+  private void loadNextSkip(int level) throws IOException {
+    lastDoc = skipDoc[level];
+    lastFreqPointer = freqPointer[level];
+    lastProxPointer = proxPointer[level];
+    lastChildPointer = childPointer[level];
+
+    numSkipped[level] += skipInterval[level];
+    if (numSkipped[level] > docCount) {           // level is exhausted
+      skipDoc[level] = Integer.MAX_VALUE;
+      if (numberOfSkipLevels > level)
+        numberOfSkipLevels = level;
+      return;
+    }
+
+    IndexInput stream = skipStream[level];
+    skipDoc[level] += stream.readVInt();
+    freqPointer[level] += stream.readVInt();
+    proxPointer[level] += stream.readVInt();
+    if (level != 0)
+      childPointer[level] = stream.readVLong() + skipPointer[level - 1];
+  }
+
+  // Positions a level at the child of the last entry of the level above.
+  private void seekChild(int level) throws IOException {
+    skipStream[level].seek(lastChildPointer);
+    numSkipped[level] = numSkipped[level + 1] - skipInterval[level + 1];
+    skipDoc[level] = lastDoc;
+    freqPointer[level] = lastFreqPointer;
+    proxPointer[level] = lastProxPointer;
+    if (level > 0)
+      childPointer[level] = skipStream[level].readVLong() + skipPointer[level - 1];
+  }
+
+  // Finds where each level starts.  The levels are written from the
+  // highest down, each but level 0 preceded by its length.
+  private void loadSkipLevels() throws IOException {
+    if (skipStream[0] == null)
+      skipStream[0] = (IndexInput) freqStream.clone();
+    IndexInput stream = skipStream[0];
+    stream.seek(skipPointer[0]);
+    for (int level = numberOfSkipLevels - 1; level > 0; level--) {
+      long length = stream.readVLong();
+      skipPointer[level] = stream.getFilePointer();
+      if (skipStream[level] == null)
+        skipStream[level] = (IndexInput) freqStream.clone();
+      skipStream[level].seek(skipPointer[level]);
+      stream.seek(skipPointer[level] + length);
+    }
+    skipPointer[0] = stream.getFilePointer();
+  }
+
+  void close() throws IOException {
+    for (int level = 0; level < maxSkipLevels; level++) {
+      if (skipStream[level] != null)
+        skipStream[level].close();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMOutputStream;
+
+/** Buffers the skip data of a term's postings until all of its documents
+ * have been written to the freq file, then appends it there.  The caller
+ * decides where the skip points fall, every skipInterval documents.
+ *
+ * <p>Skip points are kept on several levels: every point is on level 0,
+ * every skipInterval-th point also on level 1, every
+ * skipInterval<sup>2</sup>-th also on level 2, and so on, up to
+ * maxSkipLevels levels.  An entry above level 0 also points to the entry
+ * following it on the level below, so that {@link SkipListReader} can skip
+ * down from the highest level in a number of steps logarithmic in the
+ * number of documents.  The levels are written from the highest down, each
+ * but level 0 preceded by its length.  With a single level, this is the
+ * skip data of indexes written before there were levels.
+ */
+final class SkipListWriter {
+  private final int skipInterval;
+  private final int maxSkipLevels;
+  private RAMOutputStream[] skipBuffer;
+  private int[] lastSkipDoc;
+  private long[] lastSkipFreqPointer;
+  private long[] lastSkipProxPointer;
+  private int numSkips;
+
+  SkipListWriter(int skipInterval, int maxSkipLevels) {
+    this.skipInterval = skipInterval;
+    this.maxSkipLevels = maxSkipLevels;
+    skipBuffer = new RAMOutputStream[maxSkipLevels];
+    lastSkipDoc = new int[maxSkipLevels];
+    lastSkipFreqPointer = new long[maxSkipLevels];
+    lastSkipProxPointer = new long[maxSkipLevels];
+  }
+
+  /** Returns the number of levels of the skip data of a term with
+   * <code>df</code> documents. */
+  static int numberOfLevels(int df, int skipInterval, int maxSkipLevels) {
+    int levels = 0;
+    for (int n = df / skipInterval; n > 0 && levels < maxSkipLevels;
+         n /= skipInterval)
+      levels++;
+    return levels;
+  }
+
+  /** Starts the skip data of a new term, whose postings begin at the given
+   * freq and prox file positions. */
+  void resetSkip(long freqPointer, long proxPointer) {
+    for (int level = 0; level < maxSkipLevels; level++) {
+      if (skipBuffer[level] != null)
+        skipBuffer[level].reset();
+      lastSkipDoc[level] = 0;
+      lastSkipFreqPointer[level] = freqPointer;
+      lastSkipProxPointer[level] = proxPointer;
+    }
+    numSkips = 0;
+  }
+
+  /** Records a skip point: <code>doc</code> is the last document written
+   * and the pointers are the current freq and prox file positions. */
+  void bufferSkip(int doc, long freqPointer, long proxPointer)
+    throws IOException {
+    numSkips++;
+    int numLevels = 1;                            // levels of this point
+    for (int n = numSkips;
+         n % skipInterval == 0 && numLevels < maxSkipLevels;
+         n /= skipInterval)
+      numLevels++;
+
+    long childPointer = 0;
+    for (int level = 0; level < numLevels; level++) {
+      RAMOutputStream buffer = skipBuffer[level];
+      if (buffer == null)
+        buffer = skipBuffer[level] = new RAMOutputStream();
+      buffer.writeVInt(doc - lastSkipDoc[level]);
+      buffer.writeVInt((int) (freqPointer - lastSkipFreqPointer[level]));
+      buffer.writeVInt((int) (proxPointer - lastSkipProxPointer[level]));
+
+      lastSkipDoc[level] = doc;
+      lastSkipFreqPointer[level] = freqPointer;
+      lastSkipProxPointer[level] = proxPointer;
+
+      long newChildPointer = buffer.getFilePointer();
+      if (level != 0)                             // point to level below
+        buffer.writeVLong(childPointer);
+      childPointer = newChildPointer;
+    }
+  }
+
+  /** Appends the buffered skip data to the freq file.
+   * @return the position at which the skip data starts
+   */
+  long writeSkip(IndexOutput freqOutput) throws IOException {
+    long skipPointer = freqOutput.getFilePointer();
+    int numLevels = numberOfLevels(numSkips * skipInterval, skipInterval,
+                                   maxSkipLevels);
+    for (int level = numLevels - 1; level > 0; level--) {
+      freqOutput.writeVLong(skipBuffer[level].getFilePointer());
+      skipBuffer[level].writeTo(freqOutput);
+    }
+    if (numLevels > 0)
+      skipBuffer[0].writeTo(freqOutput);
+    return skipPointer;
+  }
+}
@@ -0,0 +1,214 @@
+package org.apache.lucene.index;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/** The terms index of a segment: every indexInterval-th term of its term
+ * infos, held compactly.  Entries are packed one after another into a
+ * single byte array, each the field number, the length and bytes of the
+ * term text in the UTF-8 encoding of the files, then the term info and the
+ * pointer into the .tis file as VInts and VLongs.  An int array holds where
+ * each entry starts, and terms are compared in place in the packed form.
+ * <p>
+ * With an index divisor of n only every n-th entry of the .tii file is
+ * kept, which divides the memory used by n at the cost of scanning up to n
+ * times as many terms per lookup.
+ */
+final class TermInfosIndex {
+  private final FieldInfos fieldInfos;
+  private final byte[] bytes;                     // packed entries
+  private final int[] offsets;                    // start of each entry
+
+  /** Reads the entries of <code>indexEnum</code>, keeping every
+   * <code>divisor</code>-th. */
+  TermInfosIndex(SegmentTermEnum indexEnum, int divisor) throws IOException {
+    fieldInfos = indexEnum.fieldInfos;
+    int indexSize = (int)indexEnum.size;
+    offsets = new int[(indexSize + divisor - 1) / divisor];
+
+    byte[] buffer = new byte[16 * offsets.length + 64];
+    int upto = 0;
+    TermInfo ti = new TermInfo();
+    for (int i = 0; indexEnum.next(); i++) {
+      if (i % divisor != 0)
+        continue;
+      Term term = indexEnum.term();
+      String text = term.text();
+      indexEnum.termInfo(ti);
+
+      int maxLength = 3 * text.length() + 50;     // VInts, VLongs, UTF-8
+      if (buffer.length < upto + maxLength) {
+        byte[] newBuffer = new byte[Math.max(2 * buffer.length, upto + maxLength)];
+        System.arraycopy(buffer, 0, newBuffer, 0, upto);
+        buffer = newBuffer;
+      }
+
+      offsets[i / divisor] = upto;
+      upto = writeVLong(buffer, upto, fieldInfos.fieldNumber(term.field()));
+      upto = writeVLong(buffer, upto, utf8Length(text));
+      upto = writeChars(buffer, upto, text);
+      upto = writeVLong(buffer, upto, ti.docFreq);
+      upto = writeVLong(buffer, upto, ti.freqPointer);
+      upto = writeVLong(buffer, upto, ti.proxPointer);
+      upto = writeVLong(buffer, upto, ti.skipOffset);
+      upto = writeVLong(buffer, upto, indexEnum.indexPointer);
+    }
+
+    bytes = new byte[upto];                       // trim
+    System.arraycopy(buffer, 0, bytes, 0, upto);
+  }
+
+  /** Returns the number of entries. */
+  final int size() {
+    return offsets.length;
+  }
+
+  /** Compares <code>term</code> to the term of entry <code>i</code>, as
+   * {@link Term#compareTo(Term)} does. */
+  final int compareTo(Term term, int i) {
+    int p = offsets[i];
+    String field = fieldInfos.fieldName((int)readVLong(bytes, p));
+    p = skipVLong(bytes, p);
+    if (field != term.field())                    // fields are interned
+      return term.field().compareTo(field);
+
+    int end = (int)readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    end += p;
+
+    String text = term.text();
+    int length = text.length();
+    int k = 0;
+    while (p < end) {
+      int b = bytes[p++] & 0xFF;                  // as IndexInput.readChars
+      char c;
+      if ((b & 0x80) == 0)
+        c = (char)b;
+      else if ((b & 0xE0) != 0xE0)
+        c = (char)(((b & 0x1F) << 6) | (bytes[p++] & 0x3F));
+      else {
+        c = (char)(((b & 0x0F) << 12)
+                   | ((bytes[p++] & 0x3F) << 6)
+                   | (bytes[p++] & 0x3F));
+      }
+      if (k == length)
+        return -1;
+      char t = text.charAt(k++);
+      if (t != c)
+        return t - c;
+    }
+    return length - k;
+  }
+
+  /** Positions <code>enumerator</code> at entry <code>i</code>, the term
+   * at position <code>i * indexInterval</code> of the term infos. */
+  final void seekEnum(SegmentTermEnum enumerator, int i, int indexInterval)
+    throws IOException {
+    int p = offsets[i];
+    String field = fieldInfos.fieldName((int)readVLong(bytes, p));
+    p = skipVLong(bytes, p);
+    int end = (int)readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    end += p;
+
+    char[] chars = new char[end - p];
+    int length = 0;
+    while (p < end) {
+      int b = bytes[p++] & 0xFF;
+      if ((b & 0x80) == 0)
+        chars[length++] = (char)b;
+      else if ((b & 0xE0) != 0xE0)
+        chars[length++] = (char)(((b & 0x1F) << 6) | (bytes[p++] & 0x3F));
+      else {
+        chars[length++] = (char)(((b & 0x0F) << 12)
+                                 | ((bytes[p++] & 0x3F) << 6)
+                                 | (bytes[p++] & 0x3F));
+      }
+    }
+    Term term = new Term(field, new String(chars, 0, length), false);
+
+    TermInfo ti = new TermInfo();
+    ti.docFreq = (int)readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    ti.freqPointer = readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    ti.proxPointer = readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    ti.skipOffset = (int)readVLong(bytes, p);
+    p = skipVLong(bytes, p);
+    long indexPointer = readVLong(bytes, p);
+
+    enumerator.seek(indexPointer, (i * indexInterval) - 1, term, ti);
+  }
+
+  private static int utf8Length(String s) {
+    int length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      int code = (int)s.charAt(i);
+      if (code >= 0x01 && code <= 0x7F)
+        length += 1;
+      else if (((code >= 0x80) && (code <= 0x7FF)) || code == 0)
+        length += 2;
+      else
+        length += 3;
+    }
+    return length;
+  }
+
+  /** Writes <code>s</code> as IndexOutput.writeChars does. */
+  private static int writeChars(byte[] b, int p, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      int code = (int)s.charAt(i);
+      if (code >= 0x01 && code <= 0x7F)
+        b[p++] = (byte)code;
+      else if (((code >= 0x80) && (code <= 0x7FF)) || code == 0) {
+        b[p++] = (byte)(0xC0 | (code >> 6));
+        b[p++] = (byte)(0x80 | (code & 0x3F));
+      } else {
+        b[p++] = (byte)(0xE0 | (code >>> 12));
+        b[p++] = (byte)(0x80 | ((code >> 6) & 0x3F));
+        b[p++] = (byte)(0x80 | (code & 0x3F));
+      }
+    }
+    return p;
+  }
+
+  private static int writeVLong(byte[] b, int p, long i) {
+    while ((i & ~0x7F) != 0) {
+      b[p++] = (byte)((i & 0x7f) | 0x80);
+      i >>>= 7;
+    }
+    b[p++] = (byte)i;
+    return p;
+  }
+
+  private static long readVLong(byte[] b, int p) {
+    byte v = b[p++];
+    long i = v & 0x7F;
+    for (int shift = 7; (v & 0x80) != 0; shift += 7) {
+      v = b[p++];
+      i |= (v & 0x7FL) << shift;
+    }
+    return i;
+  }
+
+  private static int skipVLong(byte[] b, int p) {
+    while ((b[p++] & 0x80) != 0) {}
+    return p;
+  }
+}
@@ -33,10 +33,10 @@ final class TermInfosReader {
   private SegmentTermEnum origEnum;
   private long size;
 
-  private Term[] indexTerms = null;
-  private TermInfo[] indexInfos;
-  private long[] indexPointers;
-  
+  private TermInfosIndex index = null;
+  private int indexDivisor = 1;
+  private int totalIndexInterval;                 // terms per index entry
+
   private SegmentTermEnum indexEnum;
 
   TermInfosReader(Directory dir, String seg, FieldInfos fis)
@@ -48,6 +48,7 @@ final class TermInfosReader {
     origEnum = new SegmentTermEnum(directory.openInput(segment + ".tis"),
                                    fieldInfos, false);
     size = origEnum.size;
+    totalIndexInterval = origEnum.indexInterval;
 
     indexEnum =
       new SegmentTermEnum(directory.openInput(segment + ".tii"),
@@ -63,6 +64,45 @@ final class TermInfosReader {
     return origEnum.skipInterval;
   }
 
+  public int getMaxSkipLevels() {
+    return origEnum.maxSkipLevels;
+  }
+
+  /** Returns the number of documents per block of postings, or 0 when
+   * they are VInts.
+   * @see DocFreqWriter */
+  public int getPostingsBlockSize() {
+    return origEnum.postingsBlockSize;
+  }
+
+  /** Sets the number of .tii entries per entry of the terms index kept in
+   * memory.  Dividing the index by n uses n times less memory, but each
+   * lookup may scan n times as many terms.
+   * @throws IllegalStateException if the index has already been loaded
+   */
+  public synchronized void setIndexDivisor(int indexDivisor) {
+    checkIndexDivisor(indexDivisor);
+    if (indexDivisor == this.indexDivisor)
+      return;
+    this.indexDivisor = indexDivisor;
+    totalIndexInterval = origEnum.indexInterval * indexDivisor;
+  }
+
+  /** Throws the exception {@link #setIndexDivisor(int)} would, without
+   * changing the divisor. */
+  synchronized void checkIndexDivisor(int indexDivisor) {
+    if (indexDivisor < 1)
+      throw new IllegalArgumentException("indexDivisor must be > 0: got " + indexDivisor);
+    if (indexDivisor != this.indexDivisor && index != null)
+      throw new IllegalStateException("terms index has already been loaded");
+  }
+
+  /** Returns the divisor applied when loading the terms index.
+   * @see #setIndexDivisor(int) */
+  public int getIndexDivisor() {
+    return indexDivisor;
+  }
+
   final void close() throws IOException {
     if (origEnum != null)
       origEnum.close();
@@ -85,20 +125,10 @@ final class TermInfosReader {
   }
 
   private synchronized void ensureIndexIsRead() throws IOException {
-    if (indexTerms != null)                       // index already read
+    if (index != null)                            // index already read
       return;                                     // do nothing
     try {
-      int indexSize = (int)indexEnum.size;        // otherwise read index
-
-      indexTerms = new Term[indexSize];
-      indexInfos = new TermInfo[indexSize];
-      indexPointers = new long[indexSize];
-        
-      for (int i = 0; indexEnum.next(); i++) {
-        indexTerms[i] = indexEnum.term();
-        indexInfos[i] = indexEnum.termInfo();
-        indexPointers[i] = indexEnum.indexPointer;
-      }
+      index = new TermInfosIndex(indexEnum, indexDivisor);
     } finally {
         indexEnum.close();
         indexEnum = null;
@@ -107,12 +137,12 @@ final class TermInfosReader {
 
   /** Returns the offset of the greatest index entry which is less than or equal to term.*/
   private final int getIndexOffset(Term term) {
-    int lo = 0;					  // binary search indexTerms[]
-    int hi = indexTerms.length - 1;
+    int lo = 0;					  // binary search index
+    int hi = index.size() - 1;
 
     while (hi >= lo) {
       int mid = (lo + hi) >> 1;
-      int delta = term.compareTo(indexTerms[mid]);
+      int delta = index.compareTo(term, mid);
       if (delta < 0)
 	hi = mid - 1;
       else if (delta > 0)
@@ -124,9 +154,7 @@ final class TermInfosReader {
   }
 
   private final void seekEnum(int indexOffset) throws IOException {
-    getEnum().seek(indexPointers[indexOffset],
-	      (indexOffset * getEnum().indexInterval) - 1,
-	      indexTerms[indexOffset], indexInfos[indexOffset]);
+    index.seekEnum(getEnum(), indexOffset, totalIndexInterval);
   }
 
   /** Returns the TermInfo for a Term in the set, or null. */
@@ -140,9 +168,9 @@ final class TermInfosReader {
     if (enumerator.term() != null                 // term is at or past current
 	&& ((enumerator.prev() != null && term.compareTo(enumerator.prev())> 0)
 	    || term.compareTo(enumerator.term()) >= 0)) {
-      int enumOffset = (int)(enumerator.position/enumerator.indexInterval)+1;
-      if (indexTerms.length == enumOffset	  // but before end of block
-	  || term.compareTo(indexTerms[enumOffset]) < 0)
+      int enumOffset = (int)(enumerator.position/totalIndexInterval)+1;
+      if (index.size() == enumOffset		  // but before end of block
+	  || index.compareTo(term, enumOffset) < 0)
 	return scanEnum(term);			  // no need to seek
     }
 
@@ -165,13 +193,15 @@ final class TermInfosReader {
   final Term get(int position) throws IOException {
     if (size == 0) return null;
 
+    ensureIndexIsRead();
+
     SegmentTermEnum enumerator = getEnum();
     if (enumerator != null && enumerator.term() != null &&
         position >= enumerator.position &&
-	position < (enumerator.position + enumerator.indexInterval))
+	position < (enumerator.position + totalIndexInterval))
       return scanEnum(position);		  // can avoid seek
 
-    seekEnum(position / enumerator.indexInterval); // must seek
+    seekEnum(position / totalIndexInterval);	  // must seek
     return scanEnum(position);
   }
 
@@ -27,7 +27,7 @@ import org.apache.lucene.util.StringHelper;
 
 final class TermInfosWriter {
   /** The file format version, a negative number. */
-  public static final int FORMAT = -2;
+  public static final int FORMAT = -4;
 
   private FieldInfos fieldInfos;
   private IndexOutput output;
@@ -56,6 +56,21 @@ final class TermInfosWriter {
    * accelerable cases. More detailed experiments would be useful here. */
   int skipInterval = 16;
 
+  /** Expert: The maximum number of levels of skip data.  Every
+   * skipInterval-th entry of a level is also an entry of the level above,
+   * so that {@link TermDocs#skipTo(int)} only reads a number of entries
+   * logarithmic in the number of documents of a term. */
+  int maxSkipLevels = 10;
+
+  /** The number of documents per block of postings written in blocks,
+   * which is then also the skip interval.
+   * @see DocFreqWriter */
+  static final int POSTINGS_BLOCK_SIZE = 128;
+
+  /** The number of documents per block of postings, or 0 when postings
+   * are written as VInts. */
+  int postingsBlockSize = 0;
+
   private long lastIndexPointer = 0;
   private boolean isIndex = false;
 
@@ -64,19 +79,33 @@ final class TermInfosWriter {
   TermInfosWriter(Directory directory, String segment, FieldInfos fis,
                   int interval)
        throws IOException {
-    initialize(directory, segment, fis, interval, false);
-    other = new TermInfosWriter(directory, segment, fis, interval, true);
+    this(directory, segment, fis, interval, 0);
+  }
+
+  /** @param postingsBlockSize the number of documents per block of
+   * postings, or 0 to write postings as VInts */
+  TermInfosWriter(Directory directory, String segment, FieldInfos fis,
+                  int interval, int postingsBlockSize)
+       throws IOException {
+    initialize(directory, segment, fis, interval, postingsBlockSize, false);
+    other = new TermInfosWriter(directory, segment, fis, interval,
+                                postingsBlockSize, true);
     other.other = this;
   }
 
   private TermInfosWriter(Directory directory, String segment, FieldInfos fis,
-                          int interval, boolean isIndex) throws IOException {
-    initialize(directory, segment, fis, interval, isIndex);
+                          int interval, int postingsBlockSize,
+                          boolean isIndex) throws IOException {
+    initialize(directory, segment, fis, interval, postingsBlockSize, isIndex);
   }
 
   private void initialize(Directory directory, String segment, FieldInfos fis,
-                          int interval, boolean isi) throws IOException {
+                          int interval, int blockSize, boolean isi)
+       throws IOException {
     indexInterval = interval;
+    postingsBlockSize = blockSize;
+    if (blockSize != 0)
+      skipInterval = blockSize;                   // skip to block starts
     fieldInfos = fis;
     isIndex = isi;
     output = directory.createOutput(segment + (isIndex ? ".tii" : ".tis"));
@@ -84,6 +113,8 @@ final class TermInfosWriter {
     output.writeLong(0);                          // leave space for size
     output.writeInt(indexInterval);             // write indexInterval
     output.writeInt(skipInterval);              // write skipInterval
+    output.writeInt(maxSkipLevels);             // write maxSkipLevels
+    output.writeInt(postingsBlockSize);         // write postingsBlockSize
   }
 
   /** Adds a new <Term, TermInfo> pair to the set.
@@ -119,7 +119,7 @@ final class TermVectorsWriter {
     openField(fieldInfo.number, fieldInfo.storePositionWithTermVector, fieldInfo.storeOffsetWithTermVector);
   }
   
-  private void openField(int fieldNumber, boolean storePositionWithTermVector, 
+  void openField(int fieldNumber, boolean storePositionWithTermVector,
       boolean storeOffsetWithTermVector) throws IOException{
     if (!isDocumentOpen()) 
       throw new IllegalStateException("Cannot open field when no document is open.");
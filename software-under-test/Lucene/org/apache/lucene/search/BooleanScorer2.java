@@ -278,13 +278,56 @@ class BooleanScorer2 extends Scorer {
                                 : new DisjunctionSumScorer(prohibitedScorers)));
   }
 
+  /** Returns a scorer that only produces the documents that can enter the
+   * top hits of <code>collector</code>, or null when this query is not a
+   * disjunction of terms or the collector needs all hits.
+   */
+  private Scorer makeMaxScoreScorer(TopDocCollector collector)
+    throws IOException {
+    if (!collector.skipsHits()
+        || requiredScorers.size() != 0
+        || minNrShouldMatch > 1
+        || optionalScorers.size() < 2) {
+      return null;
+    }
+    Scorer[] scorers = new Scorer[optionalScorers.size()];
+    for (int i = 0; i < scorers.length; i++) {
+      scorers[i] = (Scorer) optionalScorers.get(i);
+      if (!(scorers[i] instanceof TermScorer)) {
+        return null;
+      }
+    }
+    float[] bounds = new float[scorers.length];
+    for (int i = 0; i < scorers.length; i++) {
+      bounds[i] = ((TermScorer) scorers[i]).maxScore();
+    }
+    Scorer prohibited = (prohibitedScorers.size() == 0)
+                      ? null
+                      : ((prohibitedScorers.size() == 1)
+                        ? (Scorer) prohibitedScorers.get(0)
+                        : new DisjunctionSumScorer(prohibitedScorers));
+    return new MaxScoreDisjunctionScorer(getSimilarity(), scorers, bounds,
+                                         coordinator.maxCoord, prohibited,
+                                         collector);
+  }
+
   /** Scores and collects all matching documents.
+   * <br>When <code>hc</code> is a {@link TopDocCollector} that allows
+   * skipping hits, disjunctions of terms only score the documents that
+   * can still enter its top hits.
    * @param hc The collector to which all matching documents are passed through
    * {@link HitCollector#collect(int, float)}.
    * <br>When this method is used the {@link #explain(int)} method should not be used.
    */
   public void score(HitCollector hc) throws IOException {
     if (countingSumScorer == null) {
+      if (hc instanceof TopDocCollector) {
+        Scorer maxScoreScorer = makeMaxScoreScorer((TopDocCollector) hc);
+        if (maxScoreScorer != null) {
+          maxScoreScorer.score(hc);
+          return;
+        }
+      }
       initCountingSumScorer();
     }
     while (countingSumScorer.next()) {
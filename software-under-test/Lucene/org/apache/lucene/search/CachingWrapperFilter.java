@@ -17,6 +17,9 @@ package org.apache.lucene.search;
  */
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.DocIdBitSet;
+import org.apache.lucene.util.SortedIntDocIdSet;
+import org.apache.lucene.util.SortedVIntList;
 import java.util.BitSet;
 import java.util.WeakHashMap;
 import java.util.Map;
@@ -27,6 +30,10 @@ import java.io.IOException;
  * behavior is like {@link QueryFilter}.  The purpose is to allow
  * filters to simply filter, and then wrap with this class to add
  * caching, keeping the two concerns decoupled yet composable.
+ *
+ * <p>Sets of few documents are cached more compactly than in a BitSet of
+ * one bit per document of the index, and {@link #bits(IndexReader)} then
+ * returns a new copy of them.
  */
 public class CachingWrapperFilter extends Filter {
   private Filter filter;
@@ -44,25 +51,68 @@ public class CachingWrapperFilter extends Filter {
     this.filter = filter;
   }
 
-  public BitSet bits(IndexReader reader) throws IOException {
+  /** Returns the wrapped filter's documents, cached in the smallest of the
+   * {@link DocIdSet} implementations for their number. */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
     if (cache == null) {
       cache = new WeakHashMap();
     }
 
     synchronized (cache) {  // check cache
-      BitSet cached = (BitSet) cache.get(reader);
+      DocIdSet cached = (DocIdSet) cache.get(reader);
       if (cached != null) {
         return cached;
       }
     }
 
-    final BitSet bits = filter.bits(reader);
+    final DocIdSet docIdSet = compact(filter.getDocIdSet(reader),
+                                      reader.maxDoc());
 
     synchronized (cache) {  // update cache
-      cache.put(reader, bits);
+      cache.put(reader, docIdSet);
+    }
+
+    return docIdSet;
+  }
+
+  /**
+   * Returns <code>docIdSet</code> in the implementation taking the least
+   * memory for its number of documents, as long as that is at most a few
+   * percent of <code>maxDoc</code>, otherwise in a {@link DocIdBitSet}.
+   * Below one document in 64, a {@link SortedIntDocIdSet} is used, which
+   * is not the smallest but is skipped through much faster than a {@link
+   * SortedVIntList}.
+   */
+  static DocIdSet compact(DocIdSet docIdSet, int maxDoc) throws IOException {
+    if (docIdSet instanceof SortedIntDocIdSet
+        || docIdSet instanceof SortedVIntList)
+      return docIdSet;                            // already compact
+
+    BitSet bits;
+    if (docIdSet instanceof DocIdBitSet) {
+      bits = ((DocIdBitSet)docIdSet).getBitSet();
+    } else {
+      bits = new BitSet(maxDoc);
+      DocIdSetIterator iterator = docIdSet.iterator();
+      while (iterator.next())
+        bits.set(iterator.doc());
     }
 
-    return bits;
+    int size = bits.cardinality();
+    if (size > maxDoc / 16)                       // dense: one bit each
+      return (docIdSet instanceof DocIdBitSet) ? docIdSet : new DocIdBitSet(bits);
+
+    int[] docs = new int[size];
+    int i = 0;
+    for (int doc = bits.nextSetBit(0); doc >= 0; doc = bits.nextSetBit(doc+1))
+      docs[i++] = doc;
+    if (size <= maxDoc / 64)                      // sparse: four bytes each
+      return new SortedIntDocIdSet(docs, size);
+
+    SortedVIntList list = new SortedVIntList(docs, size);
+    if (list.getByteSize() < maxDoc / 8)          // smaller than the bits
+      return list;
+    return (docIdSet instanceof DocIdBitSet) ? docIdSet : new DocIdBitSet(bits);
   }
 
   public String toString() {
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 /** Scorer for conjunctions, sets of queries, all of which are required. */
 class ConjunctionScorer extends Scorer {
   private LinkedList scorers = new LinkedList();
+  private Scorer[] scorersInOrder;                // as added, for score()
   private boolean firstTime = true;
   private boolean more = true;
   private float coord;
@@ -76,10 +77,9 @@ class ConjunctionScorer extends Scorer {
   }
 
   public float score() throws IOException {
-    float score = 0.0f;                           // sum scores
-    Iterator i = scorers.iterator();
-    while (i.hasNext())
-      score += ((Scorer)i.next()).score();
+    float score = 0.0f;                           // sum scores, in the order
+    for (int i = 0; i < scorersInOrder.length; i++) // the scorers were added
+      score += scorersInOrder[i].score();
     score *= coord;
     return score;
   }
@@ -87,6 +87,7 @@ class ConjunctionScorer extends Scorer {
   private void init(boolean initScorers) throws IOException {
     //  compute coord factor
     coord = getSimilarity().coord(scorers.size(), scorers.size());
+    scorersInOrder = (Scorer[])scorers.toArray(new Scorer[scorers.size()]);
    
     more = scorers.size() > 0;
 
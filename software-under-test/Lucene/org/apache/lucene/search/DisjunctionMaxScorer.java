@@ -25,7 +25,8 @@ import java.util.Comparator;
  * The Scorer for DisjunctionMaxQuery's.  The union of all documents generated by the the subquery scorers
  * is generated in document number order.  The score for each document is the maximum of the scores computed
  * by the subquery scorers that generate that document, plus tieBreakerMultiplier times the sum of the scores
- * for the other subqueries that generate the document.
+ * for the other subqueries that generate the document.  The scores are added in the order the subquery
+ * scorers were added, so a document gets the same score whichever sequence of next() and skipTo() calls led to it.
  * @author Chuck Williams
  */
 class DisjunctionMaxScorer extends Scorer {
@@ -33,6 +34,15 @@ class DisjunctionMaxScorer extends Scorer {
     /* The scorers for subqueries that have remaining docs, kept as a min heap by number of next doc. */
     private ArrayList subScorers = new ArrayList();
 
+    /* The number of scorers added. */
+    private int nrScorers = 0;
+
+    /* The scores of the scorers that generated the current doc, by the order in which the scorers were added,
+     * and the positions of these scorers in that order. */
+    private float[] subScores;
+    private int[] matchers;
+    private int nrMatchers;
+
     /* Multiplier applied to non-maximum-scoring subqueries for a document as they are summed into the result. */
     private float tieBreakerMultiplier;
 
@@ -52,9 +62,26 @@ class DisjunctionMaxScorer extends Scorer {
      */
     public void add(Scorer scorer) throws IOException {
         if (scorer.next()) {       // Initialize and retain only if it produces docs
-            subScorers.add(scorer);
+            subScorers.add(new SubScorer(scorer, nrScorers));
             more = true;
         }
+        nrScorers++;
+    }
+
+    /* A scorer and the position in which it was added. */
+    private static final class SubScorer {
+        final Scorer scorer;
+        final int index;
+
+        SubScorer(Scorer scorer, int index) {
+            this.scorer = scorer;
+            this.index = index;
+        }
+    }
+
+    /* The scorer at position i of the heap. */
+    private Scorer scorer(int i) {
+        return ((SubScorer) subScorers.get(i)).scorer;
     }
 
     /** Generate the next document matching our associated DisjunctionMaxQuery.
@@ -63,50 +90,61 @@ class DisjunctionMaxScorer extends Scorer {
     public boolean next() throws IOException {
         if (!more) return false;
         if (firstTime) {
-            heapify();
-            firstTime = false;
+            init();
             return true;   // more would have been false if no subScorers had any docs
         }
         // Increment all generators that generated the last doc and adjust the heap.
-        int lastdoc = ((Scorer) subScorers.get(0)).doc();
+        int lastdoc = scorer(0).doc();
         do {
-            if (((Scorer) subScorers.get(0)).next())
+            if (scorer(0).next())
                 heapAdjust(0);
             else {
                 heapRemoveRoot();
                 if (subScorers.isEmpty()) return (more = false);
             }
-        } while ( ((Scorer) subScorers.get(0)).doc()==lastdoc );
+        } while ( scorer(0).doc()==lastdoc );
         return true;
     }
 
+    /* Called the first time next() or skipTo() is called. */
+    private void init() {
+        heapify();
+        subScores = new float[nrScorers];
+        matchers = new int[nrScorers];
+        firstTime = false;
+    }
+
     /** Determine the current document number.  Initially invalid, until {@link #next()} is called the first time.
      * @return the document number of the currently generated document
      */
     public int doc() {
-        return ((Scorer) subScorers.get(0)).doc();
+        return scorer(0).doc();
     }
 
     /** Determine the current document score.  Initially invalid, until {@link #next()} is called the first time.
      * @return the score of the current generated document
      */
     public float score() throws IOException {
-        int doc = ((Scorer) subScorers.get(0)).doc();
-        float[] sum = {((Scorer) subScorers.get(0)).score()}, max = {sum[0]};
-        int size = subScorers.size();
-        scoreAll(1, size, doc, sum, max);
-        scoreAll(2, size, doc, sum, max);
-        return max[0] + (sum[0] - max[0])*tieBreakerMultiplier;
+        nrMatchers = 0;
+        scoreAll(0, subScorers.size(), scorer(0).doc());
+        Arrays.sort(matchers, 0, nrMatchers);
+        float sum = subScores[matchers[0]], max = sum;
+        for (int i = 1; i < nrMatchers; i++) {
+            float sub = subScores[matchers[i]];
+            sum += sub;
+            max = Math.max(max, sub);
+        }
+        return max + (sum - max)*tieBreakerMultiplier;
     }
 
-    // Recursively iterate all subScorers that generated last doc computing sum and max
-    private void scoreAll(int root, int size, int doc, float[] sum, float[] max) throws IOException {
-        if (root<size && ((Scorer) subScorers.get(root)).doc() == doc) {
-            float sub = ((Scorer) subScorers.get(root)).score();
-            sum[0] += sub;
-            max[0] = Math.max(max[0], sub);
-            scoreAll((root<<1)+1, size, doc, sum, max);
-            scoreAll((root<<1)+2, size, doc, sum, max);
+    // Recursively iterate all subScorers that generated last doc collecting their scores
+    private void scoreAll(int root, int size, int doc) throws IOException {
+        if (root<size && scorer(root).doc() == doc) {
+            SubScorer sub = (SubScorer) subScorers.get(root);
+            subScores[sub.index] = sub.scorer.score();
+            matchers[nrMatchers++] = sub.index;
+            scoreAll((root<<1)+1, size, doc);
+            scoreAll((root<<1)+2, size, doc);
         }
     }
 
@@ -115,8 +153,12 @@ class DisjunctionMaxScorer extends Scorer {
      * @return true iff there is a document to be generated whose number is at least target
      */
     public boolean skipTo(int target) throws IOException {
-        while (subScorers.size()>0 && ((Scorer)subScorers.get(0)).doc()<target) {
-            if (((Scorer)subScorers.get(0)).skipTo(target))
+        if (firstTime) {
+            if (!more) return false;
+            init();
+        }
+        while (subScorers.size()>0 && scorer(0).doc()<target) {
+            if (scorer(0).skipTo(target))
                 heapAdjust(0);
             else
                 heapRemoveRoot();
@@ -145,18 +187,18 @@ class DisjunctionMaxScorer extends Scorer {
      * Bubble the root down as required to make the subtree a heap.
      */
     private void heapAdjust(int root) {
-        Scorer scorer=(Scorer)subScorers.get(root);
-        int doc=scorer.doc();
+        Object scorer=subScorers.get(root);
+        int doc=scorer(root).doc();
         int i=root, size=subScorers.size();
         while (i<=(size>>1)-1) {
             int lchild=(i<<1)+1;
-            Scorer lscorer=(Scorer)subScorers.get(lchild);
-            int ldoc=lscorer.doc();
+            Object lscorer=subScorers.get(lchild);
+            int ldoc=scorer(lchild).doc();
             int rdoc=Integer.MAX_VALUE, rchild=(i<<1)+2;
-            Scorer rscorer=null;
+            Object rscorer=null;
             if (rchild<size) {
-                rscorer=(Scorer)subScorers.get(rchild);
-                rdoc=rscorer.doc();
+                rscorer=subScorers.get(rchild);
+                rdoc=scorer(rchild).doc();
             }
             if (ldoc<doc) {
                 if (rdoc<ldoc) {
@@ -16,6 +16,7 @@ package org.apache.lucene.search;
  * limitations under the License.
  */
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Iterator;
 import java.io.IOException;
@@ -24,6 +25,9 @@ import org.apache.lucene.util.PriorityQueue;
 
 /** A Scorer for OR like queries, counterpart of Lucene's <code>ConjunctionScorer</code>.
  * This Scorer implements {@link Scorer#skipTo(int)} and uses skipTo() on the given Scorers. 
+ * <br>The scores of the matching subscorers are added in the order of
+ * <code>subScorers</code>, so a document gets the same score whichever
+ * sequence of next() and skipTo() calls led to it.
  */
 public class DisjunctionSumScorer extends Scorer {
   /** The number of subscorers. */ 
@@ -48,6 +52,13 @@ public class DisjunctionSumScorer extends Scorer {
    * and all scorers are after the matching doc, or are exhausted.
    */
   private ScorerQueue scorerQueue = null;
+
+  /** The scores of the subscorers matching the current document, by their
+   * position in <code>subScorers</code>. */
+  private float[] subScores;
+
+  /** The positions of the subscorers matching the current document. */
+  private int[] matchers;
   
   /** The document number of the current match. */
   private int currentDoc = -1;
@@ -96,22 +107,36 @@ public class DisjunctionSumScorer extends Scorer {
   private void initScorerQueue() throws IOException {
     Iterator si = subScorers.iterator();
     scorerQueue = new ScorerQueue(nrScorers);
-    while (si.hasNext()) {
+    subScores = new float[nrScorers];
+    matchers = new int[nrScorers];
+    for (int i = 0; si.hasNext(); i++) {
       Scorer se = (Scorer) si.next();
       if (se.next()) { // doc() method will be used in scorerQueue.
-        scorerQueue.insert(se);
+        scorerQueue.insert(new SubScorer(se, i));
       }
     }
   }
 
-  /** A <code>PriorityQueue</code> that orders by {@link Scorer#doc()}. */
-  private class ScorerQueue extends PriorityQueue {
+  /** A subscorer and its position in <code>subScorers</code>. */
+  private static final class SubScorer {
+    final Scorer scorer;
+    final int index;
+
+    SubScorer(Scorer scorer, int index) {
+      this.scorer = scorer;
+      this.index = index;
+    }
+  }
+
+  /** A <code>PriorityQueue</code> of {@link SubScorer}s that orders by
+   * {@link Scorer#doc()}. */
+  private static class ScorerQueue extends PriorityQueue {
     ScorerQueue(int size) {
       initialize(size);
     }
 
     protected boolean lessThan(Object o1, Object o2) {
-      return ((Scorer)o1).doc() < ((Scorer)o2).doc();
+      return ((SubScorer)o1).scorer.doc() < ((SubScorer)o2).scorer.doc();
     }
   }
   
@@ -143,12 +168,12 @@ public class DisjunctionSumScorer extends Scorer {
    */
   protected boolean advanceAfterCurrent() throws IOException {
     do { // repeat until minimum nr of matchers
-      Scorer top = (Scorer) scorerQueue.top();
-      currentDoc = top.doc();
-      currentScore = top.score();
-      nrMatchers = 1;
+      SubScorer top = (SubScorer) scorerQueue.top();
+      currentDoc = top.scorer.doc();
+      nrMatchers = 0;
+      addMatcher(top);
       do { // Until all subscorers are after currentDoc
-        if (top.next()) {
+        if (top.scorer.next()) {
           scorerQueue.adjustTop();
         } else {
           scorerQueue.pop();
@@ -161,16 +186,16 @@ public class DisjunctionSumScorer extends Scorer {
             break; // nothing more to advance, check for last match.
           }
         }
-        top = (Scorer) scorerQueue.top();
-        if (top.doc() != currentDoc) {
+        top = (SubScorer) scorerQueue.top();
+        if (top.scorer.doc() != currentDoc) {
           break; // All remaining subscorers are after currentDoc.
         } else {
-          currentScore += top.score();
-          nrMatchers++;
+          addMatcher(top);
         }
       } while (true);
       
       if (nrMatchers >= minimumNrMatchers) {
+        sumScores();
         return true;
       } else if (scorerQueue.size() < minimumNrMatchers) {
         return false;
@@ -178,6 +203,23 @@ public class DisjunctionSumScorer extends Scorer {
     } while (true);
   }
   
+  /** Records the score of a subscorer on <code>currentDoc</code>. */
+  private void addMatcher(SubScorer matcher) throws IOException {
+    subScores[matcher.index] = matcher.scorer.score();
+    matchers[nrMatchers++] = matcher.index;
+  }
+
+  /** Sets <code>currentScore</code> to the sum of the scores of the
+   * matching subscorers, added in the order of <code>subScorers</code>.
+   */
+  private void sumScores() {
+    Arrays.sort(matchers, 0, nrMatchers);
+    float sum = 0.0f;
+    for (int i = 0; i < nrMatchers; i++)
+      sum += subScores[matchers[i]];
+    currentScore = sum;
+  }
+
   /** Returns the score of the current document matching the query.
    * Initially invalid, until {@link #next()} is called the first time.
    */
@@ -210,10 +252,10 @@ public class DisjunctionSumScorer extends Scorer {
       target = currentDoc + 1;
     }
     do {
-      Scorer top = (Scorer) scorerQueue.top();
-      if (top.doc() >= target) {
+      SubScorer top = (SubScorer) scorerQueue.top();
+      if (top.scorer.doc() >= target) {
         return advanceAfterCurrent();
-      } else if (top.skipTo(target)) {
+      } else if (top.scorer.skipTo(target)) {
         scorerQueue.adjustTop();
       } else {
         scorerQueue.pop();
@@ -0,0 +1,34 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+/**
+ * A set of document numbers, as returned by {@link
+ * Filter#getDocIdSet(org.apache.lucene.index.IndexReader)}.
+ *
+ * <p>Implementations differ in how much memory they take for a given number
+ * of documents: see {@link org.apache.lucene.util.DocIdBitSet}, {@link
+ * org.apache.lucene.util.SortedIntDocIdSet} and {@link
+ * org.apache.lucene.util.SortedVIntList}.
+ */
+public abstract class DocIdSet {
+
+  /** Returns a new iterator over the documents of this set.  A set may be
+   * iterated by several iterators at once, also on several threads. */
+  public abstract DocIdSetIterator iterator() throws IOException;
+}
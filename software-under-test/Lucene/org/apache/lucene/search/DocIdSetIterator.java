@@ -0,0 +1,52 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+/**
+ * Iterates over the document numbers of a {@link DocIdSet}, in increasing
+ * order.
+ */
+public abstract class DocIdSetIterator {
+
+  /** Returns the current document number.
+   * Initially invalid, until {@link #next()} or {@link #skipTo(int)} is
+   * called the first time.
+   */
+  public abstract int doc();
+
+  /** Advances to the next document in the set.
+   * @return true iff there is another document in the set.
+   */
+  public abstract boolean next() throws IOException;
+
+  /** Skips to the first document beyond the current whose number is
+   * greater than or equal to a given target.
+   * @param target The target document number.
+   * @return true iff there is such a document.
+   * <p>Behaves as if written: <pre>
+   *   boolean skipTo(int target) {
+   *     do {
+   *       if (!next())
+   * 	     return false;
+   *     } while (target > doc());
+   *     return true;
+   *   }
+   * </pre>Most implementations are considerably more efficient than that.
+   */
+  public abstract boolean skipTo(int target) throws IOException;
+}
@@ -0,0 +1,42 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+/** Tests documents for membership in a {@link DocIdSet} by skipping its
+ * iterator to them, which is fast when they are tested in increasing
+ * order.  Testing a document before the last one starts a new iterator. */
+final class DocIdSetMatcher {
+  private final DocIdSet docIdSet;
+  private DocIdSetIterator iterator;
+  private int doc;                                // current doc of iterator
+
+  DocIdSetMatcher(DocIdSet docIdSet) {
+    this.docIdSet = docIdSet;
+  }
+
+  /** Returns true iff <code>target</code> is in the set. */
+  boolean matches(int target) throws IOException {
+    if (iterator == null || target < doc) {       // (re)start
+      iterator = docIdSet.iterator();
+      doc = -1;
+    }
+    if (doc < target)
+      doc = iterator.skipTo(target) ? iterator.doc() : Integer.MAX_VALUE;
+    return doc == target;
+  }
+}
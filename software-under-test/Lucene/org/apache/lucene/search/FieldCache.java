@@ -174,4 +174,24 @@ public interface FieldCache {
    */
   public Comparable[] getCustom (IndexReader reader, String field, SortComparator comparator)
   throws IOException;
+
+  /** Returns the number of requests that were answered with values already
+   * in the cache, including requests which waited for another thread to
+   * load them.  Values of readers made of several segments are composed
+   * from those of the segments, so such a request may count more than once.
+   * @return The number of cache hits.
+   */
+  public long getHitCount();
+
+  /** Returns the number of times values were loaded into the cache.
+   * @return The number of cache misses.
+   */
+  public long getMissCount();
+
+  /** Returns the time spent loading values into the cache.  Loads which
+   * compose the values of the segments of a reader include the time spent
+   * loading those.
+   * @return The load time in milliseconds.
+   */
+  public long getLoadTime();
 }
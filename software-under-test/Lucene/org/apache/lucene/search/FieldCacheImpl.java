@@ -21,6 +21,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.FieldCache.StringIndex; // required by GCJ
+import org.apache.lucene.util.PriorityQueue;
 
 import java.io.IOException;
 import java.util.Map;
@@ -31,6 +32,14 @@ import java.util.HashMap;
  * Expert: The default cache implementation, storing all values in memory.
  * A WeakHashMap is used for storage.
  *
+ * <p>Values are loaded for each segment of an index separately, and the
+ * values for a reader made of several segments are composed from those of
+ * its segments on each call, without caching a second copy of them.
+ * Readers returned by {@link IndexReader#reopen()} thus only load the
+ * segments that changed.  A value is loaded by a single thread;
+ * other threads asking for the same value wait for it, while values for
+ * other fields or readers can be loaded at the same time.
+ *
  * <p>Created: May 19, 2004 4:40:36 PM
  *
  * @author  Tim Jones (Nacimiento Software)
@@ -44,7 +53,7 @@ implements FieldCache {
   static class Entry {
     final String field;        // which Field
     final int type;            // which SortField type
-    final Object custom;       // which custom comparator
+    final Object custom;       // which custom comparator or parser
 
     /** Creates one of these objects. */
     Entry (String field, int type) {
@@ -55,8 +64,13 @@ implements FieldCache {
 
     /** Creates one of these objects for a custom comparator. */
     Entry (String field, Object custom) {
+      this(field, SortField.CUSTOM, custom);
+    }
+
+    /** Creates one of these objects for a type read with a parser. */
+    Entry (String field, int type, Object custom) {
       this.field = field.intern();
-      this.type = SortField.CUSTOM;
+      this.type = type;
       this.custom = custom;
     }
 
@@ -81,6 +95,11 @@ implements FieldCache {
     }
   }
 
+  /** Stands in the cache for a value while it is loaded. */
+  private static final class CreationPlaceholder {
+    Object value;
+  }
+
   private static final IntParser INT_PARSER = new IntParser() {
       public int parseInt(String value) {
         return Integer.parseInt(value);
@@ -93,52 +112,101 @@ implements FieldCache {
       }
     };
 
-  /** The internal cache. Maps Entry to array of interpreted term values. **/
+  /** The internal cache. Maps the cache key of a reader to a map from Entry
+   * to array of interpreted term values. **/
   final Map cache = new WeakHashMap();
 
-  /** See if an object is in the cache. */
-  Object lookup (IndexReader reader, String field, int type) {
-    Entry entry = new Entry (field, type);
+  private long hitCount;
+  private long missCount;
+  private long loadTime;
+
+  /** Returns the value for <code>entry</code>, loading it if it is not in
+   * the cache.  Only one thread loads a value; others wait for it.  Values
+   * of readers with sub-readers are composed and not cached. */
+  Object get (IndexReader reader, Entry entry) throws IOException {
+    if (reader.getSequentialSubReaders() != null)
+      return load (reader, entry);
+    Map readerCache;
+    Object value;
     synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) return null;
-      return readerCache.get (entry);
+      Object key = reader.getFieldCacheKey();
+      readerCache = (Map) cache.get(key);
+      if (readerCache == null) {
+        readerCache = new HashMap();
+        cache.put(key, readerCache);
+      }
+      value = readerCache.get (entry);
+      if (value == null) {
+        value = new CreationPlaceholder();
+        readerCache.put (entry, value);
+      } else if (!(value instanceof CreationPlaceholder)) {
+        hitCount++;
+        return value;
+      }
+    }
+    CreationPlaceholder progress = (CreationPlaceholder) value;
+    synchronized (progress) {
+      if (progress.value == null) {             // first, or previous load failed
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+          missCount++;
+        }
+        progress.value = load (reader, entry);
+        synchronized (this) {
+          readerCache.put (entry, progress.value);
+          loadTime += System.currentTimeMillis() - start;
+        }
+      } else {
+        synchronized (this) {
+          hitCount++;
+        }
+      }
+      return progress.value;
     }
   }
 
-  /** See if a custom object is in the cache. */
-  Object lookup (IndexReader reader, String field, Object comparer) {
-    Entry entry = new Entry (field, comparer);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) return null;
-      return readerCache.get (entry);
-    }
+  // inherit javadocs
+  public synchronized long getHitCount() {
+    return hitCount;
   }
 
-  /** Put an object into the cache. */
-  Object store (IndexReader reader, String field, int type, Object value) {
-    Entry entry = new Entry (field, type);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) {
-        readerCache = new HashMap();
-        cache.put(reader,readerCache);
-      }
-      return readerCache.put (entry, value);
-    }
+  // inherit javadocs
+  public synchronized long getMissCount() {
+    return missCount;
   }
 
-  /** Put a custom object into the cache. */
-  Object store (IndexReader reader, String field, Object comparer, Object value) {
-    Entry entry = new Entry (field, comparer);
-    synchronized (this) {
-      HashMap readerCache = (HashMap)cache.get(reader);
-      if (readerCache == null) {
-        readerCache = new HashMap();
-        cache.put(reader, readerCache);
-      }
-      return readerCache.put (entry, value);
+  // inherit javadocs
+  public synchronized long getLoadTime() {
+    return loadTime;
+  }
+
+  /** Loads the value for <code>entry</code>, either from the terms of a
+   * single reader or by composing the values of its sub-readers. */
+  private Object load (IndexReader reader, Entry entry) throws IOException {
+    String field = entry.field;
+    if (entry.type == SortField.AUTO)
+      return loadAuto (reader, field);
+
+    IndexReader[] subReaders = reader.getSequentialSubReaders();
+    if (subReaders != null) {
+      if (entry.type == STRING_INDEX)
+        return composeStringIndex (reader, field, subReaders);
+      return compose (reader, entry, subReaders);
+    }
+
+    switch (entry.type) {
+      case SortField.INT:
+        return loadInts (reader, field, (IntParser) entry.custom);
+      case SortField.FLOAT:
+        return loadFloats (reader, field, (FloatParser) entry.custom);
+      case SortField.STRING:
+        return loadStrings (reader, field);
+      case STRING_INDEX:
+        return loadStringIndex (reader, field);
+      case SortField.CUSTOM:
+        return loadCustom (reader, field, (SortComparator) entry.custom);
+      default:
+        throw new RuntimeException ("unknown field type: " + entry.type);
     }
   }
 
@@ -150,30 +218,29 @@ implements FieldCache {
   // inherit javadocs
   public int[] getInts (IndexReader reader, String field, IntParser parser)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, parser);
-    if (ret == null) {
-      final int[] retArray = new int[reader.maxDoc()];
-      TermDocs termDocs = reader.termDocs();
-      TermEnum termEnum = reader.terms (new Term (field, ""));
-      try {
-        do {
-          Term term = termEnum.term();
-          if (term==null || term.field() != field) break;
-          int termval = parser.parseInt(term.text());
-          termDocs.seek (termEnum);
-          while (termDocs.next()) {
-            retArray[termDocs.doc()] = termval;
-          }
-        } while (termEnum.next());
-      } finally {
-        termDocs.close();
-        termEnum.close();
-      }
-      store (reader, field, parser, retArray);
-      return retArray;
+    return (int[]) get (reader, new Entry (field, SortField.INT, parser));
+  }
+
+  private int[] loadInts (IndexReader reader, String field, IntParser parser)
+  throws IOException {
+    final int[] retArray = new int[reader.maxDoc()];
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term==null || term.field() != field) break;
+        int termval = parser.parseInt(term.text());
+        termDocs.seek (termEnum);
+        while (termDocs.next()) {
+          retArray[termDocs.doc()] = termval;
+        }
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
     }
-    return (int[]) ret;
+    return retArray;
   }
 
   // inherit javadocs
@@ -185,120 +252,218 @@ implements FieldCache {
   // inherit javadocs
   public float[] getFloats (IndexReader reader, String field,
                             FloatParser parser) throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, parser);
-    if (ret == null) {
-      final float[] retArray = new float[reader.maxDoc()];
-      TermDocs termDocs = reader.termDocs();
-      TermEnum termEnum = reader.terms (new Term (field, ""));
-      try {
-        do {
-          Term term = termEnum.term();
-          if (term==null || term.field() != field) break;
-          float termval = parser.parseFloat(term.text());
-          termDocs.seek (termEnum);
-          while (termDocs.next()) {
-            retArray[termDocs.doc()] = termval;
-          }
-        } while (termEnum.next());
-      } finally {
-        termDocs.close();
-        termEnum.close();
-      }
-      store (reader, field, parser, retArray);
-      return retArray;
+    return (float[]) get (reader, new Entry (field, SortField.FLOAT, parser));
+  }
+
+  private float[] loadFloats (IndexReader reader, String field,
+                              FloatParser parser) throws IOException {
+    final float[] retArray = new float[reader.maxDoc()];
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term==null || term.field() != field) break;
+        float termval = parser.parseFloat(term.text());
+        termDocs.seek (termEnum);
+        while (termDocs.next()) {
+          retArray[termDocs.doc()] = termval;
+        }
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
     }
-    return (float[]) ret;
+    return retArray;
   }
 
   // inherit javadocs
   public String[] getStrings (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, SortField.STRING);
-    if (ret == null) {
-      final String[] retArray = new String[reader.maxDoc()];
-      TermDocs termDocs = reader.termDocs();
-      TermEnum termEnum = reader.terms (new Term (field, ""));
-      try {
-        do {
-          Term term = termEnum.term();
-          if (term==null || term.field() != field) break;
-          String termval = term.text();
-          termDocs.seek (termEnum);
-          while (termDocs.next()) {
-            retArray[termDocs.doc()] = termval;
-          }
-        } while (termEnum.next());
-      } finally {
-        termDocs.close();
-        termEnum.close();
-      }
-      store (reader, field, SortField.STRING, retArray);
-      return retArray;
+    return (String[]) get (reader, new Entry (field, SortField.STRING));
+  }
+
+  private String[] loadStrings (IndexReader reader, String field)
+  throws IOException {
+    final String[] retArray = new String[reader.maxDoc()];
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term==null || term.field() != field) break;
+        String termval = term.text();
+        termDocs.seek (termEnum);
+        while (termDocs.next()) {
+          retArray[termDocs.doc()] = termval;
+        }
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
     }
-    return (String[]) ret;
+    return retArray;
   }
 
   // inherit javadocs
   public StringIndex getStringIndex (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, STRING_INDEX);
-    if (ret == null) {
-      final int[] retArray = new int[reader.maxDoc()];
-      String[] mterms = new String[reader.maxDoc()+1];
-      TermDocs termDocs = reader.termDocs();
-      TermEnum termEnum = reader.terms (new Term (field, ""));
-      int t = 0;  // current term number
-
-      // an entry for documents that have no terms in this field
-      // should a document with no terms be at top or bottom?
-      // this puts them at the top - if it is changed, FieldDocSortedHitQueue
-      // needs to change as well.
-      mterms[t++] = null;
-
-      try {
-        do {
-          Term term = termEnum.term();
-          if (term==null || term.field() != field) break;
-
-          // store term text
-          // we expect that there is at most one term per document
-          if (t >= mterms.length) throw new RuntimeException ("there are more terms than " +
-                  "documents in field \"" + field + "\", but it's impossible to sort on " +
-                  "tokenized fields");
-          mterms[t] = term.text();
-
-          termDocs.seek (termEnum);
-          while (termDocs.next()) {
-            retArray[termDocs.doc()] = t;
-          }
+    return (StringIndex) get (reader, new Entry (field, STRING_INDEX));
+  }
 
-          t++;
-        } while (termEnum.next());
-      } finally {
-        termDocs.close();
-        termEnum.close();
-      }
+  private StringIndex loadStringIndex (IndexReader reader, String field)
+  throws IOException {
+    final int[] retArray = new int[reader.maxDoc()];
+    String[] mterms = new String[reader.maxDoc()+1];
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    int t = 0;  // current term number
+
+    // an entry for documents that have no terms in this field
+    // should a document with no terms be at top or bottom?
+    // this puts them at the top - if it is changed, FieldDocSortedHitQueue
+    // needs to change as well.
+    mterms[t++] = null;
+
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term==null || term.field() != field) break;
+
+        // store term text
+        // we expect that there is at most one term per document
+        if (t >= mterms.length) throw new RuntimeException ("there are more terms than " +
+                "documents in field \"" + field + "\", but it's impossible to sort on " +
+                "tokenized fields");
+        mterms[t] = term.text();
+
+        termDocs.seek (termEnum);
+        while (termDocs.next()) {
+          retArray[termDocs.doc()] = t;
+        }
 
-      if (t == 0) {
-        // if there are no terms, make the term array
-        // have a single null entry
-        mterms = new String[1];
-      } else if (t < mterms.length) {
-        // if there are less terms than documents,
-        // trim off the dead array space
-        String[] terms = new String[t];
-        System.arraycopy (mterms, 0, terms, 0, t);
-        mterms = terms;
-      }
+        t++;
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
+    }
+
+    if (t == 0) {
+      // if there are no terms, make the term array
+      // have a single null entry
+      mterms = new String[1];
+    } else if (t < mterms.length) {
+      // if there are less terms than documents,
+      // trim off the dead array space
+      String[] terms = new String[t];
+      System.arraycopy (mterms, 0, terms, 0, t);
+      mterms = terms;
+    }
+
+    return new StringIndex (retArray, mterms);
+  }
+
+  /** Concatenates the values of the sub-readers, each at its doc base. */
+  private Object compose (IndexReader reader, Entry entry,
+                          IndexReader[] subReaders) throws IOException {
+    Object retArray;
+    switch (entry.type) {
+      case SortField.INT:
+        retArray = new int[reader.maxDoc()];
+        break;
+      case SortField.FLOAT:
+        retArray = new float[reader.maxDoc()];
+        break;
+      case SortField.STRING:
+        retArray = new String[reader.maxDoc()];
+        break;
+      case SortField.CUSTOM:
+        retArray = new Comparable[reader.maxDoc()];
+        break;
+      default:
+        throw new RuntimeException ("unknown field type: " + entry.type);
+    }
+    int base = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      int maxDoc = subReaders[i].maxDoc();
+      System.arraycopy (get (subReaders[i], entry), 0, retArray, base, maxDoc);
+      base += maxDoc;
+    }
+    return retArray;
+  }
+
+  /** Orders the sub-readers by the term they are positioned at. */
+  private static final class TermQueue extends PriorityQueue {
+    final String[][] lookups;
+    final int[] positions;
 
-      StringIndex value = new StringIndex (retArray, mterms);
-      store (reader, field, STRING_INDEX, value);
-      return value;
+    TermQueue (String[][] lookups, int[] positions) {
+      this.lookups = lookups;
+      this.positions = positions;
+      initialize (lookups.length);
     }
-    return (StringIndex) ret;
+
+    protected boolean lessThan (Object a, Object b) {
+      int i = ((Integer) a).intValue();
+      int j = ((Integer) b).intValue();
+      int c = lookups[i][positions[i]].compareTo (lookups[j][positions[j]]);
+      return c < 0 || (c == 0 && i < j);
+    }
+  }
+
+  /** Merges the term lookups of the sub-readers and maps the order of each
+   * of their documents to the position of its term in the merged lookup. */
+  private StringIndex composeStringIndex (IndexReader reader, String field,
+                                          IndexReader[] subReaders)
+  throws IOException {
+    String[][] lookups = new String[subReaders.length][];
+    int[][] ords = new int[subReaders.length][];
+    int[] positions = new int[subReaders.length];
+    int numTerms = 1;
+    for (int i = 0; i < subReaders.length; i++) {
+      StringIndex index = getStringIndex (subReaders[i], field);
+      lookups[i] = index.lookup;
+      ords[i] = new int[index.lookup.length];     // 0 stays 0: no term
+      positions[i] = 1;
+      numTerms += index.lookup.length - 1;
+    }
+
+    TermQueue queue = new TermQueue (lookups, positions);
+    for (int i = 0; i < subReaders.length; i++) {
+      if (lookups[i].length > 1)
+        queue.put (new Integer (i));
+    }
+
+    String[] mterms = new String[numTerms];
+    int t = 0;                                    // mterms[0] is null
+    while (queue.size() > 0) {
+      int i = ((Integer) queue.top()).intValue();
+      String term = lookups[i][positions[i]];
+      if (t == 0 || !term.equals (mterms[t]))
+        mterms[++t] = term;
+      ords[i][positions[i]] = t;
+      if (++positions[i] < lookups[i].length)
+        queue.adjustTop();
+      else
+        queue.pop();
+    }
+    if (++t < mterms.length) {
+      String[] terms = new String[t];
+      System.arraycopy (mterms, 0, terms, 0, t);
+      mterms = terms;
+    }
+
+    final int[] retArray = new int[reader.maxDoc()];
+    int base = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      int[] order = getStringIndex (subReaders[i], field).order;
+      int[] ord = ords[i];
+      for (int j = 0; j < order.length; j++)
+        retArray[base + j] = ord[order[j]];
+      base += order.length;
+    }
+    return new StringIndex (retArray, mterms);
   }
 
   /** The pattern used to detect integer values in a field */
@@ -315,82 +480,138 @@ implements FieldCache {
   // inherit javadocs
   public Object getAuto (IndexReader reader, String field)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, SortField.AUTO);
-    if (ret == null) {
-      TermEnum enumerator = reader.terms (new Term (field, ""));
-      try {
-        Term term = enumerator.term();
-        if (term == null) {
-          throw new RuntimeException ("no terms in field " + field + " - cannot determine sort type");
-        }
-        if (term.field() == field) {
-          String termtext = term.text().trim();
+    return get (reader, new Entry (field, SortField.AUTO));
+  }
+
+  private Object loadAuto (IndexReader reader, String field)
+  throws IOException {
+    if (reader.getSequentialSubReaders() != null && hasTerms (reader, field)) {
+      switch (getAutoType (this, reader, field)) {
+        case SortField.INT:
+          return getInts (reader, field);
+        case SortField.FLOAT:
+          return getFloats (reader, field);
+        default:
+          return getStringIndex (reader, field);
+      }
+    }
+    Object ret = null;
+    TermEnum enumerator = reader.terms (new Term (field, ""));
+    try {
+      Term term = enumerator.term();
+      if (term == null) {
+        throw new RuntimeException ("no terms in field " + field + " - cannot determine sort type");
+      }
+      if (term.field() == field) {
+        String termtext = term.text().trim();
 
-          /**
-           * Java 1.4 level code:
+        /**
+         * Java 1.4 level code:
 
-           if (pIntegers.matcher(termtext).matches())
-           return IntegerSortedHitQueue.comparator (reader, enumerator, field);
+         if (pIntegers.matcher(termtext).matches())
+         return IntegerSortedHitQueue.comparator (reader, enumerator, field);
 
-           else if (pFloats.matcher(termtext).matches())
-           return FloatSortedHitQueue.comparator (reader, enumerator, field);
-           */
+         else if (pFloats.matcher(termtext).matches())
+         return FloatSortedHitQueue.comparator (reader, enumerator, field);
+         */
 
-          // Java 1.3 level code:
+        // Java 1.3 level code:
+        try {
+          Integer.parseInt (termtext);
+          ret = getInts (reader, field);
+        } catch (NumberFormatException nfe1) {
           try {
-            Integer.parseInt (termtext);
-            ret = getInts (reader, field);
-          } catch (NumberFormatException nfe1) {
-            try {
-              Float.parseFloat (termtext);
-              ret = getFloats (reader, field);
-            } catch (NumberFormatException nfe2) {
-              ret = getStringIndex (reader, field);
-            }
+            Float.parseFloat (termtext);
+            ret = getFloats (reader, field);
+          } catch (NumberFormatException nfe2) {
+            ret = getStringIndex (reader, field);
           }
-          if (ret != null) {
-            store (reader, field, SortField.AUTO, ret);
-          }
-        } else {
-          throw new RuntimeException ("field \"" + field + "\" does not appear to be indexed");
         }
-      } finally {
-        enumerator.close();
+      } else {
+        throw new RuntimeException ("field \"" + field + "\" does not appear to be indexed");
       }
-
+    } finally {
+      enumerator.close();
     }
     return ret;
   }
 
+  /** Returns the type of the values <code>cache</code> gives a field for
+   * {@link SortField#AUTO}: {@link SortField#INT}, {@link SortField#FLOAT} or
+   * {@link SortField#STRING}.  For a reader with sub-readers the type is
+   * found from the cached values of those, without composing them: the
+   * values are ints if those of every sub-reader are, floats if those of
+   * every sub-reader are ints or floats, and strings otherwise. */
+  static int getAutoType (FieldCache cache, IndexReader reader, String field)
+  throws IOException {
+    IndexReader[] subReaders = reader.getSequentialSubReaders();
+    if (subReaders != null) {
+      int type = -1;
+      for (int i = 0; i < subReaders.length; i++) {
+        if (!hasTerms (subReaders[i], field))
+          continue;
+        switch (getAutoType (cache, subReaders[i], field)) {
+          case SortField.INT:
+            if (type == -1) type = SortField.INT;
+            break;
+          case SortField.FLOAT:
+            type = SortField.FLOAT;
+            break;
+          default:
+            return SortField.STRING;
+        }
+      }
+      if (type != -1)
+        return type;
+    }
+    Object lookup = cache.getAuto (reader, field);
+    if (lookup instanceof int[])
+      return SortField.INT;
+    if (lookup instanceof float[])
+      return SortField.FLOAT;
+    return SortField.STRING;
+  }
+
+  /** Returns whether a field has terms in <code>reader</code>. */
+  private static boolean hasTerms (IndexReader reader, String field)
+  throws IOException {
+    field = field.intern();
+    TermEnum enumerator = reader.terms (new Term (field, ""));
+    try {
+      Term term = enumerator.term();
+      return term != null && term.field() == field;
+    } finally {
+      enumerator.close();
+    }
+  }
+
   // inherit javadocs
   public Comparable[] getCustom (IndexReader reader, String field, SortComparator comparator)
   throws IOException {
-    field = field.intern();
-    Object ret = lookup (reader, field, comparator);
-    if (ret == null) {
-      final Comparable[] retArray = new Comparable[reader.maxDoc()];
-      TermDocs termDocs = reader.termDocs();
-      TermEnum termEnum = reader.terms (new Term (field, ""));
-      try {
-        do {
-          Term term = termEnum.term();
-          if (term==null || term.field() != field) break;
-          Comparable termval = comparator.getComparable (term.text());
-          termDocs.seek (termEnum);
-          while (termDocs.next()) {
-            retArray[termDocs.doc()] = termval;
-          }
-        } while (termEnum.next());
-      } finally {
-        termDocs.close();
-        termEnum.close();
-      }
-      store (reader, field, comparator, retArray);
-      return retArray;
+    return (Comparable[]) get (reader, new Entry (field, comparator));
+  }
+
+  private Comparable[] loadCustom (IndexReader reader, String field,
+                                   SortComparator comparator)
+  throws IOException {
+    final Comparable[] retArray = new Comparable[reader.maxDoc()];
+    TermDocs termDocs = reader.termDocs();
+    TermEnum termEnum = reader.terms (new Term (field, ""));
+    try {
+      do {
+        Term term = termEnum.term();
+        if (term==null || term.field() != field) break;
+        Comparable termval = comparator.getComparable (term.text());
+        termDocs.seek (termEnum);
+        while (termDocs.next()) {
+          retArray[termDocs.doc()] = termval;
+        }
+      } while (termEnum.next());
+    } finally {
+      termDocs.close();
+      termEnum.close();
     }
-    return (Comparable[]) ret;
+    return retArray;
   }
 
 }
-
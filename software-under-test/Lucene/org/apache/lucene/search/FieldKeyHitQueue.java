@@ -0,0 +1,261 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A queue of the top hits by fields that all have a primitive key per
+ * document, as the comparators {@link FieldSortedHitQueue} builds for scores,
+ * document numbers, integers, floats and strings do.  Hits are held in
+ * parallel arrays and compared by their keys, so collecting them allocates
+ * nothing; sort values are made only for the hits finally returned.
+ *
+ * <p>Hits are ordered as {@link FieldSortedHitQueue} orders them, with the
+ * hit sorting last on top.
+ */
+final class FieldKeyHitQueue {
+  private static final int SCORE = 0;
+  private static final int DOC = 1;
+  private static final int INT = 2;
+  private static final int FLOAT = 3;
+
+  private final int[] types;
+  private final boolean[] reverse;
+  private final int[][] intKeys;
+  private final float[][] floatKeys;
+
+  private final int[] docs;                       // hits, by slot
+  private final float[] scores;
+  private final int[] heap;                       // slots, from 1
+  private final int maxSize;
+  private int size;
+
+  private long[] afterKeys;                       // keys of a previous hit
+  private float[] afterFloats;
+  private int afterDoc;
+
+  private FieldKeyHitQueue(ScoreDocComparator[] comparators,
+                           SortField[] fields, int maxSize) {
+    int n = comparators.length;
+    types = new int[n];
+    reverse = new boolean[n];
+    intKeys = new int[n][];
+    floatKeys = new float[n][];
+    for (int i = 0; i < n; i++) {
+      ScoreDocComparator comparator = comparators[i];
+      if (comparator == ScoreDocComparator.RELEVANCE) {
+        types[i] = SCORE;
+      } else if (comparator == ScoreDocComparator.INDEXORDER) {
+        types[i] = DOC;
+      } else if (comparator instanceof FieldSortedHitQueue.IntKeyComparator) {
+        types[i] = INT;
+        intKeys[i] = ((FieldSortedHitQueue.IntKeyComparator)comparator).keys;
+      } else {
+        types[i] = FLOAT;
+        floatKeys[i] = ((FieldSortedHitQueue.FloatKeyComparator)comparator).keys;
+      }
+      reverse[i] = fields[i].getReverse();
+    }
+    this.maxSize = maxSize;
+    docs = new int[maxSize];
+    scores = new float[maxSize];
+    heap = new int[maxSize + 1];
+  }
+
+  /** Returns a queue of hits sorted by the comparators of a {@link
+   * FieldSortedHitQueue}, or null if any of them has no primitive keys. */
+  static FieldKeyHitQueue create(FieldSortedHitQueue queue, int maxSize) {
+    ScoreDocComparator[] comparators = queue.comparators;
+    for (int i = 0; i < comparators.length; i++) {
+      ScoreDocComparator comparator = comparators[i];
+      if (comparator != ScoreDocComparator.RELEVANCE
+          && comparator != ScoreDocComparator.INDEXORDER
+          && !(comparator instanceof FieldSortedHitQueue.IntKeyComparator)
+          && !(comparator instanceof FieldSortedHitQueue.FloatKeyComparator))
+        return null;
+    }
+    return new FieldKeyHitQueue(comparators, queue.getFields(), maxSize);
+  }
+
+  /** Sets the hit of a previous page that hits must sort after to be
+   * inserted.
+   * @param after a hit with a sort value for each field
+   * @param comparators the comparators this queue was created with
+   */
+  void setAfter(FieldDoc after, ScoreDocComparator[] comparators) {
+    int n = types.length;
+    afterKeys = new long[n];
+    afterFloats = new float[n];
+    for (int i = 0; i < n; i++) {
+      Comparable value = after.fields[i];
+      switch (types[i]) {
+        case SCORE:
+        case FLOAT:
+          afterFloats[i] = ((Float)value).floatValue();
+          break;
+        case DOC:
+          afterKeys[i] = ((Integer)value).intValue();
+          break;
+        default:
+          afterKeys[i] =
+            ((FieldSortedHitQueue.IntKeyComparator)comparators[i]).keyOf(value);
+      }
+    }
+    afterDoc = after.doc;
+  }
+
+  /** Returns a negative number, zero or a positive number as a hit sorts
+   * before, like or after another by the sort fields alone. */
+  private int compare(int docA, float scoreA, int docB, float scoreB) {
+    for (int i = 0; i < types.length; i++) {
+      int c;
+      switch (types[i]) {
+        case SCORE:
+          c = (scoreA > scoreB) ? -1 : ((scoreA < scoreB) ? 1 : 0);
+          break;
+        case DOC:
+          c = (docA < docB) ? -1 : ((docA > docB) ? 1 : 0);
+          break;
+        case INT:
+          int[] ints = intKeys[i];
+          int ia = ints[docA];
+          int ib = ints[docB];
+          c = (ia < ib) ? -1 : ((ia > ib) ? 1 : 0);
+          break;
+        default:
+          float[] floats = floatKeys[i];
+          float fa = floats[docA];
+          float fb = floats[docB];
+          c = (fa < fb) ? -1 : ((fa > fb) ? 1 : 0);
+      }
+      if (c != 0)
+        return reverse[i] ? -c : c;
+    }
+    return 0;
+  }
+
+  /** Returns whether a hit sorts after another, breaking ties by document
+   * number as {@link FieldSortedHitQueue} does. */
+  private boolean sortsAfter(int docA, float scoreA, int docB, float scoreB) {
+    int c = compare(docA, scoreA, docB, scoreB);
+    return c > 0 || (c == 0 && docA > docB);
+  }
+
+  private boolean lessThan(int slotA, int slotB) {
+    return sortsAfter(docs[slotA], scores[slotA], docs[slotB], scores[slotB]);
+  }
+
+  /** Returns whether a hit sorts after the one set by {@link
+   * #setAfter(FieldDoc,ScoreDocComparator[])}, comparing their sort values
+   * as {@link FieldDocSortedHitQueue} does. */
+  boolean follows(int doc, float score) {
+    for (int i = 0; i < types.length; i++) {
+      int c;
+      switch (types[i]) {
+        case SCORE:
+          float a = afterFloats[i];
+          c = (score > a) ? -1 : ((score < a) ? 1 : 0);
+          break;
+        case DOC:
+          long d = afterKeys[i];
+          c = (doc < d) ? -1 : ((doc > d) ? 1 : 0);
+          break;
+        case INT:
+          long k = 2L * intKeys[i][doc];
+          long ak = afterKeys[i];
+          c = (k < ak) ? -1 : ((k > ak) ? 1 : 0);
+          break;
+        default:
+          float f = floatKeys[i][doc];
+          float af = afterFloats[i];
+          c = (f < af) ? -1 : ((f > af) ? 1 : 0);
+      }
+      if (c != 0)
+        return reverse[i] ? c < 0 : c > 0;
+    }
+    return doc > afterDoc;
+  }
+
+  /** Adds a hit if the queue is not full or it sorts before the hit on top.
+   * @return whether the hit was added
+   */
+  boolean insert(int doc, float score) {
+    int slot;
+    if (size < maxSize) {
+      slot = size++;
+      docs[slot] = doc;
+      scores[slot] = score;
+      heap[size] = slot;
+      upHeap();
+    } else if (size > 0 && !sortsAfter(doc, score, docs[heap[1]], scores[heap[1]])) {
+      slot = heap[1];
+      docs[slot] = doc;
+      scores[slot] = score;
+      downHeap();
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /** Returns the number of hits in the queue. */
+  int size() {
+    return size;
+  }
+
+  /** Removes the hits, in order, into an array of {@link FieldDoc}s with
+   * their sort values filled in by <code>queue</code>. */
+  ScoreDoc[] popAll(FieldSortedHitQueue queue) {
+    ScoreDoc[] hits = new ScoreDoc[size];
+    for (int i = size - 1; i >= 0; i--) {
+      int slot = heap[1];
+      hits[i] = queue.fillFields(new FieldDoc(docs[slot], scores[slot]));
+      heap[1] = heap[size--];
+      downHeap();
+    }
+    return hits;
+  }
+
+  private void upHeap() {
+    int i = size;
+    int node = heap[i];                           // save bottom node
+    int j = i >>> 1;
+    while (j > 0 && lessThan(node, heap[j])) {
+      heap[i] = heap[j];                          // shift parents down
+      i = j;
+      j = j >>> 1;
+    }
+    heap[i] = node;                               // install saved node
+  }
+
+  private void downHeap() {
+    int i = 1;
+    int node = heap[i];                           // save top node
+    int j = i << 1;                               // find smaller child
+    int k = j + 1;
+    if (k <= size && lessThan(heap[k], heap[j]))
+      j = k;
+    while (j <= size && lessThan(heap[j], node)) {
+      heap[i] = heap[j];                          // shift up child
+      i = j;
+      j = i << 1;
+      k = j + 1;
+      if (k <= size && lessThan(heap[k], heap[j]))
+        j = k;
+    }
+    heap[i] = node;                               // install saved node
+  }
+}
@@ -24,6 +24,8 @@ import java.util.WeakHashMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Locale;
+import java.util.Arrays;
+import java.text.CollationKey;
 import java.text.Collator;
 
 /**
@@ -56,7 +58,10 @@ extends PriorityQueue {
     for (int i=0; i<n; ++i) {
       String fieldname = fields[i].getField();
       comparators[i] = getCachedComparator (reader, fieldname, fields[i].getType(), fields[i].getLocale(), fields[i].getFactory());
-      this.fields[i] = new SortField (fieldname, comparators[i].sortType(), fields[i].getReverse());
+      Locale locale = fields[i].getLocale();    // keep it to collate merged hits
+      this.fields[i] = (locale != null)
+        ? new SortField (fieldname, locale, fields[i].getReverse())
+        : new SortField (fieldname, comparators[i].sortType(), fields[i].getReverse());
     }
     initialize (size);
   }
@@ -127,16 +132,22 @@ extends PriorityQueue {
    * @see Searchable#search(Weight,Filter,int,Sort)
    */
   FieldDoc fillFields (final FieldDoc doc) {
-    final int n = comparators.length;
-    final Comparable[] fields = new Comparable[n];
-    for (int i=0; i<n; ++i)
-      fields[i] = comparators[i].sortValue(doc);
+    final Comparable[] fields = new Comparable[comparators.length];
+    sortValues (doc, fields);
     doc.fields = fields;
     //if (maxscore > 1.0f) doc.score /= maxscore;   // normalize scores
     return doc;
   }
 
 
+  /** Stores the values used to sort the given document into
+   * <code>values</code>, which holds one per sort field. */
+  void sortValues (final ScoreDoc doc, final Comparable[] values) {
+    final int n = comparators.length;
+    for (int i=0; i<n; ++i)
+      values[i] = comparators[i].sortValue(doc);
+  }
+
   /** Returns the SortFields being used by this hit queue. */
   SortField[] getFields() {
     return fields;
@@ -147,10 +158,8 @@ extends PriorityQueue {
   static final Map Comparators = new WeakHashMap();
 
   /** Returns a comparator if it is in the cache. */
-  static ScoreDocComparator lookup (IndexReader reader, String field, int type, Object factory) {
-    FieldCacheImpl.Entry entry = (factory != null)
-      ? new FieldCacheImpl.Entry (field, factory)
-      : new FieldCacheImpl.Entry (field, type);
+  static ScoreDocComparator lookup (IndexReader reader, String field, int type, Object custom) {
+    FieldCacheImpl.Entry entry = new FieldCacheImpl.Entry (field, type, custom);
     synchronized (Comparators) {
       HashMap readerCache = (HashMap)Comparators.get(reader);
       if (readerCache == null) return null;
@@ -159,10 +168,8 @@ extends PriorityQueue {
   }
 
   /** Stores a comparator into the cache. */
-  static Object store (IndexReader reader, String field, int type, Object factory, Object value) {
-    FieldCacheImpl.Entry entry = (factory != null)
-      ? new FieldCacheImpl.Entry (field, factory)
-      : new FieldCacheImpl.Entry (field, type);
+  static Object store (IndexReader reader, String field, int type, Object custom, Object value) {
+    FieldCacheImpl.Entry entry = new FieldCacheImpl.Entry (field, type, custom);
     synchronized (Comparators) {
       HashMap readerCache = (HashMap)Comparators.get(reader);
       if (readerCache == null) {
@@ -177,7 +184,8 @@ extends PriorityQueue {
   throws IOException {
     if (type == SortField.DOC) return ScoreDocComparator.INDEXORDER;
     if (type == SortField.SCORE) return ScoreDocComparator.RELEVANCE;
-    ScoreDocComparator comparator = lookup (reader, fieldname, type, factory);
+    Object custom = (factory != null) ? (Object)factory : locale;
+    ScoreDocComparator comparator = lookup (reader, fieldname, type, custom);
     if (comparator == null) {
       switch (type) {
         case SortField.AUTO:
@@ -199,11 +207,93 @@ extends PriorityQueue {
         default:
           throw new RuntimeException ("unknown field type: "+type);
       }
-      store (reader, fieldname, type, factory, comparator);
+      store (reader, fieldname, type, custom, comparator);
     }
     return comparator;
   }
 
+  /**
+   * Expert: A comparator ordering hits by an int key each document has in
+   * an array, such as the value of an integer field or the rank of the term
+   * of a string field.  Queues over these keys need not ask the comparator
+   * for sort values until hits are returned.
+   * @see FieldKeyHitQueue
+   */
+  static abstract class IntKeyComparator implements ScoreDocComparator {
+    /** The key of each document. */
+    final int[] keys;
+
+    IntKeyComparator (final int[] keys) {
+      this.keys = keys;
+    }
+
+    public final int compare (final ScoreDoc i, final ScoreDoc j) {
+      final int fi = keys[i.doc];
+      final int fj = keys[j.doc];
+      if (fi < fj) return -1;
+      if (fi > fj) return 1;
+      return 0;
+    }
+
+    /**
+     * Returns where a sort value falls among the keys: twice the key of
+     * the documents sorting like it or, if none would, one less than twice
+     * the key of the first document sorting after it.
+     * @param value a value returned by {@link #sortValue(ScoreDoc)}
+     */
+    abstract long keyOf (Comparable value);
+  }
+
+  /**
+   * Expert: A comparator ordering hits by the float value each document has
+   * in an array.
+   * @see FieldKeyHitQueue
+   */
+  static final class FloatKeyComparator implements ScoreDocComparator {
+    /** The value of each document. */
+    final float[] keys;
+
+    FloatKeyComparator (final float[] keys) {
+      this.keys = keys;
+    }
+
+    public final int compare (final ScoreDoc i, final ScoreDoc j) {
+      final float fi = keys[i.doc];
+      final float fj = keys[j.doc];
+      if (fi < fj) return -1;
+      if (fi > fj) return 1;
+      return 0;
+    }
+
+    public Comparable sortValue (final ScoreDoc i) {
+      return new Float (keys[i.doc]);
+    }
+
+    public int sortType() {
+      return SortField.FLOAT;
+    }
+  }
+
+  /** Returns twice the position of <code>value</code> in <code>terms</code>,
+   * which are sorted by <code>collator</code>, or by their natural order if it
+   * is null, from index 1 on.  If <code>value</code> is absent, returns one
+   * less than twice the position it would be inserted at. */
+  private static long keyOf (final String[] terms, final String value, final Collator collator) {
+    if (value == null)                            // no term: first
+      return 0;
+    int lo = 1;
+    int hi = terms.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = (collator == null) ? terms[mid].compareTo (value)
+                                 : collator.compare (terms[mid], value);
+      if (c < 0) lo = mid + 1;
+      else if (c > 0) hi = mid - 1;
+      else return 2L * mid;
+    }
+    return 2L * lo - 1;
+  }
+
   /**
    * Returns a comparator for sorting hits according to a field containing integers.
    * @param reader  Index to use.
@@ -215,15 +305,7 @@ extends PriorityQueue {
   throws IOException {
     final String field = fieldname.intern();
     final int[] fieldOrder = FieldCache.DEFAULT.getInts (reader, field);
-    return new ScoreDocComparator() {
-
-      public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        final int fi = fieldOrder[i.doc];
-        final int fj = fieldOrder[j.doc];
-        if (fi < fj) return -1;
-        if (fi > fj) return 1;
-        return 0;
-      }
+    return new IntKeyComparator (fieldOrder) {
 
       public Comparable sortValue (final ScoreDoc i) {
         return new Integer (fieldOrder[i.doc]);
@@ -232,6 +314,10 @@ extends PriorityQueue {
       public int sortType() {
         return SortField.INT;
       }
+
+      long keyOf (final Comparable value) {
+        return 2L * ((Integer)value).intValue();
+      }
     };
   }
 
@@ -245,29 +331,12 @@ extends PriorityQueue {
   static ScoreDocComparator comparatorFloat (final IndexReader reader, final String fieldname)
   throws IOException {
     final String field = fieldname.intern();
-    final float[] fieldOrder = FieldCache.DEFAULT.getFloats (reader, field);
-    return new ScoreDocComparator () {
-
-      public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        final float fi = fieldOrder[i.doc];
-        final float fj = fieldOrder[j.doc];
-        if (fi < fj) return -1;
-        if (fi > fj) return 1;
-        return 0;
-      }
-
-      public Comparable sortValue (final ScoreDoc i) {
-        return new Float (fieldOrder[i.doc]);
-      }
-
-      public int sortType() {
-        return SortField.FLOAT;
-      }
-    };
+    return new FloatKeyComparator (FieldCache.DEFAULT.getFloats (reader, field));
   }
 
   /**
    * Returns a comparator for sorting hits according to a field containing strings.
+   * Hits are compared by the ordinals of their terms, not by the terms.
    * @param reader  Index to use.
    * @param fieldname  Field containg string values.
    * @return  Comparator for sorting hits.
@@ -277,15 +346,7 @@ extends PriorityQueue {
   throws IOException {
     final String field = fieldname.intern();
     final FieldCache.StringIndex index = FieldCache.DEFAULT.getStringIndex (reader, field);
-    return new ScoreDocComparator () {
-
-      public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        final int fi = index.order[i.doc];
-        final int fj = index.order[j.doc];
-        if (fi < fj) return -1;
-        if (fi > fj) return 1;
-        return 0;
-      }
+    return new IntKeyComparator (index.order) {
 
       public Comparable sortValue (final ScoreDoc i) {
         return index.lookup[index.order[i.doc]];
@@ -294,11 +355,17 @@ extends PriorityQueue {
       public int sortType() {
         return SortField.STRING;
       }
+
+      long keyOf (final Comparable value) {
+        return FieldSortedHitQueue.keyOf (index.lookup, (String)value, null);
+      }
     };
   }
 
   /**
    * Returns a comparator for sorting hits according to a field containing strings.
+   * The terms of the field are ranked by the collator of the locale once, and
+   * hits are then compared by the ranks of their terms.
    * @param reader  Index to use.
    * @param fieldname  Field containg string values.
    * @return  Comparator for sorting hits.
@@ -308,20 +375,48 @@ extends PriorityQueue {
   throws IOException {
     final Collator collator = Collator.getInstance (locale);
     final String field = fieldname.intern();
-    final String[] index = FieldCache.DEFAULT.getStrings (reader, field);
-    return new ScoreDocComparator() {
+    final FieldCache.StringIndex index = FieldCache.DEFAULT.getStringIndex (reader, field);
+    final String[] lookup = index.lookup;
+
+    // rank the terms, giving those the collator finds equal the same rank
+    final CollationKey[] collated = new CollationKey[lookup.length - 1];
+    for (int t = 1; t < lookup.length; t++)
+      collated[t - 1] = collator.getCollationKey (lookup[t]);
+    Arrays.sort (collated);
+    final int[] termRanks = new int[lookup.length];
+    String[] ranked = new String[lookup.length];  // ranked[0] is null
+    int rank = 0;
+    for (int k = 0; k < collated.length; k++) {
+      String term = collated[k].getSourceString();
+      if (k == 0 || collated[k].compareTo (collated[k - 1]) != 0)
+        ranked[++rank] = term;
+      termRanks[(int)(keyOf (lookup, term, null) >> 1)] = rank;
+    }
+    if (++rank < ranked.length) {
+      String[] terms = new String[rank];
+      System.arraycopy (ranked, 0, terms, 0, rank);
+      ranked = terms;
+    }
+    final String[] byRank = ranked;
 
-      public final int compare (final ScoreDoc i, final ScoreDoc j) {
-        return collator.compare (index[i.doc], index[j.doc]);
-      }
+    final int[] order = index.order;
+    final int[] ranks = new int[order.length];
+    for (int i = 0; i < order.length; i++)
+      ranks[i] = termRanks[order[i]];
+
+    return new IntKeyComparator (ranks) {
 
       public Comparable sortValue (final ScoreDoc i) {
-        return index[i.doc];
+        return lookup[order[i.doc]];
       }
 
       public int sortType() {
         return SortField.STRING;
       }
+
+      long keyOf (final Comparable value) {       // collators are not thread-safe
+        return FieldSortedHitQueue.keyOf (byRank, (String)value, Collator.getInstance (locale));
+      }
     };
   }
 
@@ -338,17 +433,13 @@ extends PriorityQueue {
   static ScoreDocComparator comparatorAuto (final IndexReader reader, final String fieldname)
   throws IOException {
     final String field = fieldname.intern();
-    Object lookupArray = FieldCache.DEFAULT.getAuto (reader, field);
-    if (lookupArray instanceof FieldCache.StringIndex) {
-      return comparatorString (reader, field);
-    } else if (lookupArray instanceof int[]) {
-      return comparatorInt (reader, field);
-    } else if (lookupArray instanceof float[]) {
-      return comparatorFloat (reader, field);
-    } else if (lookupArray instanceof String[]) {
-      return comparatorString (reader, field);
-    } else {
-      throw new RuntimeException ("unknown data type in field '"+field+"'");
+    switch (FieldCacheImpl.getAutoType (FieldCache.DEFAULT, reader, field)) {
+      case SortField.INT:
+        return comparatorInt (reader, field);
+      case SortField.FLOAT:
+        return comparatorFloat (reader, field);
+      default:
+        return comparatorString (reader, field);
     }
   }
 }
@@ -19,11 +19,35 @@ package org.apache.lucene.search;
 import java.util.BitSet;
 import java.io.IOException;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.DocIdBitSet;
 
 /** Abstract base class providing a mechanism to restrict searches to a subset
- of an index. */
+ of an index.
+ <p>Subclasses must implement at least one of {@link #bits(IndexReader)} and
+ {@link #getDocIdSet(IndexReader)}; each defaults to calling the other.
+ Searches only call {@link #getDocIdSet(IndexReader)}, so that filters can
+ return sets smaller than a BitSet of one bit per document. */
 public abstract class Filter implements java.io.Serializable {
   /** Returns a BitSet with true for documents which should be permitted in
-    search results, and false for those that should not. */
-  public abstract BitSet bits(IndexReader reader) throws IOException;
+    search results, and false for those that should not.
+    <p>The default implementation returns the BitSet of a {@link
+    DocIdBitSet} from {@link #getDocIdSet(IndexReader)}, and copies other
+    sets to a new BitSet. */
+  public BitSet bits(IndexReader reader) throws IOException {
+    DocIdSet docIdSet = getDocIdSet(reader);
+    if (docIdSet instanceof DocIdBitSet)
+      return ((DocIdBitSet)docIdSet).getBitSet();
+    BitSet bits = new BitSet(reader.maxDoc());
+    DocIdSetIterator iterator = docIdSet.iterator();
+    while (iterator.next())
+      bits.set(iterator.doc());
+    return bits;
+  }
+
+  /** Returns the documents which should be permitted in search results.
+    <p>The default implementation wraps {@link #bits(IndexReader)} in a
+    {@link DocIdBitSet}. */
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+    return new DocIdBitSet(bits(reader));
+  }
 }
@@ -20,16 +20,18 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.util.ToStringUtils;
 
 import java.io.IOException;
-import java.util.BitSet;
 import java.util.Set;
 
 
 /**
  * A query that applies a filter to the results of another query.
  *
- * <p>Note: the bits are retrieved from the filter each time this
+ * <p>Only the hits of the query which are in the filter match, and only
+ * they are scored.
+ *
+ * <p>Note: the documents are retrieved from the filter each time this
  * query is used in a search - use a CachingWrapperFilter to avoid
- * regenerating the bits every time.
+ * regenerating them every time.
  *
  * <p>Created: Apr 20, 2004 8:58:29 AM
  *
@@ -46,7 +48,7 @@ extends Query {
 
   /**
    * Constructs a new query which applies a filter to the results of the original query.
-   * Filter.bits() will be called every time this query is used in a search.
+   * Filter.getDocIdSet() will be called every time this query is used in a search.
    * @param query  Query to be filtered, cannot be <code>null</code>.
    * @param filter Filter to apply to query results, cannot be <code>null</code>.
    */
@@ -59,49 +61,38 @@ extends Query {
 
   /**
    * Returns a Weight that applies the filter to the enclosed query's Weight.
-   * This is accomplished by overriding the Scorer returned by the Weight.
+   * This is accomplished by skipping the Scorer returned by the Weight to
+   * the documents of the filter.
    */
   protected Weight createWeight (final Searcher searcher) throws IOException {
     final Weight weight = query.createWeight (searcher);
-    final Similarity similarity = query.getSimilarity(searcher);
     return new Weight() {
 
       // pass these methods through to enclosed query's weight
       public float getValue() { return weight.getValue(); }
       public float sumOfSquaredWeights() throws IOException { return weight.sumOfSquaredWeights(); }
       public void normalize (float v) { weight.normalize(v); }
-      public Explanation explain (IndexReader ir, int i) throws IOException { return weight.explain (ir, i); }
+
+      // explain the enclosed query's score, or why the document was filtered
+      public Explanation explain (IndexReader ir, int i) throws IOException {
+        Explanation inner = weight.explain (ir, i);
+        if (new DocIdSetMatcher (filter.getDocIdSet (ir)).matches (i))
+          return inner;
+        Explanation result =
+          new Explanation (0.0f, "failure to match filter: " + filter);
+        result.addDetail (inner);
+        return result;
+      }
 
       // return this query
       public Query getQuery() { return FilteredQuery.this; }
 
-      // return a scorer that overrides the enclosed query's score if
-      // the given hit has been filtered out.
+      // return a scorer of the enclosed query's hits that are in the filter
       public Scorer scorer (IndexReader indexReader) throws IOException {
         final Scorer scorer = weight.scorer (indexReader);
-        final BitSet bitset = filter.bits (indexReader);
-        return new Scorer (similarity) {
-
-          // pass these methods through to the enclosed scorer
-          public boolean next() throws IOException { return scorer.next(); }
-          public int doc() { return scorer.doc(); }
-          public boolean skipTo (int i) throws IOException { return scorer.skipTo(i); }
-
-          // if the document has been filtered out, set score to 0.0
-          public float score() throws IOException {
-            return (bitset.get(scorer.doc())) ? scorer.score() : 0.0f;
-          }
-
-          // add an explanation about whether the document was filtered
-          public Explanation explain (int i) throws IOException {
-            Explanation exp = scorer.explain (i);
-            if (bitset.get(i))
-              exp.setDescription ("allowed by filter: "+exp.getDescription());
-            else
-              exp.setDescription ("removed by filter: "+exp.getDescription());
-            return exp;
-          }
-        };
+        if (scorer == null)
+          return null;
+        return IndexSearcher.filter (scorer, filter.getDocIdSet (indexReader), 0);
       }
     };
   }
@@ -0,0 +1,88 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+/**
+ * Scores the documents of another scorer which are also in a filter's
+ * {@link DocIdSet}.  The two are advanced in turn with skipTo to the
+ * other's current document until they agree, so that documents not in the
+ * filter are skipped over without being scored, and often without even
+ * being visited.
+ */
+class FilteredScorer extends Scorer {
+  private final Scorer scorer;
+  private final DocIdSetIterator filter;
+  private final int base;
+  private boolean firstTime = true;
+
+  /**
+   * @param scorer the scorer whose documents are filtered
+   * @param filter the documents of the filter
+   * @param base the number of the scorer's first document in the filter,
+   *  non-zero when a segment is searched with a filter of the whole index
+   */
+  FilteredScorer(Scorer scorer, DocIdSetIterator filter, int base) {
+    super(scorer.getSimilarity());
+    this.scorer = scorer;
+    this.filter = filter;
+    this.base = base;
+  }
+
+  public boolean next() throws IOException {
+    if (firstTime) {
+      firstTime = false;
+      return filter.skipTo(base) && doNext();
+    }
+    return filter.next() && doNext();
+  }
+
+  public boolean skipTo(int target) throws IOException {
+    firstTime = false;
+    return filter.skipTo(target + base) && doNext();
+  }
+
+  // Leapfrogs from the current document of the filter to the first
+  // document in both.
+  private boolean doNext() throws IOException {
+    if (!scorer.skipTo(filter.doc() - base))
+      return false;
+    while (true) {
+      int target = scorer.doc() + base;
+      if (filter.doc() == target)
+        return true;
+      if (!filter.skipTo(target))
+        return false;
+      if (filter.doc() == target)
+        return true;
+      if (!scorer.skipTo(filter.doc() - base))
+        return false;
+    }
+  }
+
+  public int doc() {
+    return scorer.doc();
+  }
+
+  public float score() throws IOException {
+    return scorer.score();
+  }
+
+  public Explanation explain(int doc) throws IOException {
+    return scorer.explain(doc);
+  }
+}
@@ -38,6 +38,15 @@ public abstract class FilteredTermEnum extends TermEnum {
 
     /** Indiciates the end of the enumeration has been reached */
     protected abstract boolean endEnum();
+
+    /** Returns an enumeration positioned at the next term that may match,
+     * either <code>actualEnum</code> moved forward or a new one, or null to
+     * step to the term after the current one.  Called before each step, so
+     * subclasses that can tell from the last comparison that a whole range of
+     * terms cannot match may skip it.  The default returns null. */
+    protected TermEnum seekEnum(TermEnum actualEnum) throws IOException {
+        return null;
+    }
     
     protected void setEnum(TermEnum actualEnum) throws IOException {
         this.actualEnum = actualEnum;
@@ -63,7 +72,18 @@ public abstract class FilteredTermEnum extends TermEnum {
         currentTerm = null;
         while (currentTerm == null) {
             if (endEnum()) return false;
-            if (actualEnum.next()) {
+            TermEnum seeked = seekEnum(actualEnum);
+            boolean more;
+            if (seeked != null) {
+                if (seeked != actualEnum) {
+                    actualEnum.close();
+                    actualEnum = seeked;
+                }
+                more = actualEnum.term() != null;
+            } else {
+                more = actualEnum.next();
+            }
+            if (more) {
                 Term term = actualEnum.term();
                 if (termCompare(term)) {
                     currentTerm = term;
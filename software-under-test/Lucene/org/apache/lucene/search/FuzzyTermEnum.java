@@ -18,6 +18,7 @@ package org.apache.lucene.search;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 
 import java.io.IOException;
 
@@ -52,6 +53,10 @@ public final class FuzzyTermEnum extends FilteredTermEnum {
   private final float scale_factor;
   private final int[] maxDistances = new int[TYPICAL_LONGEST_WORD_IN_INDEX];
 
+  private final IndexReader reader;
+  private final TermAutomaton automaton;
+  private Term seekTerm = null;                   // next term that may match
+
   /**
    * Creates a FuzzyTermEnum with an empty prefix and a minSimilarity of 0.5f.
    * <p>
@@ -123,22 +128,49 @@ public final class FuzzyTermEnum extends FilteredTermEnum {
     initializeMaxDistances();
     this.d = initDistanceArray();
 
+    this.reader = reader;
+    this.automaton = new LevenshteinAutomaton(text, calculateMaxDistance(text.length()));
+
     setEnum(reader.terms(new Term(searchTerm.field(), prefix)));
   }
 
   /**
    * The termCompare method in FuzzyTermEnum uses Levenshtein distance to 
    * calculate the distance between the given term and the comparing term. 
+   * Terms are first run through an automaton accepting the strings within
+   * the largest distance any term may have; when a prefix of the term is
+   * already too far away the enumeration seeks past every term sharing it.
    */
   protected final boolean termCompare(Term term) {
     if (field == term.field() && term.text().startsWith(prefix)) {
         final String target = term.text().substring(prefix.length());
+        if (!lengthMayMatch(target.length()))
+          return false;
+        final int live = automaton.run(target);
+        if (live < target.length()) {
+          final String next = automaton.nextString(live);
+          if (next == null)
+            endEnum = true;
+          else
+            seekTerm = searchTerm.createTerm(prefix + next);
+          return false;
+        }
+        if (!automaton.accepted())
+          return false;
         this.similarity = similarity(target);
         return (similarity > minimumSimilarity);
     }
     endEnum = true;
     return false;
   }
+
+  protected TermEnum seekEnum(TermEnum actualEnum) throws IOException {
+    if (seekTerm == null)
+      return null;
+    final Term target = seekTerm;
+    seekTerm = null;
+    return TermAutomaton.seek(reader, actualEnum, target);
+  }
   
   public final float difference() {
     return (float)((similarity - minimumSimilarity) * scale_factor);
@@ -268,6 +300,17 @@ public final class FuzzyTermEnum extends FilteredTermEnum {
     return 1.0f - ((float)d[n][m] / (float) (prefix.length() + Math.min(n, m)));
   }
 
+  /**
+   * Returns false if a target of length <code>m</code> differs in length from
+   * the text by more than the maximum distance, so that it cannot match.  This
+   * is cheaper than running the automaton, and a target ruled out here only
+   * delays skipping until the next target sharing its prefix.
+   */
+  private final boolean lengthMayMatch(int m) {
+    final int n = text.length();
+    return n == 0 || m == 0 || getMaxDistance(m) >= Math.abs(m - n);
+  }
+
   /**
    * Grow the second dimension of the array, so that we can calculate the
    * Levenshtein difference.
@@ -302,5 +345,46 @@ public final class FuzzyTermEnum extends FilteredTermEnum {
   public void close() throws IOException {
     super.close();  //call super.close() and let the garbage collector do its work.
   }
+
+  /**
+   * Accepts the strings within a Levenshtein distance of the text.  A state
+   * is the row of the distance matrix for the characters read so far, with
+   * distances above the maximum capped, and no string can be accepted once
+   * every entry of the row is over the maximum.
+   */
+  private static final class LevenshteinAutomaton extends TermAutomaton {
+    private final String text;
+    private final int maxDistance;
+
+    LevenshteinAutomaton(String text, int maxDistance) {
+      super(text.length() + 1, text);
+      this.text = text;
+      this.maxDistance = maxDistance;
+    }
+
+    protected void initial(int[] state) {
+      for (int i = 0; i < state.length; i++)
+        state[i] = Math.min(i, maxDistance + 1);
+    }
+
+    protected boolean step(int[] from, char c, int[] to) {
+      final int cap = maxDistance + 1;
+      int best = to[0] = Math.min(from[0] + 1, cap);
+      for (int i = 1; i < to.length; i++) {
+        int distance = from[i - 1] + (text.charAt(i - 1) == c ? 0 : 1);
+        distance = min(distance, from[i] + 1, to[i - 1] + 1);
+        if (distance > cap)
+          distance = cap;
+        to[i] = distance;
+        if (distance < best)
+          best = distance;
+      }
+      return best <= maxDistance;
+    }
+
+    protected boolean accepts(int[] state) {
+      return state[state.length - 1] <= maxDistance;
+    }
+  }
   
 }
@@ -31,6 +31,9 @@ public final class Hits {
 
   private int length;				  // the total number of hits
   private Vector hitDocs = new Vector();	  // cache of hits retrieved
+  private float scoreNorm = 1.0f;               // of the first page
+  private ScoreDoc lastScoreDoc;                // last hit retrieved
+  private boolean paging = true;                // searcher supports paging
 
   private HitDoc first;         // head of LRU cache
   private HitDoc last;          // tail of LRU cache
@@ -55,6 +58,8 @@ public final class Hits {
   /**
    * Tries to add new documents to hitDocs.
    * Ensures that the hit numbered <code>min</code> has been retrieved.
+   * Past the first page, only the hits after the last one retrieved are
+   * ranked, unless the searcher cannot page through hits.
    */
   private final void getMoreDocs(int min) throws IOException {
     if (hitDocs.size() > min) {
@@ -62,21 +67,35 @@ public final class Hits {
     }
 
     int n = min * 2;	// double # retrieved
-    TopDocs topDocs = (sort == null) ? searcher.search(weight, filter, n) : searcher.search(weight, filter, n, sort);
+    TopDocs topDocs = null;
+    int skip = hitDocs.size();                    // hits already retrieved
+    if (lastScoreDoc != null && paging) {
+      try {
+        topDocs = (sort == null)
+          ? searcher.searchAfter(lastScoreDoc, weight, filter, n - skip)
+          : searcher.searchAfter((FieldDoc)lastScoreDoc, weight, filter,
+                                 n - skip, sort);
+        skip = 0;
+      } catch (UnsupportedOperationException e) {
+        paging = false;                           // rank from the top
+      }
+    }
+    if (topDocs == null)
+      topDocs = (sort == null) ? searcher.search(weight, filter, n) : searcher.search(weight, filter, n, sort);
     length = topDocs.totalHits;
     ScoreDoc[] scoreDocs = topDocs.scoreDocs;
 
-    float scoreNorm = 1.0f;
-    
-    if (length > 0 && topDocs.getMaxScore() > 1.0f) {
+    if (lastScoreDoc == null && length > 0 && topDocs.getMaxScore() > 1.0f) {
       scoreNorm = 1.0f / topDocs.getMaxScore();
     }
 
     int end = scoreDocs.length < length ? scoreDocs.length : length;
-    for (int i = hitDocs.size(); i < end; i++) {
+    for (int i = skip; i < end; i++) {
       hitDocs.addElement(new HitDoc(scoreDocs[i].score * scoreNorm,
                                     scoreDocs[i].doc));
     }
+    if (end > skip)
+      lastScoreDoc = scoreDocs[end - 1];
   }
 
   /** Returns the total number of hits available in this set. */
@@ -122,7 +141,8 @@ public final class Hits {
    * <p>
    * <b>Caution:</b> Iterate only over the hits needed.  Iterating over all
    * hits is generally not desirable and may be the source of
-   * performance issues.
+   * performance issues.  To export all hits, use {@link
+   * Searcher#search(Query,Filter,HitCollector)} instead.
    * </p>
    */
   public Iterator iterator() {
@@ -17,12 +17,13 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
-import java.util.BitSet;
 
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.PriorityQueue;
 
 /** Implements search over a single IndexReader.
  *
@@ -32,10 +33,15 @@ import org.apache.lucene.index.Term;
  * 
  * <p>Note that you can only access Hits from an IndexSearcher as long as it is
  * not yet closed, otherwise an IOException will be thrown. 
+ *
+ * <p>If an {@link #setExecutor(SearchExecutor) executor} is set, the segments
+ * of an index are searched in parallel on its threads.
  */
 public class IndexSearcher extends Searcher {
   IndexReader reader;
   private boolean closeReader;
+  private SearchExecutor executor;
+  private boolean countAllHits = true;
 
   /** Creates a searcher searching the index in the named directory. */
   public IndexSearcher(String path) throws IOException {
@@ -62,6 +68,50 @@ public class IndexSearcher extends Searcher {
     return reader;
   }
 
+  /** Sets the executor on whose threads the segments of the index are
+   * searched in parallel, each collecting its own top hits, which are then
+   * merged.  With <code>null</code>, the default, the index is searched
+   * sequentially on the calling thread.  Only the searches for top hits
+   * are parallelized, not those calling a {@link HitCollector}.
+   *
+   * <p>Each segment is scored by a scorer from
+   * <code>weight.scorer(IndexReader)</code> on the segment's reader, so
+   * queries must only depend on the reader they are given, as the core
+   * queries do.  Filters are applied to the whole index.
+   *
+   * <p>The hits, their scores and their order are the same as those of a
+   * sequential search: the core scorers add the scores of their subscorers
+   * in a fixed order, however they were advanced, and hits with equal
+   * scores or sort values are merged by increasing document number.
+   *
+   * @see SearchExecutor#getDefault()
+   */
+  public void setExecutor(SearchExecutor executor) {
+    this.executor = executor;
+  }
+
+  /** Returns the executor searching segments in parallel, or null.
+   * @see #setExecutor(SearchExecutor)
+   */
+  public SearchExecutor getExecutor() {
+    return executor;
+  }
+
+  /** Expert: Set to false to let the searches for top hits by score skip
+   * documents that cannot enter the top hits, as {@link
+   * TopDocCollector#setCountAllHits(boolean)} does.  {@link
+   * TopDocs#totalHits}, and so {@link Hits#length()}, then is only a lower
+   * bound.  The default is true.
+   */
+  public void setCountAllHits(boolean countAllHits) {
+    this.countAllHits = countAllHits;
+  }
+
+  /** @see #setCountAllHits(boolean) */
+  public boolean getCountAllHits() {
+    return countAllHits;
+  }
+
   /**
    * Note that the underlying IndexReader is not closed, if
    * IndexSearcher was constructed with IndexSearcher(IndexReader r).
@@ -83,6 +133,11 @@ public class IndexSearcher extends Searcher {
     return reader.document(i);
   }
 
+  // inherit javadoc
+  public Document doc(int i, FieldSelector fieldSelector) throws IOException {
+    return reader.document(i, fieldSelector);
+  }
+
   // inherit javadoc
   public int maxDoc() throws IOException {
     return reader.maxDoc();
@@ -95,7 +150,12 @@ public class IndexSearcher extends Searcher {
     if (nDocs <= 0)  // null might be returned from hq.top() below.
       throw new IllegalArgumentException("nDocs must be > 0");
 
+    IndexReader[] subReaders = getParallelSubReaders();
+    if (subReaders != null)
+      return searchSegments(subReaders, weight, filter, null, nDocs, null);
+
     TopDocCollector collector = new TopDocCollector(nDocs);
+    collector.setCountAllHits(countAllHits);
     search(weight, filter, collector);
     return collector.topDocs();
   }
@@ -105,31 +165,238 @@ public class IndexSearcher extends Searcher {
                              Sort sort)
       throws IOException {
 
+    IndexReader[] subReaders = getParallelSubReaders();
+    if (subReaders != null)
+      return (TopFieldDocs)searchSegments(subReaders, weight, filter, null,
+                                          nDocs, resolveAuto(sort));
+
     TopFieldDocCollector collector =
       new TopFieldDocCollector(reader, sort, nDocs);
     search(weight, filter, collector);
     return (TopFieldDocs)collector.topDocs();
   }
 
+  /** Pages through hits.  If an executor is set, every page is searched
+   * in parallel as the first one is, so that all rank hits alike. */
+  public TopDocs searchAfter(ScoreDoc after, Weight weight, Filter filter,
+                             int nDocs) throws IOException {
+    if (after == null)
+      return search(weight, filter, nDocs);
+    if (nDocs <= 0)
+      throw new IllegalArgumentException("nDocs must be > 0");
+    IndexReader[] subReaders = getParallelSubReaders();
+    if (subReaders != null)
+      return searchSegments(subReaders, weight, filter, after, nDocs, null);
+
+    TopDocCollector collector = new TopDocCollector(after, nDocs);
+    collector.setCountAllHits(countAllHits);
+    search(weight, filter, collector);
+    return collector.topDocs();
+  }
+
+  /** Pages through sorted hits, in parallel if an executor is set. */
+  public TopFieldDocs searchAfter(FieldDoc after, Weight weight,
+                                  Filter filter, int nDocs, Sort sort)
+    throws IOException {
+    if (after == null)
+      return search(weight, filter, nDocs, sort);
+    IndexReader[] subReaders = getParallelSubReaders();
+    if (subReaders != null)
+      return (TopFieldDocs)searchSegments(subReaders, weight, filter, after,
+                                          nDocs, resolveAuto(sort));
+
+    TopFieldDocCollector collector =
+      new TopFieldDocCollector(reader, sort, after, nDocs);
+    search(weight, filter, collector);
+    return (TopFieldDocs)collector.topDocs();
+  }
+
   // inherit javadoc
   public void search(Weight weight, Filter filter,
                      final HitCollector results) throws IOException {
-    HitCollector collector = results;
-    if (filter != null) {
-      final BitSet bits = filter.bits(reader);
-      collector = new HitCollector() {
-          public final void collect(int doc, float score) {
-            if (bits.get(doc)) {                  // skip docs not in bits
-              results.collect(doc, score);
-            }
-          }
-        };
-    }
-
     Scorer scorer = weight.scorer(reader);
     if (scorer == null)
       return;
-    scorer.score(collector);
+    if (filter == null) {
+      scorer.score(results);
+      return;
+    }
+    filter(scorer, filter.getDocIdSet(reader), 0).score(results);
+  }
+
+  /** Returns a scorer of the documents of <code>scorer</code> in
+   * <code>docIdSet</code>, for a reader whose first document is
+   * <code>base</code> in the set. */
+  static Scorer filter(final Scorer scorer, final DocIdSet docIdSet,
+                       final int base) throws IOException {
+    if (!(scorer instanceof BooleanScorer))
+      return new FilteredScorer(scorer, docIdSet.iterator(), base);
+
+    // BooleanScorer returns documents out of order, so the filter cannot
+    // leapfrog with it: test each of its documents, and skip only as far as
+    // the scorer itself can
+    return new Scorer(scorer.getSimilarity()) {
+        private final DocIdSetMatcher matcher = new DocIdSetMatcher(docIdSet);
+        public boolean next() throws IOException {
+          while (scorer.next()) {
+            if (matcher.matches(scorer.doc() + base))
+              return true;
+          }
+          return false;
+        }
+        public int doc() { return scorer.doc(); }
+        public float score() throws IOException { return scorer.score(); }
+        public boolean skipTo(int target) throws IOException {
+          if (!scorer.skipTo(target))             // if scorer can skip
+            return false;
+          return matcher.matches(scorer.doc() + base) || next();
+        }
+        public Explanation explain(int doc) throws IOException {
+          return scorer.explain(doc);
+        }
+      };
+  }
+
+  /** Returns the readers to search in parallel, or null. */
+  private IndexReader[] getParallelSubReaders() {
+    if (executor == null)
+      return null;
+    IndexReader[] subReaders = reader.getSequentialSubReaders();
+    return (subReaders != null && subReaders.length > 1) ? subReaders : null;
+  }
+
+  /** Replaces AUTO sort fields with the type found in the whole index, so
+   * that all segments sort by the same type. */
+  private Sort resolveAuto(Sort sort) throws IOException {
+    SortField[] fields = sort.getSort();
+    SortField[] resolved = null;
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i].getType() != SortField.AUTO)
+        continue;
+      if (resolved == null) {
+        resolved = new SortField[fields.length];
+        System.arraycopy(fields, 0, resolved, 0, fields.length);
+      }
+      String field = fields[i].getField();
+      int type = FieldCacheImpl.getAutoType(FieldCache.DEFAULT, reader, field);
+      resolved[i] = new SortField(field, type, fields[i].getReverse());
+    }
+    return resolved == null ? sort : new Sort(resolved);
+  }
+
+  /** Collects the top hits of each segment on the executor and merges them,
+   * as {@link MultiSearcher} merges those of its searchers.  If
+   * <code>after</code> is not null, only hits ranked after it are collected. */
+  private TopDocs searchSegments(IndexReader[] subReaders, Weight weight,
+                                 Filter filter, ScoreDoc after, int nDocs,
+                                 Sort sort)
+      throws IOException {
+    DocIdSet docIdSet = (filter != null) ? filter.getDocIdSet(reader) : null;
+    SegmentSearch[] tasks = new SegmentSearch[subReaders.length];
+    int base = 0;
+    for (int i = 0; i < subReaders.length; i++) {
+      ScoreDoc segmentAfter = null;
+      if (after != null && sort == null) {
+        segmentAfter = new ScoreDoc(after.doc - base, after.score);
+      } else if (after != null) {
+        segmentAfter = MultiSearcher.subAfter((FieldDoc)after, sort.getSort(),
+                                              base);
+      }
+      tasks[i] = new SegmentSearch(subReaders[i], base, weight, docIdSet,
+                                   segmentAfter, nDocs, sort, countAllHits);
+      base += subReaders[i].maxDoc();
+    }
+    executor.invokeAll(tasks, 0);
+
+    PriorityQueue hq = (sort == null) ? (PriorityQueue)new HitQueue(nDocs)
+      : new FieldDocSortedHitQueue(null, nDocs);
+    int totalHits = 0;
+    float maxScore = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < tasks.length; i++) {      // merge in segment order
+      TopDocs docs = tasks[i].getTopDocs();
+      totalHits += docs.totalHits;
+      if (sort != null) {
+        ((FieldDocSortedHitQueue)hq).setFields(((TopFieldDocs)docs).fields);
+        maxScore = Math.max(maxScore, docs.getMaxScore());
+      }
+      ScoreDoc[] scoreDocs = docs.scoreDocs;
+      for (int j = 0; j < scoreDocs.length; j++) {
+        ScoreDoc scoreDoc = scoreDocs[j];
+        tasks[i].rebase(scoreDoc);
+        if (!hq.insert(scoreDoc))
+          break;                                  // no more better hits
+      }
+    }
+
+    ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
+    for (int i = hq.size() - 1; i >= 0; i--)      // put docs in array
+      scoreDocs[i] = (ScoreDoc) hq.pop();
+
+    if (sort == null) {
+      maxScore = (scoreDocs.length == 0) ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
+      return new TopDocs(totalHits, scoreDocs, maxScore);
+    }
+    FieldDocSortedHitQueue fdhq = (FieldDocSortedHitQueue)hq;
+    fdhq.setFields(sort.getSort());               // no segments
+    return new TopFieldDocs(totalHits, scoreDocs, fdhq.getFields(), maxScore);
+  }
+
+  /** Collects the top hits of a single segment. */
+  private static class SegmentSearch implements Runnable {
+    private final IndexReader reader;
+    private final int base;
+    private final Weight weight;
+    private final DocIdSet docIdSet;
+    private final ScoreDoc after;
+    private final int nDocs;
+    private final Sort sort;
+    private final boolean countAllHits;
+    private TopDocs docs;
+    private IOException ioe;
+
+    SegmentSearch(IndexReader reader, int base, Weight weight,
+                  DocIdSet docIdSet, ScoreDoc after, int nDocs, Sort sort,
+                  boolean countAllHits) {
+      this.reader = reader;
+      this.base = base;
+      this.weight = weight;
+      this.docIdSet = docIdSet;
+      this.after = after;
+      this.nDocs = nDocs;
+      this.sort = sort;
+      this.countAllHits = countAllHits;
+    }
+
+    public void run() {
+      try {
+        final TopDocCollector collector = (sort == null)
+          ? new TopDocCollector(after, nDocs)
+          : new TopFieldDocCollector(reader, sort, (FieldDoc)after, nDocs);
+        collector.setCountAllHits(countAllHits);
+        Scorer scorer = weight.scorer(reader);
+        if (scorer != null && docIdSet != null)
+          scorer = filter(scorer, docIdSet, base);
+        if (scorer != null)
+          scorer.score(collector);
+        docs = collector.topDocs();
+      } catch (IOException e) {
+        ioe = e;
+      }
+    }
+
+    /** Returns the hits, or rethrows the exception of the search. */
+    TopDocs getTopDocs() throws IOException {
+      if (ioe != null)
+        throw ioe;
+      return docs;
+    }
+
+    /** Converts a hit of the segment to one of the whole index. */
+    void rebase(ScoreDoc scoreDoc) {
+      scoreDoc.doc += base;
+      if (sort != null)                           // doc numbers sort by value
+        MultiSearcher.rebase((FieldDoc)scoreDoc, ((TopFieldDocs)docs).fields);
+    }
   }
 
   public Query rewrite(Query original) throws IOException {
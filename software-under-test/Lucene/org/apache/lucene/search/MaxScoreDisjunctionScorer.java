@@ -0,0 +1,261 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.util.PriorityQueue;
+
+/** A Scorer for disjunctions of terms that only produces the documents that
+ * can still enter the top hits of a {@link TopDocCollector}.
+ * <br>This is the "max-score" strategy: the subscorers are ordered by the
+ * upper bound of their scores.  Once the bounds of the lowest subscorers add
+ * up to no more than the lowest score in the collector's queue, a document
+ * matching only those cannot be competitive.  These subscorers are then no
+ * longer iterated, but only skipped to the documents found through the others,
+ * and only as long as the bounds leave the document a chance.
+ * <br>Documents are scored as {@link BooleanScorer2} scores them, including the
+ * coordination factor and excluding the documents of a prohibited scorer.  The
+ * scores of the subscorers are added in the order they were given, so the
+ * scores are the same as those of {@link DisjunctionSumScorer}.
+ */
+final class MaxScoreDisjunctionScorer extends Scorer {
+  private final TopDocCollector collector;
+  private final Scorer[] scorers;                 // as given
+  private final SubScorer[] subScorers;           // by increasing bound
+  private final double[] cumBounds;               // sum of bounds up to i
+  private final float[] coordFactors;
+  private final double maxCoordFactor;
+  private final Scorer prohibited;
+
+  /** Subscorers below this one are not iterated, only skipped. */
+  private int firstEssential = 0;
+  private ScorerQueue essentialQueue;
+
+  private final float[] subScores;                // on the candidate, by clause
+  private final int[] matchers;                   // clauses of the matches
+  private int nrMatchers;
+
+  private int prohibitedDoc = -1;
+  private int currentDoc = -1;
+  private float currentScore = Float.NaN;
+
+  /** Construct a <code>MaxScoreDisjunctionScorer</code>.
+   * @param similarity The similarity that provides the coordination factor.
+   * @param scorers The optional subscorers, at least two.
+   * @param bounds The upper bounds of the scores of <code>scorers</code>.
+   * @param maxCoord The number of non prohibited clauses.
+   * @param prohibited Matches the documents to exclude, or null.
+   * @param collector The collector whose queue decides what is competitive.
+   */
+  MaxScoreDisjunctionScorer(Similarity similarity, Scorer[] scorers,
+                            float[] bounds, int maxCoord,
+                            Scorer prohibited, TopDocCollector collector) {
+    super(similarity);
+    this.collector = collector;
+    this.prohibited = prohibited;
+    this.scorers = scorers;
+
+    // bounds are not negative, so their bits sort as they do; the clause
+    // in the low bits breaks ties
+    long[] order = new long[scorers.length];
+    for (int i = 0; i < order.length; i++)
+      order[i] = ((long) Float.floatToIntBits(bounds[i]) << 32) | i;
+    Arrays.sort(order);
+
+    // The bounds are summed in a different order than the actual scores,
+    // so leave room for rounding.
+    double slack = 1.0 + (scorers.length + 2) * 1.0e-6;
+    this.subScorers = new SubScorer[scorers.length];
+    this.cumBounds = new double[scorers.length];
+    double sum = 0.0;
+    for (int i = 0; i < order.length; i++) {
+      int j = (int) order[i];
+      subScorers[i] = new SubScorer(scorers[j], j);
+      sum += bounds[j];
+      cumBounds[i] = sum * slack;
+    }
+    subScores = new float[scorers.length];
+    matchers = new int[scorers.length];
+
+    coordFactors = new float[maxCoord + 1];
+    double max = 0.0;
+    for (int i = 0; i <= maxCoord; i++) {
+      coordFactors[i] = similarity.coord(i, maxCoord);
+      max = Math.max(max, coordFactors[i]);
+    }
+    maxCoordFactor = max;
+  }
+
+  /** A subscorer and its position among the given scorers. */
+  private static final class SubScorer {
+    final Scorer scorer;
+    final int clause;
+
+    SubScorer(Scorer scorer, int clause) {
+      this.scorer = scorer;
+      this.clause = clause;
+    }
+  }
+
+  /** A <code>PriorityQueue</code> of {@link SubScorer}s that orders by
+   * {@link Scorer#doc()}. */
+  private static class ScorerQueue extends PriorityQueue {
+    ScorerQueue(int size) {
+      initialize(size);
+    }
+
+    protected boolean lessThan(Object o1, Object o2) {
+      return ((SubScorer)o1).scorer.doc() < ((SubScorer)o2).scorer.doc();
+    }
+  }
+
+  /** Moves the subscorers that can no longer produce a competitive document
+   * on their own out of the queue of iterated subscorers.
+   */
+  private void updateEssential() {
+    double minScore = collector.minCompetitiveScore();
+    int first = firstEssential;
+    while (first < subScorers.length
+           && cumBounds[first] * maxCoordFactor <= minScore)
+      first++;
+
+    if (essentialQueue == null || first != firstEssential) {
+      firstEssential = first;
+      essentialQueue = new ScorerQueue(subScorers.length - first);
+      for (int i = first; i < subScorers.length; i++) {
+        if (subScorers[i].scorer.doc() != Integer.MAX_VALUE)
+          essentialQueue.insert(subScorers[i]);
+      }
+    }
+  }
+
+  public boolean next() throws IOException {
+    if (essentialQueue == null) {
+      for (int i = 0; i < subScorers.length; i++)
+        subScorers[i].scorer.next();              // exhausted: Integer.MAX_VALUE
+    }
+    return nextCandidate();
+  }
+
+  public boolean skipTo(int target) throws IOException {
+    if (essentialQueue == null) {
+      for (int i = 0; i < subScorers.length; i++)
+        subScorers[i].scorer.skipTo(target);      // exhausted: Integer.MAX_VALUE
+    } else {
+      SubScorer top;
+      while ((top = (SubScorer)essentialQueue.top()) != null
+             && top.scorer.doc() < target) {
+        if (top.scorer.skipTo(target))
+          essentialQueue.adjustTop();
+        else
+          essentialQueue.pop();
+      }
+    }
+    return nextCandidate();
+  }
+
+  /** Advances to the first competitive document at or after the documents
+   * of the iterated subscorers, which are all after <code>currentDoc</code>.
+   */
+  private boolean nextCandidate() throws IOException {
+    while (true) {
+      updateEssential();
+      if (essentialQueue.size() == 0)
+        return false;
+
+      SubScorer top = (SubScorer)essentialQueue.top();
+      int doc = top.scorer.doc();
+      float sum = 0.0f;                           // to compare with the bounds
+      nrMatchers = 0;
+      do {                                        // score the iterated subscorers
+        sum += addMatcher(top);
+        if (top.scorer.next())
+          essentialQueue.adjustTop();
+        else
+          essentialQueue.pop();
+        top = (SubScorer)essentialQueue.top();
+      } while (top != null && top.scorer.doc() == doc);
+
+      if (!scoreSkipped(doc, sum))
+        continue;                                 // cannot be competitive
+
+      if (prohibited != null) {
+        if (prohibitedDoc < doc)
+          prohibitedDoc = prohibited.skipTo(doc)
+            ? prohibited.doc() : Integer.MAX_VALUE;
+        if (prohibitedDoc == doc)
+          continue;
+      }
+      currentDoc = doc;
+      return true;
+    }
+  }
+
+  /** Records the score of a subscorer that matches the candidate.
+   * @return the score
+   */
+  private float addMatcher(SubScorer matcher) throws IOException {
+    float score = matcher.scorer.score();
+    subScores[matcher.clause] = score;
+    matchers[nrMatchers++] = matcher.clause;
+    return score;
+  }
+
+  /** Adds the scores of the skipped subscorers that match <code>doc</code>,
+   * highest bound first, and sets <code>currentScore</code> to the sum of all
+   * matching subscorers, added in the order they were given.
+   * @return false as soon as the bounds show <code>doc</code> cannot be
+   * competitive.
+   */
+  private boolean scoreSkipped(int doc, float sum) throws IOException {
+    double minScore = collector.minCompetitiveScore();
+    for (int i = firstEssential - 1; i >= 0; i--) {
+      if ((sum + cumBounds[i]) * maxCoordFactor <= minScore)
+        return false;
+      Scorer scorer = subScorers[i].scorer;
+      if (scorer.doc() < doc && !scorer.skipTo(doc))
+        continue;
+      if (scorer.doc() == doc)
+        sum += addMatcher(subScorers[i]);
+    }
+
+    Arrays.sort(matchers, 0, nrMatchers);
+    float score = 0.0f;
+    for (int i = 0; i < nrMatchers; i++)
+      score += subScores[matchers[i]];
+    currentScore = score * coordFactors[nrMatchers];
+    return true;
+  }
+
+  public int doc() { return currentDoc; }
+
+  public float score() { return currentScore; }
+
+  /** Explains the subscorers for <code>doc</code>, as {@link
+   * DisjunctionSumScorer} does.
+   * <br>When this method is used, the {@link #next()} and {@link
+   * #skipTo(int)} methods should not be used.
+   */
+  public Explanation explain(int doc) throws IOException {
+    Explanation res = new Explanation();
+    res.setDescription("At least 1 of");
+    for (int i = 0; i < scorers.length; i++)
+      res.addDetail(scorers[i].explain(doc));
+    return res;
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.Term;
 
 /** Implements search over a set of <code>Searchables</code>.
@@ -84,6 +85,10 @@ public class MultiSearcher extends Searcher {
       throw new UnsupportedOperationException();
     }
 
+    public Document doc(int i, FieldSelector fieldSelector) {
+      throw new UnsupportedOperationException();
+    }
+
     public Explanation explain(Weight weight,int doc) {
       throw new UnsupportedOperationException();
     }
@@ -146,6 +151,12 @@ public class MultiSearcher extends Searcher {
     return searchables[i].doc(n - starts[i]);	  // dispatch to searcher
   }
 
+  // inherit javadoc
+  public Document doc(int n, FieldSelector fieldSelector) throws IOException {
+    int i = subSearcher(n);			  // find searcher index
+    return searchables[i].doc(n - starts[i], fieldSelector);
+  }
+
   /** Call {@link #subSearcher} instead.
    * @deprecated
    */
@@ -189,14 +200,70 @@ public class MultiSearcher extends Searcher {
 
   public TopDocs search(Weight weight, Filter filter, int nDocs)
   throws IOException {
+    TopDocs[] docs = new TopDocs[searchables.length];
+    for (int i = 0; i < searchables.length; i++) // search each searcher
+      docs[i] = searchables[i].search(weight, filter, nDocs);
+    return merge(docs, nDocs);
+  }
+
+  public TopFieldDocs search (Weight weight, Filter filter, int n, Sort sort)
+  throws IOException {
+    TopFieldDocs[] docs = new TopFieldDocs[searchables.length];
+    for (int i = 0; i < searchables.length; i++) // search each searcher
+      docs[i] = searchables[i].search (weight, filter, n, sort);
+    return merge(docs, n);
+  }
+
+  /** Pages through the hits of each searcher, which must all be {@link
+   * Searcher}s, merging them as {@link #search(Weight,Filter,int)} does.
+   * @throws UnsupportedOperationException if a searchable is not a Searcher
+   */
+  public TopDocs searchAfter(ScoreDoc after, Weight weight, Filter filter,
+                             int nDocs) throws IOException {
+    if (after == null)
+      return search(weight, filter, nDocs);
+    TopDocs[] docs = new TopDocs[searchables.length];
+    for (int i = 0; i < searchables.length; i++) {
+      ScoreDoc subAfter = new ScoreDoc(after.doc - starts[i], after.score);
+      docs[i] = pagingSearcher(i).searchAfter(subAfter, weight, filter, nDocs);
+    }
+    return merge(docs, nDocs);
+  }
+
+  /** Pages through the sorted hits of each searcher, which must all be
+   * {@link Searcher}s able to page sorted hits, merging them as {@link
+   * #search(Weight,Filter,int,Sort)} does.
+   * @throws UnsupportedOperationException if a searchable cannot page
+   */
+  public TopFieldDocs searchAfter(FieldDoc after, Weight weight,
+                                  Filter filter, int n, Sort sort)
+    throws IOException {
+    if (after == null)
+      return search(weight, filter, n, sort);
+    TopFieldDocs[] docs = new TopFieldDocs[searchables.length];
+    for (int i = 0; i < searchables.length; i++) {
+      FieldDoc subAfter = subAfter(after, sort.getSort(), starts[i]);
+      docs[i] = pagingSearcher(i).searchAfter(subAfter, weight, filter, n, sort);
+    }
+    return merge(docs, n);
+  }
 
+  /** Returns searchable <code>i</code> as a Searcher, to page through. */
+  private Searcher pagingSearcher(int i) {
+    if (!(searchables[i] instanceof Searcher))
+      throw new UnsupportedOperationException("cannot page through "
+                                              + searchables[i]);
+    return (Searcher)searchables[i];
+  }
+
+  /** Merges the top hits of each searcher. */
+  private TopDocs merge(TopDocs[] docs, int nDocs) {
     HitQueue hq = new HitQueue(nDocs);
     int totalHits = 0;
 
-    for (int i = 0; i < searchables.length; i++) { // search each searcher
-      TopDocs docs = searchables[i].search(weight, filter, nDocs);
-      totalHits += docs.totalHits;		  // update totalHits
-      ScoreDoc[] scoreDocs = docs.scoreDocs;
+    for (int i = 0; i < docs.length; i++) {
+      totalHits += docs[i].totalHits;		  // update totalHits
+      ScoreDoc[] scoreDocs = docs[i].scoreDocs;
       for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
 	ScoreDoc scoreDoc = scoreDocs[j];
         scoreDoc.doc += starts[i];                // convert doc
@@ -209,29 +276,28 @@ public class MultiSearcher extends Searcher {
     for (int i = hq.size()-1; i >= 0; i--)	  // put docs in array
       scoreDocs[i] = (ScoreDoc)hq.pop();
     
-    float maxScore = (totalHits==0) ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
+    float maxScore = (scoreDocs.length == 0) ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
     
     return new TopDocs(totalHits, scoreDocs, maxScore);
   }
 
-  public TopFieldDocs search (Weight weight, Filter filter, int n, Sort sort)
-  throws IOException {
+  /** Merges the top sorted hits of each searcher. */
+  private TopFieldDocs merge(TopFieldDocs[] docs, int n) {
     FieldDocSortedHitQueue hq = null;
     int totalHits = 0;
 
     float maxScore=Float.NEGATIVE_INFINITY;
     
-    for (int i = 0; i < searchables.length; i++) { // search each searcher
-      TopFieldDocs docs = searchables[i].search (weight, filter, n, sort);
-      
-      if (hq == null) hq = new FieldDocSortedHitQueue (docs.fields, n);
-      totalHits += docs.totalHits;		  // update totalHits
-      maxScore = Math.max(maxScore, docs.getMaxScore());
-      ScoreDoc[] scoreDocs = docs.scoreDocs;
+    for (int i = 0; i < docs.length; i++) {
+      if (hq == null) hq = new FieldDocSortedHitQueue (docs[i].fields, n);
+      totalHits += docs[i].totalHits;		  // update totalHits
+      maxScore = Math.max(maxScore, docs[i].getMaxScore());
+      ScoreDoc[] scoreDocs = docs[i].scoreDocs;
       for (int j = 0; j < scoreDocs.length; j++) { // merge scoreDocs into hq
-        ScoreDoc scoreDoc = scoreDocs[j];
-        scoreDoc.doc += starts[i];                // convert doc
-        if (!hq.insert (scoreDoc))
+        FieldDoc fieldDoc = (FieldDoc)scoreDocs[j];
+        fieldDoc.doc += starts[i];                // convert doc
+        rebase(fieldDoc, docs[i].fields);
+        if (!hq.insert (fieldDoc))
           break;                                  // no more scores > minScore
       }
     }
@@ -243,6 +309,36 @@ public class MultiSearcher extends Searcher {
     return new TopFieldDocs (totalHits, scoreDocs, hq.getFields(), maxScore);
   }
 
+  /** Sets the sort values of the {@link SortField#DOC} fields of
+   * <code>fieldDoc</code> to its document number, after that was converted
+   * between a searchable and this searcher, so that hits sort by their
+   * number in the searcher they are returned from.
+   */
+  static void rebase(FieldDoc fieldDoc, SortField[] fields) {
+    Comparable[] values = fieldDoc.fields;
+    if (values == null)
+      return;
+    int n = Math.min(values.length, fields.length);
+    for (int i = 0; i < n; i++) {
+      if (fields[i].getType() == SortField.DOC)
+        values[i] = ScoreDocComparator.INDEXORDER.sortValue(fieldDoc);
+    }
+  }
+
+  /** Returns <code>after</code> as a hit of a searchable whose first
+   * document is <code>start</code>, leaving <code>after</code> unchanged.
+   */
+  static FieldDoc subAfter(FieldDoc after, SortField[] fields, int start) {
+    Comparable[] values = null;
+    if (after.fields != null) {
+      values = new Comparable[after.fields.length];
+      System.arraycopy(after.fields, 0, values, 0, values.length);
+    }
+    FieldDoc subAfter = new FieldDoc(after.doc - start, after.score, values);
+    rebase(subAfter, fields);
+    return subAfter;
+  }
+
 
   // inherit javadoc
   public void search(Weight weight, Filter filter, final HitCollector results)
@@ -0,0 +1,204 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.lucene.document.NumericTools;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+/**
+ * A Filter that restricts search results to a range of numbers in a field
+ * indexed with {@link NumericTools#addLongField}.
+ *
+ * <p>Unlike {@link RangeFilter}, which visits every term in the range, the
+ * range is split into aligned blocks of values, each of which is a single
+ * term of the lowest precision that can express it, so that only a number
+ * of terms logarithmic in the size of the range is visited.
+ *
+ * <p>Doubles are searched through {@link NumericTools#doubleToSortableLong}.
+ */
+public class NumericRangeFilter extends Filter {
+
+  private final String fieldName;
+  private final String lowerFieldName;
+  private final int precisionStep;
+  private final Long lowerVal;
+  private final Long upperVal;
+  private final boolean includeLower;
+  private final boolean includeUpper;
+
+  /**
+   * Constructs a filter for a field indexed with {@link
+   * NumericTools#PRECISION_STEP_DEFAULT}.
+   * @see #NumericRangeFilter(String, int, Long, Long, boolean, boolean)
+   */
+  public NumericRangeFilter(String fieldName, Long lowerVal, Long upperVal,
+                            boolean includeLower, boolean includeUpper) {
+    this(fieldName, NumericTools.PRECISION_STEP_DEFAULT,
+         lowerVal, upperVal, includeLower, includeUpper);
+  }
+
+  /**
+   * @param fieldName The field this range applies to
+   * @param precisionStep The precision step the field was indexed with
+   * @param lowerVal The lower bound on this range, or null for an open range
+   * @param upperVal The upper bound on this range, or null for an open range
+   * @param includeLower Does this range include the lower bound?
+   * @param includeUpper Does this range include the upper bound?
+   */
+  public NumericRangeFilter(String fieldName, int precisionStep,
+                            Long lowerVal, Long upperVal,
+                            boolean includeLower, boolean includeUpper) {
+    NumericTools.checkPrecisionStep(precisionStep);
+    this.fieldName = fieldName.intern();
+    this.lowerFieldName =
+      (fieldName + NumericTools.LOWER_PRECISION_SUFFIX).intern();
+    this.precisionStep = precisionStep;
+    this.lowerVal = lowerVal;
+    this.upperVal = upperVal;
+    this.includeLower = includeLower || lowerVal == null;
+    this.includeUpper = includeUpper || upperVal == null;
+  }
+
+  /**
+   * Returns a BitSet with true for documents which should be
+   * permitted in search results, and false for those that should
+   * not.
+   */
+  public BitSet bits(IndexReader reader) throws IOException {
+    BitSet bits = new BitSet(reader.maxDoc());
+
+    long min = Long.MIN_VALUE;
+    if (lowerVal != null) {
+      min = lowerVal.longValue();
+      if (!includeLower) {
+        if (min == Long.MAX_VALUE)
+          return bits;
+        min++;
+      }
+    }
+    long max = Long.MAX_VALUE;
+    if (upperVal != null) {
+      max = upperVal.longValue();
+      if (!includeUpper) {
+        if (max == Long.MIN_VALUE)
+          return bits;
+        max--;
+      }
+    }
+    if (min > max)
+      return bits;
+
+    TermDocs termDocs = reader.termDocs();
+    try {
+      // Take the unaligned ends of the range at each precision, and leave
+      // the aligned middle to the next lower precision.
+      for (int shift = 0; true; shift += precisionStep) {
+        if (shift + precisionStep >= 64) {        // no lower precision
+          addRange(reader, termDocs, bits, min, max, shift);
+          break;
+        }
+        long diff = 1L << (shift + precisionStep);
+        long mask = ((1L << precisionStep) - 1L) << shift;
+        boolean hasLower = (min & mask) != 0L;
+        boolean hasUpper = (max & mask) != mask;
+        long nextMin = (hasLower ? min + diff : min) & ~mask;
+        long nextMax = (hasUpper ? max - diff : max) & ~mask;
+        if (nextMin > nextMax                     // nothing in the middle
+            || nextMin < min || nextMax > max) {  // wrapped around
+          addRange(reader, termDocs, bits, min, max, shift);
+          break;
+        }
+        if (hasLower)
+          addRange(reader, termDocs, bits, min, min | mask, shift);
+        if (hasUpper)
+          addRange(reader, termDocs, bits, max & ~mask, max, shift);
+        min = nextMin;
+        max = nextMax;
+      }
+    } finally {
+      termDocs.close();
+    }
+    return bits;
+  }
+
+  // Sets the bits of the documents with a value from min to max, which are
+  // aligned to shift, using the terms of that precision.
+  private void addRange(IndexReader reader, TermDocs termDocs, BitSet bits,
+                        long min, long max, int shift) throws IOException {
+    String field = (shift == 0) ? fieldName : lowerFieldName;
+    String upperTerm = NumericTools.longToPrefixCoded(max, shift);
+    TermEnum enumerator =
+      reader.terms(new Term(field, NumericTools.longToPrefixCoded(min, shift)));
+    try {
+      do {
+        Term term = enumerator.term();
+        if (term == null || term.field() != field
+            || term.text().compareTo(upperTerm) > 0)
+          break;
+        termDocs.seek(enumerator);
+        while (termDocs.next())
+          bits.set(termDocs.doc());
+      } while (enumerator.next());
+    } finally {
+      enumerator.close();
+    }
+  }
+
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(fieldName);
+    buffer.append(":");
+    buffer.append(includeLower ? "[" : "{");
+    buffer.append(lowerVal != null ? lowerVal.toString() : "*");
+    buffer.append(" TO ");
+    buffer.append(upperVal != null ? upperVal.toString() : "*");
+    buffer.append(includeUpper ? "]" : "}");
+    return buffer.toString();
+  }
+
+  /** Returns true if <code>o</code> is equal to this. */
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof NumericRangeFilter)) return false;
+    NumericRangeFilter other = (NumericRangeFilter) o;
+
+    if (this.fieldName != other.fieldName       // interned comparison
+        || this.precisionStep != other.precisionStep
+        || this.includeLower != other.includeLower
+        || this.includeUpper != other.includeUpper
+       ) { return false; }
+    if (this.lowerVal != null ? !this.lowerVal.equals(other.lowerVal) : other.lowerVal != null) return false;
+    if (this.upperVal != null ? !this.upperVal.equals(other.upperVal) : other.upperVal != null) return false;
+    return true;
+  }
+
+  /** Returns a hash code value for this object.*/
+  public int hashCode() {
+    int h = fieldName.hashCode() ^ precisionStep;
+    h ^= lowerVal != null ? lowerVal.hashCode() : 0xB6ECE882;
+    h = (h << 1) | (h >>> 31);  // rotate to distinguish lower from upper
+    h ^= (upperVal != null ? (upperVal.hashCode()) : 0x91BEC2C2);
+    h ^= (includeLower ? 0xD484B933 : 0)
+       ^ (includeUpper ? 0x6AE423AC : 0);
+    return h;
+  }
+}
@@ -0,0 +1,98 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+import org.apache.lucene.document.NumericTools;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * A range query over a field indexed with {@link NumericTools#addLongField},
+ * that returns a constant score equal to its boost for all documents in the
+ * range.
+ * <p>
+ * It is rewritten to a {@link ConstantScoreQuery} of a {@link
+ * NumericRangeFilter}, so it neither expands to clauses nor is limited by
+ * {@link BooleanQuery#getMaxClauseCount()}, and only visits a number of terms
+ * logarithmic in the size of the range.
+ * <p>
+ * If an endpoint is null, it is said to be "open".
+ */
+public class NumericRangeQuery extends Query
+{
+  private final NumericRangeFilter filter;
+
+  /**
+   * Constructs a query for a field indexed with {@link
+   * NumericTools#PRECISION_STEP_DEFAULT}.
+   */
+  public NumericRangeQuery(String fieldName, Long lowerVal, Long upperVal,
+                           boolean includeLower, boolean includeUpper)
+  {
+    this(fieldName, NumericTools.PRECISION_STEP_DEFAULT,
+         lowerVal, upperVal, includeLower, includeUpper);
+  }
+
+  /**
+   * @see NumericRangeFilter#NumericRangeFilter(String, int, Long, Long, boolean, boolean)
+   */
+  public NumericRangeQuery(String fieldName, int precisionStep,
+                           Long lowerVal, Long upperVal,
+                           boolean includeLower, boolean includeUpper)
+  {
+    filter = new NumericRangeFilter(fieldName, precisionStep,
+                                    lowerVal, upperVal,
+                                    includeLower, includeUpper);
+  }
+
+  /** Returns the filter this query is rewritten to. */
+  public NumericRangeFilter getFilter() { return filter; }
+
+  public Query rewrite(IndexReader reader) throws IOException {
+    Query q = new ConstantScoreQuery(filter);
+    q.setBoost(getBoost());
+    return q;
+  }
+
+  /** Prints a user-readable version of this query. */
+  public String toString(String field)
+  {
+    StringBuffer buffer = new StringBuffer(filter.toString());
+    if (buffer.toString().startsWith(field + ":"))
+      buffer.delete(0, field.length() + 1);
+    if (getBoost() != 1.0f)
+    {
+      buffer.append("^");
+      buffer.append(Float.toString(getBoost()));
+    }
+    return buffer.toString();
+  }
+
+  /** Returns true if <code>o</code> is equal to this. */
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof NumericRangeQuery)) return false;
+    NumericRangeQuery other = (NumericRangeQuery) o;
+    return this.filter.equals(other.filter)
+      && this.getBoost() == other.getBoost();
+  }
+
+  /** Returns a hash code value for this object.*/
+  public int hashCode() {
+    return filter.hashCode() ^ Float.floatToIntBits(getBoost());
+  }
+}
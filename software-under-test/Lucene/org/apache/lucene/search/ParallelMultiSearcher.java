@@ -25,17 +25,49 @@ import org.apache.lucene.util.PriorityQueue;
  *
  * <p>Applications usually need only call the inherited {@link #search(Query)}
  * or {@link #search(Query,Filter)} methods.
+ *
+ * <p>The <code>Searchables</code> are searched on the threads of a
+ * {@link SearchExecutor}, by default the one {@link
+ * SearchExecutor#getDefault() shared} by all searchers.  The results are
+ * merged by the calling thread.
  */
 public class ParallelMultiSearcher extends MultiSearcher {
 
   private Searchable[] searchables;
   private int[] starts;
+  private SearchExecutor executor;
+  private long timeout = 0;
 	
   /** Creates a searcher which searches <i>searchables</i>. */
   public ParallelMultiSearcher(Searchable[] searchables) throws IOException {
+    this(searchables, SearchExecutor.getDefault());
+  }
+
+  /** Creates a searcher which searches <i>searchables</i> on the threads of
+   * <i>executor</i>. */
+  public ParallelMultiSearcher(Searchable[] searchables,
+                               SearchExecutor executor) throws IOException {
     super(searchables);
     this.searchables=searchables;
     this.starts=getStarts();
+    this.executor=executor;
+  }
+
+  /** Sets the time in milliseconds after which searches return the hits of
+   * the <code>Searchables</code> that completed, instead of waiting for all
+   * of them.  Such results are marked {@link TopDocs#isPartial() partial}.
+   * The searches which did not complete still run to their end in the
+   * background.  Zero, the default, means no timeout.
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  /** Returns the timeout of searches in milliseconds, or zero for none.
+   * @see #setTimeout(long)
+   */
+  public long getTimeout() {
+    return timeout;
   }
 
   /**
@@ -46,105 +78,98 @@ public class ParallelMultiSearcher extends MultiSearcher {
   }
 
   /**
-   * A search implementation which spans a new thread for each
-   * Searchable, waits for each search to complete and merge
+   * A search implementation which searches each Searchable on a thread of
+   * the executor, waits for each search to complete and merges
    * the results back together.
    */
   public TopDocs search(Weight weight, Filter filter, int nDocs)
     throws IOException {
+    SubSearch[] tasks = new SubSearch[searchables.length];
+    for (int i = 0; i < searchables.length; i++)
+      tasks[i] = new SubSearch(searchables[i], weight, filter, nDocs, null);
+    boolean[] completed = executor.invokeAll(tasks, timeout);
+
     HitQueue hq = new HitQueue(nDocs);
     int totalHits = 0;
-    MultiSearcherThread[] msta =
-      new MultiSearcherThread[searchables.length];
-    for (int i = 0; i < searchables.length; i++) { // search each searcher
-      // Assume not too many searchables and cost of creating a thread is by far inferior to a search
-      msta[i] =
-        new MultiSearcherThread(
-                                searchables[i],
-                                weight,
-                                filter,
-                                nDocs,
-                                hq,
-                                i,
-                                starts,
-                                "MultiSearcher thread #" + (i + 1));
-      msta[i].start();
-    }
-
-    for (int i = 0; i < searchables.length; i++) {
-      try {
-        msta[i].join();
-      } catch (InterruptedException ie) {
-        ; // TODO: what should we do with this???
-      }
-      IOException ioe = msta[i].getIOException();
-      if (ioe == null) {
-        totalHits += msta[i].hits();
-      } else {
-        // if one search produced an IOException, rethrow it
-        throw ioe;
+    boolean partial = false;
+    for (int i = 0; i < searchables.length; i++) { // merge in order
+      if (!completed[i]) {
+        partial = true;
+        continue;
       }
+      TopDocs docs = tasks[i].getTopDocs();
+      totalHits += docs.totalHits;
+      insert(hq, docs.scoreDocs, starts[i]);
     }
 
     ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
     for (int i = hq.size() - 1; i >= 0; i--) // put docs in array
       scoreDocs[i] = (ScoreDoc) hq.pop();
 
-    float maxScore = (totalHits==0) ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
+    float maxScore = (scoreDocs.length==0) ? Float.NEGATIVE_INFINITY : scoreDocs[0].score;
     
-    return new TopDocs(totalHits, scoreDocs, maxScore);
+    TopDocs result = new TopDocs(totalHits, scoreDocs, maxScore);
+    result.setPartial(partial);
+    return result;
   }
 
   /**
-   * A search implementation allowing sorting which spans a new thread for each
-   * Searchable, waits for each search to complete and merges
+   * A search implementation allowing sorting which searches each Searchable
+   * on a thread of the executor, waits for each search to complete and merges
    * the results back together.
    */
   public TopFieldDocs search(Weight weight, Filter filter, int nDocs, Sort sort)
     throws IOException {
+    SubSearch[] tasks = new SubSearch[searchables.length];
+    for (int i = 0; i < searchables.length; i++)
+      tasks[i] = new SubSearch(searchables[i], weight, filter, nDocs, sort);
+    boolean[] completed = executor.invokeAll(tasks, timeout);
+
     // don't specify the fields - we'll wait to do this until we get results
     FieldDocSortedHitQueue hq = new FieldDocSortedHitQueue (null, nDocs);
     int totalHits = 0;
-    MultiSearcherThread[] msta = new MultiSearcherThread[searchables.length];
-    for (int i = 0; i < searchables.length; i++) { // search each searcher
-      // Assume not too many searchables and cost of creating a thread is by far inferior to a search
-      msta[i] =
-        new MultiSearcherThread(
-                                searchables[i],
-                                weight,
-                                filter,
-                                nDocs,
-                                hq,
-                                sort,
-                                i,
-                                starts,
-                                "MultiSearcher thread #" + (i + 1));
-      msta[i].start();
-    }
-
     float maxScore=Float.NEGATIVE_INFINITY;
-    
-    for (int i = 0; i < searchables.length; i++) {
-      try {
-        msta[i].join();
-      } catch (InterruptedException ie) {
-        ; // TODO: what should we do with this???
+    boolean partial = false;
+    for (int i = 0; i < searchables.length; i++) { // merge in order
+      if (!completed[i]) {
+        partial = true;
+        continue;
       }
-      IOException ioe = msta[i].getIOException();
-      if (ioe == null) {
-        totalHits += msta[i].hits();
-        maxScore=Math.max(maxScore, msta[i].getMaxScore());
-      } else {
-        // if one search produced an IOException, rethrow it
-        throw ioe;
+      TopFieldDocs docs = (TopFieldDocs) tasks[i].getTopDocs();
+      // if we are sorting by fields, we need to tell the field sorted hit queue
+      // the actual type of fields, in case the original list contained AUTO.
+      // if the searchable returns null for fields, we'll have problems.
+      hq.setFields (docs.fields);
+      totalHits += docs.totalHits;
+      maxScore=Math.max(maxScore, docs.getMaxScore());
+      for (int j = 0; j < docs.scoreDocs.length; j++) {
+        FieldDoc fieldDoc = (FieldDoc) docs.scoreDocs[j];
+        fieldDoc.doc += starts[i]; // convert doc
+        MultiSearcher.rebase(fieldDoc, docs.fields); // doc numbers sort by value
+        if (!hq.insert(fieldDoc))
+          break; // no more scores > minScore
       }
     }
+    hq.setFields (sort.getSort());                // if nothing completed
 
     ScoreDoc[] scoreDocs = new ScoreDoc[hq.size()];
     for (int i = hq.size() - 1; i >= 0; i--) // put docs in array
       scoreDocs[i] = (ScoreDoc) hq.pop();
 
-    return new TopFieldDocs(totalHits, scoreDocs, hq.getFields(), maxScore);
+    TopFieldDocs result =
+      new TopFieldDocs(totalHits, scoreDocs, hq.getFields(), maxScore);
+    result.setPartial(partial);
+    return result;
+  }
+
+  /** Merges the sorted hits of a searchable into the queue. */
+  private static void insert(PriorityQueue hq, ScoreDoc[] scoreDocs, int start) {
+    for (int j = 0; j < scoreDocs.length; j++) {
+      ScoreDoc scoreDoc = scoreDocs[j];
+      scoreDoc.doc += start; // convert doc
+      if (!hq.insert(scoreDoc))
+        break; // no more scores > minScore
+    }
   }
 
   /** Lower-level search API.
@@ -186,105 +211,41 @@ public class ParallelMultiSearcher extends MultiSearcher {
     return super.rewrite(original);
   }
 
-}
-
-/**
- * A thread subclass for searching a single searchable 
- */
-class MultiSearcherThread extends Thread {
-
-  private Searchable searchable;
-  private Weight weight;
-  private Filter filter;
-  private int nDocs;
-  private TopDocs docs;
-  private int i;
-  private PriorityQueue hq;
-  private int[] starts;
-  private IOException ioe;
-  private Sort sort;
-
-  public MultiSearcherThread(
-                             Searchable searchable,
-                             Weight weight,
-                             Filter filter,
-                             int nDocs,
-                             HitQueue hq,
-                             int i,
-                             int[] starts,
-                             String name) {
-    super(name);
-    this.searchable = searchable;
-    this.weight = weight;
-    this.filter = filter;
-    this.nDocs = nDocs;
-    this.hq = hq;
-    this.i = i;
-    this.starts = starts;
-  }
-
-  public MultiSearcherThread(
-                             Searchable searchable,
-                             Weight weight,
-                             Filter filter,
-                             int nDocs,
-                             FieldDocSortedHitQueue hq,
-                             Sort sort,
-                             int i,
-                             int[] starts,
-                             String name) {
-    super(name);
-    this.searchable = searchable;
-    this.weight = weight;
-    this.filter = filter;
-    this.nDocs = nDocs;
-    this.hq = hq;
-    this.i = i;
-    this.starts = starts;
-    this.sort = sort;
-  }
-
-  public void run() {
-    try {
-      docs = (sort == null) ? searchable.search (weight, filter, nDocs)
-        : searchable.search (weight, filter, nDocs, sort);
+  /** Searches a single searchable. */
+  private static class SubSearch implements Runnable {
+    private final Searchable searchable;
+    private final Weight weight;
+    private final Filter filter;
+    private final int nDocs;
+    private final Sort sort;
+    private TopDocs docs;
+    private IOException ioe;
+
+    SubSearch(Searchable searchable, Weight weight, Filter filter,
+              int nDocs, Sort sort) {
+      this.searchable = searchable;
+      this.weight = weight;
+      this.filter = filter;
+      this.nDocs = nDocs;
+      this.sort = sort;
     }
-    // Store the IOException for later use by the caller of this thread
-    catch (IOException ioe) {
-      this.ioe = ioe;
-    }
-    if (ioe == null) {
-      // if we are sorting by fields, we need to tell the field sorted hit queue
-      // the actual type of fields, in case the original list contained AUTO.
-      // if the searchable returns null for fields, we'll have problems.
-      if (sort != null) {
-        ((FieldDocSortedHitQueue)hq).setFields (((TopFieldDocs)docs).fields);
+
+    public void run() {
+      try {
+        docs = (sort == null) ? searchable.search (weight, filter, nDocs)
+          : searchable.search (weight, filter, nDocs, sort);
       }
-      ScoreDoc[] scoreDocs = docs.scoreDocs;
-      for (int j = 0;
-           j < scoreDocs.length;
-           j++) { // merge scoreDocs into hq
-        ScoreDoc scoreDoc = scoreDocs[j];
-        scoreDoc.doc += starts[i]; // convert doc 
-        //it would be so nice if we had a thread-safe insert 
-        synchronized (hq) {
-          if (!hq.insert(scoreDoc))
-            break;
-        } // no more scores > minScore
+      // Store the IOException for later use by the searching thread
+      catch (IOException ioe) {
+        this.ioe = ioe;
       }
     }
-  }
 
-  public int hits() {
-    return docs.totalHits;
-  }
-
-  public float getMaxScore() {
-      return docs.getMaxScore();
-  }
-  
-  public IOException getIOException() {
-    return ioe;
+    /** Returns the hits, or rethrows the exception of the search. */
+    TopDocs getTopDocs() throws IOException {
+      if (ioe != null)
+        throw ioe;
+      return docs;
+    }
   }
-
 }
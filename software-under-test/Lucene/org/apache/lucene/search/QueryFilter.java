@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.WeakHashMap;
 import java.util.BitSet;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.DocIdBitSet;
 
 /** Constrains search results to only match those which also match a provided
  * query.  Results are cached, so that searches after the first on the same
@@ -31,6 +32,9 @@ import org.apache.lucene.index.IndexReader;
  * week.  The QueryFilter and RangeQuery would only need to be reconstructed
  * once per day.
  *
+ * <p> Results matching few documents are cached more compactly than in a
+ * BitSet, see {@link CachingWrapperFilter}.
+ *
  * @version $Id: QueryFilter.java 328729 2005-10-26 21:05:35Z yonik $
  */
 public class QueryFilter extends Filter {
@@ -44,14 +48,14 @@ public class QueryFilter extends Filter {
     this.query = query;
   }
 
-  public BitSet bits(IndexReader reader) throws IOException {
+  public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
 
     if (cache == null) {
       cache = new WeakHashMap();
     }
 
     synchronized (cache) {  // check cache
-      BitSet cached = (BitSet) cache.get(reader);
+      DocIdSet cached = (DocIdSet) cache.get(reader);
       if (cached != null) {
         return cached;
       }
@@ -65,11 +69,14 @@ public class QueryFilter extends Filter {
       }
     });
 
+    DocIdSet docIdSet =
+      CachingWrapperFilter.compact(new DocIdBitSet(bits), reader.maxDoc());
+
     synchronized (cache) {  // update cache
-      cache.put(reader, bits);
+      cache.put(reader, docIdSet);
     }
 
-    return bits;
+    return docIdSet;
   }
 
   public String toString() {
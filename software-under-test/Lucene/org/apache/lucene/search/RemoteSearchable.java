@@ -24,6 +24,7 @@ import java.rmi.RMISecurityManager;
 import java.rmi.server.UnicastRemoteObject;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.Term;
 
 /**
@@ -98,6 +99,10 @@ public class RemoteSearchable
     return local.doc(i);
   }
 
+  public Document doc(int i, FieldSelector fieldSelector) throws IOException {
+    return local.doc(i, fieldSelector);
+  }
+
   public Query rewrite(Query original) throws IOException {
     return local.rewrite(original);
   }
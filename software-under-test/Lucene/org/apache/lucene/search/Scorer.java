@@ -22,8 +22,10 @@ import java.io.IOException;
  * <br>A <code>Scorer</code> either iterates over documents matching a query,
  * or provides an explanation of the score for a query for a given document.
  * <br>Document scores are computed using a given <code>Similarity</code> implementation.
+ * <br>The documents a <code>Scorer</code> iterates over are a
+ * {@link DocIdSetIterator}.
  */
-public abstract class Scorer {
+public abstract class Scorer extends DocIdSetIterator {
   private Similarity similarity;
 
   /** Constructs a Scorer.
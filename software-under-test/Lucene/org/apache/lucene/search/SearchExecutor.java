@@ -0,0 +1,237 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.LinkedList;
+
+/** A bounded pool of threads which runs the parts of a search in parallel.
+ * Its threads are started once and reused by all searches, unlike a thread
+ * per part and search, whose creation dominates the cost of short searches.
+ *
+ * <p>At most <code>maxQueuedTasks</code> tasks wait for a thread; further
+ * tasks are run by the thread which submits them.
+ *
+ * @see ParallelMultiSearcher
+ */
+public class SearchExecutor {
+
+  private static SearchExecutor defaultExecutor;
+
+  /** Returns the executor shared by searchers created without one.  It has
+   * two threads per available processor. */
+  public static synchronized SearchExecutor getDefault() {
+    if (defaultExecutor == null) {
+      int numThreads = 2 * Runtime.getRuntime().availableProcessors();
+      defaultExecutor = new SearchExecutor(numThreads, 64 * numThreads);
+    }
+    return defaultExecutor;
+  }
+
+  private final LinkedList queue = new LinkedList();
+  private final int maxQueuedTasks;
+  private final Thread[] threads;
+  private boolean closed;
+
+  /** Creates an executor running tasks on <code>numThreads</code> daemon
+   * threads, with at most <code>maxQueuedTasks</code> tasks waiting.
+   * @throws IllegalArgumentException if <code>numThreads</code> is not
+   * positive or <code>maxQueuedTasks</code> is negative
+   */
+  public SearchExecutor(int numThreads, int maxQueuedTasks) {
+    if (numThreads <= 0)
+      throw new IllegalArgumentException("numThreads must be greater than 0 (got " + numThreads + ")");
+    if (maxQueuedTasks < 0)
+      throw new IllegalArgumentException("maxQueuedTasks must be at least 0 (got " + maxQueuedTasks + ")");
+    this.maxQueuedTasks = maxQueuedTasks;
+    threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread("SearchExecutor thread #" + (i + 1)) {
+          public void run() {
+            Runnable task;
+            while ((task = nextTask()) != null) {
+              try {
+                task.run();
+              } catch (Throwable t) {
+                // keep the thread; tasks report their own failures
+              }
+            }
+          }
+        };
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  /** Runs <code>task</code> on a thread of this executor, or on the calling
+   * thread if too many tasks are waiting or this executor is closed. */
+  public void execute(Runnable task) {
+    if (!offer(task))
+      task.run();
+  }
+
+  /** Queues <code>task</code> unless too many tasks are waiting or this
+   * executor is closed.
+   * @return whether the task was queued */
+  private boolean offer(Runnable task) {
+    synchronized (queue) {
+      if (!closed && queue.size() < maxQueuedTasks) {
+        queue.addLast(task);
+        queue.notify();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private Runnable nextTask() {
+    synchronized (queue) {
+      while (queue.isEmpty()) {
+        if (closed)
+          return null;
+        try {
+          queue.wait();
+        } catch (InterruptedException e) {
+          // keep serving until closed
+        }
+      }
+      return (Runnable) queue.removeFirst();
+    }
+  }
+
+  /** Runs all <code>tasks</code> and waits until they completed, or until
+   * <code>timeout</code> milliseconds passed, if positive.  Without a
+   * timeout, the calling thread also runs tasks which did not yet start, so
+   * that nested parallel searches on the same executor cannot deadlock.
+   * With a timeout, tasks which cannot be queued are run by the calling
+   * thread only until the timeout passed, and the others are not run.  A
+   * task is not interrupted, so one run by the calling thread may still
+   * delay the return past the timeout by its own duration.
+   * An exception thrown by a completed task is rethrown.
+   *
+   * @return for each task, whether it completed in time.  Tasks which did
+   * not complete keep running, and their results must be ignored.
+   */
+  public boolean[] invokeAll(Runnable[] tasks, long timeout) {
+    Group group = new Group(tasks.length);
+    Task[] wrapped = new Task[tasks.length];
+    for (int i = 0; i < tasks.length; i++)
+      wrapped[i] = new Task(tasks[i], group, i);
+
+    long deadline = System.currentTimeMillis() + timeout;
+    if (timeout > 0) {
+      for (int i = 0; i < tasks.length; i++) {
+        if (!offer(wrapped[i]) && System.currentTimeMillis() < deadline)
+          wrapped[i].run();                       // no room: run it here
+      }
+    } else {
+      for (int i = 1; i < tasks.length; i++)
+        execute(wrapped[i]);
+      for (int i = 0; i < tasks.length; i++)      // run what is still queued
+        wrapped[i].run();
+    }
+
+    boolean[] completed = group.await(timeout > 0 ? deadline : 0);
+    for (int i = 0; i < tasks.length; i++) {
+      Throwable t = completed[i] ? wrapped[i].failure : null;
+      if (t instanceof RuntimeException)
+        throw (RuntimeException) t;
+      if (t instanceof Error)
+        throw (Error) t;
+    }
+    return completed;
+  }
+
+  /** Stops the threads once the queued tasks are done.  Tasks submitted
+   * afterwards run on the submitting thread. */
+  public void close() {
+    synchronized (queue) {
+      closed = true;
+      queue.notifyAll();
+    }
+  }
+
+  /** Counts the completed tasks of an {@link #invokeAll} call. */
+  private static final class Group {
+    private final boolean[] completed;
+    private int pending;
+
+    Group(int size) {
+      completed = new boolean[size];
+      pending = size;
+    }
+
+    synchronized void complete(int i) {
+      completed[i] = true;
+      if (--pending == 0)
+        notifyAll();
+    }
+
+    /** Waits for the tasks to complete, or until <code>deadline</code>
+     * unless it is 0. */
+    synchronized boolean[] await(long deadline) {
+      boolean interrupted = false;
+      while (pending > 0) {
+        long wait = 0;
+        if (deadline > 0) {
+          wait = deadline - System.currentTimeMillis();
+          if (wait <= 0)
+            break;
+        }
+        try {
+          wait(wait);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted)
+        Thread.currentThread().interrupt();
+      boolean[] result = new boolean[completed.length];
+      System.arraycopy(completed, 0, result, 0, completed.length);
+      return result;
+    }
+  }
+
+  /** Runs a task once, on whichever thread gets to it first. */
+  private static final class Task implements Runnable {
+    private final Runnable task;
+    private final Group group;
+    private final int index;
+    private boolean started;
+    Throwable failure;
+
+    Task(Runnable task, Group group, int index) {
+      this.task = task;
+      this.group = group;
+      this.index = index;
+    }
+
+    public void run() {
+      synchronized (this) {
+        if (started)
+          return;
+        started = true;
+      }
+      try {
+        task.run();
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        group.complete(index);
+      }
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 import java.io.IOException;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.IndexReader;       // for javadoc
 
@@ -104,6 +105,12 @@ public interface Searchable extends java.rmi.Remote {
    */
   Document doc(int i) throws IOException;
 
+  /** Expert: Returns the stored fields of document <code>i</code> that
+   * <code>fieldSelector</code> selects.
+   * @see IndexReader#document(int, FieldSelector)
+   */
+  Document doc(int i, FieldSelector fieldSelector) throws IOException;
+
   /** Expert: called to re-write queries into primitive queries.
    * @throws BooleanQuery.TooManyClauses
    */
@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 
 /** An abstract base class for search implementations.
  * Implements the main search methods.
@@ -84,7 +85,9 @@ public abstract class Searcher implements Searchable {
    * <p>Applications should only use this if they need <i>all</i> of the
    * matching documents.  The high-level search API ({@link
    * Searcher#search(Query)}) is usually more efficient, as it skips
-   * non-high-scoring hits.
+   * non-high-scoring hits.  Conversely, to export all of the matching
+   * documents this is far cheaper than paging through {@link Hits}, as the
+   * hits are streamed in document order without ever being ranked.
    * <p>Note: The <code>score</code> passed to this method is a raw score.
    * In other words, the score will not necessarily be a float whose value is
    * between 0 and 1.
@@ -130,6 +133,66 @@ public abstract class Searcher implements Searchable {
     return search(createWeight(query), filter, n);
   }
 
+  /** Finds the top <code>n</code> hits for <code>query</code> ranked after
+   * <code>after</code>, applying <code>filter</code> if non-null.  This pages
+   * through the hits of a query a page at a time: passing the last hit of
+   * one page returns the next, with a queue no larger than a page, however
+   * deep the page.  With a null <code>after</code> this returns the first
+   * page, as {@link #search(Query,Filter,int)}.
+   *
+   * <p>The hits of every page are ranked by the same query, so the index
+   * must not change between pages.
+   * @param after the last hit of the previous page, as returned
+   * @throws BooleanQuery.TooManyClauses
+   */
+  public TopDocs searchAfter(ScoreDoc after, Query query, Filter filter,
+                             int n) throws IOException {
+    return searchAfter(after, createWeight(query), filter, n);
+  }
+
+  /** Finds the top <code>n</code> hits for <code>query</code> sorted by
+   * <code>sort</code> after <code>after</code>, applying <code>filter</code>
+   * if non-null.  As {@link #searchAfter(ScoreDoc,Query,Filter,int)}, but
+   * for sorted pages.
+   * @param after the last hit of the previous page, as returned, with its
+   * sort values
+   * @throws BooleanQuery.TooManyClauses
+   * @throws UnsupportedOperationException if this searcher cannot page
+   * sorted hits
+   */
+  public TopFieldDocs searchAfter(FieldDoc after, Query query, Filter filter,
+                                  int n, Sort sort) throws IOException {
+    return searchAfter(after, createWeight(query), filter, n, sort);
+  }
+
+  /** Expert: Low-level implementation of {@link
+   * #searchAfter(ScoreDoc,Query,Filter,int)}.  This implementation collects
+   * the page through {@link #search(Weight,Filter,HitCollector)}. */
+  public TopDocs searchAfter(ScoreDoc after, Weight weight, Filter filter,
+                             int n) throws IOException {
+    if (after == null)
+      return search(weight, filter, n);
+    if (n <= 0)
+      throw new IllegalArgumentException("n must be > 0");
+    TopDocCollector collector = new TopDocCollector(after, n);
+    search(weight, filter, collector);
+    return collector.topDocs();
+  }
+
+  /** Expert: Low-level implementation of {@link
+   * #searchAfter(FieldDoc,Query,Filter,int,Sort)}.  Sorting needs the index
+   * of a searcher, so this implementation only returns the first page.
+   * @throws UnsupportedOperationException if <code>after</code> is not null
+   */
+  public TopFieldDocs searchAfter(FieldDoc after, Weight weight,
+                                  Filter filter, int n, Sort sort)
+    throws IOException {
+    if (after == null)
+      return search(weight, filter, n, sort);
+    throw new UnsupportedOperationException(getClass().getName()
+                                            + " cannot page sorted hits");
+  }
+
   /** Returns an Explanation that describes how <code>doc</code> scored against
    * <code>query</code>.
    *
@@ -187,6 +250,7 @@ public abstract class Searcher implements Searchable {
   abstract public int maxDoc() throws IOException;
   abstract public TopDocs search(Weight weight, Filter filter, int n) throws IOException;
   abstract public Document doc(int i) throws IOException;
+  abstract public Document doc(int i, FieldSelector fieldSelector) throws IOException;
   abstract public Query rewrite(Query query) throws IOException;
   abstract public Explanation explain(Weight weight, int doc) throws IOException;
   abstract public TopFieldDocs search(Weight weight, Filter filter, int n, Sort sort) throws IOException;
@@ -0,0 +1,176 @@
+package org.apache.lucene.search;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+/** An automaton over term text, run one character at a time, that a
+ * {@link FilteredTermEnum} intersects with the sorted term dictionary.
+ * <p>
+ * The states reached after each prefix of the last text run are kept, so
+ * that a following term is only run from the first character where it
+ * differs.  Once a prefix leads nowhere, {@link #nextString(int)} gives the
+ * smallest string after every string with that prefix that could still be
+ * accepted, so the enumeration can seek straight to it instead of
+ * comparing every term in between.
+ * <p>
+ * Subclasses define states as int arrays of a fixed width.  Characters
+ * that do not occur in the alphabet passed to the constructor must all
+ * lead from a state to the same state.
+ */
+abstract class TermAutomaton {
+  /** Terms stepped over before seeking instead.  Seeking opens a new
+   * enumeration, which scans from the closest indexed term, so it only pays
+   * off for targets further away than this. */
+  static final int SEEK_DISTANCE = 16;
+
+  private final int width;
+  private final char[] alphabet;                  // sorted, distinct
+  private final char other;                       // a char not in alphabet
+
+  private int[][] states = new int[16][];         // states[i] follows i chars
+  private final int[] scratch;
+  private String last = "";                       // text last run
+  private int live = 0;                           // chars of last with states
+
+  /** Creates an automaton whose states are <code>width</code> ints and
+   * whose transitions only distinguish the characters in
+   * <code>chars</code>. */
+  TermAutomaton(int width, String chars) {
+    this.width = width;
+
+    char[] sorted = chars.toCharArray();
+    java.util.Arrays.sort(sorted);
+    int count = 0;
+    for (int i = 0; i < sorted.length; i++)
+      if (count == 0 || sorted[i] != sorted[count - 1])
+        sorted[count++] = sorted[i];
+    alphabet = new char[count];
+    System.arraycopy(sorted, 0, alphabet, 0, count);
+
+    char c = 0;
+    for (int i = 0; i < count && alphabet[i] == c; i++)
+      c++;
+    other = c;
+
+    scratch = new int[width];
+  }
+
+  /** Sets <code>state</code> to the start state. */
+  protected abstract void initial(int[] state);
+
+  /** Sets <code>to</code> to the state reached from <code>from</code> on
+   * <code>c</code>.  Returns false if no string can be accepted from it. */
+  protected abstract boolean step(int[] from, char c, int[] to);
+
+  /** Returns true if <code>state</code> is an accept state. */
+  protected abstract boolean accepts(int[] state);
+
+  /** Runs <code>text</code> from the start state.  Returns the number of
+   * characters read before no string could be accepted any more, which is
+   * the length of the text if every prefix of it could still lead to an
+   * accept state. */
+  final int run(String text) {
+    if (states[0] == null) {
+      states[0] = new int[width];
+      initial(states[0]);
+    }
+    int length = text.length();
+    if (states.length <= length) {                // grow
+      int[][] newStates = new int[Math.max(length + 1, 2 * states.length)][];
+      System.arraycopy(states, 0, newStates, 0, states.length);
+      states = newStates;
+    }
+
+    int i = 0;                                    // reuse the shared prefix
+    int shared = Math.min(live, length);
+    while (i < shared && last.charAt(i) == text.charAt(i))
+      i++;
+
+    last = text;
+    for (; i < length; i++) {
+      if (states[i + 1] == null)
+        states[i + 1] = new int[width];
+      if (!step(states[i], text.charAt(i), states[i + 1])) {
+        live = i;
+        return i;
+      }
+    }
+    live = length;
+    return length;
+  }
+
+  /** Returns true if the whole of the text last run is accepted. */
+  final boolean accepted() {
+    return live == last.length() && accepts(states[live]);
+  }
+
+  /** Returns the smallest string that is greater than every string
+   * starting with the first <code>dead + 1</code> characters of the text
+   * last run and that is a prefix of an accepted string, or null if there
+   * is none.  <code>dead</code> is the value {@link #run(String)} returned
+   * when it stopped short of the end of the text. */
+  final String nextString(int dead) {
+    for (int i = dead; i >= 0; i--) {
+      int c = nextChar(states[i], last.charAt(i));
+      if (c >= 0)
+        return last.substring(0, i) + (char) c;
+    }
+    return null;
+  }
+
+  /** Returns the smallest character after <code>after</code> that leads
+   * from <code>state</code> to a state that can still accept, or -1. */
+  private int nextChar(int[] state, char after) {
+    boolean otherLive = step(state, other, scratch);
+    int c = after + 1;
+    int k = 0;                                    // first alphabet char >= c
+    while (k < alphabet.length && alphabet[k] < c)
+      k++;
+    while (c <= Character.MAX_VALUE) {
+      if (k < alphabet.length && alphabet[k] == c) {
+        if (step(state, (char) c, scratch))
+          return c;
+        k++;
+        c++;
+      } else if (otherLive) {
+        return c;
+      } else if (k < alphabet.length) {
+        c = alphabet[k];
+      } else {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns an enumeration positioned at the first term at or after
+   * <code>target</code>: <code>current</code> stepped forward when the target
+   * is near, otherwise a new enumeration from <code>reader</code>. */
+  static TermEnum seek(IndexReader reader, TermEnum current, Term target)
+    throws IOException {
+    for (int i = 0; i < SEEK_DISTANCE; i++) {
+      if (!current.next() || current.term().compareTo(target) >= 0)
+        return current;
+    }
+    return reader.terms(target);
+  }
+}
@@ -66,7 +66,7 @@ public class TermQuery extends Query {
         return null;
 
       return new TermScorer(this, termDocs, similarity,
-                            reader.norms(term.field()));
+                            reader.norms(term.field()), reader, term);
     }
 
     public Explanation explain(IndexReader reader, int doc)
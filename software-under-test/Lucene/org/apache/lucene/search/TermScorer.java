@@ -17,7 +17,12 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 
 /** Expert: A <code>Scorer</code> for documents matching a <code>Term</code>.
@@ -37,6 +42,9 @@ final class TermScorer extends Scorer {
   private static final int SCORE_CACHE_SIZE = 32;
   private float[] scoreCache = new float[SCORE_CACHE_SIZE];
 
+  private IndexReader reader;                     // for maxScore()
+  private Term term;
+
   /** Construct a <code>TermScorer</code>.
    * @param weight The weight of the <code>Term</code> in the query.
    * @param td An iterator over the documents matching the <code>Term</code>.
@@ -55,6 +63,99 @@ final class TermScorer extends Scorer {
       scoreCache[i] = getSimilarity().tf(i) * weightValue;
   }
 
+  /** Construct a <code>TermScorer</code> that can compute an upper bound
+   * for its scores with {@link #maxScore()}.
+   * @param reader The reader <code>td</code> was obtained from.
+   * @param term The <code>Term</code> that <code>td</code> enumerates.
+   */
+  TermScorer(Weight weight, TermDocs td, Similarity similarity,
+             byte[] norms, IndexReader reader, Term term) {
+    this(weight, td, similarity, norms);
+    this.reader = reader;
+    this.term = term;
+  }
+
+  /** Returns an upper bound for the score of any document matched by this
+   * scorer: the largest <code>tf(freq)*weight</code> up to the highest
+   * frequency of the term, times the largest norm of its field, which the
+   * reader keeps with its norms.
+   * @return the bound, or {@link Float#POSITIVE_INFINITY} when none is known.
+   * @see IndexReader#getMaxNorm(String)
+   */
+  float maxScore() throws IOException {
+    if (reader == null)
+      return Float.POSITIVE_INFINITY;
+
+    int maxFreq = maxFreq(reader, term);
+    float maxRaw = 0.0f;
+    for (int f = 1; f <= maxFreq; f++) {
+      float raw = f < SCORE_CACHE_SIZE
+        ? scoreCache[f]
+        : getSimilarity().tf(f)*weightValue;
+      if (raw > maxRaw)
+        maxRaw = raw;
+      else if (raw < 0.0f)                        // negative boosts: no bound
+        return Float.POSITIVE_INFINITY;
+    }
+
+    return maxRaw * Similarity.decodeNorm(reader.getMaxNorm(term.field()));
+  }
+
+  /** The number of terms whose highest frequency is kept per reader. */
+  private static final int MAX_FREQS_PER_READER = 1024;
+
+  /** Highest frequencies of the most recently used terms, per reader:
+   * Term -> int[] {numDocs, maxFreq}. */
+  private static final Map maxFreqs = new WeakHashMap();
+
+  /** Returns the highest frequency of <code>term</code> in any document of
+   * <code>reader</code>.  Postings do not change once written, so the value
+   * is computed once per term and kept, for the last {@link
+   * #MAX_FREQS_PER_READER} terms used, for as long as the reader is in use;
+   * it is only recomputed when documents have been undeleted since.
+   */
+  static int maxFreq(IndexReader reader, Term term) throws IOException {
+    Object key = reader.getFieldCacheKey();
+    Map readerFreqs;
+    synchronized (maxFreqs) {
+      readerFreqs = (Map)maxFreqs.get(key);
+      if (readerFreqs == null) {
+        readerFreqs = new LinkedHashMap(16, 0.75f, true) { // access order
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+              return size() > MAX_FREQS_PER_READER;
+            }
+          };
+        maxFreqs.put(key, readerFreqs);
+      }
+    }
+
+    int numDocs = reader.numDocs();
+    synchronized (readerFreqs) {
+      int[] entry = (int[])readerFreqs.get(term);
+      if (entry != null && numDocs <= entry[0])
+        return entry[1];
+    }
+
+    int maxFreq = 0;
+    TermDocs termDocs = reader.termDocs(term);
+    try {
+      int[] docs = new int[32];
+      int[] freqs = new int[32];
+      int count;
+      while ((count = termDocs.read(docs, freqs)) != 0) {
+        for (int i = 0; i < count; i++)
+          maxFreq = Math.max(maxFreq, freqs[i]);
+      }
+    } finally {
+      termDocs.close();
+    }
+
+    synchronized (readerFreqs) {
+      readerFreqs.put(term, new int[] {numDocs, maxFreq});
+    }
+    return maxFreq;
+  }
+
   public void score(HitCollector hc) throws IOException {
     next();
     score(hc, Integer.MAX_VALUE);
@@ -35,7 +35,9 @@ import org.apache.lucene.util.PriorityQueue;
  **/
 public class TopDocCollector extends HitCollector {
   private int numHits;
+  private ScoreDoc after;
   private float minScore = 0.0f;
+  private boolean countAllHits = true;
 
   int totalHits;
   PriorityQueue hq;
@@ -47,6 +49,18 @@ public class TopDocCollector extends HitCollector {
     this(numHits, new HitQueue(numHits));
   }
 
+  /** Construct to collect a given number of the hits ranked after a hit of
+   * an earlier page.  Hits up to and including <code>after</code> are
+   * counted but not collected.
+   * @param after the last hit of the previous page, or null for the first
+   * @param numHits the maximum number of hits to collect
+   * @see Searcher#searchAfter(ScoreDoc,Query,Filter,int)
+   */
+  public TopDocCollector(ScoreDoc after, int numHits) {
+    this(numHits);
+    this.after = after;
+  }
+
   TopDocCollector(int numHits, PriorityQueue hq) {
     this.numHits = numHits;
     this.hq = hq;
@@ -56,6 +70,9 @@ public class TopDocCollector extends HitCollector {
   public void collect(int doc, float score) {
     if (score > 0.0f) {
       totalHits++;
+      if (after != null &&                      // on an earlier page
+          (score > after.score || (score == after.score && doc <= after.doc)))
+        return;
       if (hq.size() < numHits || score >= minScore) {
         hq.insert(new ScoreDoc(doc, score));
         minScore = ((ScoreDoc)hq.top()).score; // maintain minScore
@@ -63,7 +80,38 @@ public class TopDocCollector extends HitCollector {
     }
   }
 
-  /** The total number of documents that matched this query. */
+  /** Expert: Set to false to let scorers skip documents that cannot score
+   * high enough to enter the top hits, without collecting them.  Disjunctive
+   * {@link BooleanQuery}s over terms use this to score far fewer documents,
+   * at the price of {@link #getTotalHits()} only being a lower bound.
+   * The default is true.
+   */
+  public void setCountAllHits(boolean countAllHits) {
+    this.countAllHits = countAllHits;
+  }
+
+  /** @see #setCountAllHits(boolean) */
+  public boolean getCountAllHits() { return countAllHits; }
+
+  /** Returns true if scorers may skip documents that do not score above
+   * {@link #minCompetitiveScore()}. */
+  boolean skipsHits() {
+    return !countAllHits && hq instanceof HitQueue;
+  }
+
+  /** Returns the score a document must exceed to enter the top hits, once
+   * the queue is full and {@link #skipsHits()}; otherwise negative infinity.
+   * A later document with an equal score loses the tie to the ones in the queue.
+   */
+  float minCompetitiveScore() {
+    if (!skipsHits() || hq.size() < numHits)
+      return Float.NEGATIVE_INFINITY;
+    return minScore;
+  }
+
+  /** The total number of documents that matched this query.
+   * @see #setCountAllHits(boolean)
+   */
   public int getTotalHits() { return totalHits; }
 
   /** The top-scoring hits. */
@@ -72,7 +120,7 @@ public class TopDocCollector extends HitCollector {
     for (int i = hq.size()-1; i >= 0; i--)      // put docs in array
       scoreDocs[i] = (ScoreDoc)hq.pop();
       
-    float maxScore = (totalHits==0)
+    float maxScore = (scoreDocs.length == 0)
       ? Float.NEGATIVE_INFINITY
       : scoreDocs[0].score;
     
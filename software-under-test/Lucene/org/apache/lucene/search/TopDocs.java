@@ -38,6 +38,23 @@ public class TopDocs implements java.io.Serializable {
       this.maxScore=maxScore;
   }
   
+  /** Expert: True if not all of the index was searched, because a search
+   * timed out. */
+  private boolean partial;
+
+  /** Expert: Returns true if not all of the index was searched, because a
+   * search timed out.  The hits are then the best ones of the searched part.
+   * @see ParallelMultiSearcher#setTimeout(long)
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  /** Expert: Sets whether not all of the index was searched. */
+  public void setPartial(boolean partial) {
+    this.partial = partial;
+  }
+
   /** Expert: Constructs a TopDocs.*/
   TopDocs(int totalHits, ScoreDoc[] scoreDocs, float maxScore) {
     this.totalHits = totalHits;
@@ -34,6 +34,13 @@ import org.apache.lucene.index.Term;
  **/
 public class TopFieldDocCollector extends TopDocCollector {
 
+  private final FieldKeyHitQueue keyed;          // null unless all fields have keys
+  private float maxScore = Float.NEGATIVE_INFINITY;
+
+  private FieldDoc after;
+  private FieldDoc probe;                         // sort values of a hit
+  private FieldDocSortedHitQueue afterOrder;
+
   /** Construct to collect a given number of hits.
    * @param reader the index to be searched
    * @param sort the sort criteria
@@ -42,19 +49,72 @@ public class TopFieldDocCollector extends TopDocCollector {
   public TopFieldDocCollector(IndexReader reader, Sort sort, int numHits)
     throws IOException {
     super(numHits, new FieldSortedHitQueue(reader, sort.fields, numHits));
+    keyed = FieldKeyHitQueue.create((FieldSortedHitQueue)hq, numHits);
+  }
+
+  /** Construct to collect a given number of the hits sorting after a hit of
+   * an earlier page.  Hits up to and including <code>after</code> are
+   * counted but not collected.
+   * @param reader the index to be searched
+   * @param sort the sort criteria
+   * @param after the last hit of the previous page, with the sort values it
+   * was returned with, or null for the first page
+   * @param numHits the maximum number of hits to collect
+   * @throws IllegalArgumentException if <code>after</code> holds no value for
+   * each of the sort fields
+   * @see Searcher#searchAfter(FieldDoc,Query,Filter,int,Sort)
+   */
+  public TopFieldDocCollector(IndexReader reader, Sort sort, FieldDoc after,
+                              int numHits)
+    throws IOException {
+    this(reader, sort, numHits);
+    if (after == null)
+      return;
+    SortField[] fields = ((FieldSortedHitQueue)hq).getFields();
+    if (after.fields == null || after.fields.length != fields.length)
+      throw new IllegalArgumentException("after must hold the sort values of a hit sorted by " + sort);
+    this.after = after;
+    if (keyed != null) {
+      keyed.setAfter(after, ((FieldSortedHitQueue)hq).comparators);
+      return;
+    }
+    probe = new FieldDoc(0, 0.0f, new Comparable[fields.length]);
+    afterOrder = new FieldDocSortedHitQueue(fields, 1);
   }
 
   // javadoc inherited
   public void collect(int doc, float score) {
     if (score > 0.0f) {
       totalHits++;
+      if (keyed != null) {
+        if (after == null || keyed.follows(doc, score)) {
+          maxScore = Math.max(maxScore, score);
+          keyed.insert(doc, score);
+        }
+        return;
+      }
+      if (after != null && !follows(doc, score))  // on an earlier page
+        return;
       hq.insert(new FieldDoc(doc, score));
     }
   }
 
+  /** Returns whether a hit sorts after the last hit of the previous page,
+   * comparing their sort values as {@link MultiSearcher} merges hits. */
+  private boolean follows(int doc, float score) {
+    probe.doc = doc;
+    probe.score = score;
+    ((FieldSortedHitQueue)hq).sortValues(probe, probe.fields);
+    return afterOrder.lessThan(probe, after);
+  }
+
   // javadoc inherited
   public TopDocs topDocs() {
     FieldSortedHitQueue fshq = (FieldSortedHitQueue)hq;
+    if (keyed != null)                            // no sort values until now
+      return new TopFieldDocs(totalHits, keyed.popAll(fshq),
+                              fshq.getFields(), maxScore);
+
     ScoreDoc[] scoreDocs = new ScoreDoc[fshq.size()];
     for (int i = fshq.size()-1; i >= 0; i--)      // put docs in array
       scoreDocs[i] = fshq.fillFields ((FieldDoc) fshq.pop());
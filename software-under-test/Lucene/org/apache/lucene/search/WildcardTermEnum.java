@@ -20,6 +20,7 @@ import java.io.IOException;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
 
 /**
  * Subclass of FilteredTermEnum for enumerating all terms that match the
@@ -38,6 +39,12 @@ public class WildcardTermEnum extends FilteredTermEnum {
   int preLen = 0;
   boolean endEnum = false;
 
+  private IndexReader reader;
+  private TermAutomaton automaton;
+  private int minLength = 0;                      // shortest matching rest
+  private int maxLength = Integer.MAX_VALUE;      // longest matching rest
+  private Term seekTerm = null;                   // next term that may match
+
   /**
    * Creates a new <code>WildcardTermEnum</code>.  Passing in a
    * {@link org.apache.lucene.index.Term Term} that does not contain a
@@ -65,20 +72,53 @@ public class WildcardTermEnum extends FilteredTermEnum {
     pre = searchTerm.text().substring(0,idx);
     preLen = pre.length();
     text = text.substring(preLen);
+    this.reader = reader;
+    automaton = new WildcardAutomaton(text);
+    for (int i = 0; i < text.length(); i++)
+      if (text.charAt(i) != WILDCARD_STRING)
+        minLength++;
+    if (text.indexOf(WILDCARD_STRING) == -1)
+      maxLength = minLength;
     setEnum(reader.terms(new Term(searchTerm.field(), pre)));
   }
 
+  /**
+   * Runs the text after the prefix through an automaton for the pattern.
+   * When a prefix of the term can no longer match, the enumeration seeks
+   * past every term sharing it.
+   */
   protected final boolean termCompare(Term term) {
     if (field == term.field()) {
       String searchText = term.text();
       if (searchText.startsWith(pre)) {
-        return wildcardEquals(text, 0, searchText, preLen);
+        int length = searchText.length() - preLen;
+        if (length < minLength || length > maxLength)
+          return false;                           // cheaper than the automaton
+        String rest = searchText.substring(preLen);
+        int live = automaton.run(rest);
+        if (live < rest.length()) {
+          String next = automaton.nextString(live);
+          if (next == null)
+            endEnum = true;
+          else
+            seekTerm = searchTerm.createTerm(pre + next);
+          return false;
+        }
+        return automaton.accepted();
       }
     }
     endEnum = true;
     return false;
   }
 
+  protected TermEnum seekEnum(TermEnum actualEnum) throws IOException {
+    if (seekTerm == null)
+      return null;
+    Term target = seekTerm;
+    seekTerm = null;
+    return TermAutomaton.seek(reader, actualEnum, target);
+  }
+
   public final float difference() {
     return 1.0f;
   }
@@ -194,5 +234,61 @@ public class WildcardTermEnum extends FilteredTermEnum {
     searchTerm = null;
     field = null;
     text = null;
+    reader = null;
+    automaton = null;
+  }
+
+  /**
+   * Accepts the strings matching a wildcard pattern.  A state marks the
+   * pattern positions the characters read so far can have reached, and no
+   * string can be accepted once none is marked.
+   */
+  private static final class WildcardAutomaton extends TermAutomaton {
+    private final String pattern;
+
+    WildcardAutomaton(String pattern) {
+      super(pattern.length() + 1, pattern);
+      this.pattern = pattern;
+    }
+
+    protected void initial(int[] state) {
+      state[0] = 1;
+      skipStrings(state);
+    }
+
+    protected boolean step(int[] from, char c, int[] to) {
+      final int length = pattern.length();
+      for (int p = 0; p <= length; p++)
+        to[p] = 0;
+      for (int p = 0; p < length; p++) {
+        if (from[p] != 0) {
+          char wildchar = pattern.charAt(p);
+          if (wildchar == WILDCARD_STRING)
+            to[p] = 1;
+          else if (wildchar == WILDCARD_CHAR || wildchar == c)
+            to[p + 1] = 1;
+        }
+      }
+      return skipStrings(to);
+    }
+
+    /** Marks the positions after each marked WILDCARD_STRING, which may
+     * match nothing, and returns true if any position is marked. */
+    private boolean skipStrings(int[] state) {
+      final int length = pattern.length();
+      boolean any = false;
+      for (int p = 0; p <= length; p++) {
+        if (state[p] != 0) {
+          any = true;
+          if (p < length && pattern.charAt(p) == WILDCARD_STRING)
+            state[p + 1] = 1;
+        }
+      }
+      return any;
+    }
+
+    protected boolean accepts(int[] state) {
+      return state[pattern.length()] != 0;
+    }
   }
 }
@@ -50,19 +50,7 @@ class SpanScorer extends Scorer {
       more = spans.next();
       firstTime = false;
     }
-
-    if (!more) return false;
-
-    freq = 0.0f;
-    doc = spans.doc();
-
-    while (more && doc == spans.doc()) {
-      int matchLength = spans.end() - spans.start();
-      freq += getSimilarity().sloppyFreq(matchLength);
-      more = spans.next();
-    }
-
-    return more || freq != 0.0f;
+    return setFreqCurrentDoc();
   }
 
   public int doc() { return doc; }
@@ -73,15 +61,30 @@ class SpanScorer extends Scorer {
   }
 
   public boolean skipTo(int target) throws IOException {
-    more = spans.skipTo(target);
+    if (firstTime) {
+      more = spans.skipTo(target);
+      firstTime = false;
+    }
+
+    if (!more) return false;
 
+    if (spans.doc() < target)      // setFreqCurrentDoc() leaves spans ahead
+      more = spans.skipTo(target);
+
+    return setFreqCurrentDoc();
+  }
+
+  /** Moves to the document of the current span and sums the frequencies
+   * of its spans, leaving <code>spans</code> after them. */
+  private boolean setFreqCurrentDoc() throws IOException {
     if (!more) return false;
 
     freq = 0.0f;
     doc = spans.doc();
 
-    while (more && spans.doc() == target) {
-      freq += getSimilarity().sloppyFreq(spans.end() - spans.start());
+    while (more && doc == spans.doc()) {
+      int matchLength = spans.end() - spans.start();
+      freq += getSimilarity().sloppyFreq(matchLength);
       more = spans.next();
     }
 
@@ -22,12 +22,31 @@ import java.io.IOException;
 public abstract class BufferedIndexInput extends IndexInput {
   static final int BUFFER_SIZE = BufferedIndexOutput.BUFFER_SIZE;
 
+  private int bufferSize = BUFFER_SIZE;
+
   private byte[] buffer;
 
   private long bufferStart = 0;			  // position in file of buffer
   private int bufferLength = 0;			  // end of valid bytes
   private int bufferPosition = 0;		  // next byte to read
 
+  /** Creates an input buffering the default number of bytes. */
+  public BufferedIndexInput() {}
+
+  /** Creates an input buffering <code>bufferSize</code> bytes.
+   * @throws IllegalArgumentException if <code>bufferSize</code> is not positive
+   */
+  public BufferedIndexInput(int bufferSize) {
+    if (bufferSize <= 0)
+      throw new IllegalArgumentException("bufferSize must be greater than 0 (got " + bufferSize + ")");
+    this.bufferSize = bufferSize;
+  }
+
+  /** Returns the number of bytes buffered by this input. */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
   public byte readByte() throws IOException {
     if (bufferPosition >= bufferLength)
       refill();
@@ -36,9 +55,25 @@ public abstract class BufferedIndexInput extends IndexInput {
 
   public void readBytes(byte[] b, int offset, int len)
        throws IOException {
-    if (len < BUFFER_SIZE) {
-      for (int i = 0; i < len; i++)		  // read byte-by-byte
-	b[i + offset] = (byte)readByte();
+    int available = bufferLength - bufferPosition;
+    if (len <= available) {			  // copy from buffer
+      if (len > 0)				  // buffer may not be allocated
+        System.arraycopy(buffer, bufferPosition, b, offset, len);
+      bufferPosition += len;
+      return;
+    }
+    if (available > 0) {			  // copy what is buffered
+      System.arraycopy(buffer, bufferPosition, b, offset, available);
+      bufferPosition += available;
+      offset += available;
+      len -= available;
+    }
+    if (len < bufferSize) {			  // refill and copy the rest
+      refill();
+      if (bufferLength < len)
+        throw new IOException("read past EOF");
+      System.arraycopy(buffer, 0, b, offset, len);
+      bufferPosition = len;
     } else {					  // read all-at-once
       long start = getFilePointer();
       seekInternal(start);
@@ -52,7 +87,7 @@ public abstract class BufferedIndexInput extends IndexInput {
 
   private void refill() throws IOException {
     long start = bufferStart + bufferPosition;
-    long end = start + BUFFER_SIZE;
+    long end = start + bufferSize;
     if (end > length())				  // don't read past EOF
       end = length();
     bufferLength = (int)(end - start);
@@ -60,7 +95,7 @@ public abstract class BufferedIndexInput extends IndexInput {
       throw new IOException("read past EOF");
 
     if (buffer == null)
-      buffer = new byte[BUFFER_SIZE];		  // allocate buffer lazily
+      buffer = new byte[bufferSize];		  // allocate buffer lazily
     readInternal(buffer, 0, bufferLength);
 
     bufferStart = start;
@@ -99,7 +134,7 @@ public abstract class BufferedIndexInput extends IndexInput {
     BufferedIndexInput clone = (BufferedIndexInput)super.clone();
 
     if (buffer != null) {
-      clone.buffer = new byte[BUFFER_SIZE];
+      clone.buffer = new byte[bufferSize];
       System.arraycopy(buffer, 0, clone.buffer, 0, bufferLength);
     }
 
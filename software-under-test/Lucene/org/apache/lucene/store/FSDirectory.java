@@ -153,6 +153,7 @@ public class FSDirectory extends Directory {
   private File directory = null;
   private int refCount;
   private File lockDir;
+  private int readBufferSize = BufferedIndexInput.BUFFER_SIZE;
 
   protected FSDirectory() {};                     // permit subclassing
 
@@ -321,7 +322,24 @@ public class FSDirectory extends Directory {
 
   /** Returns a stream reading an existing file. */
   public IndexInput openInput(String name) throws IOException {
-    return new FSIndexInput(new File(directory, name));
+    return new FSIndexInput(new File(directory, name), readBufferSize);
+  }
+
+  /** Sets the number of bytes buffered by inputs opened afterwards.  Larger
+   * buffers mean fewer reads from the file system for sequential access.
+   * @throws IllegalArgumentException if <code>bufferSize</code> is not positive
+   */
+  public void setReadBufferSize(int bufferSize) {
+    if (bufferSize <= 0)
+      throw new IllegalArgumentException("bufferSize must be greater than 0 (got " + bufferSize + ")");
+    readBufferSize = bufferSize;
+  }
+
+  /** Returns the number of bytes buffered by inputs opened by this directory.
+   * @see #setReadBufferSize(int)
+   */
+  public int getReadBufferSize() {
+    return readBufferSize;
   }
 
   /**
@@ -431,6 +449,11 @@ class FSIndexInput extends BufferedIndexInput {
   private long length;
 
   public FSIndexInput(File path) throws IOException {
+    this(path, BUFFER_SIZE);
+  }
+
+  public FSIndexInput(File path, int bufferSize) throws IOException {
+    super(bufferSize);
     file = new Descriptor(path, "r");
     length = file.length();
   }
@@ -19,147 +19,272 @@ package org.apache.lucene.store;
 import java.io.IOException;
 import java.io.File;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 
+import org.apache.lucene.util.Constants;
+
 /** File-based {@link Directory} implementation that uses mmap for input.
  *
  * <p>To use this, invoke Java with the System property
  * org.apache.lucene.FSDirectory.class set to
  * org.apache.lucene.store.MMapDirectory.  This will cause {@link
  * FSDirectory#getDirectory(File,boolean)} to return instances of this class.
+ *
+ * <p>Files are mapped in chunks of at most {@link #getMaxChunkSize()}
+ * bytes, so files of any size can be read, and address space need not be
+ * found for a whole large file at once.
+ *
+ * <p>Mapped buffers are released when they are garbage collected.  With
+ * {@link #setUseUnmap(boolean)} they are instead unmapped as soon as the
+ * input which mapped them is closed, if {@link #UNMAP_SUPPORTED the JVM
+ * allows it}.
  */
 public class MMapDirectory extends FSDirectory {
 
-  private static class MMapIndexInput extends IndexInput {
+  /** The default maximum chunk size, 1 GB on 64 bit JVMs and 256 MB
+   * otherwise, where address space is scarce. */
+  public static final int DEFAULT_MAX_CHUNK_SIZE =
+    Constants.JRE_IS_64BIT ? (1 << 30) : (1 << 28);
 
-    private ByteBuffer buffer;
-    private final long length;
+  /** True iff mapped buffers can be unmapped explicitly in this JVM. */
+  public static final boolean UNMAP_SUPPORTED;
 
-    private MMapIndexInput(RandomAccessFile raf) throws IOException {
-        this.length = raf.length();
-        this.buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, length);
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    boolean cleanerMethod = false;
+    try {                                         // since Java 9
+      Class unsafeClass = Class.forName("sun.misc.Unsafe");
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                                            new Class[] {ByteBuffer.class});
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+    } catch (Exception e) {
+      unsafe = null;
+      invokeCleaner = null;
     }
-
-    public byte readByte() throws IOException {
-      return buffer.get();
+    if (invokeCleaner == null) {
+      try {                                       // DirectByteBuffer.cleaner()
+        Class.forName("sun.misc.Cleaner");
+        Class.forName("java.nio.DirectByteBuffer")
+          .getMethod("cleaner", new Class[0]);
+        cleanerMethod = true;
+      } catch (Exception e) {
+        cleanerMethod = false;
+      }
     }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+    UNMAP_SUPPORTED = invokeCleaner != null || cleanerMethod;
+  }
 
-    public void readBytes(byte[] b, int offset, int len)
-      throws IOException {
-      buffer.get(b, offset, len);
-    }
+  private int chunkSizePower = log2(DEFAULT_MAX_CHUNK_SIZE);
+  private boolean useUnmap = false;
+  private String[] preloadExtensions = null;
 
-    public long getFilePointer() {
-      return buffer.position();
-    }
+  private static int log2(int size) {
+    int power = 0;
+    while ((1 << power) < size)
+      power++;
+    return power;
+  }
 
-    public void seek(long pos) throws IOException {
-      buffer.position((int)pos);
-    }
+  /** Sets the maximum size of the chunks in which files are mapped.  Must be
+   * a power of two.  Only affects files opened afterwards.
+   * @throws IllegalArgumentException if <code>size</code> is not a positive
+   * power of two
+   */
+  public void setMaxChunkSize(int size) {
+    if (size <= 0 || (size & (size - 1)) != 0)
+      throw new IllegalArgumentException("maxChunkSize must be a positive power of two: " + size);
+    chunkSizePower = log2(size);
+  }
 
-    public long length() {
-      return length;
-    }
+  /** Returns the maximum size of the chunks in which files are mapped.
+   * @see #setMaxChunkSize(int)
+   */
+  public int getMaxChunkSize() {
+    return 1 << chunkSizePower;
+  }
 
-    public Object clone() {
-      MMapIndexInput clone = (MMapIndexInput)super.clone();
-      clone.buffer = buffer.duplicate();
-      return clone;
+  /** Sets whether mapped buffers are unmapped when inputs are closed.  This
+   * is disabled by default: mappings are then only released when the
+   * garbage collector frees them, which may exhaust the address space if
+   * indexes are often reopened.
+   *
+   * <p><b>NOTE:</b> clones of an input share its mapping.  With unmapping
+   * enabled, reading a clone after the input it was cloned from is closed
+   * accesses unmapped memory and crashes the JVM instead of throwing an
+   * IOException.  Only enable this if no clone, such as those held by
+   * term enumerations, term vector readers or concurrent searches, can
+   * outlive the {@link org.apache.lucene.index.IndexReader} it came from.
+   * @throws IllegalArgumentException if enabled but not supported
+   */
+  public void setUseUnmap(boolean useUnmap) {
+    if (useUnmap && !UNMAP_SUPPORTED)
+      throw new IllegalArgumentException("unmapping is not supported by this JVM");
+    this.useUnmap = useUnmap;
+  }
+
+  /** Returns whether mapped buffers are unmapped when inputs are closed.
+   * @see #setUseUnmap(boolean)
+   */
+  public boolean getUseUnmap() {
+    return useUnmap;
+  }
+
+  /** Sets the extensions of files whose pages are loaded into memory when
+   * they are opened, e.g. <code>{"tis", "frq"}</code>, or
+   * <code>{"cfs"}</code> for compound indexes.  This avoids page faults on
+   * the first queries.  By default no files are preloaded.
+   */
+  public void setPreloadExtensions(String[] extensions) {
+    this.preloadExtensions = extensions;
+  }
+
+  /** Returns the extensions of files that are preloaded when opened.
+   * @see #setPreloadExtensions(String[])
+   */
+  public String[] getPreloadExtensions() {
+    return preloadExtensions;
+  }
+
+  private boolean preload(String name) {
+    String[] extensions = preloadExtensions;
+    if (extensions == null)
+      return false;
+    for (int i = 0; i < extensions.length; i++) {
+      if (name.endsWith("." + extensions[i]))
+        return true;
     }
+    return false;
+  }
 
-    public void close() throws IOException {}
+  /** Unmaps a buffer mapped by this directory. */
+  final void unmap(ByteBuffer buffer) throws IOException {
+    if (!useUnmap)
+      return;
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, new Object[] {buffer});
+      } else {
+        Method getCleaner = buffer.getClass().getMethod("cleaner", new Class[0]);
+        getCleaner.setAccessible(true);
+        Object cleaner = getCleaner.invoke(buffer, new Object[0]);
+        if (cleaner != null)
+          cleaner.getClass().getMethod("clean", new Class[0])
+            .invoke(cleaner, new Object[0]);
+      }
+    } catch (Exception e) {
+      IOException ioe = new IOException("unable to unmap the mapped buffer");
+      ioe.initCause(e);
+      throw ioe;
+    }
   }
 
-  /* Added class MultiMMapIndexInput, Paul Elschot.
-   * Slightly adapted constructor of MMapIndexInput.
+  /* Chunked mapping adapted from class MultiMMapIndexInput, Paul Elschot.
    * Licensed under the Apache License, Version 2.0.
    */
-  private static class MultiMMapIndexInput extends IndexInput {
+  private class MMapIndexInput extends IndexInput {
   
     private ByteBuffer[] buffers;
-    private int[] bufSizes; // keep here, ByteBuffer.size() method is optional
-  
     private final long length;
+    private final int chunkSizePower;
+    private final long chunkSizeMask;
   
     private int curBufIndex;
-    private final int maxBufSize;
-  
-    private ByteBuffer curBuf; // redundant for speed: buffers[curBufIndex]
-    private int curAvail; // redundant for speed: (bufSizes[curBufIndex] - curBuf.position())
+    private ByteBuffer curBuf;                    // redundant for speed: buffers[curBufIndex]
+    private boolean isClone = false;
   
-    
-    public MultiMMapIndexInput(RandomAccessFile raf, int maxBufSize)
-      throws IOException {
+    private MMapIndexInput(RandomAccessFile raf, int chunkSizePower,
+                           boolean preload) throws IOException {
       this.length = raf.length();
-      this.maxBufSize = maxBufSize;
+      this.chunkSizePower = chunkSizePower;
+      this.chunkSizeMask = (1L << chunkSizePower) - 1L;
       
-      if (maxBufSize <= 0)
-        throw new IllegalArgumentException("Non positive maxBufSize: "
-                                           + maxBufSize);
-      
-      if ((length / maxBufSize) > Integer.MAX_VALUE)
+      // the last chunk may be empty, so that a position equal to the length
+      // always falls into a chunk
+      long nrBuffers = (length >>> chunkSizePower) + 1;
+      if (nrBuffers > Integer.MAX_VALUE)
         throw new IllegalArgumentException
           ("RandomAccessFile too big for maximum buffer size: "
            + raf.toString());
       
-      int nrBuffers = (int) (length / maxBufSize);
-      if ((nrBuffers * maxBufSize) < length) nrBuffers++;
-      
-      this.buffers = new ByteBuffer[nrBuffers];
-      this.bufSizes = new int[nrBuffers];
+      this.buffers = new ByteBuffer[(int) nrBuffers];
       
       long bufferStart = 0;
       FileChannel rafc = raf.getChannel();
-      for (int bufNr = 0; bufNr < nrBuffers; bufNr++) { 
-        int bufSize = (length > (bufferStart + maxBufSize))
-          ? maxBufSize
-          : (int) (length - bufferStart);
-        this.buffers[bufNr] = rafc.map(MapMode.READ_ONLY,bufferStart,bufSize);
-        this.bufSizes[bufNr] = bufSize;
-        bufferStart += bufSize;
+      try {
+        for (int bufNr = 0; bufNr < buffers.length; bufNr++) { 
+          long bufSize = Math.min(length - bufferStart, 1L << chunkSizePower);
+          MappedByteBuffer buffer =
+            rafc.map(MapMode.READ_ONLY, bufferStart, bufSize);
+          if (preload)
+            buffer.load();                        // touch all pages
+          this.buffers[bufNr] = buffer;
+          bufferStart += bufSize;
+        }
+      } catch (IOException e) {
+        unmapBuffers();
+        throw e;
       }
       seek(0L);
     }
   
     public byte readByte() throws IOException {
-      // Performance might be improved by reading ahead into an array of
-      // eg. 128 bytes and readByte() from there.
-      if (curAvail == 0) {
-        curBufIndex++;
-        curBuf = buffers[curBufIndex]; // index out of bounds when too many bytes requested
-        curBuf.position(0);
-        curAvail = bufSizes[curBufIndex];
+      try {
+        return curBuf.get();
+      } catch (BufferUnderflowException e) {
+        do {
+          nextBuffer();
+        } while (!curBuf.hasRemaining());
+        return curBuf.get();
       }
-      curAvail--;
-      return curBuf.get();
     }
   
     public void readBytes(byte[] b, int offset, int len) throws IOException {
-      while (len > curAvail) {
-        curBuf.get(b, offset, curAvail);
-        len -= curAvail;
-        offset += curAvail;
-        curBufIndex++;
-        curBuf = buffers[curBufIndex]; // index out of bounds when too many bytes requested
-        curBuf.position(0);
-        curAvail = bufSizes[curBufIndex];
+      try {
+        curBuf.get(b, offset, len);
+      } catch (BufferUnderflowException e) {
+        int curAvail = curBuf.remaining();
+        while (len > curAvail) {
+          curBuf.get(b, offset, curAvail);
+          len -= curAvail;
+          offset += curAvail;
+          nextBuffer();
+          curAvail = curBuf.remaining();
+        }
+        curBuf.get(b, offset, len);
       }
-      curBuf.get(b, offset, len);
-      curAvail -= len;
+    }
+
+    private void nextBuffer() throws IOException {
+      if (curBufIndex + 1 >= buffers.length)
+        throw new IOException("read past EOF");
+      curBufIndex++;
+      curBuf = buffers[curBufIndex];
+      curBuf.position(0);
     }
   
     public long getFilePointer() {
-      return (curBufIndex * (long) maxBufSize) + curBuf.position();
+      return ((long) curBufIndex << chunkSizePower) + curBuf.position();
     }
   
     public void seek(long pos) throws IOException {
-      curBufIndex = (int) (pos / maxBufSize);
+      if (pos < 0 || pos > length)
+        throw new IOException("seek past EOF: " + pos);
+      curBufIndex = (int) (pos >>> chunkSizePower);
       curBuf = buffers[curBufIndex];
-      int bufOffset = (int) (pos - (curBufIndex * maxBufSize));
-      curBuf.position(bufOffset);
-      curAvail = bufSizes[curBufIndex] - bufOffset;
+      curBuf.position((int) (pos & chunkSizeMask));
     }
   
     public long length() {
@@ -167,11 +292,9 @@ public class MMapDirectory extends FSDirectory {
     }
   
     public Object clone() {
-      MultiMMapIndexInput clone = (MultiMMapIndexInput)super.clone();
+      MMapIndexInput clone = (MMapIndexInput)super.clone();
+      clone.isClone = true;
       clone.buffers = new ByteBuffer[buffers.length];
-      // No need to clone bufSizes.
-      // Since most clones will use only one buffer, duplicate() could also be
-      // done lazy in clones, eg. when adapting curBuf.
       for (int bufNr = 0; bufNr < buffers.length; bufNr++) {
         clone.buffers[bufNr] = buffers[bufNr].duplicate();
       }
@@ -183,18 +306,34 @@ public class MMapDirectory extends FSDirectory {
       return clone;
     }
   
-    public void close() throws IOException {}
+    /** Releases the buffers; the original input also unmaps them. */
+    public void close() throws IOException {
+      if (buffers == null)
+        return;
+      try {
+        if (!isClone)
+          unmapBuffers();
+      } finally {
+        buffers = null;
+        curBuf = null;
+      }
+    }
+
+    private void unmapBuffers() throws IOException {
+      for (int bufNr = 0; bufNr < buffers.length; bufNr++) {
+        if (buffers[bufNr] != null) {
+          unmap(buffers[bufNr]);
+          buffers[bufNr] = null;
+        }
+      }
+    }
   }
-  
-  private final int MAX_BBUF = Integer.MAX_VALUE;
 
   public IndexInput openInput(String name) throws IOException {
     File f =  new File(getFile(), name);
     RandomAccessFile raf = new RandomAccessFile(f, "r");
     try {
-      return (raf.length() <= MAX_BBUF)
-             ? (IndexInput) new MMapIndexInput(raf)
-             : (IndexInput) new MultiMMapIndexInput(raf, MAX_BBUF);
+      return new MMapIndexInput(raf, chunkSizePower, preload(name));
     } finally {
       raf.close();
     }
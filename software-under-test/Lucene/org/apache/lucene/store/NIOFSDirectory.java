@@ -0,0 +1,108 @@
+package org.apache.lucene.store;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** File-based {@link Directory} implementation that reads files with
+ * positional reads of a {@link FileChannel}.  Unlike {@link FSDirectory},
+ * whose inputs synchronize on the file to seek and then read, the clones of
+ * an input read concurrently, without a shared file pointer.
+ *
+ * <p>To use this, invoke Java with the System property
+ * org.apache.lucene.FSDirectory.class set to
+ * org.apache.lucene.store.NIOFSDirectory.  This will cause {@link
+ * FSDirectory#getDirectory(File,boolean)} to return instances of this class.
+ *
+ * <p>Note that interrupting a thread while it reads closes the channel for
+ * all readers of the file.  Also, the positional reads of some JVMs on
+ * Windows are synchronized internally, so this class brings no gain there.
+ */
+public class NIOFSDirectory extends FSDirectory {
+
+  /** Returns a stream reading an existing file. */
+  public IndexInput openInput(String name) throws IOException {
+    return new NIOFSIndexInput(new File(getFile(), name), getReadBufferSize());
+  }
+
+  private static class NIOFSIndexInput extends BufferedIndexInput {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private boolean isClone;
+
+    private ByteBuffer byteBuf;                   // wraps the last array read into
+    private byte[] wrappedArray;
+
+    public NIOFSIndexInput(File path, int bufferSize) throws IOException {
+      super(bufferSize);
+      file = new RandomAccessFile(path, "r");
+      channel = file.getChannel();
+      length = file.length();
+    }
+
+    protected void readInternal(byte[] b, int offset, int len)
+      throws IOException {
+      ByteBuffer bb;
+      if (b == wrappedArray) {                    // usually the refill buffer
+        bb = byteBuf;
+        bb.clear();
+        bb.position(offset);
+        bb.limit(offset + len);
+      } else {
+        bb = ByteBuffer.wrap(b, offset, len);
+        if (b.length == getBufferSize()) {
+          byteBuf = bb;
+          wrappedArray = b;
+        }
+      }
+
+      long position = getFilePointer();
+      while (bb.hasRemaining()) {
+        int i = channel.read(bb, position);
+        if (i == -1)
+          throw new IOException("read past EOF");
+        position += i;
+      }
+    }
+
+    protected void seekInternal(long position) {
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public void close() throws IOException {
+      if (!isClone)
+        file.close();
+    }
+
+    public Object clone() {
+      NIOFSIndexInput clone = (NIOFSIndexInput)super.clone();
+      clone.isClone = true;
+      clone.byteBuf = null;
+      clone.wrappedArray = null;
+      return clone;
+    }
+  }
+}
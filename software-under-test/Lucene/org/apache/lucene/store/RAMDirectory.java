@@ -28,13 +28,40 @@ import org.apache.lucene.store.IndexOutput;
 /**
  * A memory-resident {@link Directory} implementation.
  *
+ * <p>Files are held in blocks of a fixed size, 1024 bytes by default.
+ * Larger blocks make reading and writing large files cheaper, at the price
+ * of wasting more of the last block of each file.  The blocks of deleted
+ * files may be {@link #setMaxPooledBytes(long) recycled} for new files.
+ *
  * @version $Id: RAMDirectory.java 351779 2005-12-02 17:37:50Z bmesser $
  */
 public final class RAMDirectory extends Directory {
+  static final int DEFAULT_BLOCK_SHIFT = 10;      // 1024 byte blocks
+
   Hashtable files = new Hashtable();
 
+  private final int blockShift;
+  private long maxPooledBytes = 0;
+  private byte[][] pool = new byte[0][];          // recycled blocks
+  private int pooled = 0;
+
   /** Constructs an empty {@link Directory}. */
   public RAMDirectory() {
+    blockShift = DEFAULT_BLOCK_SHIFT;
+  }
+
+  /** Constructs an empty {@link Directory} holding files in blocks of
+   * <code>blockSize</code> bytes.
+   * @throws IllegalArgumentException if <code>blockSize</code> is not a
+   * power of two
+   */
+  public RAMDirectory(int blockSize) {
+    if (blockSize <= 0 || (blockSize & (blockSize - 1)) != 0)
+      throw new IllegalArgumentException("blockSize must be a power of two (got " + blockSize + ")");
+    int shift = 0;
+    while ((1 << shift) < blockSize)
+      shift++;
+    blockShift = shift;
   }
 
   /**
@@ -52,29 +79,97 @@ public final class RAMDirectory extends Directory {
   }
   
   private RAMDirectory(Directory dir, boolean closeDir) throws IOException {
-    final String[] files = dir.list();
-    byte[] buf = new byte[BufferedIndexOutput.BUFFER_SIZE];
-    for (int i = 0; i < files.length; i++) {
-      // make place on ram disk
-      IndexOutput os = createOutput(files[i]);
-      // read current file
-      IndexInput is = dir.openInput(files[i]);
-      // and copy to ram disk
-      int len = (int) is.length();
-      int readCount = 0;
-      while (readCount < len) {
-        int toRead = readCount + BufferedIndexOutput.BUFFER_SIZE > len ? len - readCount : BufferedIndexOutput.BUFFER_SIZE;
-        is.readBytes(buf, 0, toRead);
-        os.writeBytes(buf, toRead);
-        readCount += toRead;
+    this();
+    copyFrom(dir);
+    if(closeDir)
+      dir.close();
+  }
+
+  /** Copies all of the files of <code>dir</code> into this directory,
+   * replacing any files of the same names.  Each file is read straight into
+   * the blocks of its copy, a block at a time.
+   *
+   * @param dir the directory to copy
+   * @exception IOException if an error occurs
+   */
+  public void copyFrom(Directory dir) throws IOException {
+    final String[] names = dir.list();
+    for (int i = 0; i < names.length; i++) {
+      RAMFile file = new RAMFile(this, blockShift);
+      IndexInput is = dir.openInput(names[i]);
+      try {
+        final long length = is.length();
+        long copied = 0;
+        while (copied < length) {
+          byte[] block = file.addBlock();
+          int count = (int)Math.min(block.length, length - copied);
+          is.readBytes(block, 0, count);
+          copied += count;
+        }
+        file.length = length;
+      } finally {
+        is.close();
       }
+      recycle((RAMFile)files.put(names[i], file));
+    }
+  }
 
-      // graceful cleanup
-      is.close();
-      os.close();
+  /** Returns the size in bytes of the blocks files are held in. */
+  public int getBlockSize() {
+    return 1 << blockShift;
+  }
+
+  /** Sets how many bytes of blocks of deleted and replaced files are kept to
+   * hold new files, instead of being left to the garbage collector.  The
+   * default, zero, keeps none.
+   *
+   * <p><b>Caution:</b> a recycled block is overwritten by its new file, so
+   * this may only be enabled if no input reads a file, or a clone of one,
+   * once the file has been deleted or replaced.  Index readers do just that
+   * when segments are merged away under them, so this suits directories
+   * private to an {@link org.apache.lucene.index.IndexWriter}.
+   */
+  public synchronized void setMaxPooledBytes(long maxPooledBytes) {
+    this.maxPooledBytes = maxPooledBytes;
+    trimPool(maxPooledBytes);
+  }
+
+  private synchronized void trimPool(long maxBytes) {
+    while (pooled > 0 && ((long)pooled << blockShift) > maxBytes)
+      pool[--pooled] = null;
+  }
+
+  /** @see #setMaxPooledBytes(long) */
+  public synchronized long getMaxPooledBytes() {
+    return maxPooledBytes;
+  }
+
+  /** Returns a block for a file, recycled if possible. */
+  synchronized byte[] newBlock() {
+    if (pooled > 0) {
+      byte[] block = pool[--pooled];
+      pool[pooled] = null;
+      return block;
     }
-    if(closeDir)
-      dir.close();
+    return new byte[1 << blockShift];
+  }
+
+  /** Keeps the blocks of a file no longer in this directory for reuse, as
+   * far as the pool allows. */
+  private synchronized void recycle(RAMFile file) {
+    if (file == null || maxPooledBytes == 0)
+      return;
+    for (int i = 0; i < file.numBlocks; i++) {
+      if (((long)(pooled + 1) << blockShift) > maxPooledBytes)
+        break;
+      if (pooled == pool.length) {
+        byte[][] grown = new byte[Math.max(16, pool.length * 2)][];
+        System.arraycopy(pool, 0, grown, 0, pooled);
+        pool = grown;
+      }
+      pool[pooled++] = file.blocks[i];
+    }
+    file.numBlocks = 0;                           // no longer its blocks
   }
 
   /**
@@ -147,21 +242,23 @@ public final class RAMDirectory extends Directory {
 
   /** Removes an existing file in the directory. */
   public final void deleteFile(String name) {
-    files.remove(name);
+    recycle((RAMFile)files.remove(name));
   }
 
   /** Removes an existing file in the directory. */
   public final void renameFile(String from, String to) {
     RAMFile file = (RAMFile)files.get(from);
     files.remove(from);
-    files.put(to, file);
+    RAMFile replaced = (RAMFile)files.put(to, file);
+    if (replaced != file)
+      recycle(replaced);
   }
 
   /** Creates a new, empty file in the directory with the given name.
       Returns a stream writing this file. */
   public final IndexOutput createOutput(String name) {
-    RAMFile file = new RAMFile();
-    files.put(name, file);
+    RAMFile file = new RAMFile(this, blockShift);
+    recycle((RAMFile)files.put(name, file));
     return new RAMOutputStream(file);
   }
 
@@ -194,7 +291,8 @@ public final class RAMDirectory extends Directory {
     };
   }
 
-  /** Closes the store to future operations. */
+  /** Closes the store to future operations, releasing its pooled blocks. */
   public final void close() {
+    trimPool(0);
   }
 }
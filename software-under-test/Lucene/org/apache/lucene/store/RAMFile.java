@@ -16,10 +16,37 @@ package org.apache.lucene.store;
  * limitations under the License.
  */
 
-import java.util.Vector;
-
+/** The contents of a file in RAM: blocks of a size that is a power of two,
+ * all full but the last.  Blocks are only ever appended, by the single
+ * output writing the file, and the length is set after the data it covers
+ * is written, so inputs read the blocks without locking. */
 class RAMFile {
-  Vector buffers = new Vector();
-  long length;
+  final RAMDirectory directory;                   // allocates blocks, or null
+  final int blockShift;
+  byte[][] blocks = new byte[4][];
+  int numBlocks = 0;
+  volatile long length;
   long lastModified = System.currentTimeMillis();
+
+  RAMFile() {
+    this(null, RAMDirectory.DEFAULT_BLOCK_SHIFT);
+  }
+
+  RAMFile(RAMDirectory directory, int blockShift) {
+    this.directory = directory;
+    this.blockShift = blockShift;
+  }
+
+  /** Appends a new block to the file. */
+  final byte[] addBlock() {
+    byte[] block = directory != null
+      ? directory.newBlock() : new byte[1 << blockShift];
+    if (numBlocks == blocks.length) {             // grow a copy: inputs
+      byte[][] grown = new byte[blocks.length * 2][]; // may read the old one
+      System.arraycopy(blocks, 0, grown, 0, numBlocks);
+      blocks = grown;
+    }
+    blocks[numBlocks++] = block;
+    return block;
+  }
 }
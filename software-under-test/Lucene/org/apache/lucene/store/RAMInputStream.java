@@ -16,44 +16,82 @@ package org.apache.lucene.store;
  * limitations under the License.
  */
 
+import java.io.IOException;
+
 /**
- * A memory-resident {@link IndexInput} implementation.
+ * A memory-resident {@link IndexInput} implementation.  Bytes are read
+ * straight from the blocks of the file, which are not copied or locked.
  *
  * @version $Id: RAMInputStream.java 150537 2004-09-28 20:45:26Z cutting $
  */
 
-class RAMInputStream extends BufferedIndexInput implements Cloneable {
-  private RAMFile file;
-  private int pointer = 0;
-  private long length;
+class RAMInputStream extends IndexInput implements Cloneable {
+  private final byte[][] blocks;
+  private final int blockShift;
+  private final long length;
+
+  private byte[] block;                           // current block
+  private int blockIndex;
+  private long blockStart;                        // position in file of block
+  private int blockLength;                        // bytes of file in block
+  private int position;                           // next byte in block
 
   public RAMInputStream(RAMFile f) {
-    file = f;
-    length = file.length;
-  }
-
-  public void readInternal(byte[] dest, int destOffset, int len) {
-    int remainder = len;
-    int start = pointer;
-    while (remainder != 0) {
-      int bufferNumber = start/BUFFER_SIZE;
-      int bufferOffset = start%BUFFER_SIZE;
-      int bytesInBuffer = BUFFER_SIZE - bufferOffset;
-      int bytesToCopy = bytesInBuffer >= remainder ? remainder : bytesInBuffer;
-      byte[] buffer = (byte[])file.buffers.elementAt(bufferNumber);
-      System.arraycopy(buffer, bufferOffset, dest, destOffset, bytesToCopy);
-      destOffset += bytesToCopy;
-      start += bytesToCopy;
-      remainder -= bytesToCopy;
+    length = f.length;                            // before the blocks it covers
+    blocks = f.blocks;
+    blockShift = f.blockShift;
+    setBlock(0);
+  }
+
+  private void setBlock(int index) {
+    blockIndex = index;
+    blockStart = (long)index << blockShift;
+    if (blockStart < length) {
+      block = blocks[index];
+      blockLength = (int)Math.min(1 << blockShift, length - blockStart);
+    } else {
+      block = null;
+      blockLength = 0;
+    }
+    position = 0;
+  }
+
+  private void nextBlock() throws IOException {
+    if (blockStart + blockLength >= length)
+      throw new IOException("read past EOF");
+    setBlock(blockIndex + 1);
+  }
+
+  public byte readByte() throws IOException {
+    if (position >= blockLength)
+      nextBlock();
+    return block[position++];
+  }
+
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    while (len > 0) {
+      if (position >= blockLength)
+        nextBlock();
+      int count = Math.min(len, blockLength - position);
+      System.arraycopy(block, position, b, offset, count);
+      position += count;
+      offset += count;
+      len -= count;
     }
-    pointer += len;
   }
 
   public void close() {
   }
 
-  public void seekInternal(long pos) {
-    pointer = (int)pos;
+  public long getFilePointer() {
+    return blockStart + position;
+  }
+
+  public void seek(long pos) {
+    int index = (int)(pos >> blockShift);
+    if (index != blockIndex)
+      setBlock(index);
+    position = (int)(pos - blockStart);
   }
 
   public long length() {
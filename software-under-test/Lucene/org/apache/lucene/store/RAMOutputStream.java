@@ -26,7 +26,7 @@ import java.io.IOException;
 
 public class RAMOutputStream extends BufferedIndexOutput {
   private RAMFile file;
-  private int pointer = 0;
+  private long pointer = 0;
 
   /** Construct an empty output buffer. */
   public RAMOutputStream() {
@@ -41,20 +41,21 @@ public class RAMOutputStream extends BufferedIndexOutput {
   public void writeTo(IndexOutput out) throws IOException {
     flush();
     final long end = file.length;
+    final int blockSize = 1 << file.blockShift;
     long pos = 0;
-    int buffer = 0;
+    int block = 0;
     while (pos < end) {
-      int length = BUFFER_SIZE;
+      int length = blockSize;
       long nextPos = pos + length;
-      if (nextPos > end) {                        // at the last buffer
+      if (nextPos > end) {                        // at the last block
         length = (int)(end - pos);
       }
-      out.writeBytes((byte[])file.buffers.elementAt(buffer++), length);
+      out.writeBytes(file.blocks[block++], length);
       pos = nextPos;
     }
   }
 
-  /** Resets this to an empty buffer. */
+  /** Resets this to an empty buffer.  Its blocks are kept for reuse. */
   public void reset() {
     try {
       seek(0);
@@ -66,29 +67,23 @@ public class RAMOutputStream extends BufferedIndexOutput {
   }
 
   public void flushBuffer(byte[] src, int len) {
-    byte[] buffer;
-    int bufferPos = 0;
-    while (bufferPos != len) {
-      int bufferNumber = pointer/BUFFER_SIZE;
-      int bufferOffset = pointer%BUFFER_SIZE;
-      int bytesInBuffer = BUFFER_SIZE - bufferOffset;
-      int remainInSrcBuffer = len - bufferPos;
-      int bytesToCopy = bytesInBuffer >= remainInSrcBuffer ? remainInSrcBuffer : bytesInBuffer;
-
-      if (bufferNumber == file.buffers.size()) {
-        buffer = new byte[BUFFER_SIZE];
-        file.buffers.addElement(buffer);
-      } else {
-        buffer = (byte[]) file.buffers.elementAt(bufferNumber);
-      }
-
-      System.arraycopy(src, bufferPos, buffer, bufferOffset, bytesToCopy);
-      bufferPos += bytesToCopy;
+    final int blockSize = 1 << file.blockShift;
+    int srcPos = 0;
+    while (srcPos != len) {
+      int blockNumber = (int)(pointer >> file.blockShift);
+      int blockOffset = (int)pointer & (blockSize - 1);
+      int bytesToCopy = Math.min(blockSize - blockOffset, len - srcPos);
+
+      while (blockNumber >= file.numBlocks)
+        file.addBlock();
+      byte[] block = file.blocks[blockNumber];
+
+      System.arraycopy(src, srcPos, block, blockOffset, bytesToCopy);
+      srcPos += bytesToCopy;
       pointer += bytesToCopy;
     }
 
-    if (pointer > file.length)
-      file.length = pointer;
+    file.length = Math.max(file.length, pointer); // publishes the data
 
     file.lastModified = System.currentTimeMillis();
   }
@@ -99,7 +94,7 @@ public class RAMOutputStream extends BufferedIndexOutput {
 
   public void seek(long pos) throws IOException {
     super.seek(pos);
-    pointer = (int)pos;
+    pointer = pos;
   }
   public long length() {
     return file.length;
@@ -33,7 +33,7 @@ import org.apache.lucene.store.IndexOutput;
   @author Doug Cutting
   @version $Id: BitVector.java 150536 2004-09-28 18:15:52Z cutting $
   */
-public final class BitVector {
+public final class BitVector implements Cloneable {
 
   private byte[] bits;
   private int size;
@@ -45,6 +45,14 @@ public final class BitVector {
     bits = new byte[(size >> 3) + 1];
   }
 
+  /** Returns a copy of this vector. */
+  public Object clone() {
+    BitVector clone = new BitVector(size);
+    System.arraycopy(bits, 0, clone.bits, 0, bits.length);
+    clone.count = count;
+    return clone;
+  }
+
   /** Sets the value of <code>bit</code> to one. */
   public final void set(int bit) {
     bits[bit >> 3] |= 1 << (bit & 7);
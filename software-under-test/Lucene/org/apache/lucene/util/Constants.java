@@ -43,4 +43,16 @@ public final class Constants {
   public static final boolean WINDOWS = OS_NAME.startsWith("Windows");
   /** True iff running on SunOS. */
   public static final boolean SUN_OS = OS_NAME.startsWith("SunOS");
+
+  /** True iff running on a 64 bit JVM. */
+  public static final boolean JRE_IS_64BIT;
+  static {
+    String model = System.getProperty("sun.arch.data.model");
+    if (model != null) {
+      JRE_IS_64BIT = model.indexOf("64") != -1;
+    } else {
+      String arch = System.getProperty("os.arch");
+      JRE_IS_64BIT = arch != null && arch.indexOf("64") != -1;
+    }
+  }
 }
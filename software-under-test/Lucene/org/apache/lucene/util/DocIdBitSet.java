@@ -0,0 +1,73 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.util.BitSet;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/** A {@link DocIdSet} backed by a {@link BitSet}, taking one bit per
+ * document of the index whatever the number of documents in the set. */
+public class DocIdBitSet extends DocIdSet {
+  private final BitSet bitSet;
+
+  public DocIdBitSet(BitSet bitSet) {
+    this.bitSet = bitSet;
+  }
+
+  /** Returns the underlying BitSet. */
+  public BitSet getBitSet() {
+    return bitSet;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new DocIdBitSetIterator(bitSet);
+  }
+
+  private static class DocIdBitSetIterator extends DocIdSetIterator {
+    private final BitSet bitSet;
+    private int doc = -1;
+
+    DocIdBitSetIterator(BitSet bitSet) {
+      this.bitSet = bitSet;
+    }
+
+    public int doc() {
+      return doc;
+    }
+
+    public boolean next() {
+      if (doc == Integer.MAX_VALUE)               // exhausted, doc + 1 overflows
+        return false;
+      return skipTo(doc + 1);
+    }
+
+    public boolean skipTo(int target) {
+      if (doc == Integer.MAX_VALUE)               // exhausted
+        return false;
+      if (target <= doc)
+        target = doc + 1;
+      int d = bitSet.nextSetBit(target);
+      if (d < 0) {
+        doc = Integer.MAX_VALUE;                  // exhausted
+        return false;
+      }
+      doc = d;
+      return true;
+    }
+  }
+}
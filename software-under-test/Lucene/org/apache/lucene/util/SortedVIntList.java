@@ -0,0 +1,132 @@
+package org.apache.lucene.util;
+
+/**
+ * Copyright 2006 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * A compressed {@link DocIdSet} of document numbers, each stored as its
+ * difference from the previous one in a variable number of bytes, like
+ * postings are.  A document takes one byte when the gaps between documents
+ * in the set are under 128, so this is the smallest set for sets of a
+ * few percent of an index, but it is only skipped through linearly.
+ */
+public class SortedVIntList extends DocIdSet {
+  private static final int VB1 = 0x7F;
+  private static final int BIT_SHIFT = 7;
+
+  private byte[] bytes;
+  private int length;
+  private int size;
+  private int lastInt;
+
+  /**
+   * @param docs distinct document numbers in increasing order
+   * @param size the number of documents in <code>docs</code>
+   */
+  public SortedVIntList(int[] docs, int size) {
+    bytes = new byte[Math.max(size, 16)];
+    for (int i = 0; i < size; i++)
+      addInt(docs[i]);
+    trim();
+  }
+
+  /** Creates a list of the documents of an iterator. */
+  public SortedVIntList(DocIdSetIterator iterator) throws IOException {
+    bytes = new byte[64];
+    while (iterator.next())
+      addInt(iterator.doc());
+    trim();
+  }
+
+  private void addInt(int nextInt) {
+    int diff = nextInt - lastInt;
+    if (diff < 0 || (size > 0 && diff == 0))
+      throw new IllegalArgumentException("documents out of order: "
+                                         + nextInt + " after " + lastInt);
+    if (length + 5 > bytes.length) {
+      byte[] newBytes = new byte[bytes.length * 2];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+    while ((diff & ~VB1) != 0) {
+      bytes[length++] = (byte)((diff & VB1) | ~VB1);
+      diff >>>= BIT_SHIFT;
+    }
+    bytes[length++] = (byte)diff;
+    size++;
+    lastInt = nextInt;
+  }
+
+  private void trim() {
+    if (length < bytes.length) {
+      byte[] newBytes = new byte[length];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+  }
+
+  /** Returns the number of documents in this list. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the number of bytes the documents are compressed to. */
+  public int getByteSize() {
+    return length;
+  }
+
+  public DocIdSetIterator iterator() {
+    return new VIntIterator();
+  }
+
+  private class VIntIterator extends DocIdSetIterator {
+    private int pos = 0;
+    private int doc = -1;
+    private int last = 0;
+
+    public int doc() {
+      return doc;
+    }
+
+    public boolean next() {
+      if (pos >= length) {
+        doc = Integer.MAX_VALUE;
+        return false;
+      }
+      byte b = bytes[pos++];
+      int diff = b & VB1;
+      for (int shift = BIT_SHIFT; (b & ~VB1) != 0; shift += BIT_SHIFT) {
+        b = bytes[pos++];
+        diff |= (b & VB1) << shift;
+      }
+      last += diff;
+      doc = last;
+      return true;
+    }
+
+    public boolean skipTo(int target) {
+      while (next()) {
+        if (doc >= target)
+          return true;
+      }
+      return false;
+    }
+  }
+}
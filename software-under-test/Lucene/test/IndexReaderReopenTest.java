@@ -0,0 +1,83 @@
+package test;
+
+import java.io.File;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IndexReaderReopenTest {
+    /**
+     * 用给定前缀的 id 添加 5 个文档
+     *
+     * @param dir    索引目录
+     * @param prefix 文档 id 及 body 的前缀
+     * @param create 是否新建索引
+     * @throws Exception
+     */
+    private static void addDocuments(Directory dir, String prefix, boolean create) throws Exception {
+        IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), create);
+        writer.setMaxBufferedDocs(2);
+        for (int i = 0; i < 5; i++) {
+            Document doc = new Document();
+            doc.add(new Field("id", prefix + i, Field.Store.YES, Field.Index.UN_TOKENIZED));
+            doc.add(new Field("body", prefix, Field.Store.NO, Field.Index.TOKENIZED));
+            writer.addDocument(doc);
+        }
+        writer.close();
+    }
+
+    /**
+     * 返回未删除文档的 id 以及 "old", "new" 的文档频率
+     */
+    private static String contents(IndexReader reader) throws Exception {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            if (!reader.isDeleted(i)) {
+                buffer.append(reader.document(i).get("id")).append(' ');
+            }
+        }
+        buffer.append("df(old)=").append(reader.docFreq(new Term("body", "old")));
+        buffer.append(" df(new)=").append(reader.docFreq(new Term("body", "new")));
+        return buffer.toString();
+    }
+
+    /**
+     * 在已有索引上新建索引后, reopen() 得到的内容应与重新打开的 reader 相同
+     */
+    private static void checkReopenAfterCreate(Directory dir) throws Exception {
+        addDocuments(dir, "old", true);
+        IndexReader reader = IndexReader.open(dir);
+
+        addDocuments(dir, "new", true);
+        IndexReader reopened = reader.reopen();
+        IndexReader fresh = IndexReader.open(dir);
+
+        assertEquals(contents(fresh), contents(reopened));
+        assertEquals("new0 new1 new2 new3 new4 df(old)=0 df(new)=5", contents(reopened));
+
+        reader.close();
+        reopened.close();
+        fresh.close();
+    }
+
+    @Test
+    public void testReopenAfterCreateRAMDirectory() throws Exception {
+        checkReopenAfterCreate(new RAMDirectory());
+    }
+
+    @Test
+    public void testReopenAfterCreateFSDirectory() throws Exception {
+        File index_dir = new File(System.getProperty("java.io.tmpdir"), "reopen_after_create");
+        checkReopenAfterCreate(FSDirectory.getDirectory(index_dir, true));
+    }
+}
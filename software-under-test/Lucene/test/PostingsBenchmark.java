@@ -0,0 +1,175 @@
+package test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+ * Compares decoding postings written as VInts with decoding them written
+ * in blocks, see {@link IndexWriter#setUseBlockPostings(boolean)}.  The
+ * same generated documents are indexed both ways, the postings are checked
+ * to be the same, then all of them are read with {@link
+ * TermDocs#read(int[], int[])}, as {@link
+ * org.apache.lucene.search.TermScorer} does, and with {@link
+ * TermDocs#next()}.
+ * <p>
+ * Usage: PostingsBenchmark [-rounds n] [-docs n]
+ */
+public class PostingsBenchmark {
+
+    private static Directory index(int numDocs, boolean blocks)
+        throws IOException {
+        Directory directory = new RAMDirectory();
+        IndexWriter writer =
+            new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+        writer.setUseCompoundFile(false);
+        writer.setUseBlockPostings(blocks);
+        writer.setMaxBufferedDocs(10000);
+        Random random = new Random(0);
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < numDocs; i++) {
+            text.setLength(0);
+            int length = 20 + random.nextInt(80);
+            for (int j = 0; j < length; j++) {
+                // roughly Zipfian: low term numbers are much more frequent
+                int term = (int) Math.pow(2, random.nextDouble() * 16) - 1;
+                text.append('t').append(term).append(' ');
+            }
+            Document doc = new Document();
+            doc.add(new Field("body", text.toString(), Field.Store.NO,
+                              Field.Index.TOKENIZED));
+            writer.addDocument(doc);
+        }
+        writer.optimize();
+        writer.close();
+        return directory;
+    }
+
+    private static long frqLength(Directory directory) throws IOException {
+        String[] files = directory.list();
+        long length = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].endsWith(".frq"))
+                length += directory.fileLength(files[i]);
+        }
+        return length;
+    }
+
+    /** Returns true if both readers have the same postings. */
+    private static boolean compare(IndexReader expected, IndexReader actual)
+        throws IOException {
+        TermEnum terms = expected.terms();
+        TermDocs e = expected.termDocs();
+        TermDocs a = actual.termDocs();
+        try {
+            while (terms.next()) {
+                e.seek(terms.term());
+                a.seek(terms.term());
+                while (e.next()) {
+                    if (!a.next() || a.doc() != e.doc() || a.freq() != e.freq()) {
+                        System.out.println(terms.term() + ": postings differ at "
+                                           + e.doc());
+                        return false;
+                    }
+                }
+                if (a.next())
+                    return false;
+            }
+        } finally {
+            terms.close();
+            e.close();
+            a.close();
+        }
+        return true;
+    }
+
+    /** Reads all postings and returns their number. */
+    private static long run(IndexReader reader, Term[] terms, boolean bulk)
+        throws IOException {
+        int[] docs = new int[128];
+        int[] freqs = new int[128];
+        long count = 0;
+        long check = 0;
+        TermDocs termDocs = reader.termDocs();
+        for (int i = 0; i < terms.length; i++) {
+            termDocs.seek(terms[i]);
+            if (bulk) {
+                int n;
+                while ((n = termDocs.read(docs, freqs)) != 0) {
+                    count += n;
+                    check += docs[n - 1] + freqs[n - 1];
+                }
+            } else {
+                while (termDocs.next()) {
+                    count++;
+                    check += termDocs.freq();
+                }
+            }
+        }
+        termDocs.close();
+        if (check == 42)                              // keep the JIT honest
+            System.out.print("");
+        return count;
+    }
+
+    private static Term[] terms(IndexReader reader) throws IOException {
+        TermEnum termEnum = reader.terms();
+        java.util.Vector terms = new java.util.Vector();
+        while (termEnum.next())
+            terms.addElement(termEnum.term());
+        termEnum.close();
+        Term[] result = new Term[terms.size()];
+        terms.copyInto(result);
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rounds = 5;
+        int numDocs = 100000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-rounds"))
+                rounds = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("-docs"))
+                numDocs = Integer.parseInt(args[i + 1]);
+        }
+
+        Directory vints = index(numDocs, false);
+        Directory blocks = index(numDocs, true);
+        IndexReader vintReader = IndexReader.open(vints);
+        IndexReader blockReader = IndexReader.open(blocks);
+        if (!compare(vintReader, blockReader)) {
+            System.out.println("postings differ");
+            System.exit(1);
+        }
+        System.out.println("same postings; .frq bytes: VInts " + frqLength(vints)
+                           + ", blocks " + frqLength(blocks));
+
+        Term[] terms = terms(vintReader);
+        for (int round = 0; round < rounds; round++) {
+            for (int bulk = 1; bulk >= 0; bulk--) {
+                for (int b = 0; b <= 1; b++) {
+                    IndexReader reader = (b == 1) ? blockReader : vintReader;
+                    long start = System.currentTimeMillis();
+                    long postings = run(reader, terms, bulk == 1);
+                    long millis = Math.max(1, System.currentTimeMillis() - start);
+                    System.out.println((bulk == 1 ? "read(): " : "next(): ")
+                                       + (b == 1 ? "blocks " : "VInts  ")
+                                       + postings + " postings in " + millis + " ms, "
+                                       + (postings / millis) + " postings/ms");
+                }
+            }
+        }
+        vintReader.close();
+        blockReader.close();
+    }
+}
@@ -0,0 +1,163 @@
+package test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.FastCharStream;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizerConstants;
+import org.apache.lucene.analysis.standard.StandardTokenizerTokenManager;
+
+/**
+ * Compares {@link StandardTokenizer} with the JavaCC token manager generated
+ * from <code>StandardTokenizer.jj</code>, which it replaces.  Both are first
+ * checked to produce the same tokens, then timed.
+ * <p>
+ * Usage: StandardTokenizerBenchmark [-rounds n] [file ...]
+ * <br>The files are read as UTF-8; without files, generated text with all
+ * kinds of tokens is used.
+ */
+public class StandardTokenizerBenchmark {
+
+    /**
+     * The tokens of the JavaCC token manager, as the generated
+     * StandardTokenizer returned them.
+     */
+    private static class JavaCCTokenizer extends TokenStream {
+        private StandardTokenizerTokenManager tokenManager;
+
+        JavaCCTokenizer(Reader reader) {
+            tokenManager =
+                new StandardTokenizerTokenManager(new FastCharStream(reader));
+        }
+
+        public Token next() {
+            org.apache.lucene.analysis.standard.Token token =
+                tokenManager.getNextToken();
+            if (token.kind == StandardTokenizerConstants.EOF)
+                return null;
+            return new Token(token.image, token.beginColumn, token.endColumn,
+                             StandardTokenizerConstants.tokenImage[token.kind]);
+        }
+    }
+
+    private static final String[] SAMPLES = {
+        "The", "quick", "brown", "fox", "O'Reilly's", "you're", "U.S.A.", "I.B.M.",
+        "AT&T", "Excite@Home", "john.doe-smith@mail.example.com", "www.apache.org",
+        "lucene.apache.org.", "1.2.3.4", "192.168.0.1", "R2-D2", "a-b-c", "1,000,000",
+        "3.14159", "X-15/b", "2006-01-02", "foo_bar", "\u00e9t\u00e9", "na\u00efve",
+        "\u0663\u0664\u0665", "\uac00\ub098\ub2e4", "\u65e5\u672c\u8a9e", "\u3072\u3089",
+        "--", "...", "'", "&", "@", "a.", "b..c", "x@y", "a'", "'s"
+    };
+
+    private static String generate(int words) {
+        Random random = new Random(0);
+        StringBuffer text = new StringBuffer();
+        for (int i = 0; i < words; i++) {
+            text.append(SAMPLES[random.nextInt(SAMPLES.length)]);
+            switch (random.nextInt(12)) {
+            case 0: text.append(". "); break;
+            case 1: text.append(", "); break;
+            case 2: text.append('\n'); break;
+            case 3: text.append(SAMPLES[random.nextInt(SAMPLES.length)]); break;
+            default: text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String read(String file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuffer text = new StringBuffer();
+            char[] buffer = new char[8192];
+            int length;
+            while ((length = reader.read(buffer)) != -1)
+                text.append(buffer, 0, length);
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static TokenStream tokenizer(boolean javacc, String text) {
+        Reader reader = new StringReader(text);
+        return javacc ? (TokenStream) new JavaCCTokenizer(reader)
+                      : new StandardTokenizer(reader);
+    }
+
+    /** Returns the number of the first token that differs, or -1. */
+    private static int compare(String text) throws IOException {
+        TokenStream expected = tokenizer(true, text);
+        TokenStream actual = tokenizer(false, text);
+        for (int n = 0; true; n++) {
+            Token e = expected.next();
+            Token a = actual.next();
+            if (e == null || a == null)
+                return e == a ? -1 : n;
+            if (!e.termText().equals(a.termText())
+                    || e.startOffset() != a.startOffset()
+                    || e.endOffset() != a.endOffset()
+                    || !e.type().equals(a.type())) {
+                System.out.println("token " + n + ": expected " + e + ", got " + a);
+                return n;
+            }
+        }
+    }
+
+    /** Tokenizes the texts and returns the number of tokens. */
+    private static long run(boolean javacc, String[] texts) throws IOException {
+        long count = 0;
+        Token token = new Token();
+        for (int i = 0; i < texts.length; i++) {
+            TokenStream stream = tokenizer(javacc, texts[i]);
+            while (stream.next(token) != null)
+                count++;
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rounds = 5;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-rounds")) {
+            rounds = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        String[] texts;
+        if (args.length > first) {
+            texts = new String[args.length - first];
+            for (int i = 0; i < texts.length; i++)
+                texts[i] = read(args[first + i]);
+        } else {
+            texts = new String[] { generate(1000000) };
+        }
+
+        long chars = 0;
+        for (int i = 0; i < texts.length; i++) {
+            chars += texts[i].length();
+            if (compare(texts[i]) != -1) {
+                System.out.println("text " + i + ": tokens differ");
+                System.exit(1);
+            }
+        }
+        System.out.println("same tokens for " + chars + " chars");
+
+        for (int round = 0; round < rounds; round++) {
+            for (int javacc = 1; javacc >= 0; javacc--) {
+                long start = System.currentTimeMillis();
+                long tokens = run(javacc == 1, texts);
+                long millis = Math.max(1, System.currentTimeMillis() - start);
+                System.out.println((javacc == 1 ? "JavaCC:    " : "DFA table: ")
+                                   + tokens + " tokens in " + millis + " ms, "
+                                   + (chars / millis) + " chars/ms");
+            }
+        }
+    }
+}